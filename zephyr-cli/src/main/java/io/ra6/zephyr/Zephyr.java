@@ -7,7 +7,8 @@ import java.util.concurrent.Callable;
 @CommandLine.Command(
         mixinStandardHelpOptions = true,
         subcommands = {
-                ZephyrRun.class
+                ZephyrRun.class,
+                ZephyrCompile.class
         }
 )
 public class Zephyr implements Callable<Void> {
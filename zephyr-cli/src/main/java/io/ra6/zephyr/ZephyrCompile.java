@@ -0,0 +1,41 @@
+package io.ra6.zephyr;
+
+import io.ra6.zephyr.compiling.Compiler;
+import picocli.CommandLine;
+
+import java.util.concurrent.Callable;
+
+@CommandLine.Command(name = "compile", description = "Compiles a given zephyr source file and its imports into a program that can be run without binding it again")
+public class ZephyrCompile implements Callable<Void> {
+    @CommandLine.Parameters(description = "Zephyr source file to compile")
+    private String sourceFile;
+
+    @CommandLine.Option(names = {"-o", "--output"}, description = "Path of the compiled program, defaults to the source file with the .zphc extension")
+    private String outputFile;
+
+    @CommandLine.Option(names = {"-std", "--standard-library"}, description = "Path to standard library")
+    private String standardLibraryPath = System.getenv("ZEPHYR_STANDARD_LIBRARY");
+
+    @Override
+    public Void call() throws Exception {
+        if (standardLibraryPath == null) {
+            System.out.print(ConsoleColors.ANSI_RED);
+            System.out.println("Standard library path not specified");
+            System.out.print(ConsoleColors.ANSI_RESET);
+            return null;
+        }
+
+        String output = outputFile;
+        if (output == null) {
+            output = (sourceFile.endsWith(".zph") ? sourceFile.substring(0, sourceFile.length() - 4) : sourceFile) + Compiler.COMPILED_EXTENSION;
+        }
+
+        if (new Compiler(standardLibraryPath).compile(sourceFile, output, 0)) {
+            System.out.print(ConsoleColors.ANSI_GREEN);
+            System.out.print("zephyr compile ");
+            System.out.print(ConsoleColors.ANSI_RESET);
+            System.out.println(sourceFile + " -> " + output);
+        }
+        return null;
+    }
+}
@@ -1,27 +1,43 @@
 package io.ra6.zephyr;
 
 import io.ra6.zephyr.codeanalysis.binding.Binder;
-import io.ra6.zephyr.codeanalysis.binding.BoundProgram;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
 import io.ra6.zephyr.codeanalysis.syntax.SyntaxTree;
+import io.ra6.zephyr.compiling.CompiledProgramException;
+import io.ra6.zephyr.compiling.Compiler;
 import io.ra6.zephyr.diagnostic.Diagnostic;
+import io.ra6.zephyr.diagnostic.DiagnosticBag;
+import io.ra6.zephyr.emitting.EmitterException;
+import io.ra6.zephyr.emitting.JavaBytecodeEmitter;
+import io.ra6.zephyr.emitting.jvm.JvmProgram;
 import io.ra6.zephyr.library.ZephyrLibrary;
 import io.ra6.zephyr.library.ZephyrLibraryMetadata;
+import io.ra6.zephyr.runtime.BudgetExceededException;
+import io.ra6.zephyr.runtime.CallStackOverflowException;
+import io.ra6.zephyr.runtime.ExecutionBudget;
+import io.ra6.zephyr.runtime.ExecutionEngine;
 import io.ra6.zephyr.runtime.Interpreter;
+import io.ra6.zephyr.runtime.Profiler;
 import io.ra6.zephyr.runtime.Runtime;
 import io.ra6.zephyr.runtime.RuntimeLogger;
+import io.ra6.zephyr.runtime.VariableTableStack;
 import io.ra6.zephyr.sourcefile.SourceText;
 import io.ra6.zephyr.writer.DiagnosticWriter;
 import io.ra6.zephyr.writer.SyntaxWriter;
 import lombok.experimental.ExtensionMethod;
 import picocli.CommandLine;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.concurrent.Callable;
 
 @ExtensionMethod({DiagnosticWriter.class, SyntaxWriter.class})
 @CommandLine.Command(name = "run", description = "Runs a given zephyr source file")
 public class ZephyrRun implements Callable<Void> {
-    @CommandLine.Parameters(description = "Zephyr source files to compile")
+    @CommandLine.Parameters(description = "Zephyr source file or compiled program (.zphc) to run")
     private String sourceFile;
 
     @CommandLine.Option(names = {"-t", "--tree"}, description = "Prints the syntax tree")
@@ -33,12 +49,38 @@ public class ZephyrRun implements Callable<Void> {
     @CommandLine.Option(names = {"-std", "--standard-library"}, description = "Path to standard library")
     private String standardLibraryPath = System.getenv("ZEPHYR_STANDARD_LIBRARY");
 
+    @CommandLine.Option(names = {"-e", "--engine"}, description = "Sets the execution engine (interpreter, closure, bytecode). Only the interpreter limits the call depth and reuses the frame of calls in tail position")
+    private String engine = "interpreter";
+
+    @CommandLine.Option(names = {"--jit"}, description = "Compiles the program to JVM bytecode, falls back to the execution engine if it cannot be compiled. Compiled calls always grow the Java stack")
+    private boolean jit;
+
+    @CommandLine.Option(names = {"--max-call-depth"}, description = "Sets the maximum call depth, only supported by the interpreter engine")
+    private int maxCallDepth = VariableTableStack.DEFAULT_MAX_DEPTH;
+
+    @CommandLine.Option(names = {"--max-steps"}, description = "Aborts the program after the given number of calls and loop iterations")
+    private long maxSteps = ExecutionBudget.UNLIMITED;
+
+    @CommandLine.Option(names = {"--max-allocations"}, description = "Aborts the program after allocating the given number of instances and array elements")
+    private long maxAllocations = ExecutionBudget.UNLIMITED;
+
+    @CommandLine.Option(names = {"--profile"}, description = "Profiles the program, prints a summary and writes the sampled stacks for flame graphs")
+    private boolean profile;
+
+    @CommandLine.Option(names = {"--profile-lines"}, description = "Also samples the source lines, implies --profile")
+    private boolean profileLines;
+
+    @CommandLine.Option(names = {"--profile-output"}, description = "File to write the sampled stacks to in the collapsed format (default: <source file>.collapsed)")
+    private String profileOutput;
+
     @CommandLine.Parameters(description = "Additional arguments to pass to the program")
     private String[] additionalArgs = new String[0];
 
     @Override
     public Void call() throws Exception {
-        if (standardLibraryPath == null) {
+        boolean isCompiled = Compiler.isCompiledProgram(sourceFile);
+
+        if (standardLibraryPath == null && !isCompiled) {
             System.out.print(ConsoleColors.ANSI_RED);
             System.out.println("Standard library path not specified");
             System.out.print(ConsoleColors.ANSI_RESET);
@@ -68,42 +110,136 @@ public class ZephyrRun implements Callable<Void> {
         }
 
         RuntimeLogger.infof("Preparing to run program...");
-        ZephyrLibraryMetadata standardLibraryMeta = new ZephyrLibraryMetadata("Standard Library", "std", standardLibraryPath, "0.0.1", "rasix", "");
-        ZephyrLibrary standardLibrary = new ZephyrLibrary(standardLibraryMeta);
+        BoundProgramScope programScope;
+        DiagnosticBag diagnostics = new DiagnosticBag();
+
+        if (isCompiled) {
+            RuntimeLogger.infof("\tLoading compiled program...");
+            try {
+                programScope = Compiler.load(this.sourceFile);
+            } catch (CompiledProgramException e) {
+                RuntimeLogger.errorf("Cannot load compiled program: %s", e.getMessage());
+                return null;
+            }
+        } else {
+            ZephyrLibraryMetadata standardLibraryMeta = new ZephyrLibraryMetadata("Standard Library", "std", standardLibraryPath, "0.0.1", "rasix", "");
+            ZephyrLibrary standardLibrary = new ZephyrLibrary(standardLibraryMeta);
 
-        RuntimeLogger.infof("\tLoading source file...");
-        SourceText mainSourceText = SourceText.fromFile(this.sourceFile);
+            RuntimeLogger.infof("\tLoading source file...");
+            SourceText mainSourceText = SourceText.fromFile(this.sourceFile);
 
-        RuntimeLogger.infof("\tParsing program...");
-        SyntaxTree mainTree = SyntaxTree.parse(mainSourceText);
+            RuntimeLogger.infof("\tParsing program...");
+            SyntaxTree mainTree = SyntaxTree.parse(mainSourceText);
 
-        if (this.printTree) System.out.printTree(mainTree);
+            if (this.printTree) System.out.printTree(mainTree);
 
-        RuntimeLogger.infof("\tBinding program...");
-        Binder binder = new Binder(mainTree, standardLibrary);
-        BoundProgram boundProgram = binder.bindProgram();
+            RuntimeLogger.infof("\tBinding program...");
+            Binder binder = new Binder(mainTree, standardLibrary);
+            programScope = binder.bindProgram().getProgramScope();
+            diagnostics = binder.getDiagnostics();
+        }
+
+        if (diagnostics.hasErrors()) {
+            System.out.printDiagnostics(diagnostics);
+            return null;
+        }
+
+        if (diagnostics.hasWarnings()) {
+            // Skip warnings if the log level is less than info
+            if (RuntimeLogger.LOG_LEVEL >= RuntimeLogger.INFO)
+                System.out.printDiagnostics(diagnostics.asList().stream().filter(Diagnostic::isWarning).toList());
+        }
 
         RuntimeLogger.infof("\tPreparing runtime...");
         Runtime runtime = new Runtime();
-        runtime.registerProgram(boundProgram.getProgramScope());
-        runtime.setMainProgram(runtime.getProgram(boundProgram.getProgramScope().getName()));
 
-        RuntimeLogger.infof("Finished preparing runtime. Running program...");
+        if (this.engine.equalsIgnoreCase("closure")) {
+            runtime.setEngine(ExecutionEngine.CLOSURE);
+            RuntimeLogger.infof("\tUsing closure execution engine");
+        } else if (this.engine.equalsIgnoreCase("bytecode")) {
+            runtime.setEngine(ExecutionEngine.BYTECODE);
+            RuntimeLogger.infof("\tUsing bytecode execution engine");
+        } else if (!this.engine.equalsIgnoreCase("interpreter")) {
+            RuntimeLogger.errorf("Unknown execution engine '%s'", this.engine);
+            return null;
+        }
 
-        if (binder.getDiagnostics().hasErrors()) {
-            System.out.printDiagnostics(binder.getDiagnostics());
+        // the other engines keep their calls on the Java stack and only report when it overflows
+        boolean limitsCallDepth = maxCallDepth != VariableTableStack.DEFAULT_MAX_DEPTH;
+        if (limitsCallDepth && runtime.getEngine() != ExecutionEngine.INTERPRETER) {
+            RuntimeLogger.errorf("The maximum call depth is only supported by the interpreter engine");
             return null;
         }
 
-        if (binder.getDiagnostics().hasWarnings()) {
-            // Skip warnings if the log level is less than info
-            if (RuntimeLogger.LOG_LEVEL >= RuntimeLogger.INFO)
-                System.out.printDiagnostics(binder.getDiagnostics().asList().stream().filter(Diagnostic::isWarning).toList());
+        // limits have to be set before the program is linked, linking runs the shared initializers
+        try {
+            runtime.setStepLimit(maxSteps);
+            runtime.setAllocationLimit(maxAllocations);
+            runtime.setMaxCallDepth(maxCallDepth);
+        } catch (RuntimeException e) {
+            RuntimeLogger.errorf("%s", e.getMessage());
+            return null;
         }
 
+        Profiler profiler = null;
+        if (profile || profileLines) {
+            profiler = new Profiler(profileLines);
+            runtime.setProfiler(profiler);
+        }
+
+        if (this.jit && (runtime.isMetered() || profiler != null || limitsCallDepth)) {
+            RuntimeLogger.infof("Metered, profiled or depth limited programs are not compiled to JVM bytecode, using the execution engine");
+        } else if (this.jit) {
+            JvmProgram program = null;
+            try {
+                RuntimeLogger.infof("Compiling program to JVM bytecode...");
+                program = new JavaBytecodeEmitter().emit(programScope);
+            } catch (EmitterException e) {
+                RuntimeLogger.infof("Cannot compile program to JVM bytecode, falling back to the execution engine: %s", e.getMessage());
+            }
+
+            if (program != null) {
+                int exitCode;
+                try {
+                    exitCode = program.run(additionalArgs);
+                } catch (CallStackOverflowException e) {
+                    RuntimeLogger.errorf("%s", e.getMessage());
+                    return null;
+                }
+                System.out.printf("Program finished with exit code %s%n", exitCode);
+                return null;
+            }
+        }
+
+        RuntimeLogger.infof("Finished preparing runtime. Running program...");
+
         Interpreter interpreter = new Interpreter(runtime, additionalArgs);
-        interpreter.run();
+        if (profiler != null) profiler.start();
+        try {
+            runtime.registerProgram(programScope);
+            runtime.link();
+            runtime.setMainProgram(runtime.getProgram(programScope.getName()));
+            interpreter.run();
+        } catch (CallStackOverflowException | BudgetExceededException e) {
+            RuntimeLogger.errorf("%s", e.getMessage());
+            return null;
+        } finally {
+            if (profiler != null) writeProfile(profiler);
+        }
         System.out.printf("Program finished with exit code %s%n", interpreter.getExitCode());
         return null;
     }
+
+    private void writeProfile(Profiler profiler) throws IOException {
+        profiler.stop();
+
+        String output = profileOutput != null ? profileOutput : sourceFile + ".collapsed";
+        try (PrintStream out = new PrintStream(new FileOutputStream(output), false, StandardCharsets.UTF_8)) {
+            profiler.writeCollapsedStacks(out);
+        }
+
+        System.out.println();
+        profiler.writeSummary(System.out);
+        System.out.printf("Sampled stacks written to %s%n", output);
+    }
 }
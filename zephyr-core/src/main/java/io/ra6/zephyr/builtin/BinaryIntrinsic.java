@@ -0,0 +1,125 @@
+package io.ra6.zephyr.builtin;
+
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+import lombok.Getter;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * Binary operators of the builtin primitive types that the interpreter executes directly,
+ * without pushing a frame for the operator body. The semantics mirror the operator bodies
+ * defined in the builtin types.
+ */
+public enum BinaryIntrinsic {
+    INT_ADD(Types.INT, "+", Types.INT, (l, r) -> (int) l + (int) r),
+    INT_SUBTRACT(Types.INT, "-", Types.INT, (l, r) -> (int) l - (int) r),
+    INT_MULTIPLY(Types.INT, "*", Types.INT, (l, r) -> (int) l * (int) r),
+    INT_DIVIDE(Types.INT, "/", Types.INT, (l, r) -> (int) l / (int) r),
+    INT_MODULO(Types.INT, "%", Types.INT, (l, r) -> (int) l % (int) r),
+    INT_AND(Types.INT, "&", Types.INT, (l, r) -> (int) l & (int) r),
+    INT_OR(Types.INT, "|", Types.INT, (l, r) -> (int) l | (int) r),
+    INT_XOR(Types.INT, "^", Types.INT, (l, r) -> (int) l ^ (int) r),
+    INT_EQUALS(Types.INT, "==", Types.INT, (l, r) -> (int) l == (int) r),
+    INT_NOT_EQUALS(Types.INT, "!=", Types.INT, (l, r) -> (int) l != (int) r),
+    INT_GREATER(Types.INT, ">", Types.INT, (l, r) -> (int) l > (int) r),
+    INT_LESS(Types.INT, "<", Types.INT, (l, r) -> (int) l < (int) r),
+    INT_GREATER_OR_EQUALS(Types.INT, ">=", Types.INT, (l, r) -> (int) l >= (int) r),
+    INT_LESS_OR_EQUALS(Types.INT, "<=", Types.INT, (l, r) -> (int) l <= (int) r),
+
+    INT_DOUBLE_ADD(Types.INT, "+", Types.DOUBLE, (l, r) -> (int) l + (double) r),
+    INT_DOUBLE_SUBTRACT(Types.INT, "-", Types.DOUBLE, (l, r) -> (int) l - (double) r),
+    INT_DOUBLE_MULTIPLY(Types.INT, "*", Types.DOUBLE, (l, r) -> (int) l * (double) r),
+    INT_DOUBLE_DIVIDE(Types.INT, "/", Types.DOUBLE, (l, r) -> (int) l / (double) r),
+    INT_DOUBLE_MODULO(Types.INT, "%", Types.DOUBLE, (l, r) -> (int) l % (double) r),
+    INT_DOUBLE_EQUALS(Types.INT, "==", Types.DOUBLE, (l, r) -> (int) l == (double) r),
+    INT_DOUBLE_NOT_EQUALS(Types.INT, "!=", Types.DOUBLE, (l, r) -> (int) l != (double) r),
+    INT_DOUBLE_GREATER(Types.INT, ">", Types.DOUBLE, (l, r) -> (int) l > (double) r),
+    INT_DOUBLE_LESS(Types.INT, "<", Types.DOUBLE, (l, r) -> (int) l < (double) r),
+    INT_DOUBLE_GREATER_OR_EQUALS(Types.INT, ">=", Types.DOUBLE, (l, r) -> (int) l >= (double) r),
+    INT_DOUBLE_LESS_OR_EQUALS(Types.INT, "<=", Types.DOUBLE, (l, r) -> (int) l <= (double) r),
+
+    DOUBLE_ADD(Types.DOUBLE, "+", Types.DOUBLE, (l, r) -> (double) l + (double) r),
+    DOUBLE_SUBTRACT(Types.DOUBLE, "-", Types.DOUBLE, (l, r) -> (double) l - (double) r),
+    DOUBLE_MULTIPLY(Types.DOUBLE, "*", Types.DOUBLE, (l, r) -> (double) l * (double) r),
+    DOUBLE_DIVIDE(Types.DOUBLE, "/", Types.DOUBLE, (l, r) -> (double) l / (double) r),
+    DOUBLE_MODULO(Types.DOUBLE, "%", Types.DOUBLE, (l, r) -> (double) l % (double) r),
+    DOUBLE_EQUALS(Types.DOUBLE, "==", Types.DOUBLE, (l, r) -> (double) l == (double) r),
+    DOUBLE_NOT_EQUALS(Types.DOUBLE, "!=", Types.DOUBLE, (l, r) -> (double) l != (double) r),
+    DOUBLE_GREATER(Types.DOUBLE, ">", Types.DOUBLE, (l, r) -> (double) l > (double) r),
+    DOUBLE_LESS(Types.DOUBLE, "<", Types.DOUBLE, (l, r) -> (double) l < (double) r),
+    DOUBLE_GREATER_OR_EQUALS(Types.DOUBLE, ">=", Types.DOUBLE, (l, r) -> (double) l >= (double) r),
+    DOUBLE_LESS_OR_EQUALS(Types.DOUBLE, "<=", Types.DOUBLE, (l, r) -> (double) l <= (double) r),
+
+    DOUBLE_INT_ADD(Types.DOUBLE, "+", Types.INT, (l, r) -> (double) l + (int) r),
+    DOUBLE_INT_SUBTRACT(Types.DOUBLE, "-", Types.INT, (l, r) -> (double) l - (int) r),
+    DOUBLE_INT_MULTIPLY(Types.DOUBLE, "*", Types.INT, (l, r) -> (double) l * (int) r),
+    DOUBLE_INT_DIVIDE(Types.DOUBLE, "/", Types.INT, (l, r) -> (double) l / (int) r),
+    DOUBLE_INT_MODULO(Types.DOUBLE, "%", Types.INT, (l, r) -> (double) l % (int) r),
+    DOUBLE_INT_EQUALS(Types.DOUBLE, "==", Types.INT, (l, r) -> (double) l == (int) r),
+    DOUBLE_INT_NOT_EQUALS(Types.DOUBLE, "!=", Types.INT, (l, r) -> (double) l != (int) r),
+    DOUBLE_INT_GREATER(Types.DOUBLE, ">", Types.INT, (l, r) -> (double) l > (int) r),
+    DOUBLE_INT_LESS(Types.DOUBLE, "<", Types.INT, (l, r) -> (double) l < (int) r),
+    DOUBLE_INT_GREATER_OR_EQUALS(Types.DOUBLE, ">=", Types.INT, (l, r) -> (double) l >= (int) r),
+    DOUBLE_INT_LESS_OR_EQUALS(Types.DOUBLE, "<=", Types.INT, (l, r) -> (double) l <= (int) r),
+
+    // char + char is widened to int, the same way the char type's operator body does it
+    CHAR_ADD(Types.CHAR, "+", Types.CHAR, (l, r) -> (char) l + (char) r),
+    CHAR_SUBTRACT(Types.CHAR, "-", Types.CHAR, (l, r) -> (char) l - (char) r),
+    CHAR_EQUALS(Types.CHAR, "==", Types.CHAR, (l, r) -> (char) l == (char) r),
+    CHAR_NOT_EQUALS(Types.CHAR, "!=", Types.CHAR, (l, r) -> (char) l != (char) r),
+    CHAR_GREATER(Types.CHAR, ">", Types.CHAR, (l, r) -> (char) l > (char) r),
+    CHAR_GREATER_OR_EQUALS(Types.CHAR, ">=", Types.CHAR, (l, r) -> (char) l >= (char) r),
+    CHAR_LESS(Types.CHAR, "<", Types.CHAR, (l, r) -> (char) l < (char) r),
+    CHAR_LESS_OR_EQUALS(Types.CHAR, "<=", Types.CHAR, (l, r) -> (char) l <= (char) r),
+
+    CHAR_INT_ADD(Types.CHAR, "+", Types.INT, (l, r) -> (char) ((char) l + (int) r)),
+    CHAR_INT_SUBTRACT(Types.CHAR, "-", Types.INT, (l, r) -> (char) ((char) l - (int) r)),
+    CHAR_INT_EQUALS(Types.CHAR, "==", Types.INT, (l, r) -> (char) l == (char) (int) r),
+    CHAR_INT_NOT_EQUALS(Types.CHAR, "!=", Types.INT, (l, r) -> (char) l != (char) (int) r),
+    CHAR_INT_GREATER(Types.CHAR, ">", Types.INT, (l, r) -> (char) l > (char) (int) r),
+    CHAR_INT_GREATER_OR_EQUALS(Types.CHAR, ">=", Types.INT, (l, r) -> (char) l >= (char) (int) r),
+    CHAR_INT_LESS(Types.CHAR, "<", Types.INT, (l, r) -> (char) l < (char) (int) r),
+    CHAR_INT_LESS_OR_EQUALS(Types.CHAR, "<=", Types.INT, (l, r) -> (char) l <= (char) (int) r),
+
+    BOOL_EQUALS(Types.BOOL, "==", Types.BOOL, (l, r) -> (boolean) l == (boolean) r),
+    BOOL_NOT_EQUALS(Types.BOOL, "!=", Types.BOOL, (l, r) -> (boolean) l != (boolean) r),
+    BOOL_AND(Types.BOOL, "&&", Types.BOOL, (l, r) -> (boolean) l && (boolean) r),
+    BOOL_OR(Types.BOOL, "||", Types.BOOL, (l, r) -> (boolean) l || (boolean) r),
+
+    STRING_CONCAT(Types.STRING, "+", Types.STRING, (l, r) -> (String) l + (String) r),
+    STRING_CHAR_CONCAT(Types.STRING, "+", Types.CHAR, (l, r) -> (String) l + (char) r),
+    STRING_EQUALS(Types.STRING, "==", Types.STRING, (l, r) -> l.equals(r)),
+    STRING_NOT_EQUALS(Types.STRING, "!=", Types.STRING, (l, r) -> !l.equals(r)),
+    STRING_LESS(Types.STRING, "<", Types.STRING, (l, r) -> ((String) l).length() < ((String) r).length()),
+    STRING_LESS_OR_EQUALS(Types.STRING, "<=", Types.STRING, (l, r) -> ((String) l).length() <= ((String) r).length()),
+    STRING_GREATER(Types.STRING, ">", Types.STRING, (l, r) -> ((String) l).length() > ((String) r).length()),
+    STRING_GREATER_OR_EQUALS(Types.STRING, ">=", Types.STRING, (l, r) -> ((String) l).length() >= ((String) r).length());
+
+    @Getter
+    private final TypeSymbol leftType;
+    @Getter
+    private final String operator;
+    @Getter
+    private final TypeSymbol rightType;
+    private final BinaryOperator<Object> operation;
+
+    BinaryIntrinsic(TypeSymbol leftType, String operator, TypeSymbol rightType, BinaryOperator<Object> operation) {
+        this.leftType = leftType;
+        this.operator = operator;
+        this.rightType = rightType;
+        this.operation = operation;
+    }
+
+    public Object evaluate(Object left, Object right) {
+        return operation.apply(left, right);
+    }
+
+    public static BinaryIntrinsic lookup(TypeSymbol leftType, String operator, TypeSymbol rightType) {
+        for (BinaryIntrinsic intrinsic : values()) {
+            if (intrinsic.leftType == leftType && intrinsic.rightType == rightType && intrinsic.operator.equals(operator)) {
+                return intrinsic;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,79 @@
+package io.ra6.zephyr.builtin;
+
+import io.ra6.zephyr.builtin.natives.NativeType;
+import io.ra6.zephyr.builtin.types.BuiltinType;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The builtin and native types. They are declared and defined exactly once, frozen afterwards and shared by
+ * every program scope, so the universe can be used from any number of binders and threads.
+ */
+public final class BuiltinUniverse {
+    private static final BuiltinUniverse INSTANCE = new BuiltinUniverse();
+
+    private final Map<String, BuiltinType> builtinTypes;
+    private final Map<String, NativeType> nativeTypes;
+
+    private BuiltinUniverse() {
+        List<BuiltinType> types = Types.getBuiltinTypes();
+        List<NativeType> natives = Natives.getNativeTypes();
+
+        // every builtin type has to be declared before the first one is defined
+        types.forEach(BuiltinType::declareAll);
+        types.forEach(BuiltinType::defineAll);
+        for (NativeType nativeType : natives) {
+            nativeType.declareAll();
+            nativeType.defineAll();
+        }
+
+        HashMap<String, BuiltinType> builtinTypes = new HashMap<>();
+        for (BuiltinType type : types) {
+            type.getTypeScope().freeze();
+            builtinTypes.put(type.getTypeSymbol().getName(), type);
+        }
+
+        HashMap<String, NativeType> nativeTypes = new HashMap<>();
+        for (NativeType nativeType : natives) {
+            nativeType.getTypeScope().freeze();
+            nativeTypes.put(nativeType.getNativeName(), nativeType);
+        }
+
+        this.builtinTypes = Map.copyOf(builtinTypes);
+        this.nativeTypes = Map.copyOf(nativeTypes);
+    }
+
+    public static BuiltinUniverse get() {
+        return INSTANCE;
+    }
+
+    public boolean isBuiltinType(String name) {
+        return builtinTypes.containsKey(name);
+    }
+
+    public TypeSymbol getType(String name) {
+        BuiltinType type = builtinTypes.get(name);
+        return type == null ? null : type.getTypeSymbol();
+    }
+
+    public BoundTypeScope getTypeScope(String name) {
+        BuiltinType type = builtinTypes.get(name);
+        return type == null ? null : type.getTypeScope();
+    }
+
+    public List<BuiltinType> getBuiltinTypes() {
+        return List.copyOf(builtinTypes.values());
+    }
+
+    public NativeType getNativeType(String name) {
+        return nativeTypes.get(name);
+    }
+
+    public List<NativeType> getNativeTypes() {
+        return List.copyOf(nativeTypes.values());
+    }
+}
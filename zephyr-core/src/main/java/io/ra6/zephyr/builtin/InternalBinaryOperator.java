@@ -25,7 +25,7 @@ public class InternalBinaryOperator implements IFunctionBase {
     }
 
     public BoundBlockStatement bindBody() {
-        VariableSymbol otherVariable = new VariableSymbol(PARAM_OTHER, true, otherType);
+        VariableSymbol otherVariable = new VariableSymbol(PARAM_OTHER, true, otherType, VariableSymbol.getParameterSlot(0));
 
         BoundExpression otherExpression = BoundNodeFactory.createVariableExpression(null, otherVariable);
 
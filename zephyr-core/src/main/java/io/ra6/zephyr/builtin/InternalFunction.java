@@ -35,8 +35,9 @@ public class InternalFunction implements IFunctionBase {
     public BoundBlockStatement bindBody() {
         List<BoundExpression> args = new ArrayList<>();
 
-        for (ParameterSymbol parameter : parameters) {
-            VariableSymbol variable = new VariableSymbol(parameter.getName(), true, parameter.getType());
+        for (int i = 0; i < parameters.size(); i++) {
+            ParameterSymbol parameter = parameters.get(i);
+            VariableSymbol variable = new VariableSymbol(parameter.getName(), true, parameter.getType(), VariableSymbol.getParameterSlot(i));
             args.add(BoundNodeFactory.createVariableExpression(null, variable));
         }
         BoundExpression boundExpression = BoundNodeFactory.createInternalFunctionExpression(null, this, args);
@@ -1,15 +1,19 @@
 package io.ra6.zephyr.builtin;
 
+import io.ra6.zephyr.builtin.natives.NativeConcurrent;
 import io.ra6.zephyr.builtin.natives.NativeConsole;
 import io.ra6.zephyr.builtin.natives.NativeType;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 public class Natives {
     private static final HashMap<String, NativeType> TYPES = new HashMap<>();
 
     static {
         register(new NativeConsole());
+        register(new NativeConcurrent());
     }
 
     public static void register(NativeType type) {
@@ -19,4 +23,8 @@ public class Natives {
     public static NativeType getNativeType(String name) {
         return TYPES.get(name);
     }
+
+    public static List<NativeType> getNativeTypes() {
+        return new ArrayList<>(TYPES.values());
+    }
 }
@@ -0,0 +1,43 @@
+package io.ra6.zephyr.builtin;
+
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+import lombok.Getter;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Unary operators of the builtin primitive types that the interpreter executes directly.
+ *
+ * @see BinaryIntrinsic
+ */
+public enum UnaryIntrinsic {
+    INT_NEGATE(Types.INT, "-", v -> -(int) v),
+    INT_IDENTITY(Types.INT, "+", v -> +(int) v),
+    INT_COMPLEMENT(Types.INT, "~", v -> ~(int) v),
+    BOOL_NOT(Types.BOOL, "!", v -> !(boolean) v);
+
+    @Getter
+    private final TypeSymbol operandType;
+    @Getter
+    private final String operator;
+    private final UnaryOperator<Object> operation;
+
+    UnaryIntrinsic(TypeSymbol operandType, String operator, UnaryOperator<Object> operation) {
+        this.operandType = operandType;
+        this.operator = operator;
+        this.operation = operation;
+    }
+
+    public Object evaluate(Object operand) {
+        return operation.apply(operand);
+    }
+
+    public static UnaryIntrinsic lookup(TypeSymbol operandType, String operator) {
+        for (UnaryIntrinsic intrinsic : values()) {
+            if (intrinsic.operandType == operandType && intrinsic.operator.equals(operator)) {
+                return intrinsic;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package io.ra6.zephyr.builtin.natives;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded queue tasks pass values through. Senders wait while it is full, receivers while it is empty. A closed
+ * channel rejects new values and its receivers get null once it is drained. It waits with a lock instead of
+ * {@code synchronized}, which would pin a virtual thread to its carrier.
+ */
+class Channel {
+    private final ArrayDeque<Object> values;
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private boolean closed;
+
+    Channel(int capacity) {
+        if (capacity < 1) {
+            throw new RuntimeException("Channel capacity must be positive, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.values = new ArrayDeque<>(capacity);
+    }
+
+    void send(Object value) throws InterruptedException {
+        if (value == null) {
+            throw new RuntimeException("Cannot send null through a channel");
+        }
+
+        lock.lockInterruptibly();
+        try {
+            while (values.size() == capacity && !closed) {
+                notFull.await();
+            }
+            if (closed) {
+                throw new RuntimeException("Cannot send through a closed channel");
+            }
+            values.addLast(value);
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    Object receive() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (values.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            Object value = values.pollFirst();
+            if (value != null) {
+                notFull.signal();
+            }
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package io.ra6.zephyr.builtin.natives;
+
+import io.ra6.zephyr.builtin.InternalFunction;
+import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.codeanalysis.binding.Visibility;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.symbols.FunctionSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.ParameterSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+import io.ra6.zephyr.runtime.RegisteredProgram;
+import io.ra6.zephyr.runtime.Runtime;
+import io.ra6.zephyr.runtime.RuntimeType;
+import io.ra6.zephyr.runtime.TypeInstance;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tasks and channels. A task runs the {@code run()} function of an instance in its own execution context, so tasks
+ * of the interpreter do not share a call stack. The result of {@code run()} is checked against the result type of
+ * the task when it is spawned. Tasks and channels are passed to programs as opaque values.
+ * <p>
+ * Tasks run on virtual threads if the JVM provides them. Otherwise at most {@link #MAX_PLATFORM_THREADS} tasks run at
+ * once on platform threads and further tasks wait until one of them finishes, so that many tasks blocked on each
+ * other, e.g. on channels, cannot make progress.
+ */
+public class NativeConcurrent extends NativeType {
+    private static final String RUN_FUNCTION = "run";
+    static final int MAX_PLATFORM_THREADS = 256;
+    static final Executor EXECUTOR = createExecutor();
+
+    private final BoundTypeScope typeScope = new BoundTypeScope(null, getTypeSymbol());
+
+    private final InternalFunction spawn = new InternalFunction("spawn", true, Visibility.PUBLIC, List.of(new ParameterSymbol("task", Types.ANY), new ParameterSymbol("work", Types.ANY)), Types.ANY, args -> {
+        if (!(args.get("work") instanceof TypeInstance work)) {
+            throw new RuntimeException("Only instances of types can be spawned");
+        }
+
+        RuntimeType type = work.getRuntimeType();
+        FunctionSymbol run = type.getType().getFunctions().stream()
+                .filter(f -> f.getName().equals(RUN_FUNCTION) && !f.isShared())
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Type " + type.getName() + " cannot be spawned, it has no function " + RUN_FUNCTION + "()"));
+        if (!run.getParameters().isEmpty()) {
+            throw new RuntimeException("Function " + RUN_FUNCTION + " of type " + type.getName() + " must not take parameters");
+        }
+        checkResultType((TypeInstance) args.get("task"), work, run);
+
+        Runtime runtime = type.getRuntime();
+        RegisteredProgram program = runtime.findProgram(type.getType());
+        return CompletableFuture.supplyAsync(() -> runtime.createContext().invoke(program, type, run, work, new Object[0]), EXECUTOR);
+    });
+
+    private final InternalFunction join = new InternalFunction("join", true, Visibility.PUBLIC, List.of(new ParameterSymbol("task", Types.ANY)), Types.ANY, args -> {
+        try {
+            return ((CompletableFuture<?>) args.get("task")).join();
+        } catch (CompletionException e) {
+            // the task failed, its exception is rethrown in the joining task
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    });
+
+    private final InternalFunction isDone = new InternalFunction("isDone", true, Visibility.PUBLIC, List.of(new ParameterSymbol("task", Types.ANY)), Types.BOOL, args -> {
+        return ((CompletableFuture<?>) args.get("task")).isDone();
+    });
+
+    private final InternalFunction channel = new InternalFunction("channel", true, Visibility.PUBLIC, List.of(new ParameterSymbol("capacity", Types.INT)), Types.ANY, args -> {
+        return new Channel((int) args.get("capacity"));
+    });
+
+    private final InternalFunction send = new InternalFunction("send", true, Visibility.PUBLIC, List.of(new ParameterSymbol("channel", Types.ANY), new ParameterSymbol("value", Types.ANY)), Types.VOID, args -> {
+        try {
+            ((Channel) args.get("channel")).send(args.get("value"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sending through a channel", e);
+        }
+        return null;
+    });
+
+    private final InternalFunction receive = new InternalFunction("receive", true, Visibility.PUBLIC, List.of(new ParameterSymbol("channel", Types.ANY)), Types.ANY, args -> {
+        try {
+            return ((Channel) args.get("channel")).receive();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while receiving from a channel", e);
+        }
+    });
+
+    private final InternalFunction close = new InternalFunction("close", true, Visibility.PUBLIC, List.of(new ParameterSymbol("channel", Types.ANY)), Types.VOID, args -> {
+        ((Channel) args.get("channel")).close();
+        return null;
+    });
+
+    private final InternalFunction sleep = new InternalFunction("sleep", true, Visibility.PUBLIC, List.of(new ParameterSymbol("millis", Types.INT)), Types.VOID, args -> {
+        try {
+            Thread.sleep((int) args.get("millis"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while sleeping", e);
+        }
+        return null;
+    });
+
+    // the binder lets Task.join() return the result as the result type of the task, so it has to match
+    private static void checkResultType(TypeInstance task, TypeInstance work, FunctionSymbol run) {
+        RuntimeType resultType = task.getGenericType(task.getRuntimeType().getType().getGenericAt(0));
+        TypeSymbol expected = resultType == null || resultType.getType().isGeneric() ? null : resultType.getType();
+        TypeSymbol actual = resolve(work, run.getType());
+
+        // results of types that are only known to generic callers are not checked
+        if (expected == null || actual == null || expected.equals(Types.ANY) || expected.equals(actual)) {
+            return;
+        }
+
+        throw new RuntimeException("Function %s of type %s returns %s, but the task expects %s".formatted(RUN_FUNCTION, work.getRuntimeType().getName(), actual.getName(), expected.getName()));
+    }
+
+    private static TypeSymbol resolve(TypeInstance instance, TypeSymbol type) {
+        if (!type.isGeneric()) {
+            return type;
+        }
+
+        RuntimeType genericType = instance.getGenericType(type.getName());
+        return genericType == null || genericType.getType().isGeneric() ? null : genericType.getType();
+    }
+
+    // Virtual threads are a preview of the targeted JDK, they are looked up so the build does not need preview
+    // features. Without --enable-preview, or on an older JVM, the tasks share a bounded pool of daemon platform threads.
+    private static Executor createExecutor() {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "zephyr-task-", 1L);
+            ThreadFactory threads = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return command -> threads.newThread(command).start();
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_PLATFORM_THREADS, MAX_PLATFORM_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "zephyr-task-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    @Override
+    public String getNativeName() {
+        return "NativeConcurrent";
+    }
+
+    @Override
+    public boolean isRuntimeOnly() {
+        return true;
+    }
+
+    @Override
+    protected void declareFields() {
+
+    }
+
+    @Override
+    protected void defineFields() {
+
+    }
+
+    @Override
+    protected void declareConstructors() {
+
+    }
+
+    @Override
+    protected void defineConstructors() {
+
+    }
+
+    @Override
+    protected void declareFunctions() {
+        typeScope.declareFunction(spawn);
+        typeScope.declareFunction(join);
+        typeScope.declareFunction(isDone);
+        typeScope.declareFunction(channel);
+        typeScope.declareFunction(send);
+        typeScope.declareFunction(receive);
+        typeScope.declareFunction(close);
+        typeScope.declareFunction(sleep);
+    }
+
+    @Override
+    protected void defineFunctions() {
+        typeScope.defineFunction(spawn);
+        typeScope.defineFunction(join);
+        typeScope.defineFunction(isDone);
+        typeScope.defineFunction(channel);
+        typeScope.defineFunction(send);
+        typeScope.defineFunction(receive);
+        typeScope.defineFunction(close);
+        typeScope.defineFunction(sleep);
+    }
+
+    @Override
+    protected void declareBinaryOperators() {
+
+    }
+
+    @Override
+    protected void defineBinaryOperators() {
+
+    }
+
+    @Override
+    protected void declareUnaryOperators() {
+
+    }
+
+    @Override
+    protected void defineUnaryOperators() {
+
+    }
+
+    @Override
+    public BoundTypeScope getTypeScope() {
+        return typeScope;
+    }
+}
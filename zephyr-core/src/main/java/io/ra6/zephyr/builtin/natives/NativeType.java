@@ -8,4 +8,12 @@ public abstract class NativeType extends BuiltinType {
     @Getter
     private final TypeSymbol typeSymbol = new TypeSymbol(getNativeName());
     public abstract String getNativeName();
+
+    /**
+     * @return true if the functions work on values of the execution engines, such as type instances, so programs
+     * declaring the type cannot be compiled to JVM classes
+     */
+    public boolean isRuntimeOnly() {
+        return false;
+    }
 }
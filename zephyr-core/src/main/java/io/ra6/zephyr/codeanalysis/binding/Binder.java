@@ -2,16 +2,18 @@ package io.ra6.zephyr.codeanalysis.binding;
 
 import io.ra6.zephyr.Triple;
 import io.ra6.zephyr.Tuple;
-import io.ra6.zephyr.builtin.Natives;
+import io.ra6.zephyr.builtin.BinaryIntrinsic;
+import io.ra6.zephyr.builtin.BuiltinUniverse;
 import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.builtin.UnaryIntrinsic;
 import io.ra6.zephyr.builtin.natives.NativeType;
-import io.ra6.zephyr.builtin.types.BuiltinType;
 import io.ra6.zephyr.codeanalysis.binding.expressions.*;
 import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
 import io.ra6.zephyr.codeanalysis.binding.scopes.BoundScope;
 import io.ra6.zephyr.codeanalysis.binding.scopes.BoundScopeKind;
 import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
 import io.ra6.zephyr.codeanalysis.binding.statements.*;
+import io.ra6.zephyr.codeanalysis.lowering.Inliner;
 import io.ra6.zephyr.codeanalysis.lowering.Lowerer;
 import io.ra6.zephyr.codeanalysis.symbols.*;
 import io.ra6.zephyr.codeanalysis.syntax.*;
@@ -19,22 +21,23 @@ import io.ra6.zephyr.codeanalysis.syntax.expressions.*;
 import io.ra6.zephyr.codeanalysis.syntax.statements.*;
 import io.ra6.zephyr.diagnostic.DiagnosticBag;
 import io.ra6.zephyr.library.ZephyrLibrary;
-import io.ra6.zephyr.sourcefile.SourceText;
 import io.ra6.zephyr.sourcefile.TextLocation;
 import lombok.Getter;
 
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-
-// TODO: When importing a file from a library, that has already been imported somewhere else, we should not re-parse/bind it.
+import java.util.concurrent.ForkJoinPool;
 
 public class Binder {
     @Getter
     private final DiagnosticBag diagnostics = new DiagnosticBag();
 
     private final SyntaxTree syntaxTree;
-    private final ZephyrLibrary standardLibrary;
+    private final ImportScheduler importScheduler;
+    @Getter
+    private final List<Path> importedPaths = new ArrayList<>();
 
     private final BoundProgramScope programScope;
     private BoundScope scope;
@@ -45,31 +48,30 @@ public class Binder {
     private TypeSymbol currentType;
 
     private int labelCounter = 0;
+    private int slotCounter = 0;
     private final Stack<Tuple<BoundLabel, BoundLabel>> loopStack = new Stack<>();
 
     public Binder(SyntaxTree syntaxTree, ZephyrLibrary standardLibrary) {
+        this(syntaxTree, standardLibrary, new BoundProgramCache());
+    }
+
+    public Binder(SyntaxTree syntaxTree, ZephyrLibrary standardLibrary, BoundProgramCache programCache) {
+        this(syntaxTree, new ImportScheduler(standardLibrary, programCache, ForkJoinPool.commonPool()));
+    }
+
+    Binder(SyntaxTree syntaxTree, ImportScheduler importScheduler) {
         this.syntaxTree = syntaxTree;
-        this.standardLibrary = standardLibrary;
+        this.importScheduler = importScheduler;
 
         this.diagnostics.addAll(syntaxTree.getDiagnostics());
 
         this.programScope = new BoundProgramScope(syntaxTree.getSourceText().getFilePath());
-
-        // TODO: declare builtin types#
-        for (BuiltinType type : Types.getBuiltinTypes()) {
-            type.declareAll();
-            programScope.declareType(type.getTypeSymbol());
-        }
-
-        for (BuiltinType type : Types.getBuiltinTypes()) {
-            type.defineAll();
-            programScope.defineType(type.getTypeSymbol(), type.getTypeScope());
-        }
-
         this.scope = programScope;
     }
 
     public BoundProgram bindProgram() {
+        importScheduler.schedule(syntaxTree);
+
         CompilationUnitSyntax root = syntaxTree.getRoot();
 
         for (StatementSyntax statement : root.getStatements()) {
@@ -94,6 +96,10 @@ public class Binder {
             throw new RuntimeException("Unexpected scope kind: " + scope.getKind());
         }
 
+        if (!diagnostics.hasErrors()) {
+            Inliner.inline(programScope);
+        }
+
         return new BoundProgram(programScope, diagnostics);
     }
 
@@ -105,13 +111,7 @@ public class Binder {
             return;
         }
 
-        NativeType nativeType = Natives.getNativeType(name);
-
-        nativeType.declareAll();
-        programScope.declareType(nativeType.getTypeSymbol());
-
-        nativeType.defineAll();
-        programScope.defineType(nativeType.getTypeSymbol(), nativeType.getTypeScope());
+        programScope.declareNativeType(BuiltinUniverse.get().getNativeType(name));
     }
 
 
@@ -302,7 +302,7 @@ public class Binder {
     }
 
     private BoundBlockStatement generateEqualsFunction(TypeSymbol type) {
-        BoundExpression other = new BoundVariableExpression(null, new VariableSymbol("other", true, Types.ANY));
+        BoundExpression other = new BoundVariableExpression(null, new VariableSymbol("other", true, Types.ANY, VariableSymbol.getParameterSlot(0)));
 
         BoundReturnStatement returnStatement = new BoundReturnStatement(null, BoundNodeFactory.createTypeEqualsExpression(null, new BoundThisExpression(null, type), other.getType()));
 
@@ -445,6 +445,7 @@ public class Binder {
 
         FunctionSymbol function = typeScope.getFunction(functionName);
         currentFunctionOrConstructor = function;
+        slotCounter = VariableSymbol.getParameterSlot(function.getParameters().size());
 
         BoundBlockStatement body = Lowerer.lower(function, bindBlockStatement(syntax.getBody()));
 
@@ -597,6 +598,12 @@ public class Binder {
             return bindErrorStatement(syntax);
         }
 
+        // natives hand out values a caller of the same generic type gave them, e.g. the result of a task or the
+        // elements of a channel, those values can be returned as the generic type
+        if (expression != null && expression.getType().equals(Types.ANY) && currentFunction.getType().isGeneric() && isNativeFunctionCall(expression)) {
+            expression = bindConversion(expression, currentFunction.getType(), Types.ANY);
+        }
+
         if (expression != null && !expression.getType().equals(currentFunction.getType())) {
             diagnostics.reportInvalidReturnExpression(syntax.getExpression().getLocation(), expression.getType(), currentFunction.getType());
             return bindErrorStatement(syntax);
@@ -605,6 +612,15 @@ public class Binder {
         return new BoundReturnStatement(syntax, expression);
     }
 
+    private boolean isNativeFunctionCall(BoundExpression expression) {
+        if (!(expression instanceof BoundFunctionCallExpression call) || !(call.getCallee() instanceof BoundTypeExpression callee)) {
+            return false;
+        }
+
+        NativeType nativeType = BuiltinUniverse.get().getNativeType(callee.getType().getName());
+        return nativeType != null && nativeType.getTypeSymbol().equals(callee.getType());
+    }
+
     private BoundStatement bindExpressionStatement(ExpressionStatementSyntax syntax) {
         return new BoundExpressionStatement(syntax, bindExpression(syntax.getExpression()));
     }
@@ -635,7 +651,7 @@ public class Binder {
             return bindErrorStatement(syntax);
         }
 
-        VariableSymbol variableSymbol = new VariableSymbol(variableName, isReadOnly, variableType);
+        VariableSymbol variableSymbol = new VariableSymbol(variableName, isReadOnly, variableType, slotCounter++);
 
         if (initializer instanceof BoundInstanceCreationExpression instanceCreationExpression) {
             variableSymbol.setGenericTypes(instanceCreationExpression.getGenericTypes());
@@ -703,6 +719,7 @@ public class Binder {
 
         ConstructorSymbol constructor = typeScope.getType().getConstructor(parameters.size());
         currentFunctionOrConstructor = constructor;
+        slotCounter = VariableSymbol.getParameterSlot(constructor.getParameters().size());
 
         BoundBlockStatement body = Lowerer.lower(constructor, bindBlockStatement(syntax.getBody()));
 
@@ -756,6 +773,7 @@ public class Binder {
 
         BinaryOperatorSymbol operator = typeScope.getBinaryOperator(operatorName, typeScope.getType());
         currentBinaryOperator = operator;
+        slotCounter = VariableSymbol.getParameterSlot(1);
 
         BoundBlockStatement body = bindBlockStatement(syntax.getBody());
 
@@ -793,6 +811,7 @@ public class Binder {
 
         UnaryOperatorSymbol operator = typeScope.getUnaryOperator(operatorName);
         currentUnaryOperator = operator;
+        slotCounter = VariableSymbol.getParameterSlot(0);
 
         BoundBlockStatement body = bindBlockStatement(syntax.getBody());
 
@@ -804,21 +823,12 @@ public class Binder {
         try {
             String pathToImport = (String) syntax.getStringToken().getValue();
             boolean isStd = pathToImport.startsWith("std:");
-            String path = isStd ? standardLibrary.getLibraryPath(pathToImport) : pathToImport;
+            String filePath = syntaxTree.getSourceText().getFilePath();
+            String path = importScheduler.resolveImportPath(filePath, pathToImport);
 
-            // convert relative path to absolute path
-            if (!isStd) {
-                path = Paths.get(syntaxTree.getSourceText().getFilePath()).getParent().resolve(path).toString();
-            }
-
-            if (!isStd) {
-                // TODO: Support importing non-Zephyr files
-                if (path.endsWith(".zph")) {
-                    diagnostics.reportImportError(syntax.getStringToken().getLocation(), "Importing non-Zephyr files is not supported yet");
-                    path = path.substring(0, path.length() - 4);
-                } else {
-                    path = path + ".zph";
-                }
+            // TODO: Support importing non-Zephyr files
+            if (!isStd && pathToImport.endsWith(".zph")) {
+                diagnostics.reportImportError(syntax.getStringToken().getLocation(), "Importing non-Zephyr files is not supported yet");
             }
 
             if (!Files.exists(Paths.get(path))) {
@@ -830,18 +840,23 @@ public class Binder {
                 return;
             }
 
-            SourceText importedSourceText = SourceText.fromFile(path);
-            SyntaxTree importedSyntaxTree = SyntaxTree.parse(importedSourceText);
-            Binder importedBinder = new Binder(importedSyntaxTree, standardLibrary);
-            BoundProgram importedProgram = importedBinder.bindProgram();
+            Path canonicalPath = BoundProgramCache.canonicalize(path);
+            String cycle = importScheduler.getCycle(filePath.isEmpty() ? null : BoundProgramCache.canonicalize(filePath), canonicalPath);
+            if (cycle != null) {
+                diagnostics.reportImportCycle(syntax.getStringToken().getLocation(), cycle);
+                return;
+            }
+
+            BoundProgram importedProgram = importScheduler.getProgram(path, canonicalPath);
+            importedPaths.add(canonicalPath);
 
             if (importedProgram.getDiagnostics().hasErrors()) {
                 diagnostics.reportImportError(syntax.getStringToken().getLocation(), "Imported program has errors");
-                diagnostics.addAll(importedBinder.diagnostics);
+                diagnostics.addAll(importedProgram.getDiagnostics());
                 return;
             }
 
-            programScope.importProgram((String) syntax.getStringToken().getValue(), importedProgram.getProgramScope());
+            programScope.importProgram(pathToImport, importedProgram.getProgramScope());
         } catch (Exception e) {
             diagnostics.reportImportError(syntax.getStringToken().getLocation(), e.getMessage());
         }
@@ -918,7 +933,8 @@ public class Binder {
             return bindErrorExpression(syntax);
         }
 
-        HashMap<BoundExpression, BoundExpression> sizes = new HashMap<>();
+        // the dimensions have to stay in source order
+        HashMap<BoundExpression, BoundExpression> sizes = new LinkedHashMap<>();
         for (ArraySizeClauseSyntax size : syntax.getArraySizeClauses()) {
             BoundExpression boundSize = bindExpression(size.getSize());
 
@@ -1262,7 +1278,8 @@ public class Binder {
             if (currentFunctionOrConstructor != null) {
                 if (currentFunctionOrConstructor.getParameters().stream().anyMatch(p -> p.getName().equals(name))) {
                     ParameterSymbol parameterSymbol = currentFunctionOrConstructor.getParameter(name);
-                    VariableSymbol parameterVariable = new VariableSymbol(name, true, parameterSymbol.getType());
+                    int slot = VariableSymbol.getParameterSlot(currentFunctionOrConstructor.getParameters().indexOf(parameterSymbol));
+                    VariableSymbol parameterVariable = new VariableSymbol(name, true, parameterSymbol.getType(), slot);
 
                     return new BoundVariableExpression(syntax, parameterVariable);
                 }
@@ -1280,7 +1297,7 @@ public class Binder {
 
             if (currentBinaryOperator != null) {
                 if (name.equals(currentBinaryOperator.getOtherOperandName())) {
-                    return new BoundVariableExpression(syntax, new VariableSymbol(name, true, currentBinaryOperator.getOtherType()));
+                    return new BoundVariableExpression(syntax, new VariableSymbol(name, true, currentBinaryOperator.getOtherType(), VariableSymbol.getParameterSlot(0)));
                 }
             }
 
@@ -1533,7 +1550,8 @@ public class Binder {
 
         if (operandType.isUnaryOperatorDefined(syntax.getOperatorToken().getText())) {
             TypeSymbol type = operandType.getUnaryOperatorType(syntax.getOperatorToken().getText());
-            return new BoundUnaryExpression(syntax, syntax.getOperatorToken().getText(), operand, type);
+            UnaryIntrinsic intrinsic = UnaryIntrinsic.lookup(operandType, syntax.getOperatorToken().getText());
+            return new BoundUnaryExpression(syntax, syntax.getOperatorToken().getText(), operand, type, intrinsic);
         }
 
         diagnostics.reportUndefinedUnaryOperator(syntax.getOperatorToken().getLocation(), syntax.getOperatorToken().getText(), operandType);
@@ -1561,7 +1579,8 @@ public class Binder {
 
         if (leftType.isBinaryOperatorDefined(syntax.getOperatorToken().getText(), rightType)) {
             TypeSymbol type = leftType.getBinaryOperatorType(syntax.getOperatorToken().getText(), rightType);
-            return new BoundBinaryExpression(syntax, left, syntax.getOperatorToken().getText(), right, type);
+            BinaryIntrinsic intrinsic = BinaryIntrinsic.lookup(leftType, syntax.getOperatorToken().getText(), rightType);
+            return new BoundBinaryExpression(syntax, left, syntax.getOperatorToken().getText(), right, type, intrinsic);
         }
 
         diagnostics.reportUndefinedBinaryOperator(syntax.getOperatorToken().getLocation(), syntax.getOperatorToken().getText(), leftType, rightType);
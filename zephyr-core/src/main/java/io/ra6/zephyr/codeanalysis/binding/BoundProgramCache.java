@@ -0,0 +1,81 @@
+package io.ra6.zephyr.codeanalysis.binding;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Imported programs keyed by their canonical path, shared by all binders of a compilation. An entry is reused
+ * as long as the content of the file and of everything it imports is unchanged, so every importer of a file
+ * gets the same {@link BoundProgram}. The cache can be used by binders on several threads.
+ */
+public class BoundProgramCache {
+    private record Entry(BoundProgram program, Map<Path, String> sources) {
+    }
+
+    private final Map<Path, Entry> programs = new ConcurrentHashMap<>();
+
+    public BoundProgram getProgram(Path path, String contentHash) {
+        Entry entry = programs.get(path);
+        if (entry == null || !contentHash.equals(entry.sources().get(path))) {
+            return null;
+        }
+
+        for (Map.Entry<Path, String> source : entry.sources().entrySet()) {
+            if (!source.getKey().equals(path) && !isUnchanged(source.getKey(), source.getValue())) {
+                return null;
+            }
+        }
+
+        return entry.program();
+    }
+
+    /**
+     * Caches a bound program. The imports have to be cached before the program that imports them.
+     */
+    public void putProgram(Path path, String contentHash, BoundProgram program, List<Path> imports) {
+        HashMap<Path, String> sources = new HashMap<>();
+        sources.put(path, contentHash);
+
+        for (Path importPath : imports) {
+            Entry importEntry = programs.get(importPath);
+            if (importEntry != null) {
+                sources.putAll(importEntry.sources());
+            }
+        }
+
+        programs.put(path, new Entry(program, sources));
+    }
+
+    public static Path canonicalize(String path) {
+        try {
+            return Path.of(path).toRealPath();
+        } catch (IOException e) {
+            return Path.of(path).toAbsolutePath().normalize();
+        }
+    }
+
+    public static String hashFile(Path path) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(Files.readAllBytes(path)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static boolean isUnchanged(Path path, String contentHash) {
+        try {
+            return contentHash.equals(hashFile(path));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -5,9 +5,8 @@ import io.ra6.zephyr.codeanalysis.binding.statements.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 public abstract class BoundTreeRewriter {
     public BoundStatement rewriteStatement(BoundStatement node) {
@@ -33,7 +32,7 @@ public abstract class BoundTreeRewriter {
         if (condition == node.getCondition())
             return node;
 
-        return new BoundConditionalGotoStatement(node.getSyntax(), condition, node.getLabel(), node.jumpIfTrue());
+        return new BoundConditionalGotoStatement(node.getSyntax(), condition, node.getLabel(), node.jumpIfTrue(), node.getTargetIndex());
     }
 
     protected BoundStatement rewriteReturnStatement(BoundReturnStatement node) {
@@ -74,7 +73,7 @@ public abstract class BoundTreeRewriter {
     protected BoundStatement rewriteIfStatement(BoundIfStatement node) {
         BoundExpression condition = rewriteExpression(node.getCondition());
         BoundStatement thenStatement = rewriteStatement(node.getThenStatement());
-        BoundStatement elseStatement = rewriteStatement(node.getElseStatement());
+        BoundStatement elseStatement = node.getElseStatement() == null ? null : rewriteStatement(node.getElseStatement());
 
         if (condition == node.getCondition() &&
                 thenStatement == node.getThenStatement() &&
@@ -118,7 +117,7 @@ public abstract class BoundTreeRewriter {
         return new BoundBlockStatement(node.getSyntax(), statements);
     }
 
-    private BoundExpression rewriteExpression(BoundExpression node) {
+    protected BoundExpression rewriteExpression(BoundExpression node) {
         return switch (node.getKind()) {
             case ERROR_EXPRESSION -> rewriteErrorExpression((BoundErrorExpression) node);
             case LITERAL_EXPRESSION -> rewriteLiteralExpression((BoundLiteralExpression) node);
@@ -138,19 +137,25 @@ public abstract class BoundTreeRewriter {
             case CONDITIONAL_EXPRESSION -> rewriteConditionalExpression((BoundConditionalExpression) node);
             case TYPE_EXPRESSION -> rewriteTypeExpression((BoundTypeExpression) node);
             case TYPE_CHECK_EXPRESSION -> rewriteTypeCheckExpression((BoundTypeCheckExpression) node);
+            case THIS_EXPRESSION -> rewriteThisExpression((BoundThisExpression) node);
+            case INTERNAL_FUNCTION_EXPRESSION -> node;
             default -> throw new IllegalArgumentException("Cannot rewrite " + node.getKind());
         };
     }
 
+    protected BoundExpression rewriteThisExpression(BoundThisExpression node) {
+        return node;
+    }
+
     private BoundExpression rewriteTypeCheckExpression(BoundTypeCheckExpression node) {
         return node;
     }
 
-    private BoundExpression rewriteTypeExpression(BoundTypeExpression node) {
+    protected BoundExpression rewriteTypeExpression(BoundTypeExpression node) {
         return node;
     }
 
-    private BoundExpression rewriteConditionalExpression(BoundConditionalExpression node) {
+    protected BoundExpression rewriteConditionalExpression(BoundConditionalExpression node) {
         BoundExpression condition = rewriteExpression(node.getCondition());
         BoundExpression thenExpression = rewriteExpression(node.getThenExpression());
         BoundExpression elseExpression = rewriteExpression(node.getElseExpression());
@@ -164,11 +169,12 @@ public abstract class BoundTreeRewriter {
         return new BoundConditionalExpression(node.getSyntax(), condition, thenExpression, elseExpression);
     }
 
-    private BoundExpression rewriteConversionExpression(BoundConversionExpression node) {
+    protected BoundExpression rewriteConversionExpression(BoundConversionExpression node) {
         BoundExpression expression = rewriteExpression(node.getExpression());
         if (expression == node.getExpression())
             return node;
-        return node;
+
+        return new BoundConversionExpression(node.getSyntax(), node.getBoundGenericType(), node.getGenericType(), expression);
     }
 
     private BoundExpression rewriteArrayCreationExpression(BoundArrayCreationExpression node) {
@@ -182,10 +188,10 @@ public abstract class BoundTreeRewriter {
 
             if (newSize != oldSize) {
                 if (sizes == null) {
-                    sizes = new HashMap<>(node.getDimensions().entrySet().stream()
-                            .limit(index)
-                            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)
-                            ));
+                    sizes = new LinkedHashMap<>();
+                    for (var previous : node.getDimensions().entrySet().stream().limit(index).toList()) {
+                        sizes.put(previous.getKey(), previous.getValue());
+                    }
                 }
 
                 sizes.put(entry.getKey(), newSize);
@@ -204,7 +210,13 @@ public abstract class BoundTreeRewriter {
     }
 
     private BoundExpression rewriteArrayAccessExpression(BoundArrayAccessExpression node) {
-        return node;
+        BoundExpression target = rewriteExpression(node.getTarget());
+        BoundExpression index = rewriteExpression(node.getIndex());
+
+        if (target == node.getTarget() && index == node.getIndex())
+            return node;
+
+        return new BoundArrayAccessExpression(node.getSyntax(), target, index);
     }
 
     private BoundExpression rewriteArrayLiteralExpression(BoundArrayLiteralExpression node) {
@@ -229,18 +241,22 @@ public abstract class BoundTreeRewriter {
             return node;
         }
 
-        return node;
+        return new BoundArrayLiteralExpression(node.getSyntax(), node.getElementType(), arguments);
     }
 
     private BoundExpression rewriteFieldAccessExpression(BoundFieldAccessExpression node) {
         return node;
     }
 
-    private BoundExpression rewriteMemberAccessExpression(BoundMemberAccessExpression node) {
-        return node;
+    protected BoundExpression rewriteMemberAccessExpression(BoundMemberAccessExpression node) {
+        BoundExpression target = rewriteExpression(node.getTarget());
+        if (target == node.getTarget())
+            return node;
+
+        return new BoundMemberAccessExpression(node.getSyntax(), target, node.getMember());
     }
 
-    private BoundExpression rewriteInstanceCreationExpression(BoundInstanceCreationExpression node) {
+    protected BoundExpression rewriteInstanceCreationExpression(BoundInstanceCreationExpression node) {
         List<BoundExpression> arguments = null;
 
         for (int i = 0; i < node.getArguments().size(); i++) {
@@ -266,6 +282,7 @@ public abstract class BoundTreeRewriter {
     }
 
     protected BoundExpression rewriteFunctionCallExpression(BoundFunctionCallExpression node) {
+        BoundExpression callee = rewriteExpression(node.getCallee());
         List<BoundExpression> arguments = null;
 
         for (int i = 0; i < node.getArguments().size(); i++) {
@@ -283,11 +300,11 @@ public abstract class BoundTreeRewriter {
             }
         }
 
-        if (arguments == null) {
+        if (callee == node.getCallee() && arguments == null) {
             return node;
         }
 
-        return new BoundFunctionCallExpression(node.getSyntax(), node.getCallee(), node.getFunction(), arguments);
+        return new BoundFunctionCallExpression(node.getSyntax(), callee, node.getFunction(), arguments == null ? node.getArguments() : arguments);
     }
 
     protected BoundExpression rewriteBinaryExpression(BoundBinaryExpression node) {
@@ -297,7 +314,7 @@ public abstract class BoundTreeRewriter {
         if (left == node.getLeft() && right == node.getRight())
             return node;
 
-        return new BoundBinaryExpression(node.getSyntax(), left, node.getOperator(), right, node.getType());
+        return new BoundBinaryExpression(node.getSyntax(), left, node.getOperator(), right, node.getType(), node.getIntrinsic());
     }
 
     protected BoundExpression rewriteUnaryExpression(BoundUnaryExpression node) {
@@ -305,7 +322,7 @@ public abstract class BoundTreeRewriter {
         if (operand == node.getOperand())
             return node;
 
-        return new BoundUnaryExpression(node.getSyntax(), node.getOperator(), operand, node.getType());
+        return new BoundUnaryExpression(node.getSyntax(), node.getOperator(), operand, node.getType(), node.getIntrinsic());
     }
 
     protected BoundExpression rewriteAssignmentExpression(BoundAssignmentExpression node) {
@@ -0,0 +1,253 @@
+package io.ra6.zephyr.codeanalysis.binding;
+
+import io.ra6.zephyr.codeanalysis.syntax.CompilationUnitSyntax;
+import io.ra6.zephyr.codeanalysis.syntax.StatementSyntax;
+import io.ra6.zephyr.codeanalysis.syntax.SyntaxTree;
+import io.ra6.zephyr.codeanalysis.syntax.statements.ImportDeclarationSyntax;
+import io.ra6.zephyr.library.ZephyrLibrary;
+import io.ra6.zephyr.sourcefile.SourceText;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Parses and binds all programs imported by a root program. The import graph is discovered first, one level at a
+ * time with every file of a level parsed in parallel. Each imported program is then bound as soon as the programs
+ * it imports are bound, so independent imports bind concurrently.
+ */
+class ImportScheduler {
+    private record ResolvedImport(String path, Path canonicalPath) {
+    }
+
+    private record ImportedFile(Path path, String contentHash, SyntaxTree syntaxTree, List<ResolvedImport> imports) {
+    }
+
+    private final ZephyrLibrary standardLibrary;
+    private final BoundProgramCache programCache;
+    private final Executor executor;
+
+    private final Map<Path, CompletableFuture<BoundProgram>> programs = new ConcurrentHashMap<>();
+    // importer -> imported program -> description of the cycle the import would close
+    private final Map<Path, Map<Path, String>> cycles = new ConcurrentHashMap<>();
+    private boolean isScheduled;
+
+    ImportScheduler(ZephyrLibrary standardLibrary, BoundProgramCache programCache, Executor executor) {
+        this.standardLibrary = standardLibrary;
+        this.programCache = programCache;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts binding everything the root program imports. Binders of imported programs share the scheduler, so
+     * only the first call does anything.
+     */
+    void schedule(SyntaxTree root) {
+        if (isScheduled) {
+            return;
+        }
+        isScheduled = true;
+
+        String filePath = root.getSourceText().getFilePath();
+        schedule(filePath.isEmpty() ? null : BoundProgramCache.canonicalize(filePath), getImports(root));
+    }
+
+    String resolveImportPath(String importerPath, String pathToImport) {
+        if (pathToImport.startsWith("std:")) {
+            return standardLibrary.getLibraryPath(pathToImport);
+        }
+
+        // convert relative path to absolute path
+        String path = Paths.get(importerPath).getParent().resolve(pathToImport).toString();
+        return path.endsWith(".zph") ? path.substring(0, path.length() - 4) : path + ".zph";
+    }
+
+    /**
+     * @return a description of the import cycle, or null if importing the program does not close one
+     */
+    String getCycle(Path importer, Path path) {
+        return importer == null ? null : cycles.getOrDefault(importer, Map.of()).get(path);
+    }
+
+    BoundProgram getProgram(String path, Path canonicalPath) {
+        if (!programs.containsKey(canonicalPath)) {
+            // the file did not exist while the imports were discovered
+            schedule(null, List.of(new ResolvedImport(path, canonicalPath)));
+        }
+
+        try {
+            return programs.get(canonicalPath).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private synchronized void schedule(Path root, List<ResolvedImport> imports) {
+        HashMap<Path, ImportedFile> files = discover(root, imports);
+
+        LinkedHashSet<Path> importStack = new LinkedHashSet<>();
+        if (root != null) {
+            importStack.add(root);
+        }
+
+        // no program of the walk is bound before the binders of all of them are created
+        CompletableFuture<Void> walked = new CompletableFuture<>();
+        for (ResolvedImport resolvedImport : imports) {
+            visit(root, resolvedImport.canonicalPath(), files, importStack, walked);
+        }
+        walked.complete(null);
+    }
+
+    private HashMap<Path, ImportedFile> discover(Path root, List<ResolvedImport> imports) {
+        HashMap<Path, ImportedFile> files = new HashMap<>();
+        HashSet<Path> seen = new HashSet<>(programs.keySet());
+        if (root != null) {
+            seen.add(root);
+        }
+
+        List<ResolvedImport> level = imports.stream().filter(i -> seen.add(i.canonicalPath())).toList();
+        while (!level.isEmpty()) {
+            List<CompletableFuture<ImportedFile>> parsing = level.stream()
+                    .map(i -> CompletableFuture.supplyAsync(() -> parse(i), executor))
+                    .toList();
+
+            List<ResolvedImport> nextLevel = new ArrayList<>();
+            for (CompletableFuture<ImportedFile> parsed : parsing) {
+                ImportedFile file = parsed.join();
+                if (file == null) {
+                    continue;
+                }
+
+                files.put(file.path(), file);
+                for (ResolvedImport resolvedImport : file.imports()) {
+                    if (seen.add(resolvedImport.canonicalPath())) {
+                        nextLevel.add(resolvedImport);
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+
+        return files;
+    }
+
+    /**
+     * Parses an imported file. Files that are cached or cannot be read get their program right away and are
+     * not parsed.
+     */
+    private ImportedFile parse(ResolvedImport resolvedImport) {
+        Path path = resolvedImport.canonicalPath();
+        try {
+            String contentHash = BoundProgramCache.hashFile(path);
+            BoundProgram cachedProgram = programCache.getProgram(path, contentHash);
+            if (cachedProgram != null) {
+                programs.put(path, CompletableFuture.completedFuture(cachedProgram));
+                return null;
+            }
+
+            SyntaxTree syntaxTree = SyntaxTree.parse(SourceText.fromFile(resolvedImport.path()));
+            return new ImportedFile(path, contentHash, syntaxTree, getImports(syntaxTree));
+        } catch (Exception e) {
+            programs.put(path, CompletableFuture.failedFuture(e));
+            return null;
+        }
+    }
+
+    private List<ResolvedImport> getImports(SyntaxTree syntaxTree) {
+        List<ResolvedImport> imports = new ArrayList<>();
+        CompilationUnitSyntax root = syntaxTree.getRoot();
+
+        for (StatementSyntax statement : root.getStatements()) {
+            switch (statement.getKind()) {
+                case IMPORT_DECLARATION -> {
+                    ResolvedImport resolvedImport = resolveImport(syntaxTree, (ImportDeclarationSyntax) statement);
+                    if (resolvedImport != null) {
+                        imports.add(resolvedImport);
+                    }
+                }
+                case TYPE_DECLARATION, NATIVE_TYPE_DECLARATION, EXPORT_DECLARATION -> {
+                }
+                // the binder stops at the first statement that is not a declaration
+                default -> {
+                    return imports;
+                }
+            }
+        }
+
+        return imports;
+    }
+
+    private ResolvedImport resolveImport(SyntaxTree syntaxTree, ImportDeclarationSyntax syntax) {
+        try {
+            String path = resolveImportPath(syntaxTree.getSourceText().getFilePath(), (String) syntax.getStringToken().getValue());
+            if (!Files.isRegularFile(Paths.get(path))) {
+                return null;
+            }
+            return new ResolvedImport(path, BoundProgramCache.canonicalize(path));
+        } catch (Exception e) {
+            // the binder reports the import error
+            return null;
+        }
+    }
+
+    /**
+     * Walks the import graph depth first in source order, which finds the same cycles as binding the imports one
+     * after another would. Programs are scheduled after the programs they import.
+     */
+    private void visit(Path importer, Path path, HashMap<Path, ImportedFile> files, LinkedHashSet<Path> importStack, CompletableFuture<Void> walked) {
+        if (importStack.contains(path)) {
+            cycles.computeIfAbsent(importer, p -> new ConcurrentHashMap<>()).put(path, describeCycle(importStack, path));
+            return;
+        }
+
+        ImportedFile file = files.get(path);
+        if (file == null || programs.containsKey(path)) {
+            return;
+        }
+
+        importStack.add(path);
+        List<CompletableFuture<?>> dependencies = new ArrayList<>();
+        dependencies.add(walked);
+        for (ResolvedImport resolvedImport : file.imports()) {
+            Path importPath = resolvedImport.canonicalPath();
+            visit(path, importPath, files, importStack, walked);
+
+            CompletableFuture<BoundProgram> dependency = programs.get(importPath);
+            if (dependency != null && getCycle(path, importPath) == null) {
+                dependencies.add(dependency);
+            }
+        }
+        importStack.remove(path);
+
+        Binder binder = new Binder(file.syntaxTree(), this);
+        programs.put(path, CompletableFuture.allOf(dependencies.toArray(CompletableFuture[]::new))
+                .handleAsync((ignored, error) -> bind(file, binder), executor));
+    }
+
+    private BoundProgram bind(ImportedFile file, Binder binder) {
+        BoundProgram program = binder.bindProgram();
+        programCache.putProgram(file.path(), file.contentHash(), program, binder.getImportedPaths());
+        return program;
+    }
+
+    private static String describeCycle(LinkedHashSet<Path> importStack, Path path) {
+        List<String> cycle = new ArrayList<>();
+        boolean isInCycle = false;
+        for (Path importingProgram : importStack) {
+            isInCycle |= importingProgram.equals(path);
+            if (isInCycle) {
+                cycle.add(importingProgram.getFileName().toString());
+            }
+        }
+        cycle.add(path.getFileName().toString());
+        return String.join(" -> ", cycle);
+    }
+}
@@ -1,5 +1,6 @@
 package io.ra6.zephyr.codeanalysis.binding.expressions;
 
+import io.ra6.zephyr.builtin.BinaryIntrinsic;
 import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
 import io.ra6.zephyr.codeanalysis.binding.BoundNodeKind;
 import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
@@ -15,13 +16,21 @@ public class BoundBinaryExpression extends BoundExpression {
     private final BoundExpression right;
     @Getter
     private final TypeSymbol resultType;
+    // set if the operator belongs to a builtin primitive type and can be executed directly
+    @Getter
+    private final BinaryIntrinsic intrinsic;
 
     public BoundBinaryExpression(SyntaxNode syntax, BoundExpression left, String operator, BoundExpression right, TypeSymbol resultType) {
+        this(syntax, left, operator, right, resultType, null);
+    }
+
+    public BoundBinaryExpression(SyntaxNode syntax, BoundExpression left, String operator, BoundExpression right, TypeSymbol resultType, BinaryIntrinsic intrinsic) {
         super(syntax);
         this.left = left;
         this.operator = operator;
         this.right = right;
         this.resultType = resultType;
+        this.intrinsic = intrinsic;
     }
 
     @Override
@@ -5,6 +5,7 @@ import io.ra6.zephyr.codeanalysis.binding.BoundNodeKind;
 import io.ra6.zephyr.codeanalysis.symbols.FieldSymbol;
 import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
 import io.ra6.zephyr.codeanalysis.syntax.SyntaxNode;
+import io.ra6.zephyr.runtime.FieldSite;
 import lombok.Getter;
 
 public class BoundFieldAccessExpression extends BoundExpression {
@@ -12,11 +13,15 @@ public class BoundFieldAccessExpression extends BoundExpression {
     private final BoundExpression target;
     @Getter
     private final FieldSymbol field;
+    // the offset of the field in the shape the interpreter saw last, it evaluates the bound tree directly
+    @Getter
+    private final FieldSite site;
 
     public BoundFieldAccessExpression(SyntaxNode syntax, BoundExpression target, FieldSymbol field) {
         super(syntax);
         this.target = target;
         this.field = field;
+        this.site = new FieldSite(field);
     }
 
     @Override
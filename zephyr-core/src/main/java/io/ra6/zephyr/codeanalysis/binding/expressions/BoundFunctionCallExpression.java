@@ -5,6 +5,7 @@ import io.ra6.zephyr.codeanalysis.binding.BoundNodeKind;
 import io.ra6.zephyr.codeanalysis.symbols.FunctionSymbol;
 import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
 import io.ra6.zephyr.codeanalysis.syntax.SyntaxNode;
+import io.ra6.zephyr.runtime.InlineCache;
 import lombok.Getter;
 
 import java.util.List;
@@ -16,6 +17,9 @@ public class BoundFunctionCallExpression extends BoundExpression {
     private final FunctionSymbol function;
     @Getter
     private final List<BoundExpression> arguments;
+    // what the interpreter resolved the call to for each receiver type, it evaluates the bound tree directly
+    @Getter
+    private final InlineCache<Object> targets = new InlineCache<>();
 
     public BoundFunctionCallExpression(SyntaxNode syntax, BoundExpression callee, FunctionSymbol function, List<BoundExpression> arguments) {
         super(syntax);
@@ -5,6 +5,7 @@ import io.ra6.zephyr.codeanalysis.binding.BoundNodeKind;
 import io.ra6.zephyr.builtin.Types;
 import io.ra6.zephyr.codeanalysis.symbols.*;
 import io.ra6.zephyr.codeanalysis.syntax.SyntaxNode;
+import io.ra6.zephyr.runtime.FieldSite;
 import lombok.Getter;
 
 public class BoundMemberAccessExpression extends BoundExpression {
@@ -12,11 +13,15 @@ public class BoundMemberAccessExpression extends BoundExpression {
     private final BoundExpression target;
     @Getter
     private final Symbol member;
+    // the offset of the field in the shape the interpreter saw last, it evaluates the bound tree directly
+    @Getter
+    private final FieldSite site;
 
     public BoundMemberAccessExpression(SyntaxNode syntax, BoundExpression target, Symbol member) {
         super(syntax);
         this.target = target;
         this.member = member;
+        this.site = new FieldSite(member);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package io.ra6.zephyr.codeanalysis.binding.expressions;
 
+import io.ra6.zephyr.builtin.UnaryIntrinsic;
 import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
 import io.ra6.zephyr.codeanalysis.binding.BoundNodeKind;
 import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
@@ -13,12 +14,20 @@ public class BoundUnaryExpression extends BoundExpression {
     @Getter
     private final BoundExpression operand;
     private final TypeSymbol resultType;
+    // set if the operator belongs to a builtin primitive type and can be executed directly
+    @Getter
+    private final UnaryIntrinsic intrinsic;
 
     public BoundUnaryExpression(SyntaxNode syntax, String operator, BoundExpression operand, TypeSymbol resultType) {
+        this(syntax, operator, operand, resultType, null);
+    }
+
+    public BoundUnaryExpression(SyntaxNode syntax, String operator, BoundExpression operand, TypeSymbol resultType, UnaryIntrinsic intrinsic) {
         super(syntax);
         this.operator = operator;
         this.operand = operand;
         this.resultType = resultType;
+        this.intrinsic = intrinsic;
     }
 
     @Override
@@ -1,5 +1,7 @@
 package io.ra6.zephyr.codeanalysis.binding.scopes;
 
+import io.ra6.zephyr.builtin.BuiltinUniverse;
+import io.ra6.zephyr.builtin.natives.NativeType;
 import io.ra6.zephyr.codeanalysis.symbols.ExportSymbol;
 import io.ra6.zephyr.codeanalysis.symbols.SymbolTable;
 import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
@@ -19,6 +21,8 @@ public class BoundProgramScope extends BoundScope {
     @Getter
     private final List<BoundProgramScope> importedPrograms = new ArrayList<>();
 
+    // builtin types are not declared in the program, they are looked up in the shared universe
+    private final BuiltinUniverse universe = BuiltinUniverse.get();
     private final SymbolTable<TypeSymbol, BoundTypeScope> types = new SymbolTable<>();
     private final HashMap<BoundProgramScope, String> debugImportedProgram = new HashMap<>();
 
@@ -28,10 +32,14 @@ public class BoundProgramScope extends BoundScope {
     }
 
     public boolean isTypeDeclared(String typeName) {
-        return types.getDeclarations().stream().anyMatch(t -> t.getName().equals(typeName));
+        return universe.isBuiltinType(typeName) || types.getDeclarations().stream().anyMatch(t -> t.getName().equals(typeName));
     }
 
     public TypeSymbol getType(String typeName) {
+        if (universe.isBuiltinType(typeName)) {
+            return universe.getType(typeName);
+        }
+
         boolean isImported = isTypeImported(typeName);
         if (isImported) {
             return getImportedType(typeName);
@@ -39,7 +47,18 @@ public class BoundProgramScope extends BoundScope {
         return types.getDeclarations().stream().filter(t -> t.getName().equals(typeName)).findFirst().orElse(null);
     }
 
+    /**
+     * @return the types declared by this program, without the builtin types
+     */
+    public List<TypeSymbol> getDeclaredTypes() {
+        return types.getDeclarations();
+    }
+
     public BoundTypeScope getTypeScope(TypeSymbol symbol) {
+        if (universe.isBuiltinType(symbol.getName())) {
+            return universe.getTypeScope(symbol.getName());
+        }
+
         return types.getDeclarations().stream()
                 .filter(t -> t.getName().equals(symbol.getName()))
                 .findFirst()
@@ -47,6 +66,11 @@ public class BoundProgramScope extends BoundScope {
                 .orElse(null);
     }
 
+    public void declareNativeType(NativeType nativeType) {
+        declareType(nativeType.getTypeSymbol());
+        defineType(nativeType.getTypeSymbol(), nativeType.getTypeScope());
+    }
+
     public void declareType(TypeSymbol type) {
         types.declare(type);
     }
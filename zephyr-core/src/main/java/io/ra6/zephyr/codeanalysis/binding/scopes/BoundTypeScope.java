@@ -26,11 +26,30 @@ public class BoundTypeScope extends BoundScope {
     @Getter
     private final List<String> declaredGenericTypes = new ArrayList<>();
 
+    private boolean isFrozen;
+
     public BoundTypeScope(BoundScope parent, TypeSymbol type) {
         super(parent, BoundScopeKind.TYPE);
         this.type = type;
     }
 
+    /**
+     * Rejects all further declarations and definitions. A frozen scope is only read, so it can be shared between threads.
+     */
+    public void freeze() {
+        isFrozen = true;
+    }
+
+    public boolean isFrozen() {
+        return isFrozen;
+    }
+
+    private void ensureNotFrozen() {
+        if (isFrozen) {
+            throw new RuntimeException("Type " + type.getName() + " is frozen and cannot be changed.");
+        }
+    }
+
     public List<ConstructorSymbol> getDeclaredConstructors() {
         return constructors.getDeclarations();
     }
@@ -52,10 +71,12 @@ public class BoundTypeScope extends BoundScope {
     }
 
     public void declareConstructor(ConstructorSymbol constructor) {
+        ensureNotFrozen();
         constructors.declare(constructor);
     }
 
     public void defineConstructor(ConstructorSymbol constructor, BoundBlockStatement body) {
+        ensureNotFrozen();
         if (!isConstructorDefined(constructor.getParameters().size())) {
             throw new RuntimeException("Constructor with " + constructor.getParameters().size() + " arguments is not declared.");
         }
@@ -68,10 +89,12 @@ public class BoundTypeScope extends BoundScope {
     }
 
     public void declareBinaryOperator(BinaryOperatorSymbol operator) {
+        ensureNotFrozen();
         binaryOperators.declare(operator);
     }
 
     public void defineBinaryOperator(BinaryOperatorSymbol operator, BoundBlockStatement body) {
+        ensureNotFrozen();
         if (!isBinaryOperatorDeclared(operator.getName(), operator.getOtherType())) {
             throw new RuntimeException("Binary operator " + operator.getName() + " is not declared.");
         }
@@ -84,10 +107,12 @@ public class BoundTypeScope extends BoundScope {
     }
 
     public void declareUnaryOperator(UnaryOperatorSymbol operator) {
+        ensureNotFrozen();
         unaryOperators.declare(operator);
     }
 
     public void defineUnaryOperator(UnaryOperatorSymbol operator, BoundBlockStatement body) {
+        ensureNotFrozen();
         if (!isUnaryOperatorDeclared(operator.getName())) {
             throw new RuntimeException("Unary operator " + operator.getName() + " is not declared.");
         }
@@ -116,10 +141,12 @@ public class BoundTypeScope extends BoundScope {
     }
 
     public void declareField(FieldSymbol field) {
+        ensureNotFrozen();
         declaredFieldsAndFunctions.add(field);
     }
 
     public void declareFunction(FunctionSymbol function) {
+        ensureNotFrozen();
         declaredFieldsAndFunctions.add(function);
     }
 
@@ -144,10 +171,12 @@ public class BoundTypeScope extends BoundScope {
     }
 
     public void defineField(FieldSymbol field, BoundExpression initializer) {
+        ensureNotFrozen();
         fieldDefinitions.put(field, initializer);
     }
 
     public void defineFunction(FunctionSymbol function, BoundBlockStatement body) {
+        ensureNotFrozen();
         functionDefinitions.put(function, body);
     }
 
@@ -210,6 +239,7 @@ public class BoundTypeScope extends BoundScope {
     }
 
     public void declareGeneric(String genericName) {
+        ensureNotFrozen();
         declaredGenericTypes.add(genericName);
     }
 }
@@ -13,12 +13,20 @@ public class BoundConditionalGotoStatement extends BoundStatement {
     @Getter
     private final BoundExpression condition;
     private final boolean jumpIfTrue;
+    // index of the label statement inside the flattened block, -1 if not resolved yet
+    @Getter
+    private final int targetIndex;
 
     public BoundConditionalGotoStatement(SyntaxNode syntax, BoundExpression condition, BoundLabel label, boolean jumpIfTrue) {
+        this(syntax, condition, label, jumpIfTrue, -1);
+    }
+
+    public BoundConditionalGotoStatement(SyntaxNode syntax, BoundExpression condition, BoundLabel label, boolean jumpIfTrue, int targetIndex) {
         super(syntax);
         this.label = label;
         this.condition = condition;
         this.jumpIfTrue = jumpIfTrue;
+        this.targetIndex = targetIndex;
     }
 
     public boolean jumpIfTrue(){
@@ -9,10 +9,18 @@ import lombok.Getter;
 public class BoundGotoStatement extends BoundStatement {
     @Getter
     private final BoundLabel label;
+    // index of the label statement inside the flattened block, -1 if not resolved yet
+    @Getter
+    private final int targetIndex;
 
     public BoundGotoStatement(SyntaxNode syntax, BoundLabel label) {
+        this(syntax, label, -1);
+    }
+
+    public BoundGotoStatement(SyntaxNode syntax, BoundLabel label, int targetIndex) {
         super(syntax);
         this.label = label;
+        this.targetIndex = targetIndex;
     }
 
     @Override
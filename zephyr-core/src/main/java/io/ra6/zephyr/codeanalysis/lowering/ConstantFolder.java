@@ -0,0 +1,91 @@
+package io.ra6.zephyr.codeanalysis.lowering;
+
+import io.ra6.zephyr.builtin.BinaryIntrinsic;
+import io.ra6.zephyr.builtin.BuiltinUniverse;
+import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.binding.BoundTreeRewriter;
+import io.ra6.zephyr.codeanalysis.binding.expressions.*;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.symbols.FieldSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+
+/**
+ * Evaluates the intrinsic operators of the builtin types at compile time when all of their operands are literals.
+ * Readonly shared fields of the builtin types, like {@code int.MAX}, are replaced by their literal value first,
+ * so they fold as well.
+ */
+public class ConstantFolder extends BoundTreeRewriter {
+    public static BoundStatement fold(BoundStatement statement) {
+        return new ConstantFolder().rewriteStatement(statement);
+    }
+
+    @Override
+    protected BoundExpression rewriteBinaryExpression(BoundBinaryExpression node) {
+        BoundExpression rewritten = super.rewriteBinaryExpression(node);
+        if (!(rewritten instanceof BoundBinaryExpression binary) || binary.getIntrinsic() == null) {
+            return rewritten;
+        }
+
+        if (binary.getLeft() instanceof BoundLiteralExpression left && binary.getRight() instanceof BoundLiteralExpression right) {
+            BinaryIntrinsic intrinsic = binary.getIntrinsic();
+            // a division by zero has to fail at runtime
+            if ((intrinsic == BinaryIntrinsic.INT_DIVIDE || intrinsic == BinaryIntrinsic.INT_MODULO) && right.getValue() instanceof Integer divisor && divisor == 0) {
+                return rewritten;
+            }
+            return createLiteral(binary, intrinsic.evaluate(left.getValue(), right.getValue()));
+        }
+
+        return rewritten;
+    }
+
+    @Override
+    protected BoundExpression rewriteUnaryExpression(BoundUnaryExpression node) {
+        BoundExpression rewritten = super.rewriteUnaryExpression(node);
+        if (rewritten instanceof BoundUnaryExpression unary && unary.getIntrinsic() != null && unary.getOperand() instanceof BoundLiteralExpression operand) {
+            return createLiteral(unary, unary.getIntrinsic().evaluate(operand.getValue()));
+        }
+        return rewritten;
+    }
+
+    @Override
+    protected BoundExpression rewriteConditionalExpression(BoundConditionalExpression node) {
+        BoundExpression rewritten = super.rewriteConditionalExpression(node);
+        if (rewritten instanceof BoundConditionalExpression conditional && conditional.getCondition() instanceof BoundLiteralExpression condition && condition.getValue() instanceof Boolean value) {
+            return value ? conditional.getThenExpression() : conditional.getElseExpression();
+        }
+        return rewritten;
+    }
+
+    @Override
+    protected BoundExpression rewriteMemberAccessExpression(BoundMemberAccessExpression node) {
+        if (node.getTarget() instanceof BoundTypeExpression target && node.getMember() instanceof FieldSymbol field && field.isShared() && field.isReadonly()) {
+            TypeSymbol type = target.getType();
+            if (BuiltinUniverse.get().getType(type.getName()) == type) {
+                BoundTypeScope typeScope = BuiltinUniverse.get().getTypeScope(type.getName());
+                if (typeScope.getFieldInitializer(field) instanceof BoundLiteralExpression initializer) {
+                    return createLiteral(node, initializer.getValue());
+                }
+            }
+        }
+        return super.rewriteMemberAccessExpression(node);
+    }
+
+    private static BoundExpression createLiteral(BoundExpression node, Object value) {
+        // only values the engines can represent as a literal of the expression's type are folded
+        if (!isLiteralOf(node.getType(), value)) {
+            return node;
+        }
+        return new BoundLiteralExpression(node.getSyntax(), value, node.getType());
+    }
+
+    private static boolean isLiteralOf(TypeSymbol type, Object value) {
+        if (type == Types.INT) return value instanceof Integer;
+        if (type == Types.DOUBLE) return value instanceof Double;
+        if (type == Types.CHAR) return value instanceof Character;
+        if (type == Types.BOOL) return value instanceof Boolean;
+        if (type == Types.STRING) return value instanceof String;
+        return false;
+    }
+}
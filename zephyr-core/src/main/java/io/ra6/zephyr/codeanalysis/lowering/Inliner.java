@@ -0,0 +1,314 @@
+package io.ra6.zephyr.codeanalysis.lowering;
+
+import io.ra6.zephyr.builtin.BinaryIntrinsic;
+import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.BoundNodeKind;
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.binding.BoundTreeRewriter;
+import io.ra6.zephyr.codeanalysis.binding.expressions.*;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundReturnStatement;
+import io.ra6.zephyr.codeanalysis.symbols.*;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Replaces calls of small functions by the expression they return. A function is inlined if its lowered body is a
+ * single return of an expression with at most {@link #SIZE_BUDGET} nodes. Uses of {@code this} and of the parameters
+ * are replaced by the callee and the arguments of the call, so the inlined expression only refers to the caller's
+ * frame. An argument is only substituted where that cannot change the order or the number of its evaluations.
+ * <p>
+ * The synthetic bodies of builtin functions are not inlined here, the engines call their internal function directly.
+ */
+public class Inliner extends BoundTreeRewriter {
+    private static final int SIZE_BUDGET = 16;
+    private static final int MAX_DEPTH = 4;
+
+    private final BoundProgramScope program;
+    private final ArrayDeque<FunctionSymbol> inlinedFunctions = new ArrayDeque<>();
+
+    private Inliner(BoundProgramScope program) {
+        this.program = program;
+    }
+
+    /**
+     * Inlines calls in all bodies of the types the program declares.
+     */
+    public static void inline(BoundProgramScope program) {
+        Inliner inliner = new Inliner(program);
+
+        for (TypeSymbol type : program.getDeclaredTypes()) {
+            BoundTypeScope typeScope = program.getTypeScope(type);
+            if (typeScope == null || typeScope.isFrozen()) {
+                continue;
+            }
+
+            for (Symbol symbol : typeScope.getDeclaredFieldsAndFunctions()) {
+                if (symbol instanceof FunctionSymbol function) {
+                    BoundBlockStatement body = inliner.rewriteBody(typeScope.getFunctionBody(function));
+                    if (body != null) typeScope.defineFunction(function, body);
+                }
+            }
+
+            for (ConstructorSymbol constructor : typeScope.getDeclaredConstructors()) {
+                BoundBlockStatement body = inliner.rewriteBody(typeScope.getConstructorBody(constructor));
+                if (body != null) typeScope.defineConstructor(constructor, body);
+            }
+
+            for (BinaryOperatorSymbol operator : typeScope.getDeclaredBinaryOperators()) {
+                BoundBlockStatement body = inliner.rewriteBody(typeScope.getBinaryOperatorBody(operator));
+                if (body != null) typeScope.defineBinaryOperator(operator, body);
+            }
+
+            for (UnaryOperatorSymbol operator : typeScope.getDeclaredUnaryOperators()) {
+                BoundBlockStatement body = inliner.rewriteBody(typeScope.getUnaryOperatorBody(operator));
+                if (body != null) typeScope.defineUnaryOperator(operator, body);
+            }
+        }
+    }
+
+    // the rewritten body, or null if nothing was inlined
+    private BoundBlockStatement rewriteBody(BoundBlockStatement body) {
+        if (body == null) {
+            return null;
+        }
+
+        BoundStatement result = rewriteStatement(body);
+        return result == body ? null : (BoundBlockStatement) result;
+    }
+
+    @Override
+    protected BoundExpression rewriteFunctionCallExpression(BoundFunctionCallExpression node) {
+        BoundExpression rewritten = super.rewriteFunctionCallExpression(node);
+        if (!(rewritten instanceof BoundFunctionCallExpression call)) {
+            return rewritten;
+        }
+
+        BoundExpression inlined = inline(call);
+        return inlined == null ? call : inlined;
+    }
+
+    private BoundExpression inline(BoundFunctionCallExpression call) {
+        FunctionSymbol function = call.getFunction();
+        BoundExpression callee = call.getCallee();
+
+        if (inlinedFunctions.size() >= MAX_DEPTH || inlinedFunctions.contains(function)) {
+            return null;
+        }
+
+        // shared functions are called on their type, everything else on an instance
+        if (function.isShared() != callee instanceof BoundTypeExpression) {
+            return null;
+        }
+
+        TypeSymbol type = callee.getType();
+        if (type == null || type.isGeneric() || type instanceof ArrayTypeSymbol || Types.isBuiltinType(type)) {
+            return null;
+        }
+
+        boolean isImported = program.isTypeImported(type);
+        BoundTypeScope typeScope = isImported ? program.getImportedProgram(type.getName()).getTypeScope(type) : program.getTypeScope(type);
+        if (typeScope == null) {
+            return null;
+        }
+
+        BoundExpression expression = getReturnedExpression(typeScope.getFunctionBody(function));
+        if (expression == null || !function.getType().equals(expression.getType())) {
+            return null;
+        }
+
+        Usage usage = new Usage(function.getParameters().size(), isImported);
+        if (!usage.count(expression) || usage.size > SIZE_BUDGET) {
+            return null;
+        }
+
+        List<BoundExpression> arguments = call.getArguments();
+        for (int i = 0; i < arguments.size(); i++) {
+            if (!canSubstitute(arguments.get(i), usage.parameterUses[i], usage.isPure)) {
+                return null;
+            }
+        }
+
+        if (!function.isShared() && !canSubstitute(callee, usage.thisUses, usage.isPure)) {
+            return null;
+        }
+
+        BoundExpression substituted = new Substitution(callee, arguments).substitute(expression);
+
+        inlinedFunctions.push(function);
+        BoundExpression result = rewriteExpression(substituted);
+        inlinedFunctions.pop();
+
+        return result;
+    }
+
+    private static BoundExpression getReturnedExpression(BoundBlockStatement body) {
+        if (body == null || body.getStatements().size() != 1 || !(body.getStatements().get(0) instanceof BoundReturnStatement returnStatement)) {
+            return null;
+        }
+        return returnStatement.getExpression();
+    }
+
+    private static boolean canSubstitute(BoundExpression value, int uses, boolean isBodyPure) {
+        if (isTrivial(value)) {
+            return true;
+        }
+
+        // the body could change what the value reads before it is evaluated
+        if (!isBodyPure || !isPure(value)) {
+            return false;
+        }
+
+        return uses <= 1;
+    }
+
+    private static boolean isTrivial(BoundExpression expression) {
+        return switch (expression.getKind()) {
+            case LITERAL_EXPRESSION, VARIABLE_EXPRESSION, THIS_EXPRESSION, TYPE_EXPRESSION -> true;
+            default -> false;
+        };
+    }
+
+    // Whether evaluating the expression has no effect besides its value and cannot fail. A substituted value may be
+    // evaluated later than the argument, or not at all, so it must not be able to fail either.
+    private static boolean isPure(BoundExpression expression) {
+        return switch (expression.getKind()) {
+            case LITERAL_EXPRESSION, VARIABLE_EXPRESSION, THIS_EXPRESSION, TYPE_EXPRESSION -> true;
+            // only fields of this and of types, any other target could be null
+            case MEMBER_ACCESS_EXPRESSION -> {
+                BoundMemberAccessExpression memberAccess = (BoundMemberAccessExpression) expression;
+                yield memberAccess.getMember() instanceof FieldSymbol && isNeverNull(memberAccess.getTarget());
+            }
+            case FIELD_ACCESS_EXPRESSION -> isNeverNull(((BoundFieldAccessExpression) expression).getTarget());
+            case BINARY_EXPRESSION -> {
+                BoundBinaryExpression binary = (BoundBinaryExpression) expression;
+                yield binary.getIntrinsic() != null
+                        && binary.getIntrinsic() != BinaryIntrinsic.INT_DIVIDE
+                        && binary.getIntrinsic() != BinaryIntrinsic.INT_MODULO
+                        && isPure(binary.getLeft()) && isPure(binary.getRight());
+            }
+            case UNARY_EXPRESSION -> {
+                BoundUnaryExpression unary = (BoundUnaryExpression) expression;
+                yield unary.getIntrinsic() != null && isPure(unary.getOperand());
+            }
+            case CONDITIONAL_EXPRESSION -> {
+                BoundConditionalExpression conditional = (BoundConditionalExpression) expression;
+                yield isPure(conditional.getCondition()) && isPure(conditional.getThenExpression()) && isPure(conditional.getElseExpression());
+            }
+            case CONVERSION_EXPRESSION -> isPure(((BoundConversionExpression) expression).getExpression());
+            default -> false;
+        };
+    }
+
+    private static boolean isNeverNull(BoundExpression expression) {
+        return expression.getKind() == BoundNodeKind.THIS_EXPRESSION || expression.getKind() == BoundNodeKind.TYPE_EXPRESSION;
+    }
+
+    /**
+     * Counts the nodes of an inlining candidate and how often it uses {@code this} and each parameter. Candidates
+     * that need the frame of the callee for anything else, like resolving generic types, are rejected.
+     */
+    private static final class Usage {
+        private final int[] parameterUses;
+        private final boolean isImported;
+        private int thisUses;
+        private int size;
+        private boolean isPure = true;
+
+        private Usage(int parameterCount, boolean isImported) {
+            this.parameterUses = new int[parameterCount];
+            this.isImported = isImported;
+        }
+
+        private boolean count(BoundExpression expression) {
+            size++;
+
+            return switch (expression.getKind()) {
+                case LITERAL_EXPRESSION -> true;
+                case THIS_EXPRESSION -> {
+                    thisUses++;
+                    yield true;
+                }
+                case VARIABLE_EXPRESSION -> {
+                    // a single returned expression cannot declare locals, every variable is a parameter
+                    int index = ((BoundVariableExpression) expression).getVariable().getSlot() - VariableSymbol.getParameterSlot(0);
+                    if (index < 0 || index >= parameterUses.length) {
+                        yield false;
+                    }
+                    parameterUses[index]++;
+                    yield true;
+                }
+                case TYPE_EXPRESSION -> {
+                    // the caller resolves types in its own program, which might not import the type
+                    TypeSymbol type = expression.getType();
+                    yield !type.isGeneric() && (!isImported || Types.isBuiltinType(type));
+                }
+                case MEMBER_ACCESS_EXPRESSION -> {
+                    BoundMemberAccessExpression memberAccess = (BoundMemberAccessExpression) expression;
+                    yield memberAccess.getMember() instanceof FieldSymbol && count(memberAccess.getTarget());
+                }
+                case FIELD_ACCESS_EXPRESSION -> count(((BoundFieldAccessExpression) expression).getTarget());
+                case ARRAY_ACCESS_EXPRESSION -> {
+                    BoundArrayAccessExpression arrayAccess = (BoundArrayAccessExpression) expression;
+                    yield count(arrayAccess.getTarget()) && count(arrayAccess.getIndex());
+                }
+                case BINARY_EXPRESSION -> {
+                    BoundBinaryExpression binary = (BoundBinaryExpression) expression;
+                    isPure &= binary.getIntrinsic() != null;
+                    yield count(binary.getLeft()) && count(binary.getRight());
+                }
+                case UNARY_EXPRESSION -> {
+                    BoundUnaryExpression unary = (BoundUnaryExpression) expression;
+                    isPure &= unary.getIntrinsic() != null;
+                    yield count(unary.getOperand());
+                }
+                case CONDITIONAL_EXPRESSION -> {
+                    BoundConditionalExpression conditional = (BoundConditionalExpression) expression;
+                    yield count(conditional.getCondition()) && count(conditional.getThenExpression()) && count(conditional.getElseExpression());
+                }
+                case CONVERSION_EXPRESSION -> count(((BoundConversionExpression) expression).getExpression());
+                case FUNCTION_CALL_EXPRESSION -> {
+                    BoundFunctionCallExpression call = (BoundFunctionCallExpression) expression;
+                    isPure = false;
+                    yield count(call.getCallee()) && call.getArguments().stream().allMatch(this::count);
+                }
+                case ASSIGNMENT_EXPRESSION -> {
+                    BoundAssignmentExpression assignment = (BoundAssignmentExpression) expression;
+                    isPure = false;
+                    // parameters are locals of the callee, assigning one must not assign the argument
+                    yield !(assignment.getTarget() instanceof BoundVariableExpression) && count(assignment.getTarget()) && count(assignment.getExpression());
+                }
+                default -> false;
+            };
+        }
+    }
+
+    // Replaces this and the parameters of an inlined body by the callee and the arguments of the call
+    private static final class Substitution extends BoundTreeRewriter {
+        private final BoundExpression callee;
+        private final List<BoundExpression> arguments;
+
+        private Substitution(BoundExpression callee, List<BoundExpression> arguments) {
+            this.callee = callee;
+            this.arguments = arguments;
+        }
+
+        private BoundExpression substitute(BoundExpression expression) {
+            return rewriteExpression(expression);
+        }
+
+        @Override
+        protected BoundExpression rewriteThisExpression(BoundThisExpression node) {
+            return callee;
+        }
+
+        @Override
+        protected BoundExpression rewriteVariableExpression(BoundVariableExpression node) {
+            return arguments.get(node.getVariable().getSlot() - VariableSymbol.getParameterSlot(0));
+        }
+    }
+}
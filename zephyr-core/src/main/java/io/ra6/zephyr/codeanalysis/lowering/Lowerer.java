@@ -3,16 +3,16 @@ package io.ra6.zephyr.codeanalysis.lowering;
 import io.ra6.zephyr.Iterables;
 import io.ra6.zephyr.builtin.Types;
 import io.ra6.zephyr.codeanalysis.binding.*;
-import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
-import io.ra6.zephyr.codeanalysis.binding.statements.BoundIfStatement;
-import io.ra6.zephyr.codeanalysis.binding.statements.BoundReturnStatement;
-import io.ra6.zephyr.codeanalysis.binding.statements.BoundWhileStatement;
+import io.ra6.zephyr.codeanalysis.binding.expressions.BoundLiteralExpression;
+import io.ra6.zephyr.codeanalysis.binding.statements.*;
 import io.ra6.zephyr.codeanalysis.symbols.CallableSymbol;
 import io.ra6.zephyr.codeanalysis.symbols.ConstructorSymbol;
 import io.ra6.zephyr.codeanalysis.symbols.FunctionSymbol;
 import lombok.experimental.ExtensionMethod;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Stack;
 
@@ -26,7 +26,7 @@ public class Lowerer extends BoundTreeRewriter {
 
     public static BoundBlockStatement lower(CallableSymbol callable, BoundStatement root) {
         Lowerer lowerer = new Lowerer();
-        BoundStatement result = lowerer.rewriteStatement(root);
+        BoundStatement result = lowerer.rewriteStatement(ConstantFolder.fold(root));
 
         return flatten(callable, result);
     }
@@ -49,6 +49,8 @@ public class Lowerer extends BoundTreeRewriter {
             }
         }
 
+        statements = removeDeadCode(statements);
+
         if (callable instanceof FunctionSymbol function) {
             if (function.getType() == Types.VOID) {
                 if (statements.size() == 0 || canFallThrough(statements.last())) {
@@ -61,7 +63,40 @@ public class Lowerer extends BoundTreeRewriter {
             }
         }
 
-        return new BoundBlockStatement(statement.getSyntax(), statements);
+        return new BoundBlockStatement(statement.getSyntax(), resolveJumpTargets(statements));
+    }
+
+    // Replaces every goto in the flattened block with one that knows the index of its label,
+    // so the interpreter can jump without looking the label up.
+    private static List<BoundStatement> resolveJumpTargets(List<BoundStatement> statements) {
+        HashMap<BoundLabel, Integer> labelToIndex = new HashMap<>();
+
+        for (int i = 0; i < statements.size(); i++) {
+            if (statements.get(i) instanceof BoundLabelStatement label) {
+                labelToIndex.put(label.getLabel(), i);
+            }
+        }
+
+        List<BoundStatement> result = new ArrayList<>(statements.size());
+
+        for (BoundStatement current : statements) {
+            if (current instanceof BoundGotoStatement gotoStatement) {
+                int targetIndex = getTargetIndex(labelToIndex, gotoStatement.getLabel());
+                result.add(new BoundGotoStatement(gotoStatement.getSyntax(), gotoStatement.getLabel(), targetIndex));
+            } else if (current instanceof BoundConditionalGotoStatement conditionalGoto) {
+                int targetIndex = getTargetIndex(labelToIndex, conditionalGoto.getLabel());
+                result.add(new BoundConditionalGotoStatement(conditionalGoto.getSyntax(), conditionalGoto.getCondition(), conditionalGoto.getLabel(), conditionalGoto.jumpIfTrue(), targetIndex));
+            } else {
+                result.add(current);
+            }
+        }
+
+        return result;
+    }
+
+    private static int getTargetIndex(HashMap<BoundLabel, Integer> labelToIndex, BoundLabel label) {
+        // unresolved jumps are left at -1 and reported by the interpreter if they are ever taken
+        return labelToIndex.getOrDefault(label, -1);
     }
 
     private static boolean canFallThrough(BoundStatement last) {
@@ -69,8 +104,64 @@ public class Lowerer extends BoundTreeRewriter {
                 && last.getKind() != BoundNodeKind.GOTO_STATEMENT;
     }
 
-    // TODO: remove dead code
+    // Resolves conditional gotos on constant conditions and drops the statements that can no longer be reached,
+    // until no more labels become unused.
+    private static List<BoundStatement> removeDeadCode(List<BoundStatement> statements) {
+        List<BoundStatement> result = new ArrayList<>(statements.size());
+        for (BoundStatement current : statements) {
+            if (current instanceof BoundConditionalGotoStatement conditionalGoto
+                    && conditionalGoto.getCondition() instanceof BoundLiteralExpression literal
+                    && literal.getValue() instanceof Boolean value) {
+                if (value == conditionalGoto.jumpIfTrue()) {
+                    result.add(BoundNodeFactory.createGoto(conditionalGoto.getSyntax(), conditionalGoto.getLabel()));
+                }
+            } else {
+                result.add(current);
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            HashSet<BoundLabel> referencedLabels = new HashSet<>();
+            for (BoundStatement current : result) {
+                if (current instanceof BoundGotoStatement gotoStatement) {
+                    referencedLabels.add(gotoStatement.getLabel());
+                } else if (current instanceof BoundConditionalGotoStatement conditionalGoto) {
+                    referencedLabels.add(conditionalGoto.getLabel());
+                }
+            }
+
+            List<BoundStatement> reachable = new ArrayList<>(result.size());
+            boolean isReachable = true;
+            for (BoundStatement current : result) {
+                if (current instanceof BoundLabelStatement label) {
+                    if (!referencedLabels.contains(label.getLabel())) {
+                        continue;
+                    }
+                    isReachable = true;
+                }
+
+                if (isReachable) {
+                    reachable.add(current);
+                    isReachable = canFallThrough(current);
+                }
+            }
+
+            // a goto to the statement right after it does nothing
+            for (int i = reachable.size() - 2; i >= 0; i--) {
+                if (reachable.get(i) instanceof BoundGotoStatement gotoStatement
+                        && reachable.get(i + 1) instanceof BoundLabelStatement label
+                        && label.getLabel().equals(gotoStatement.getLabel())) {
+                    reachable.remove(i);
+                }
+            }
+
+            changed = reachable.size() != result.size();
+            result = reachable;
+        }
 
+        return result;
+    }
 
     /**
      * If there is no else statement:
@@ -10,18 +10,23 @@ import java.util.Optional;
 
 public class TypeSymbol extends Symbol {
 
+    @Getter
     @Setter
     private List<Symbol> fieldsAndFunctions = new ArrayList<>();
 
+    @Getter
     @Setter
     private List<ConstructorSymbol> constructors = new ArrayList<>();
 
+    @Getter
     @Setter
     private List<UnaryOperatorSymbol> unaryOperators = new ArrayList<>();
 
+    @Getter
     @Setter
     private List<BinaryOperatorSymbol> binaryOperators = new ArrayList<>();
 
+    @Getter
     @Setter
     private List<String> genericTypes = new ArrayList<>();
 
@@ -6,19 +6,29 @@ import lombok.Setter;
 import java.util.HashMap;
 
 public class VariableSymbol extends Symbol {
+    // Frame layout: slot 0 holds 'this', followed by the parameters and then the locals
+    public static final int THIS_SLOT = 0;
+
     @Getter
     private final boolean isReadonly;
     @Getter
     private final TypeSymbol type;
+    @Getter
+    private final int slot;
 
     @Setter
     @Getter
     private HashMap<String, TypeSymbol> genericTypes = new HashMap<>();
 
-    public VariableSymbol(String name, boolean isReadonly, TypeSymbol type) {
+    public VariableSymbol(String name, boolean isReadonly, TypeSymbol type, int slot) {
         super(name);
         this.isReadonly = isReadonly;
         this.type = type;
+        this.slot = slot;
+    }
+
+    public static int getParameterSlot(int parameterIndex) {
+        return THIS_SLOT + 1 + parameterIndex;
     }
 
     public TypeSymbol getGenericType(String name) {
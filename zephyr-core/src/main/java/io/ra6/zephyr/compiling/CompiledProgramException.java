@@ -0,0 +1,14 @@
+package io.ra6.zephyr.compiling;
+
+/**
+ * Thrown if a program cannot be written to or read from the compiled format.
+ */
+public class CompiledProgramException extends RuntimeException {
+    public CompiledProgramException(String message) {
+        super(message);
+    }
+
+    public CompiledProgramException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
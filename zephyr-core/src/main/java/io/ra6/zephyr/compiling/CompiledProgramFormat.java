@@ -0,0 +1,32 @@
+package io.ra6.zephyr.compiling;
+
+/**
+ * Layout of a compiled program file. The header holds the magic, the format version and the string table,
+ * the rest is the main program with all of its imports. Symbols, labels and programs are written once and
+ * referenced by handle afterwards, so the loaded tree has the same object identities as the bound one.
+ * <p>
+ * The version has to be increased whenever the layout, a {@link io.ra6.zephyr.codeanalysis.binding.BoundNodeKind}
+ * or the builtin types change.
+ */
+interface CompiledProgramFormat {
+    int MAGIC = 0x5A504843; // ZPHC
+    int VERSION = 1;
+
+    String EXTENSION = ".zphc";
+
+    int REFERENCE_NULL = 0;
+    int REFERENCE_NEW = 1;
+    int REFERENCE_HANDLE = 2;
+    int REFERENCE_BUILTIN = 3;
+
+    int TYPE_DECLARED = 0;
+    int TYPE_ARRAY = 1;
+    int TYPE_GENERIC = 2;
+
+    int LITERAL_NULL = 0;
+    int LITERAL_INT = 1;
+    int LITERAL_DOUBLE = 2;
+    int LITERAL_BOOL = 3;
+    int LITERAL_CHAR = 4;
+    int LITERAL_STRING = 5;
+}
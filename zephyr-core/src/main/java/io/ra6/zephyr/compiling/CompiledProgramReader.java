@@ -0,0 +1,583 @@
+package io.ra6.zephyr.compiling;
+
+import io.ra6.zephyr.builtin.BinaryIntrinsic;
+import io.ra6.zephyr.builtin.BuiltinUniverse;
+import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.builtin.UnaryIntrinsic;
+import io.ra6.zephyr.builtin.natives.NativeType;
+import io.ra6.zephyr.builtin.types.BuiltinType;
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.BoundLabel;
+import io.ra6.zephyr.codeanalysis.binding.BoundNodeKind;
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.binding.BoundTypeCheckExpression;
+import io.ra6.zephyr.codeanalysis.binding.Visibility;
+import io.ra6.zephyr.codeanalysis.binding.expressions.*;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.*;
+import io.ra6.zephyr.codeanalysis.symbols.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Reads a program written by {@link CompiledProgramWriter} back into bound program scopes that the runtime
+ * and the emitters can use as if the program was just bound.
+ */
+class CompiledProgramReader implements CompiledProgramFormat {
+    private static final BoundNodeKind[] NODE_KINDS = BoundNodeKind.values();
+    private static final SymbolKind[] SYMBOL_KINDS = SymbolKind.values();
+    private static final Visibility[] VISIBILITIES = Visibility.values();
+
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private final List<Object> handles = new ArrayList<>();
+    private final HashMap<String, BuiltinType> builtinTypes = new HashMap<>();
+
+    CompiledProgramReader(byte[] bytes) {
+        this.in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        BuiltinUniverse universe = BuiltinUniverse.get();
+        for (BuiltinType type : universe.getBuiltinTypes()) {
+            builtinTypes.put(type.getTypeSymbol().getName(), type);
+        }
+        for (NativeType type : universe.getNativeTypes()) {
+            builtinTypes.put(type.getTypeSymbol().getName(), type);
+        }
+    }
+
+    BoundProgramScope read() throws IOException {
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new CompiledProgramException("Not a compiled zephyr program");
+            }
+
+            int version = in.readUnsignedShort();
+            if (version != VERSION) {
+                throw new CompiledProgramException("Compiled program has format version %d, expected %d. Recompile the program".formatted(version, VERSION));
+            }
+
+            int stringCount = readVarInt();
+            for (int i = 0; i < stringCount; i++) {
+                strings.add(new String(in.readNBytes(readVarInt()), StandardCharsets.UTF_8));
+            }
+
+            return readProgram();
+        } catch (EOFException e) {
+            throw new CompiledProgramException("Compiled program is truncated", e);
+        }
+    }
+
+    private BoundProgramScope readProgram() throws IOException {
+        int reference = readVarInt();
+        if (reference != REFERENCE_NEW) {
+            return (BoundProgramScope) readExistingReference(reference);
+        }
+
+        int handle = reserveHandle();
+        BoundProgramScope program = new BoundProgramScope(readString());
+        handles.set(handle, program);
+
+        int importCount = readVarInt();
+        for (int i = 0; i < importCount; i++) {
+            String debugName = readString();
+            program.importProgram(debugName, readProgram());
+        }
+
+        int typeCount = readVarInt();
+        for (int i = 0; i < typeCount; i++) {
+            TypeSymbol type = readType();
+            BuiltinType builtinType = builtinTypes.get(type.getName());
+            if (builtinType instanceof NativeType nativeType && nativeType.getTypeSymbol() == type) {
+                program.declareNativeType(nativeType);
+            } else {
+                program.declareType(type);
+            }
+        }
+
+        int exportCount = readVarInt();
+        for (int i = 0; i < exportCount; i++) {
+            program.declareExport(new ExportSymbol(readType()));
+        }
+
+        int typeScopeCount = readVarInt();
+        for (int i = 0; i < typeScopeCount; i++) {
+            readTypeScope(program);
+        }
+
+        return program;
+    }
+
+    private void readTypeScope(BoundProgramScope program) throws IOException {
+        TypeSymbol type = readType();
+        BoundTypeScope typeScope = new BoundTypeScope(program, type);
+
+        for (String genericType : type.getGenericTypes()) {
+            typeScope.declareGeneric(genericType);
+        }
+
+        for (Symbol member : type.getFieldsAndFunctions()) {
+            if (member instanceof FieldSymbol field) {
+                typeScope.declareField(field);
+                typeScope.defineField(field, readExpression());
+            } else {
+                FunctionSymbol function = (FunctionSymbol) member;
+                typeScope.declareFunction(function);
+                BoundBlockStatement body = (BoundBlockStatement) readStatement();
+                if (body != null) {
+                    typeScope.defineFunction(function, body);
+                }
+            }
+        }
+
+        for (ConstructorSymbol constructor : type.getConstructors()) {
+            typeScope.declareConstructor(constructor);
+            BoundBlockStatement body = (BoundBlockStatement) readStatement();
+            if (body != null) {
+                typeScope.defineConstructor(constructor, body);
+            }
+        }
+
+        for (BinaryOperatorSymbol operator : type.getBinaryOperators()) {
+            typeScope.declareBinaryOperator(operator);
+            BoundBlockStatement body = (BoundBlockStatement) readStatement();
+            if (body != null) {
+                typeScope.defineBinaryOperator(operator, body);
+            }
+        }
+
+        for (UnaryOperatorSymbol operator : type.getUnaryOperators()) {
+            typeScope.declareUnaryOperator(operator);
+            BoundBlockStatement body = (BoundBlockStatement) readStatement();
+            if (body != null) {
+                typeScope.defineUnaryOperator(operator, body);
+            }
+        }
+
+        type.setFieldsAndFunctions(typeScope.getDeclaredFieldsAndFunctions());
+        type.setConstructors(typeScope.getDeclaredConstructors());
+        type.setBinaryOperators(typeScope.getDeclaredBinaryOperators());
+        type.setUnaryOperators(typeScope.getDeclaredUnaryOperators());
+        type.setGenericTypes(typeScope.getDeclaredGenericTypes());
+
+        program.defineType(type, typeScope);
+    }
+
+    private TypeSymbol readType() throws IOException {
+        int reference = readVarInt();
+        if (reference == REFERENCE_BUILTIN) {
+            return getBuiltinType(readString());
+        }
+        if (reference != REFERENCE_NEW) {
+            return (TypeSymbol) readExistingReference(reference);
+        }
+
+        int handle = reserveHandle();
+        int kind = readVarInt();
+        switch (kind) {
+            case TYPE_ARRAY -> {
+                ArrayTypeSymbol arrayType = new ArrayTypeSymbol(readType());
+                handles.set(handle, arrayType);
+                handles.addAll(arrayType.getFieldsAndFunctions());
+                return arrayType;
+            }
+            case TYPE_GENERIC -> {
+                TypeSymbol genericType = TypeSymbol.createGeneric(readString());
+                handles.set(handle, genericType);
+                return genericType;
+            }
+            case TYPE_DECLARED -> {
+                TypeSymbol type = new TypeSymbol(readString());
+                handles.set(handle, type);
+
+                int genericCount = readVarInt();
+                List<String> genericTypes = new ArrayList<>(genericCount);
+                for (int i = 0; i < genericCount; i++) {
+                    genericTypes.add(readString());
+                }
+                type.setGenericTypes(genericTypes);
+
+                type.setFieldsAndFunctions(readSymbols(Symbol.class));
+                type.setConstructors(readSymbols(ConstructorSymbol.class));
+                type.setBinaryOperators(readSymbols(BinaryOperatorSymbol.class));
+                type.setUnaryOperators(readSymbols(UnaryOperatorSymbol.class));
+                return type;
+            }
+            default -> throw new CompiledProgramException("Unknown type kind " + kind);
+        }
+    }
+
+    private TypeSymbol getBuiltinType(String name) {
+        if (name.equals(Types.ERROR.getName())) {
+            return Types.ERROR;
+        }
+        if (name.equals(Types.UNKNOWN.getName())) {
+            return Types.UNKNOWN;
+        }
+
+        BuiltinType builtinType = builtinTypes.get(name);
+        if (builtinType == null) {
+            throw new CompiledProgramException("Compiled program references unknown builtin type '%s'".formatted(name));
+        }
+        return builtinType.getTypeSymbol();
+    }
+
+    private <T extends Symbol> List<T> readSymbols(Class<T> symbolClass) throws IOException {
+        int count = readVarInt();
+        List<T> symbols = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            symbols.add(symbolClass.cast(readSymbol()));
+        }
+        return symbols;
+    }
+
+    private Symbol readSymbol() throws IOException {
+        int kindIndex = readVarInt();
+        if (kindIndex == 0) {
+            return null;
+        }
+
+        SymbolKind kind = SYMBOL_KINDS[kindIndex - 1];
+        if (kind == SymbolKind.TYPE) {
+            return readType();
+        }
+
+        int reference = readVarInt();
+        if (reference == REFERENCE_BUILTIN) {
+            return readBuiltinMember(kind);
+        }
+        if (reference != REFERENCE_NEW) {
+            return (Symbol) readExistingReference(reference);
+        }
+
+        int handle = reserveHandle();
+        Symbol symbol = switch (kind) {
+            case FIELD -> {
+                String name = readString();
+                boolean isReadonly = in.readBoolean();
+                boolean isShared = in.readBoolean();
+                Visibility visibility = VISIBILITIES[readVarInt()];
+                FieldSymbol field = new FieldSymbol(name, isReadonly, isShared, visibility, readType());
+                field.setGenericMapping(readTypeMapping());
+                yield field;
+            }
+            case FUNCTION -> {
+                String name = readString();
+                boolean isShared = in.readBoolean();
+                Visibility visibility = VISIBILITIES[readVarInt()];
+                List<ParameterSymbol> parameters = readSymbols(ParameterSymbol.class);
+                yield new FunctionSymbol(name, isShared, visibility, parameters, readType());
+            }
+            case CONSTRUCTOR -> new ConstructorSymbol(readSymbols(ParameterSymbol.class));
+            case BINARY_OPERATOR -> {
+                String name = readString();
+                String otherOperandName = readString();
+                TypeSymbol otherType = readType();
+                yield new BinaryOperatorSymbol(name, otherOperandName, otherType, readType());
+            }
+            case UNARY_OPERATOR -> {
+                String name = readString();
+                yield new UnaryOperatorSymbol(name, readType());
+            }
+            case PARAMETER -> {
+                String name = readString();
+                yield new ParameterSymbol(name, readType());
+            }
+            case VARIABLE -> {
+                String name = readString();
+                boolean isReadonly = in.readBoolean();
+                TypeSymbol type = readType();
+                VariableSymbol variable = new VariableSymbol(name, isReadonly, type, readVarInt());
+                HashMap<String, TypeSymbol> genericTypes = readGenericTypes();
+                if (genericTypes != null) {
+                    variable.setGenericTypes(genericTypes);
+                }
+                yield variable;
+            }
+            default -> throw new CompiledProgramException("Unknown symbol kind " + kind);
+        };
+
+        handles.set(handle, symbol);
+        return symbol;
+    }
+
+    private Symbol readBuiltinMember(SymbolKind kind) throws IOException {
+        String typeName = readString();
+        String name = readString();
+        BoundTypeScope typeScope = builtinTypes.containsKey(typeName) ? builtinTypes.get(typeName).getTypeScope() : null;
+
+        Symbol member = typeScope == null ? null : switch (kind) {
+            case FIELD -> typeScope.getField(name);
+            case FUNCTION -> typeScope.getFunction(name);
+            case BINARY_OPERATOR -> typeScope.getBinaryOperator(name, readType());
+            case UNARY_OPERATOR -> typeScope.getUnaryOperator(name);
+            case CONSTRUCTOR -> {
+                int parameterCount = readVarInt();
+                yield typeScope.getDeclaredConstructors().stream().filter(c -> c.getParameters().size() == parameterCount).findFirst().orElse(null);
+            }
+            default -> null;
+        };
+
+        if (member == null) {
+            throw new CompiledProgramException("Compiled program references unknown builtin member '%s.%s'. Recompile the program".formatted(typeName, name));
+        }
+        return member;
+    }
+
+    private HashMap<TypeSymbol, TypeSymbol> readTypeMapping() throws IOException {
+        int size = readVarInt() - 1;
+        if (size < 0) {
+            return null;
+        }
+
+        HashMap<TypeSymbol, TypeSymbol> mapping = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            TypeSymbol key = readType();
+            mapping.put(key, readType());
+        }
+        return mapping;
+    }
+
+    private HashMap<String, TypeSymbol> readGenericTypes() throws IOException {
+        int size = readVarInt() - 1;
+        if (size < 0) {
+            return null;
+        }
+
+        HashMap<String, TypeSymbol> genericTypes = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = readString();
+            genericTypes.put(key, readType());
+        }
+        return genericTypes;
+    }
+
+    private BoundLabel readLabel() throws IOException {
+        int reference = readVarInt();
+        if (reference != REFERENCE_NEW) {
+            return (BoundLabel) readExistingReference(reference);
+        }
+
+        BoundLabel label = new BoundLabel(readString());
+        handles.add(label);
+        return label;
+    }
+
+    private BoundStatement readStatement() throws IOException {
+        BoundNodeKind kind = readNodeKind();
+        if (kind == null) {
+            return null;
+        }
+
+        return switch (kind) {
+            case BLOCK_STATEMENT -> {
+                int count = readVarInt();
+                List<BoundStatement> statements = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    statements.add(readStatement());
+                }
+                yield new BoundBlockStatement(null, statements);
+            }
+            case IF_STATEMENT -> {
+                BoundExpression condition = readExpression();
+                BoundStatement thenStatement = readStatement();
+                yield new BoundIfStatement(null, condition, thenStatement, readStatement());
+            }
+            case WHILE_STATEMENT -> {
+                BoundExpression condition = readExpression();
+                BoundStatement body = readStatement();
+                BoundLabel continueLabel = readLabel();
+                yield new BoundWhileStatement(null, condition, body, continueLabel, readLabel());
+            }
+            case GOTO_STATEMENT -> {
+                BoundLabel label = readLabel();
+                yield new BoundGotoStatement(null, label, readVarInt() - 1);
+            }
+            case CONDITIONAL_GOTO_STATEMENT -> {
+                BoundLabel label = readLabel();
+                BoundExpression condition = readExpression();
+                boolean jumpIfTrue = in.readBoolean();
+                yield new BoundConditionalGotoStatement(null, condition, label, jumpIfTrue, readVarInt() - 1);
+            }
+            case LABEL_STATEMENT -> new BoundLabelStatement(null, readLabel());
+            case RETURN_STATEMENT -> new BoundReturnStatement(null, readExpression());
+            case VARIABLE_DECLARATION -> {
+                VariableSymbol variable = (VariableSymbol) readSymbol();
+                yield new BoundVariableDeclaration(null, variable, readExpression());
+            }
+            case EXPRESSION_STATEMENT -> new BoundExpressionStatement(null, readExpression());
+            default -> throw new CompiledProgramException("Unexpected statement kind " + kind);
+        };
+    }
+
+    private List<BoundExpression> readExpressions() throws IOException {
+        int count = readVarInt();
+        List<BoundExpression> expressions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            expressions.add(readExpression());
+        }
+        return expressions;
+    }
+
+    private BoundExpression readExpression() throws IOException {
+        BoundNodeKind kind = readNodeKind();
+        if (kind == null) {
+            return null;
+        }
+
+        return switch (kind) {
+            case LITERAL_EXPRESSION -> {
+                Object value = readLiteral();
+                yield new BoundLiteralExpression(null, value, readType());
+            }
+            case BINARY_EXPRESSION -> {
+                BoundExpression left = readExpression();
+                String operator = readString();
+                BoundExpression right = readExpression();
+                TypeSymbol resultType = readType();
+                String intrinsic = readString();
+                yield new BoundBinaryExpression(null, left, operator, right, resultType, intrinsic == null ? null : BinaryIntrinsic.valueOf(intrinsic));
+            }
+            case UNARY_EXPRESSION -> {
+                String operator = readString();
+                BoundExpression operand = readExpression();
+                TypeSymbol resultType = readType();
+                String intrinsic = readString();
+                yield new BoundUnaryExpression(null, operator, operand, resultType, intrinsic == null ? null : UnaryIntrinsic.valueOf(intrinsic));
+            }
+            case CONDITIONAL_EXPRESSION -> {
+                BoundExpression condition = readExpression();
+                BoundExpression thenExpression = readExpression();
+                yield new BoundConditionalExpression(null, condition, thenExpression, readExpression());
+            }
+            case INSTANCE_CREATION_EXPRESSION -> {
+                TypeSymbol type = readType();
+                List<BoundExpression> arguments = readExpressions();
+                yield new BoundInstanceCreationExpression(null, type, arguments, readGenericTypes());
+            }
+            case VARIABLE_EXPRESSION -> new BoundVariableExpression(null, (VariableSymbol) readSymbol());
+            case ASSIGNMENT_EXPRESSION -> {
+                BoundExpression target = readExpression();
+                yield new BoundAssignmentExpression(null, target, readExpression());
+            }
+            case FIELD_ACCESS_EXPRESSION -> {
+                BoundExpression target = readExpression();
+                yield new BoundFieldAccessExpression(null, target, (FieldSymbol) readSymbol());
+            }
+            case MEMBER_ACCESS_EXPRESSION -> {
+                BoundExpression target = readExpression();
+                yield new BoundMemberAccessExpression(null, target, readSymbol());
+            }
+            case FUNCTION_CALL_EXPRESSION -> {
+                BoundExpression callee = readExpression();
+                FunctionSymbol function = (FunctionSymbol) readSymbol();
+                yield new BoundFunctionCallExpression(null, callee, function, readExpressions());
+            }
+            case THIS_EXPRESSION -> new BoundThisExpression(null, readType());
+            case TYPE_EXPRESSION -> new BoundTypeExpression(null, readType());
+            case ARRAY_LITERAL_EXPRESSION -> {
+                ArrayTypeSymbol type = (ArrayTypeSymbol) readType();
+                yield new BoundArrayLiteralExpression(null, type, readExpressions());
+            }
+            case ARRAY_ACCESS_EXPRESSION -> {
+                BoundExpression target = readExpression();
+                yield new BoundArrayAccessExpression(null, target, readExpression());
+            }
+            case ARRAY_CREATION_EXPRESSION -> {
+                TypeSymbol type = readType();
+                int count = readVarInt();
+                // keeps the dimensions in the order they were written
+                LinkedHashMap<BoundExpression, BoundExpression> dimensions = new LinkedHashMap<>();
+                for (int i = 0; i < count; i++) {
+                    BoundExpression size = readExpression();
+                    dimensions.put(size, readExpression());
+                }
+                yield new BoundArrayCreationExpression(null, type, dimensions);
+            }
+            case CONVERSION_EXPRESSION -> {
+                TypeSymbol boundGenericType = readType();
+                TypeSymbol genericType = readType();
+                yield new BoundConversionExpression(null, boundGenericType, genericType, readExpression());
+            }
+            case TYPE_CHECK_EXPRESSION -> {
+                BoundExpression left = readExpression();
+                yield new BoundTypeCheckExpression(null, left, readType());
+            }
+            default -> throw new CompiledProgramException("Unexpected expression kind " + kind);
+        };
+    }
+
+    private Object readLiteral() throws IOException {
+        int kind = readVarInt();
+        return switch (kind) {
+            case LITERAL_NULL -> null;
+            case LITERAL_INT -> in.readInt();
+            case LITERAL_DOUBLE -> in.readDouble();
+            case LITERAL_BOOL -> in.readBoolean();
+            case LITERAL_CHAR -> in.readChar();
+            case LITERAL_STRING -> readString();
+            default -> throw new CompiledProgramException("Unknown literal kind " + kind);
+        };
+    }
+
+    private BoundNodeKind readNodeKind() throws IOException {
+        int kind = readVarInt();
+        if (kind == 0) {
+            return null;
+        }
+        if (kind > NODE_KINDS.length) {
+            throw new CompiledProgramException("Unknown node kind " + kind);
+        }
+        return NODE_KINDS[kind - 1];
+    }
+
+    private Object readExistingReference(int reference) throws IOException {
+        return switch (reference) {
+            case REFERENCE_NULL -> null;
+            case REFERENCE_HANDLE -> {
+                int handle = readVarInt();
+                if (handle >= handles.size() || handles.get(handle) == null) {
+                    throw new CompiledProgramException("Invalid handle " + handle);
+                }
+                yield handles.get(handle);
+            }
+            default -> throw new CompiledProgramException("Unknown reference " + reference);
+        };
+    }
+
+    /**
+     * Handles are numbered in the order their definitions start, nested definitions get the following numbers.
+     */
+    private int reserveHandle() {
+        handles.add(null);
+        return handles.size() - 1;
+    }
+
+    private String readString() throws IOException {
+        int index = readVarInt();
+        if (index > strings.size()) {
+            throw new CompiledProgramException("Invalid string index " + index);
+        }
+        return index == 0 ? null : strings.get(index - 1);
+    }
+
+    private int readVarInt() throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int current = in.readUnsignedByte();
+            result |= (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new CompiledProgramException("Malformed variable length integer");
+    }
+}
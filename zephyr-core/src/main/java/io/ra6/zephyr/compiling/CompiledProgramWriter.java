@@ -0,0 +1,505 @@
+package io.ra6.zephyr.compiling;
+
+import io.ra6.zephyr.builtin.BuiltinUniverse;
+import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.builtin.types.BuiltinType;
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.BoundLabel;
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.binding.BoundTypeCheckExpression;
+import io.ra6.zephyr.codeanalysis.binding.expressions.*;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.*;
+import io.ra6.zephyr.codeanalysis.symbols.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a bound and lowered program with all of its imports. Builtin and native types are not written,
+ * they are referenced by name and resolved against the running builtins when the program is read.
+ */
+class CompiledProgramWriter implements CompiledProgramFormat {
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(body);
+
+    private final LinkedHashMap<String, Integer> strings = new LinkedHashMap<>();
+    private final IdentityHashMap<Object, Integer> handles = new IdentityHashMap<>();
+
+    private final IdentityHashMap<TypeSymbol, BuiltinType> builtinTypes = new IdentityHashMap<>();
+    private final IdentityHashMap<Symbol, BuiltinType> builtinMembers = new IdentityHashMap<>();
+
+    CompiledProgramWriter() {
+        BuiltinUniverse universe = BuiltinUniverse.get();
+        List<BuiltinType> types = new ArrayList<>(universe.getBuiltinTypes());
+        types.addAll(universe.getNativeTypes());
+
+        for (BuiltinType type : types) {
+            BoundTypeScope typeScope = type.getTypeScope();
+            builtinTypes.put(type.getTypeSymbol(), type);
+            typeScope.getDeclaredFieldsAndFunctions().forEach(member -> builtinMembers.put(member, type));
+            typeScope.getDeclaredConstructors().forEach(member -> builtinMembers.put(member, type));
+            typeScope.getDeclaredBinaryOperators().forEach(member -> builtinMembers.put(member, type));
+            typeScope.getDeclaredUnaryOperators().forEach(member -> builtinMembers.put(member, type));
+        }
+    }
+
+    byte[] write(BoundProgramScope program) throws IOException {
+        writeProgram(program);
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(result);
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        writeVarInt(header, strings.size());
+        for (String string : strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(header, bytes.length);
+            header.write(bytes);
+        }
+        body.writeTo(header);
+        header.flush();
+        return result.toByteArray();
+    }
+
+    private void writeProgram(BoundProgramScope program) throws IOException {
+        if (!writeReference(program)) {
+            return;
+        }
+
+        writeString(program.getName());
+
+        writeVarInt(program.getImportedPrograms().size());
+        for (BoundProgramScope importedProgram : program.getImportedPrograms()) {
+            writeString(program.getDebugImportedProgram(importedProgram));
+            writeProgram(importedProgram);
+        }
+
+        // builtin types are declared by every program, natives only if the program declares them
+        List<TypeSymbol> types = program.getDeclaredTypes().stream().filter(type -> !Types.isBuiltinType(type)).toList();
+        writeVarInt(types.size());
+        for (TypeSymbol type : types) {
+            writeType(type);
+        }
+
+        writeVarInt(program.getExports().size());
+        for (ExportSymbol export : program.getExports()) {
+            writeType(export.getType());
+        }
+
+        List<TypeSymbol> declaredTypes = types.stream().filter(type -> !builtinTypes.containsKey(type)).toList();
+        writeVarInt(declaredTypes.size());
+        for (TypeSymbol type : declaredTypes) {
+            writeTypeScope(program.getTypeScope(type));
+        }
+    }
+
+    private void writeTypeScope(BoundTypeScope typeScope) throws IOException {
+        TypeSymbol type = typeScope.getType();
+        writeType(type);
+
+        for (Symbol member : type.getFieldsAndFunctions()) {
+            if (member instanceof FieldSymbol field) {
+                writeExpression(typeScope.getFieldInitializer(field));
+            } else {
+                writeStatement(typeScope.getFunctionBody((FunctionSymbol) member));
+            }
+        }
+
+        for (ConstructorSymbol constructor : type.getConstructors()) {
+            writeStatement(typeScope.getConstructorBody(constructor));
+        }
+
+        for (BinaryOperatorSymbol operator : type.getBinaryOperators()) {
+            writeStatement(typeScope.getBinaryOperatorBody(operator));
+        }
+
+        for (UnaryOperatorSymbol operator : type.getUnaryOperators()) {
+            writeStatement(typeScope.getUnaryOperatorBody(operator));
+        }
+    }
+
+    private void writeType(TypeSymbol type) throws IOException {
+        if (builtinTypes.containsKey(type) || type == Types.ERROR || type == Types.UNKNOWN) {
+            writeVarInt(REFERENCE_BUILTIN);
+            writeString(type.getName());
+            return;
+        }
+
+        if (!writeReference(type)) {
+            return;
+        }
+
+        if (type instanceof ArrayTypeSymbol arrayType) {
+            writeVarInt(TYPE_ARRAY);
+            writeType(arrayType.getElementType());
+
+            // the members of an array type are created with it, the reader registers them in the same order
+            for (Symbol member : arrayType.getFieldsAndFunctions()) {
+                handles.put(member, handles.size());
+            }
+            return;
+        }
+
+        if (type.isGeneric()) {
+            writeVarInt(TYPE_GENERIC);
+            writeString(type.getName());
+            return;
+        }
+
+        writeVarInt(TYPE_DECLARED);
+        writeString(type.getName());
+
+        writeVarInt(type.getGenericTypes().size());
+        for (String genericType : type.getGenericTypes()) {
+            writeString(genericType);
+        }
+
+        writeSymbols(type.getFieldsAndFunctions());
+        writeSymbols(type.getConstructors());
+        writeSymbols(type.getBinaryOperators());
+        writeSymbols(type.getUnaryOperators());
+    }
+
+    private void writeSymbols(List<? extends Symbol> symbols) throws IOException {
+        writeVarInt(symbols.size());
+        for (Symbol symbol : symbols) {
+            writeSymbol(symbol);
+        }
+    }
+
+    private void writeSymbol(Symbol symbol) throws IOException {
+        if (symbol == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        SymbolKind kind = symbol.getKind();
+        writeVarInt(kind.ordinal() + 1);
+
+        if (kind == SymbolKind.TYPE) {
+            writeType((TypeSymbol) symbol);
+            return;
+        }
+
+        if (builtinMembers.containsKey(symbol)) {
+            writeVarInt(REFERENCE_BUILTIN);
+            writeString(builtinMembers.get(symbol).getTypeSymbol().getName());
+            writeString(symbol.getName());
+            if (symbol instanceof BinaryOperatorSymbol operator) {
+                writeType(operator.getOtherType());
+            } else if (symbol instanceof ConstructorSymbol constructor) {
+                writeVarInt(constructor.getParameters().size());
+            }
+            return;
+        }
+
+        if (!writeReference(symbol)) {
+            return;
+        }
+
+        switch (kind) {
+            case FIELD -> {
+                FieldSymbol field = (FieldSymbol) symbol;
+                writeString(field.getName());
+                out.writeBoolean(field.isReadonly());
+                out.writeBoolean(field.isShared());
+                writeVarInt(field.getVisibility().ordinal());
+                writeType(field.getType());
+                writeTypeMapping(field.getGenericMapping());
+            }
+            case FUNCTION -> {
+                FunctionSymbol function = (FunctionSymbol) symbol;
+                writeString(function.getName());
+                out.writeBoolean(function.isShared());
+                writeVarInt(function.getVisibility().ordinal());
+                writeSymbols(function.getParameters());
+                writeType(function.getType());
+            }
+            case CONSTRUCTOR -> writeSymbols(((ConstructorSymbol) symbol).getParameters());
+            case BINARY_OPERATOR -> {
+                BinaryOperatorSymbol operator = (BinaryOperatorSymbol) symbol;
+                writeString(operator.getName());
+                writeString(operator.getOtherOperandName());
+                writeType(operator.getOtherType());
+                writeType(operator.getReturnType());
+            }
+            case UNARY_OPERATOR -> {
+                UnaryOperatorSymbol operator = (UnaryOperatorSymbol) symbol;
+                writeString(operator.getName());
+                writeType(operator.getReturnType());
+            }
+            case PARAMETER -> {
+                ParameterSymbol parameter = (ParameterSymbol) symbol;
+                writeString(parameter.getName());
+                writeType(parameter.getType());
+            }
+            case VARIABLE -> {
+                VariableSymbol variable = (VariableSymbol) symbol;
+                writeString(variable.getName());
+                out.writeBoolean(variable.isReadonly());
+                writeType(variable.getType());
+                writeVarInt(variable.getSlot());
+                writeGenericTypes(variable.getGenericTypes());
+            }
+            default -> throw new CompiledProgramException("Cannot write symbol of kind " + kind);
+        }
+    }
+
+    private void writeTypeMapping(Map<TypeSymbol, TypeSymbol> mapping) throws IOException {
+        if (mapping == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        writeVarInt(mapping.size() + 1);
+        for (Map.Entry<TypeSymbol, TypeSymbol> entry : mapping.entrySet()) {
+            writeType(entry.getKey());
+            writeType(entry.getValue());
+        }
+    }
+
+    private void writeGenericTypes(Map<String, TypeSymbol> genericTypes) throws IOException {
+        if (genericTypes == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        writeVarInt(genericTypes.size() + 1);
+        for (Map.Entry<String, TypeSymbol> entry : genericTypes.entrySet()) {
+            writeString(entry.getKey());
+            writeType(entry.getValue());
+        }
+    }
+
+    private void writeLabel(BoundLabel label) throws IOException {
+        if (writeReference(label)) {
+            writeString(label.getName());
+        }
+    }
+
+    private void writeStatement(BoundStatement statement) throws IOException {
+        if (statement == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        writeVarInt(statement.getKind().ordinal() + 1);
+
+        switch (statement.getKind()) {
+            case BLOCK_STATEMENT -> {
+                List<BoundStatement> statements = ((BoundBlockStatement) statement).getStatements();
+                writeVarInt(statements.size());
+                for (BoundStatement child : statements) {
+                    writeStatement(child);
+                }
+            }
+            case IF_STATEMENT -> {
+                BoundIfStatement ifStatement = (BoundIfStatement) statement;
+                writeExpression(ifStatement.getCondition());
+                writeStatement(ifStatement.getThenStatement());
+                writeStatement(ifStatement.getElseStatement());
+            }
+            case WHILE_STATEMENT -> {
+                BoundWhileStatement whileStatement = (BoundWhileStatement) statement;
+                writeExpression(whileStatement.getCondition());
+                writeStatement(whileStatement.getBody());
+                writeLabel(whileStatement.getContinueLabel());
+                writeLabel(whileStatement.getBreakLabel());
+            }
+            case GOTO_STATEMENT -> {
+                BoundGotoStatement gotoStatement = (BoundGotoStatement) statement;
+                writeLabel(gotoStatement.getLabel());
+                writeVarInt(gotoStatement.getTargetIndex() + 1);
+            }
+            case CONDITIONAL_GOTO_STATEMENT -> {
+                BoundConditionalGotoStatement conditionalGoto = (BoundConditionalGotoStatement) statement;
+                writeLabel(conditionalGoto.getLabel());
+                writeExpression(conditionalGoto.getCondition());
+                out.writeBoolean(conditionalGoto.jumpIfTrue());
+                writeVarInt(conditionalGoto.getTargetIndex() + 1);
+            }
+            case LABEL_STATEMENT -> writeLabel(((BoundLabelStatement) statement).getLabel());
+            case RETURN_STATEMENT -> writeExpression(((BoundReturnStatement) statement).getExpression());
+            case VARIABLE_DECLARATION -> {
+                BoundVariableDeclaration declaration = (BoundVariableDeclaration) statement;
+                writeSymbol(declaration.getVariableSymbol());
+                writeExpression(declaration.getInitializer());
+            }
+            case EXPRESSION_STATEMENT -> writeExpression(((BoundExpressionStatement) statement).getExpression());
+            default -> throw new CompiledProgramException("Cannot write statement of kind " + statement.getKind());
+        }
+    }
+
+    private void writeExpressions(List<BoundExpression> expressions) throws IOException {
+        writeVarInt(expressions.size());
+        for (BoundExpression expression : expressions) {
+            writeExpression(expression);
+        }
+    }
+
+    private void writeExpression(BoundExpression expression) throws IOException {
+        if (expression == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        writeVarInt(expression.getKind().ordinal() + 1);
+
+        switch (expression.getKind()) {
+            case LITERAL_EXPRESSION -> {
+                writeLiteral(((BoundLiteralExpression) expression).getValue());
+                writeType(expression.getType());
+            }
+            case BINARY_EXPRESSION -> {
+                BoundBinaryExpression binary = (BoundBinaryExpression) expression;
+                writeExpression(binary.getLeft());
+                writeString(binary.getOperator());
+                writeExpression(binary.getRight());
+                writeType(binary.getResultType());
+                writeString(binary.getIntrinsic() == null ? null : binary.getIntrinsic().name());
+            }
+            case UNARY_EXPRESSION -> {
+                BoundUnaryExpression unary = (BoundUnaryExpression) expression;
+                writeString(unary.getOperator());
+                writeExpression(unary.getOperand());
+                writeType(unary.getType());
+                writeString(unary.getIntrinsic() == null ? null : unary.getIntrinsic().name());
+            }
+            case CONDITIONAL_EXPRESSION -> {
+                BoundConditionalExpression conditional = (BoundConditionalExpression) expression;
+                writeExpression(conditional.getCondition());
+                writeExpression(conditional.getThenExpression());
+                writeExpression(conditional.getElseExpression());
+            }
+            case INSTANCE_CREATION_EXPRESSION -> {
+                BoundInstanceCreationExpression creation = (BoundInstanceCreationExpression) expression;
+                writeType(creation.getType());
+                writeExpressions(creation.getArguments());
+                writeGenericTypes(creation.getGenericTypes());
+            }
+            case VARIABLE_EXPRESSION -> writeSymbol(((BoundVariableExpression) expression).getVariable());
+            case ASSIGNMENT_EXPRESSION -> {
+                BoundAssignmentExpression assignment = (BoundAssignmentExpression) expression;
+                writeExpression(assignment.getTarget());
+                writeExpression(assignment.getExpression());
+            }
+            case FIELD_ACCESS_EXPRESSION -> {
+                BoundFieldAccessExpression fieldAccess = (BoundFieldAccessExpression) expression;
+                writeExpression(fieldAccess.getTarget());
+                writeSymbol(fieldAccess.getField());
+            }
+            case MEMBER_ACCESS_EXPRESSION -> {
+                BoundMemberAccessExpression memberAccess = (BoundMemberAccessExpression) expression;
+                writeExpression(memberAccess.getTarget());
+                writeSymbol(memberAccess.getMember());
+            }
+            case FUNCTION_CALL_EXPRESSION -> {
+                BoundFunctionCallExpression call = (BoundFunctionCallExpression) expression;
+                writeExpression(call.getCallee());
+                writeSymbol(call.getFunction());
+                writeExpressions(call.getArguments());
+            }
+            case THIS_EXPRESSION, TYPE_EXPRESSION -> writeType(expression.getType());
+            case ARRAY_LITERAL_EXPRESSION -> {
+                BoundArrayLiteralExpression arrayLiteral = (BoundArrayLiteralExpression) expression;
+                writeType(arrayLiteral.getElementType());
+                writeExpressions(arrayLiteral.getElements());
+            }
+            case ARRAY_ACCESS_EXPRESSION -> {
+                BoundArrayAccessExpression arrayAccess = (BoundArrayAccessExpression) expression;
+                writeExpression(arrayAccess.getTarget());
+                writeExpression(arrayAccess.getIndex());
+            }
+            case ARRAY_CREATION_EXPRESSION -> {
+                BoundArrayCreationExpression arrayCreation = (BoundArrayCreationExpression) expression;
+                writeType(arrayCreation.getType());
+                writeVarInt(arrayCreation.getDimensions().size());
+                for (Map.Entry<BoundExpression, BoundExpression> dimension : arrayCreation.getDimensions().entrySet()) {
+                    writeExpression(dimension.getKey());
+                    writeExpression(dimension.getValue());
+                }
+            }
+            case CONVERSION_EXPRESSION -> {
+                BoundConversionExpression conversion = (BoundConversionExpression) expression;
+                writeType(conversion.getBoundGenericType());
+                writeType(conversion.getGenericType());
+                writeExpression(conversion.getExpression());
+            }
+            case TYPE_CHECK_EXPRESSION -> {
+                BoundTypeCheckExpression typeCheck = (BoundTypeCheckExpression) expression;
+                writeExpression(typeCheck.getLeftExpression());
+                writeType(typeCheck.getRightType());
+            }
+            default -> throw new CompiledProgramException("Cannot write expression of kind " + expression.getKind());
+        }
+    }
+
+    private void writeLiteral(Object value) throws IOException {
+        if (value == null) {
+            writeVarInt(LITERAL_NULL);
+        } else if (value instanceof Integer intValue) {
+            writeVarInt(LITERAL_INT);
+            out.writeInt(intValue);
+        } else if (value instanceof Double doubleValue) {
+            writeVarInt(LITERAL_DOUBLE);
+            out.writeDouble(doubleValue);
+        } else if (value instanceof Boolean boolValue) {
+            writeVarInt(LITERAL_BOOL);
+            out.writeBoolean(boolValue);
+        } else if (value instanceof Character charValue) {
+            writeVarInt(LITERAL_CHAR);
+            out.writeChar(charValue);
+        } else if (value instanceof String stringValue) {
+            writeVarInt(LITERAL_STRING);
+            writeString(stringValue);
+        } else {
+            throw new CompiledProgramException("Cannot write literal of type " + value.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Writes the reference to a handle object and returns true if it is new and its definition has to follow.
+     */
+    private boolean writeReference(Object value) throws IOException {
+        if (value == null) {
+            writeVarInt(REFERENCE_NULL);
+            return false;
+        }
+
+        Integer handle = handles.get(value);
+        if (handle != null) {
+            writeVarInt(REFERENCE_HANDLE);
+            writeVarInt(handle);
+            return false;
+        }
+
+        handles.put(value, handles.size());
+        writeVarInt(REFERENCE_NEW);
+        return true;
+    }
+
+    private void writeString(String value) throws IOException {
+        writeVarInt(value == null ? 0 : strings.computeIfAbsent(value, key -> strings.size()) + 1);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        writeVarInt(out, value);
+    }
+
+    private static void writeVarInt(DataOutputStream stream, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            stream.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        stream.writeByte(value);
+    }
+}
@@ -1,22 +1,74 @@
 package io.ra6.zephyr.compiling;
 
+import io.ra6.zephyr.codeanalysis.binding.Binder;
+import io.ra6.zephyr.codeanalysis.binding.BoundProgram;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.syntax.SyntaxTree;
 import io.ra6.zephyr.library.ZephyrLibrary;
 import io.ra6.zephyr.library.ZephyrLibraryMetadata;
+import io.ra6.zephyr.sourcefile.SourceText;
 import io.ra6.zephyr.writer.DiagnosticWriter;
 import lombok.experimental.ExtensionMethod;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compiles a program and all of its imports into a single file that can be loaded without lexing,
+ * parsing and binding the sources again.
+ */
 @ExtensionMethod({DiagnosticWriter.class})
 public class Compiler {
-    @SuppressWarnings({"unused", "FieldCanBeLocal"})
+    public static final String COMPILED_EXTENSION = CompiledProgramFormat.EXTENSION;
+
     private final ZephyrLibrary standardLibrary;
 
     public Compiler(String standardLibraryPath) {
         this.standardLibrary = new ZephyrLibrary(new ZephyrLibraryMetadata("Standard Library", "std", standardLibraryPath, "0.0.1", "rasix", ""));
     }
 
-    public void compile(String inputPath, String outputPath, int flags) {
-        throw new RuntimeException("Not implemented yet");
+    /**
+     * Binds the program and writes it to the output path. Diagnostics are printed and nothing is written if
+     * the program has errors.
+     *
+     * @return true if the program was written
+     */
+    public boolean compile(String inputPath, String outputPath, int flags) throws IOException {
+        SyntaxTree syntaxTree = SyntaxTree.parse(SourceText.fromFile(inputPath));
+        Binder binder = new Binder(syntaxTree, standardLibrary);
+        BoundProgram program = binder.bindProgram();
+
+        if (binder.getDiagnostics().hasErrors()) {
+            System.out.printDiagnostics(binder.getDiagnostics());
+            return false;
+        }
+
+        Files.write(Path.of(outputPath), write(program.getProgramScope()));
+        return true;
+    }
+
+    public static byte[] write(BoundProgramScope program) {
+        try {
+            return new CompiledProgramWriter().write(program);
+        } catch (IOException e) {
+            throw new CompiledProgramException("Cannot write program " + program.getName(), e);
+        }
     }
 
+    public static BoundProgramScope read(byte[] bytes) {
+        try {
+            return new CompiledProgramReader(bytes).read();
+        } catch (IOException e) {
+            throw new CompiledProgramException("Cannot read compiled program", e);
+        }
+    }
 
+    public static BoundProgramScope load(String inputPath) throws IOException {
+        return read(Files.readAllBytes(Path.of(inputPath)));
+    }
+
+    public static boolean isCompiledProgram(String path) {
+        return path.endsWith(COMPILED_EXTENSION);
+    }
 }
@@ -124,6 +124,12 @@ public final class DiagnosticBag {
         reportError(location, message, hint);
     }
 
+    public void reportImportCycle(TextLocation location, String cycle) {
+        String message = "Import cycle detected: %s".formatted(cycle);
+        String hint = "Move the types both programs need into a separate file.";
+        reportError(location, message, hint);
+    }
+
     public void reportTodoFeature(TextLocation location, String feature) {
         String message = "Feature '%s' is not yet implemented.".formatted(feature);
         reportWarning(location, message);
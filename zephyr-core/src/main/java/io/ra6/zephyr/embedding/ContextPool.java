@@ -0,0 +1,35 @@
+package io.ra6.zephyr.embedding;
+
+import io.ra6.zephyr.runtime.ExecutionContext;
+import io.ra6.zephyr.runtime.Runtime;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Keeps idle execution contexts of a runtime, so calls reuse their call stacks and inline caches. Callers never
+ * wait for a context, a new one is created if none is idle and contexts that do not fit are dropped.
+ */
+class ContextPool {
+    private final Runtime runtime;
+    private final ArrayBlockingQueue<ExecutionContext> idle;
+
+    ContextPool(Runtime runtime, int size) {
+        if (size < 1) {
+            throw new ZephyrException("Context pool size must be positive, got " + size);
+        }
+        this.runtime = runtime;
+        this.idle = new ArrayBlockingQueue<>(size);
+    }
+
+    ExecutionContext acquire() {
+        ExecutionContext context = idle.poll();
+        return context != null ? context : runtime.createContext();
+    }
+
+    void release(ExecutionContext context) {
+        // a call that failed may have left frames behind, such a context is not reused
+        if (context.getCallStack().isEmpty()) {
+            idle.offer(context);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package io.ra6.zephyr.embedding;
+
+import io.ra6.zephyr.codeanalysis.binding.Binder;
+import io.ra6.zephyr.codeanalysis.binding.Visibility;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.symbols.ExportSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.FunctionSymbol;
+import io.ra6.zephyr.codeanalysis.syntax.SyntaxTree;
+import io.ra6.zephyr.compiling.Compiler;
+import io.ra6.zephyr.diagnostic.Diagnostic;
+import io.ra6.zephyr.library.ZephyrLibrary;
+import io.ra6.zephyr.library.ZephyrLibraryMetadata;
+import io.ra6.zephyr.runtime.ExecutionBudget;
+import io.ra6.zephyr.runtime.ExecutionContext;
+import io.ra6.zephyr.runtime.ExecutionEngine;
+import io.ra6.zephyr.runtime.RegisteredProgram;
+import io.ra6.zephyr.runtime.Runtime;
+import io.ra6.zephyr.runtime.RuntimeType;
+import io.ra6.zephyr.runtime.VariableTableStack;
+import io.ra6.zephyr.sourcefile.SourceText;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the exported shared functions of a program from Java. The program is registered and linked once, calls go
+ * through {@link ZephyrFunction} handles and are served by a pool of execution contexts, so an engine can be called
+ * by many threads at once.
+ */
+public class ZephyrEngine {
+    public static final int DEFAULT_POOL_SIZE = java.lang.Runtime.getRuntime().availableProcessors();
+
+    @Getter
+    private final Runtime runtime;
+    @Getter
+    private final RegisteredProgram program;
+    private final ContextPool contexts;
+
+    public ZephyrEngine(BoundProgramScope program, ExecutionEngine engine) {
+        this(program, engine, VariableTableStack.DEFAULT_MAX_DEPTH, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Creates an engine whose calls are limited to the given call depth. Only the interpreter counts the depth and
+     * runs calls in tail position in the frame of the caller, the other engines push a Java frame for every call and
+     * throw a {@link io.ra6.zephyr.runtime.CallStackOverflowException} when the Java stack overflows.
+     */
+    public ZephyrEngine(BoundProgramScope program, ExecutionEngine engine, int maxCallDepth, int poolSize) {
+        this(program, engine, maxCallDepth, poolSize, ExecutionBudget.UNLIMITED, ExecutionBudget.UNLIMITED);
+    }
+
+    /**
+     * Creates an engine whose calls each get a budget of steps and allocations. A call exceeding its budget throws
+     * a {@link io.ra6.zephyr.runtime.BudgetExceededException}.
+     */
+    public ZephyrEngine(BoundProgramScope program, ExecutionEngine engine, int maxCallDepth, int poolSize, long stepLimit, long allocationLimit) {
+        this.runtime = new Runtime();
+        runtime.setEngine(engine);
+        runtime.setMaxCallDepth(maxCallDepth);
+        runtime.setStepLimit(stepLimit);
+        runtime.setAllocationLimit(allocationLimit);
+        runtime.registerProgram(program);
+        runtime.link();
+        this.program = runtime.getProgram(program.getName());
+        runtime.setMainProgram(this.program);
+        this.contexts = new ContextPool(runtime, poolSize);
+    }
+
+    /**
+     * Loads a source file or a compiled program and links it.
+     */
+    public static ZephyrEngine load(String path, String standardLibraryPath, ExecutionEngine engine) throws IOException {
+        BoundProgramScope program = Compiler.isCompiledProgram(path) ? Compiler.load(path) : bind(path, standardLibraryPath);
+        return new ZephyrEngine(program, engine);
+    }
+
+    /**
+     * Binds a source file against the standard library.
+     *
+     * @throws ZephyrException with the diagnostics if the program has errors
+     */
+    public static BoundProgramScope bind(String sourcePath, String standardLibraryPath) throws IOException {
+        if (standardLibraryPath == null) {
+            throw new ZephyrException("Standard library path not specified");
+        }
+
+        ZephyrLibrary standardLibrary = new ZephyrLibrary(new ZephyrLibraryMetadata("Standard Library", "std", standardLibraryPath, "0.0.1", "rasix", ""));
+        Binder binder = new Binder(SyntaxTree.parse(SourceText.fromFile(sourcePath)), standardLibrary);
+        BoundProgramScope program = binder.bindProgram().getProgramScope();
+
+        if (binder.getDiagnostics().hasErrors()) {
+            List<Diagnostic> errors = binder.getDiagnostics().asList().stream().filter(Diagnostic::isError).toList();
+            String messages = errors.stream().map(Diagnostic::getMessage).collect(Collectors.joining(System.lineSeparator()));
+            throw new ZephyrException("Cannot bind program " + sourcePath + ":" + System.lineSeparator() + messages, errors);
+        }
+
+        return program;
+    }
+
+    /**
+     * Resolves a public shared function of an exported type. The handle can be kept and called any number of times.
+     */
+    public ZephyrFunction getFunction(String typeName, String functionName) {
+        BoundProgramScope scope = program.getProgram();
+        ExportSymbol export = scope.getExports().stream()
+                .filter(e -> e.getName().equals(typeName))
+                .findFirst()
+                .orElseThrow(() -> new ZephyrException("Type " + typeName + " is not exported by program " + scope.getName()));
+
+        RuntimeType type = runtime.getRuntimeType(scope, export.getType());
+        if (type == null) {
+            throw new ZephyrException("Type " + typeName + " is not declared in program " + scope.getName());
+        }
+
+        FunctionSymbol function = type.getType().getFunctions().stream()
+                .filter(f -> f.getName().equals(functionName) && f.isShared())
+                .findFirst()
+                .orElseThrow(() -> new ZephyrException("Shared function " + functionName + " not found in type " + typeName));
+
+        if (function.getVisibility() != Visibility.PUBLIC) {
+            throw new ZephyrException("Function " + typeName + "." + functionName + " is not public");
+        }
+
+        return new ZephyrFunction(this, type, function);
+    }
+
+    Object invoke(RuntimeType type, FunctionSymbol function, Object[] arguments) {
+        ExecutionContext context = contexts.acquire();
+        try {
+            return context.invoke(program, type, function, arguments);
+        } finally {
+            contexts.release(context);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.ra6.zephyr.embedding;
+
+import io.ra6.zephyr.diagnostic.Diagnostic;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Thrown if a program cannot be loaded into a {@link ZephyrEngine} or a function of it cannot be called.
+ */
+public class ZephyrException extends RuntimeException {
+    @Getter
+    private final List<Diagnostic> diagnostics;
+
+    public ZephyrException(String message) {
+        this(message, List.of());
+    }
+
+    public ZephyrException(String message, List<Diagnostic> diagnostics) {
+        super(message);
+        this.diagnostics = diagnostics;
+    }
+}
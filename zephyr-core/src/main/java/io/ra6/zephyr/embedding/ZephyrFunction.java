@@ -0,0 +1,74 @@
+package io.ra6.zephyr.embedding;
+
+import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.codeanalysis.symbols.ArrayTypeSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.FunctionSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+import io.ra6.zephyr.runtime.ArrayKind;
+import io.ra6.zephyr.runtime.RuntimeType;
+import lombok.Getter;
+
+/**
+ * A resolved shared function of a {@link ZephyrEngine}. Arguments are Java values: int, double, char and bool are
+ * passed as their boxed types, str as {@link String} and arrays of int, double, char and bool as the matching
+ * primitive arrays. Values of other types are passed as they are. The result is returned the same way, or null
+ * for void functions.
+ */
+public class ZephyrFunction {
+    private final ZephyrEngine engine;
+    @Getter
+    private final RuntimeType type;
+    @Getter
+    private final FunctionSymbol function;
+    private final TypeSymbol[] parameterTypes;
+
+    ZephyrFunction(ZephyrEngine engine, RuntimeType type, FunctionSymbol function) {
+        this.engine = engine;
+        this.type = type;
+        this.function = function;
+        this.parameterTypes = function.getParameters().stream().map(p -> p.getType()).toArray(TypeSymbol[]::new);
+    }
+
+    public Object call(Object... arguments) {
+        if (arguments.length != parameterTypes.length) {
+            throw new ZephyrException("Function " + this + " takes " + parameterTypes.length + " arguments, got " + arguments.length);
+        }
+
+        Object[] values = new Object[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            values[i] = convert(i, arguments[i]);
+        }
+
+        return engine.invoke(type, function, values);
+    }
+
+    private Object convert(int index, Object argument) {
+        TypeSymbol parameterType = parameterTypes[index];
+
+        if (parameterType.equals(Types.INT)) {
+            if (argument instanceof Integer) return argument;
+            if (argument instanceof Short || argument instanceof Byte) return ((Number) argument).intValue();
+        } else if (parameterType.equals(Types.DOUBLE)) {
+            if (argument instanceof Double) return argument;
+            if (argument instanceof Number number && !(argument instanceof Long)) return number.doubleValue();
+        } else if (parameterType.equals(Types.CHAR)) {
+            if (argument instanceof Character) return argument;
+        } else if (parameterType.equals(Types.BOOL)) {
+            if (argument instanceof Boolean) return argument;
+        } else if (parameterType.equals(Types.STRING)) {
+            if (argument instanceof String) return argument;
+        } else if (parameterType instanceof ArrayTypeSymbol) {
+            if (argument == null || ArrayKind.ofArray(argument) == ArrayKind.ofElements(parameterType)) return argument;
+        } else {
+            return argument;
+        }
+
+        String actual = argument == null ? "null" : argument.getClass().getSimpleName();
+        throw new ZephyrException("Argument " + (index + 1) + " of " + this + " must be " + parameterType.getName() + ", got " + actual);
+    }
+
+    @Override
+    public String toString() {
+        return type.getName() + "." + function.getName();
+    }
+}
@@ -1,4 +1,26 @@
 package io.ra6.zephyr.emitting;
 
-public abstract class Emitter {
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public abstract class Emitter<TOutput> {
+    public abstract TOutput emit(BoundProgramScope program);
+
+    // the program followed by every program it imports, each program only once
+    protected static List<BoundProgramScope> collectPrograms(BoundProgramScope program) {
+        List<BoundProgramScope> programs = new ArrayList<>();
+        collectPrograms(program, programs);
+        return programs;
+    }
+
+    private static void collectPrograms(BoundProgramScope program, List<BoundProgramScope> programs) {
+        if (programs.stream().anyMatch(p -> p.getName().equals(program.getName()))) {
+            return;
+        }
+
+        programs.add(program);
+        program.getImportedPrograms().forEach(p -> collectPrograms(p, programs));
+    }
 }
@@ -0,0 +1,10 @@
+package io.ra6.zephyr.emitting;
+
+/**
+ * Thrown if a program uses a feature the emitter cannot translate.
+ */
+public class EmitterException extends RuntimeException {
+    public EmitterException(String message) {
+        super(message);
+    }
+}
@@ -1,4 +1,15 @@
 package io.ra6.zephyr.emitting;
 
-public class JavaBytecodeEmitter extends Emitter {
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.emitting.jvm.JvmCompiler;
+import io.ra6.zephyr.emitting.jvm.JvmProgram;
+
+/**
+ * Emits the types of a program and its imports as JVM classes, loaded into a class loader of their own.
+ */
+public class JavaBytecodeEmitter extends Emitter<JvmProgram> {
+    @Override
+    public JvmProgram emit(BoundProgramScope program) {
+        return new JvmCompiler(collectPrograms(program)).compile();
+    }
 }
@@ -1,4 +1,19 @@
 package io.ra6.zephyr.emitting;
 
-public class WasmEmitter extends Emitter {
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.emitting.wasm.WasmCompiler;
+import io.ra6.zephyr.emitting.wasm.WasmValidator;
+
+/**
+ * Emits a program and its imports as a binary WebAssembly module, see {@link WasmCompiler} for what the
+ * module imports and exports. Every module is validated before it is returned, so a module the compiler got
+ * wrong fails with an {@link EmitterException} here instead of in the engine that loads it.
+ */
+public class WasmEmitter extends Emitter<byte[]> {
+    @Override
+    public byte[] emit(BoundProgramScope program) {
+        byte[] module = new WasmCompiler(collectPrograms(program)).compile();
+        WasmValidator.validate(module);
+        return module;
+    }
 }
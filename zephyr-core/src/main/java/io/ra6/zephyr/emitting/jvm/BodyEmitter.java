@@ -0,0 +1,946 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import io.ra6.zephyr.builtin.*;
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.BoundNodeKind;
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.binding.BoundTypeCheckExpression;
+import io.ra6.zephyr.codeanalysis.binding.expressions.*;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.*;
+import io.ra6.zephyr.codeanalysis.symbols.*;
+import io.ra6.zephyr.emitting.EmitterException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.ra6.zephyr.emitting.jvm.Descriptors.OBJECT;
+import static io.ra6.zephyr.emitting.jvm.Descriptors.STRING;
+import static io.ra6.zephyr.emitting.jvm.Opcodes.*;
+
+/**
+ * Emits the code of a single lowered body. Every expression leaves its value on the operand stack and
+ * reports the descriptor of that value, the caller converts it to the type it needs.
+ */
+class BodyEmitter {
+    static final String LINKAGE = JvmLinkage.class.getName().replace('.', '/');
+
+    private final JvmCompiler compiler;
+    private final JvmClass owner;
+    private final Code code;
+    private final boolean isStatic;
+    private final String returnDescriptor;
+
+    // parameters keep the local the calling convention put them in, other variables get one on first use
+    private final HashMap<Integer, Integer> parameterLocals = new HashMap<>();
+    private final HashMap<Integer, String> parameterTypes = new HashMap<>();
+    private final HashMap<String, Integer> locals = new HashMap<>();
+    private int nextLocal;
+
+    BodyEmitter(JvmCompiler compiler, JvmClass owner, Code code, boolean isStatic, String methodDescriptor) {
+        this.compiler = compiler;
+        this.owner = owner;
+        this.code = code;
+        this.isStatic = isStatic;
+        this.returnDescriptor = Descriptors.getReturnType(methodDescriptor);
+
+        int local = isStatic ? 0 : 1;
+        List<String> parameters = Descriptors.getArgumentTypes(methodDescriptor);
+        for (int i = 0; i < parameters.size(); i++) {
+            parameterLocals.put(VariableSymbol.getParameterSlot(i), local);
+            parameterTypes.put(VariableSymbol.getParameterSlot(i), parameters.get(i));
+            local += Descriptors.getSize(parameters.get(i));
+        }
+        nextLocal = local;
+    }
+
+    void emitBody(BoundBlockStatement body) {
+        List<BoundStatement> statements = body.getStatements();
+
+        // every variable starts out with its default value, so the verifier sees it assigned on every path
+        for (BoundStatement statement : statements) {
+            if (statement instanceof BoundVariableDeclaration declaration) {
+                VariableSymbol variable = declaration.getVariableSymbol();
+                String descriptor = getVariableType(variable);
+                pushDefault(descriptor);
+                code.store(Descriptors.getStoreOpcode(descriptor), getLocal(variable));
+            }
+        }
+
+        Label[] labels = new Label[statements.size() + 1];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = new Label();
+        }
+
+        for (int i = 0; i < statements.size(); i++) {
+            code.mark(labels[i]);
+            emitStatement(statements.get(i), labels);
+        }
+
+        code.mark(labels[statements.size()]);
+        pushDefault(returnDescriptor);
+        code.op(Descriptors.getReturnOpcode(returnDescriptor));
+    }
+
+    private void emitStatement(BoundStatement statement, Label[] labels) {
+        switch (statement.getKind()) {
+            case VARIABLE_DECLARATION -> {
+                BoundVariableDeclaration declaration = (BoundVariableDeclaration) statement;
+                VariableSymbol variable = declaration.getVariableSymbol();
+                String descriptor = getVariableType(variable);
+                emitValue(declaration.getInitializer(), descriptor);
+                code.store(Descriptors.getStoreOpcode(descriptor), getLocal(variable));
+            }
+            case EXPRESSION_STATEMENT -> pop(emitExpression(((BoundExpressionStatement) statement).getExpression()));
+            case GOTO_STATEMENT -> {
+                BoundGotoStatement gotoStatement = (BoundGotoStatement) statement;
+                if (gotoStatement.getTargetIndex() < 0) {
+                    emitFail("Jump target '%s' was not resolved".formatted(gotoStatement.getLabel().getName()));
+                    return;
+                }
+
+                code.jump(GOTO, labels[gotoStatement.getTargetIndex()]);
+            }
+            case CONDITIONAL_GOTO_STATEMENT -> {
+                BoundConditionalGotoStatement conditionalGoto = (BoundConditionalGotoStatement) statement;
+                if (conditionalGoto.getTargetIndex() < 0) {
+                    emitFail("Jump target '%s' was not resolved".formatted(conditionalGoto.getLabel().getName()));
+                    return;
+                }
+
+                emitCondition(conditionalGoto.getCondition(), conditionalGoto.jumpIfTrue(), labels[conditionalGoto.getTargetIndex()]);
+            }
+            case LABEL_STATEMENT -> {
+            }
+            case RETURN_STATEMENT -> {
+                BoundExpression expression = ((BoundReturnStatement) statement).getExpression();
+                if (expression == null) {
+                    pushDefault(returnDescriptor);
+                } else if (returnDescriptor.equals("V")) {
+                    pop(emitExpression(expression));
+                } else {
+                    emitValue(expression, returnDescriptor);
+                }
+                code.op(Descriptors.getReturnOpcode(returnDescriptor));
+            }
+            default -> throw new EmitterException("Unexpected statement kind: " + statement.getKind());
+        }
+    }
+
+    /**
+     * Emits an expression and converts its value to the given descriptor.
+     */
+    void emitValue(BoundExpression expression, String descriptor) {
+        if (expression instanceof BoundArrayLiteralExpression arrayLiteral && descriptor.startsWith("[")) {
+            emitArrayLiteralExpression(arrayLiteral, descriptor);
+            return;
+        }
+
+        coerce(emitExpression(expression), descriptor);
+    }
+
+    private String emitExpression(BoundExpression expression) {
+        return switch (expression.getKind()) {
+            case LITERAL_EXPRESSION -> emitLiteral(((BoundLiteralExpression) expression).getValue());
+            case VARIABLE_EXPRESSION -> loadVariable(((BoundVariableExpression) expression).getVariable());
+            case INSTANCE_CREATION_EXPRESSION ->
+                    emitInstanceCreationExpression((BoundInstanceCreationExpression) expression);
+            case ASSIGNMENT_EXPRESSION -> emitAssignmentExpression((BoundAssignmentExpression) expression);
+            case THIS_EXPRESSION -> {
+                if (isStatic) {
+                    throw new EmitterException("Cannot use 'this' in a shared context");
+                }
+                code.load(ALOAD, 0);
+                yield owner.getDescriptor();
+            }
+            case ARRAY_LITERAL_EXPRESSION -> {
+                BoundArrayLiteralExpression arrayLiteral = (BoundArrayLiteralExpression) expression;
+                yield emitArrayLiteralExpression(arrayLiteral, compiler.getDescriptor(arrayLiteral.getType()));
+            }
+            case ARRAY_CREATION_EXPRESSION ->
+                    emitArrayCreationExpression((BoundArrayCreationExpression) expression);
+            case FUNCTION_CALL_EXPRESSION ->
+                    emitFunctionCallExpression((BoundFunctionCallExpression) expression);
+            case BINARY_EXPRESSION -> emitBinaryExpression((BoundBinaryExpression) expression);
+            case UNARY_EXPRESSION -> emitUnaryExpression((BoundUnaryExpression) expression);
+            case MEMBER_ACCESS_EXPRESSION -> {
+                BoundMemberAccessExpression memberAccess = (BoundMemberAccessExpression) expression;
+                if (!(memberAccess.getMember() instanceof FieldSymbol field)) {
+                    throw new EmitterException("Unexpected member access expression: " + memberAccess.getMember().getKind());
+                }
+                yield emitFieldAccess(memberAccess.getTarget(), field);
+            }
+            case FIELD_ACCESS_EXPRESSION -> {
+                BoundFieldAccessExpression fieldAccess = (BoundFieldAccessExpression) expression;
+                yield emitFieldAccess(fieldAccess.getTarget(), fieldAccess.getField());
+            }
+            case ARRAY_ACCESS_EXPRESSION -> {
+                BoundArrayAccessExpression arrayAccess = (BoundArrayAccessExpression) expression;
+                String element = getElementType(emitExpression(arrayAccess.getTarget()));
+                emitValue(arrayAccess.getIndex(), "I");
+                code.op(Descriptors.getArrayLoadOpcode(element));
+                yield element;
+            }
+            case CONVERSION_EXPRESSION -> {
+                BoundConversionExpression conversion = (BoundConversionExpression) expression;
+                String descriptor = compiler.getDescriptor(conversion.getType());
+                emitValue(conversion.getExpression(), descriptor);
+                yield descriptor;
+            }
+            case CONDITIONAL_EXPRESSION -> emitConditionalExpression((BoundConditionalExpression) expression);
+            case TYPE_CHECK_EXPRESSION -> emitTypeCheckExpression((BoundTypeCheckExpression) expression);
+            default -> throw new EmitterException("Unsupported expression: " + expression.getKind());
+        };
+    }
+
+    private String emitLiteral(Object value) {
+        if (value instanceof Integer intValue) {
+            code.pushInt(intValue);
+            return "I";
+        }
+        if (value instanceof Double doubleValue) {
+            code.pushDouble(doubleValue);
+            return "D";
+        }
+        if (value instanceof Boolean boolValue) {
+            code.pushInt(boolValue ? 1 : 0);
+            return "Z";
+        }
+        if (value instanceof Character charValue) {
+            code.pushInt(charValue);
+            return "C";
+        }
+        if (value instanceof String stringValue) {
+            code.pushString(stringValue);
+            return STRING;
+        }
+        if (value == null) {
+            code.op(ACONST_NULL);
+            return OBJECT;
+        }
+        throw new EmitterException("Unsupported literal: " + value.getClass().getSimpleName());
+    }
+
+    private String emitAssignmentExpression(BoundAssignmentExpression expression) {
+        BoundExpression target = expression.getTarget();
+
+        if (target instanceof BoundVariableExpression variableAccess) {
+            VariableSymbol variable = variableAccess.getVariable();
+            String descriptor = getVariableType(variable);
+            emitValue(expression.getExpression(), descriptor);
+            dup(descriptor);
+            storeVariable(variable);
+            return descriptor;
+        }
+
+        if (target instanceof BoundMemberAccessExpression memberAccess) {
+            if (!(memberAccess.getMember() instanceof FieldSymbol fieldSymbol)) {
+                throw new EmitterException("Invalid assignment target: " + memberAccess.getMember().getKind());
+            }
+
+            JvmField field = resolveField(memberAccess.getTarget().getType(), fieldSymbol);
+            if (field.isStatic()) {
+                discardTarget(memberAccess.getTarget());
+                emitValue(expression.getExpression(), field.descriptor());
+                dup(field.descriptor());
+                code.field(PUTSTATIC, field.owner(), field.name(), field.descriptor());
+            } else {
+                emitValue(memberAccess.getTarget(), "L" + field.owner() + ";");
+                emitValue(expression.getExpression(), field.descriptor());
+                code.op(Descriptors.getSize(field.descriptor()) == 2 ? DUP2_X1 : DUP_X1);
+                code.field(PUTFIELD, field.owner(), field.name(), field.descriptor());
+            }
+            return field.descriptor();
+        }
+
+        if (target instanceof BoundArrayAccessExpression arrayAccess) {
+            String element = getElementType(emitExpression(arrayAccess.getTarget()));
+            emitValue(arrayAccess.getIndex(), "I");
+            emitValue(expression.getExpression(), element);
+            code.op(Descriptors.getSize(element) == 2 ? DUP2_X2 : DUP_X2);
+            code.op(Descriptors.getArrayStoreOpcode(element));
+            return element;
+        }
+
+        throw new EmitterException("Invalid assignment target: " + target.getKind());
+    }
+
+    private String emitFieldAccess(BoundExpression target, FieldSymbol fieldSymbol) {
+        if (target.getType() instanceof ArrayTypeSymbol && fieldSymbol.getName().equals("length")) {
+            getElementType(emitExpression(target));
+            code.op(ARRAYLENGTH);
+            return "I";
+        }
+
+        JvmField field = resolveField(target.getType(), fieldSymbol);
+        if (field.isStatic()) {
+            discardTarget(target);
+            code.field(GETSTATIC, field.owner(), field.name(), field.descriptor());
+        } else {
+            emitValue(target, "L" + field.owner() + ";");
+            code.field(GETFIELD, field.owner(), field.name(), field.descriptor());
+        }
+        return field.descriptor();
+    }
+
+    private JvmField resolveField(TypeSymbol type, FieldSymbol fieldSymbol) {
+        JvmClass jvmClass = compiler.getJvmClass(type);
+        JvmField field = jvmClass == null ? null : jvmClass.getField(fieldSymbol.getName());
+        if (field == null) {
+            throw new EmitterException("Cannot access field '%s' of type '%s'".formatted(fieldSymbol.getName(), type == null ? null : type.getName()));
+        }
+        return field;
+    }
+
+    // types are not values on the JVM, the target of a shared member is only evaluated for its side effects
+    private void discardTarget(BoundExpression target) {
+        if (target.getKind() != BoundNodeKind.TYPE_EXPRESSION) {
+            pop(emitExpression(target));
+        }
+    }
+
+    private String emitArrayLiteralExpression(BoundArrayLiteralExpression expression, String descriptor) {
+        String element = getElementType(descriptor);
+        List<BoundExpression> elements = expression.getElements();
+
+        code.pushInt(elements.size());
+        newArray(element);
+        for (int i = 0; i < elements.size(); i++) {
+            code.op(DUP);
+            code.pushInt(i);
+            emitValue(elements.get(i), element);
+            code.op(Descriptors.getArrayStoreOpcode(element));
+        }
+        return descriptor;
+    }
+
+    private String emitArrayCreationExpression(BoundArrayCreationExpression expression) {
+        String descriptor = compiler.getDescriptor(expression.getType());
+        List<Map.Entry<BoundExpression, BoundExpression>> dimensions = new ArrayList<>(expression.getDimensions().entrySet());
+
+        if (dimensions.size() == 1) {
+            String element = getElementType(descriptor);
+            BoundExpression initializer = dimensions.get(0).getValue();
+
+            emitValue(dimensions.get(0).getKey(), "I");
+            newArray(element);
+            if (initializer != null) {
+                String fillType = Descriptors.isPrimitive(element) ? element : OBJECT;
+                code.op(DUP);
+                emitValue(initializer, element);
+                code.invoke(INVOKESTATIC, "java/util/Arrays", "fill", "([" + fillType + fillType + ")V");
+            }
+            return descriptor;
+        }
+
+        code.pushClass(descriptor);
+        code.pushInt(dimensions.size());
+        code.newArray(T_INT);
+        for (int i = 0; i < dimensions.size(); i++) {
+            code.op(DUP);
+            code.pushInt(i);
+            emitValue(dimensions.get(i).getKey(), "I");
+            code.op(IASTORE);
+
+            // only the innermost initializer is used, the others are evaluated for their side effects
+            BoundExpression initializer = dimensions.get(i).getValue();
+            if (initializer != null && i < dimensions.size() - 1) {
+                pop(emitExpression(initializer));
+            }
+        }
+
+        BoundExpression initializer = dimensions.get(dimensions.size() - 1).getValue();
+        if (initializer == null) {
+            code.op(ACONST_NULL);
+        } else {
+            emitValue(initializer, OBJECT);
+        }
+
+        code.invoke(INVOKESTATIC, LINKAGE, "newArray", "(Ljava/lang/Class;[ILjava/lang/Object;)Ljava/lang/Object;");
+        code.type(CHECKCAST, descriptor);
+        return descriptor;
+    }
+
+    private String emitInstanceCreationExpression(BoundInstanceCreationExpression expression) {
+        JvmClass jvmClass = compiler.getJvmClass(expression.getType());
+        JvmMethod constructor = jvmClass == null ? null : jvmClass.getConstructor(expression.getArguments().size());
+        if (constructor == null) {
+            throw new EmitterException("Cannot create an instance of type '%s'".formatted(expression.getType().getName()));
+        }
+
+        code.type(NEW, jvmClass.getInternalName());
+        code.op(DUP);
+        emitArguments(expression.getArguments(), constructor.descriptor());
+        code.invoke(INVOKESPECIAL, constructor.owner(), constructor.name(), constructor.descriptor());
+        return jvmClass.getDescriptor();
+    }
+
+    private void emitArguments(List<BoundExpression> arguments, String methodDescriptor) {
+        List<String> parameters = Descriptors.getArgumentTypes(methodDescriptor);
+        for (int i = 0; i < arguments.size(); i++) {
+            emitValue(arguments.get(i), parameters.get(i));
+        }
+    }
+
+    private String emitFunctionCallExpression(BoundFunctionCallExpression expression) {
+        BoundExpression callee = expression.getCallee();
+        FunctionSymbol function = expression.getFunction();
+        List<BoundExpression> arguments = expression.getArguments();
+        TypeSymbol calleeType = callee.getType();
+
+        JvmClass jvmClass = compiler.getJvmClass(calleeType);
+        if (jvmClass != null) {
+            JvmMethod method = jvmClass.getFunction(function.getName(), function.isShared(), arguments.size());
+            if (method == null) {
+                throw new EmitterException("Cannot find function '%s' of type '%s'".formatted(function.getName(), calleeType.getName()));
+            }
+
+            if (method.isStatic()) {
+                discardTarget(callee);
+            } else {
+                emitValue(callee, jvmClass.getDescriptor());
+            }
+
+            emitArguments(arguments, method.descriptor());
+            code.invoke(method.isStatic() ? INVOKESTATIC : INVOKEVIRTUAL, method.owner(), method.name(), method.descriptor());
+            return Descriptors.getReturnType(method.descriptor());
+        }
+
+        if (calleeType instanceof ArrayTypeSymbol) {
+            if (!function.getName().equals("copy") && !function.getName().equals("clone")) {
+                throw new EmitterException("Cannot call function '%s' on array".formatted(function.getName()));
+            }
+
+            String descriptor = getElementType(emitExpression(callee));
+            String arrayDescriptor = "[" + descriptor;
+            code.invoke(INVOKEVIRTUAL, arrayDescriptor, "clone", "()Ljava/lang/Object;");
+            code.type(CHECKCAST, arrayDescriptor);
+            return arrayDescriptor;
+        }
+
+        // values of generic types can hold anything, only the functions every value has can be called on them
+        TypeSymbol builtinType = calleeType == null || calleeType.isGeneric() ? Types.ANY : calleeType;
+
+        String direct = emitDirectBuiltinCall(builtinType, function, callee, arguments);
+        if (direct != null) {
+            return direct;
+        }
+
+        BoundTypeScope scope = compiler.findTypeScope(builtinType);
+        InternalSite site = getInternalSite(scope.getFunctionBody(function), "function '%s' of type '%s'".formatted(function.getName(), builtinType.getName()));
+        return emitInternalCall(site, callee, arguments, function.getType());
+    }
+
+    // a few builtin functions map directly onto JVM methods with the same behavior
+    private String emitDirectBuiltinCall(TypeSymbol type, FunctionSymbol function, BoundExpression callee, List<BoundExpression> arguments) {
+        if (function.isShared()) {
+            return null;
+        }
+
+        if (type.equals(Types.STRING)) {
+            if (function.getName().equals("length") && arguments.isEmpty()) {
+                emitValue(callee, STRING);
+                code.invoke(INVOKEVIRTUAL, "java/lang/String", "length", "()I");
+                return "I";
+            }
+
+            if (function.getName().equals("charAt") && arguments.size() == 1) {
+                emitValue(callee, STRING);
+                emitValue(arguments.get(0), "I");
+                code.invoke(INVOKEVIRTUAL, "java/lang/String", "charAt", "(I)C");
+                return "C";
+            }
+        }
+
+        if (function.getName().equals("toString") && arguments.isEmpty()
+                && (type.equals(Types.INT) || type.equals(Types.DOUBLE) || type.equals(Types.CHAR) || type.equals(Types.BOOL))) {
+            String descriptor = compiler.getDescriptor(type);
+            emitValue(callee, descriptor);
+            code.invoke(INVOKESTATIC, "java/lang/String", "valueOf", "(" + descriptor + ")" + STRING);
+            return STRING;
+        }
+
+        return null;
+    }
+
+    private InternalSite getInternalSite(BoundBlockStatement body, String description) {
+        if (body == null || body.getStatements().size() != 1
+                || !(body.getStatements().get(0) instanceof BoundReturnStatement returnStatement)
+                || !(returnStatement.getExpression() instanceof BoundInternalFunctionExpression internalFunction)) {
+            throw new EmitterException("Cannot call builtin " + description);
+        }
+
+        IFunctionBase function = internalFunction.getFunction();
+        boolean passThis = (function instanceof InternalFunction internal && !internal.isShared())
+                || function instanceof InternalBinaryOperator
+                || function instanceof InternalUnaryOperator;
+        String[] names = function.getParameters().stream().map(ParameterSymbol::getName).toArray(String[]::new);
+
+        return new InternalSite(function.getFunctionBody(), names, passThis);
+    }
+
+    private String emitInternalCall(InternalSite site, BoundExpression thisExpression, List<BoundExpression> arguments, TypeSymbol returnType) {
+        if (arguments.size() != site.parameterNames().length) {
+            throw new EmitterException("Invalid number of arguments for builtin call");
+        }
+
+        code.field(GETSTATIC, owner.getInternalName(), ClassEmitter.SITES_FIELD, ClassEmitter.SITES_DESCRIPTOR);
+        code.pushInt(owner.addSite(site));
+        code.op(AALOAD);
+
+        if (site.passThis()) {
+            emitValue(thisExpression, OBJECT);
+        } else {
+            discardTarget(thisExpression);
+            code.op(ACONST_NULL);
+        }
+
+        code.pushInt(arguments.size());
+        code.type(ANEWARRAY, "java/lang/Object");
+        for (int i = 0; i < arguments.size(); i++) {
+            code.op(DUP);
+            code.pushInt(i);
+            emitValue(arguments.get(i), OBJECT);
+            code.op(AASTORE);
+        }
+
+        code.invoke(INVOKESTATIC, LINKAGE, "invoke", "(Ljava/lang/Object;Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;");
+
+        String descriptor = compiler.getDescriptor(returnType);
+        if (descriptor.equals("V")) {
+            code.op(POP);
+            return "V";
+        }
+
+        coerce(OBJECT, descriptor);
+        return descriptor;
+    }
+
+    private String emitUnaryExpression(BoundUnaryExpression expression) {
+        UnaryIntrinsic intrinsic = expression.getIntrinsic();
+        BoundExpression operand = expression.getOperand();
+
+        if (intrinsic != null) {
+            switch (intrinsic) {
+                case INT_NEGATE -> {
+                    emitValue(operand, "I");
+                    code.op(INEG);
+                }
+                case INT_IDENTITY -> emitValue(operand, "I");
+                case INT_COMPLEMENT -> {
+                    emitValue(operand, "I");
+                    code.pushInt(-1);
+                    code.op(IXOR);
+                }
+                case BOOL_NOT -> {
+                    emitValue(operand, "Z");
+                    code.pushInt(1);
+                    code.op(IXOR);
+                    return "Z";
+                }
+            }
+            return "I";
+        }
+
+        TypeSymbol operandType = operand.getType();
+        JvmClass jvmClass = compiler.getJvmClass(operandType);
+        if (jvmClass != null) {
+            JvmMethod method = jvmClass.getUnaryOperator(expression.getOperator());
+            if (method == null) {
+                throw new EmitterException("No unary operator " + expression.getOperator() + " found for type " + operandType.getName());
+            }
+
+            emitValue(operand, jvmClass.getDescriptor());
+            code.invoke(INVOKEVIRTUAL, method.owner(), method.name(), method.descriptor());
+            return Descriptors.getReturnType(method.descriptor());
+        }
+
+        UnaryOperatorSymbol operator = operandType.getUnaryOperator(expression.getOperator());
+        if (operator == null) {
+            throw new EmitterException("No unary operator " + expression.getOperator() + " found for type " + operandType.getName());
+        }
+
+        BoundTypeScope scope = compiler.findTypeScope(operandType);
+        InternalSite site = getInternalSite(scope.getUnaryOperatorBody(operator), "operator " + operator.getName());
+        return emitInternalCall(site, operand, List.of(), operator.getReturnType());
+    }
+
+    private String emitBinaryExpression(BoundBinaryExpression expression) {
+        BinaryIntrinsic intrinsic = expression.getIntrinsic();
+        if (intrinsic != null) {
+            return emitBinaryIntrinsic(expression, intrinsic);
+        }
+
+        BoundExpression left = expression.getLeft();
+        BoundExpression right = expression.getRight();
+        TypeSymbol leftType = left.getType();
+
+        JvmClass jvmClass = compiler.getJvmClass(leftType);
+        if (jvmClass != null) {
+            JvmMethod method = jvmClass.getBinaryOperator(expression.getOperator(), right.getType());
+            if (method == null) {
+                throw new EmitterException("No binary operator " + expression.getOperator() + " found for types " + leftType.getName() + " and " + right.getType().getName());
+            }
+
+            emitValue(left, jvmClass.getDescriptor());
+            emitArguments(List.of(right), method.descriptor());
+            code.invoke(INVOKEVIRTUAL, method.owner(), method.name(), method.descriptor());
+            return Descriptors.getReturnType(method.descriptor());
+        }
+
+        BinaryOperatorSymbol operator = leftType.getBinaryOperator(expression.getOperator(), right.getType());
+        if (operator == null) {
+            throw new EmitterException("No binary operator " + expression.getOperator() + " found for types " + leftType.getName() + " and " + right.getType().getName());
+        }
+
+        BoundTypeScope scope = compiler.findTypeScope(leftType);
+        InternalSite site = getInternalSite(scope.getBinaryOperatorBody(operator), "operator " + operator.getName());
+        return emitInternalCall(site, left, List.of(right), operator.getReturnType());
+    }
+
+    private String emitBinaryIntrinsic(BoundBinaryExpression expression, BinaryIntrinsic intrinsic) {
+        TypeSymbol leftType = intrinsic.getLeftType();
+        TypeSymbol rightType = intrinsic.getRightType();
+        String operator = intrinsic.getOperator();
+
+        if (intrinsic == BinaryIntrinsic.STRING_CONCAT || intrinsic == BinaryIntrinsic.STRING_CHAR_CONCAT) {
+            emitValue(expression.getLeft(), STRING);
+            if (intrinsic == BinaryIntrinsic.STRING_CHAR_CONCAT) {
+                emitValue(expression.getRight(), "C");
+                code.invoke(INVOKESTATIC, "java/lang/String", "valueOf", "(C)" + STRING);
+            } else {
+                emitValue(expression.getRight(), STRING);
+            }
+            code.invoke(INVOKEVIRTUAL, "java/lang/String", "concat", "(" + STRING + ")" + STRING);
+            return STRING;
+        }
+
+        if (intrinsic == BinaryIntrinsic.STRING_EQUALS || intrinsic == BinaryIntrinsic.STRING_NOT_EQUALS) {
+            emitValue(expression.getLeft(), STRING);
+            emitValue(expression.getRight(), STRING);
+            code.invoke(INVOKEVIRTUAL, "java/lang/String", "equals", "(" + OBJECT + ")Z");
+            if (intrinsic == BinaryIntrinsic.STRING_NOT_EQUALS) {
+                code.pushInt(1);
+                code.op(IXOR);
+            }
+            return "Z";
+        }
+
+        if (isComparison(operator)) {
+            Label isFalse = new Label();
+            Label end = new Label();
+            emitCondition(expression, false, isFalse);
+            code.pushInt(1);
+            code.jump(GOTO, end);
+            code.mark(isFalse);
+            code.pushInt(0);
+            code.mark(end);
+            return "Z";
+        }
+
+        if (leftType.equals(Types.BOOL)) {
+            // both operands are always evaluated, like the builtin operator does it
+            emitValue(expression.getLeft(), "Z");
+            emitValue(expression.getRight(), "Z");
+            code.op(operator.equals("&&") ? IAND : IOR);
+            return "Z";
+        }
+
+        boolean isDouble = leftType.equals(Types.DOUBLE) || rightType.equals(Types.DOUBLE);
+        String operandType = isDouble ? "D" : "I";
+        emitValue(expression.getLeft(), operandType);
+        emitValue(expression.getRight(), operandType);
+        code.op(getArithmeticOpcode(operator, isDouble));
+
+        if (isDouble) {
+            return "D";
+        }
+
+        if (leftType.equals(Types.CHAR) && rightType.equals(Types.INT)) {
+            code.op(I2C);
+            return "C";
+        }
+        return "I";
+    }
+
+    private static int getArithmeticOpcode(String operator, boolean isDouble) {
+        int opcode = switch (operator) {
+            case "+" -> IADD;
+            case "-" -> ISUB;
+            case "*" -> IMUL;
+            case "/" -> IDIV;
+            case "%" -> IREM;
+            case "&" -> IAND;
+            case "|" -> IOR;
+            case "^" -> IXOR;
+            default -> throw new EmitterException("Unsupported operator: " + operator);
+        };
+
+        if (!isDouble) {
+            return opcode;
+        }
+
+        return switch (opcode) {
+            case IADD -> DADD;
+            case ISUB -> DSUB;
+            case IMUL -> DMUL;
+            case IDIV -> DDIV;
+            case IREM -> DREM;
+            default -> throw new EmitterException("Unsupported operator for doubles: " + operator);
+        };
+    }
+
+    private static boolean isComparison(String operator) {
+        return switch (operator) {
+            case "==", "!=", "<", "<=", ">", ">=" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Emits a jump to the target if the condition evaluates to the given value. Comparisons of the
+     * primitive types jump directly on their operands instead of materializing a bool first.
+     */
+    private void emitCondition(BoundExpression condition, boolean jumpIfTrue, Label target) {
+        if (condition instanceof BoundLiteralExpression literal && literal.getValue() instanceof Boolean value) {
+            if (value == jumpIfTrue) {
+                code.jump(GOTO, target);
+            }
+            return;
+        }
+
+        if (condition instanceof BoundUnaryExpression unary && unary.getIntrinsic() == UnaryIntrinsic.BOOL_NOT) {
+            emitCondition(unary.getOperand(), !jumpIfTrue, target);
+            return;
+        }
+
+        if (condition instanceof BoundBinaryExpression binary && binary.getIntrinsic() != null && isComparison(binary.getOperator())
+                && binary.getIntrinsic() != BinaryIntrinsic.STRING_EQUALS && binary.getIntrinsic() != BinaryIntrinsic.STRING_NOT_EQUALS) {
+            BinaryIntrinsic intrinsic = binary.getIntrinsic();
+            String operandType = emitComparisonOperands(binary, intrinsic);
+
+            int opcode = switch (intrinsic.getOperator()) {
+                case "==" -> IFEQ;
+                case "!=" -> IFNE;
+                case "<" -> IFLT;
+                case ">=" -> IFGE;
+                case ">" -> IFGT;
+                default -> IFLE;
+            };
+
+            // the conditional jumps come in pairs of opposite conditions
+            if (!jumpIfTrue) {
+                opcode = IFEQ + ((opcode - IFEQ) ^ 1);
+            }
+
+            if (operandType.equals("D")) {
+                // NaN has to make the comparison false in both directions
+                boolean isLess = intrinsic.getOperator().equals("<") || intrinsic.getOperator().equals("<=");
+                code.op(isLess ? DCMPG : DCMPL);
+                code.jump(opcode, target);
+            } else {
+                code.jump(opcode + (IF_ICMPEQ - IFEQ), target);
+            }
+            return;
+        }
+
+        emitValue(condition, "Z");
+        code.jump(jumpIfTrue ? IFNE : IFEQ, target);
+    }
+
+    private String emitComparisonOperands(BoundBinaryExpression expression, BinaryIntrinsic intrinsic) {
+        TypeSymbol leftType = intrinsic.getLeftType();
+        TypeSymbol rightType = intrinsic.getRightType();
+
+        // strings are ordered by their length
+        if (leftType.equals(Types.STRING)) {
+            emitValue(expression.getLeft(), STRING);
+            code.invoke(INVOKEVIRTUAL, "java/lang/String", "length", "()I");
+            emitValue(expression.getRight(), STRING);
+            code.invoke(INVOKEVIRTUAL, "java/lang/String", "length", "()I");
+            return "I";
+        }
+
+        String operandType;
+        if (leftType.equals(Types.DOUBLE) || rightType.equals(Types.DOUBLE)) {
+            operandType = "D";
+        } else if (leftType.equals(Types.CHAR)) {
+            // an int compared with a char is truncated to a char first
+            operandType = "C";
+        } else {
+            operandType = compiler.getDescriptor(leftType);
+        }
+
+        emitValue(expression.getLeft(), operandType);
+        emitValue(expression.getRight(), operandType);
+        return operandType;
+    }
+
+    private String emitConditionalExpression(BoundConditionalExpression expression) {
+        String descriptor = compiler.getDescriptor(expression.getType());
+        Label elseLabel = new Label();
+        Label end = new Label();
+
+        emitCondition(expression.getCondition(), false, elseLabel);
+        emitValue(expression.getThenExpression(), descriptor);
+        code.jump(GOTO, end);
+        code.mark(elseLabel);
+        emitValue(expression.getElseExpression(), descriptor);
+        code.mark(end);
+        return descriptor;
+    }
+
+    private String emitTypeCheckExpression(BoundTypeCheckExpression expression) {
+        TypeSymbol rightType = expression.getRightType();
+        if (rightType.isGeneric()) {
+            throw new EmitterException("Type checks against generic types are not supported");
+        }
+
+        String valueType = emitExpression(expression.getLeftExpression());
+        if (rightType.equals(Types.ANY)) {
+            pop(valueType);
+            code.pushInt(1);
+            return "Z";
+        }
+
+        // user types have no subtypes, so a value whose type is known statically can be checked right away
+        String rightDescriptor = compiler.getDescriptor(rightType);
+        if (!valueType.equals(OBJECT)) {
+            pop(valueType);
+            code.pushInt(valueType.equals(rightDescriptor) ? 1 : 0);
+            return "Z";
+        }
+
+        code.type(INSTANCEOF, Descriptors.isPrimitive(rightDescriptor) ? Descriptors.getBoxType(rightDescriptor) : Descriptors.getInternalName(rightDescriptor));
+        return "Z";
+    }
+
+    /**
+     * Converts the value on top of the stack. Primitives are boxed and unboxed at the boundaries to
+     * {@code any} and erased generic types, references are cast to the expected class.
+     */
+    private void coerce(String from, String to) {
+        if (from.equals(to)) {
+            return;
+        }
+
+        if (from.equals("V") || to.equals("V")) {
+            throw new EmitterException("Cannot convert %s to %s".formatted(from, to));
+        }
+
+        if (Descriptors.isPrimitive(from) && Descriptors.isPrimitive(to)) {
+            if (to.equals("D") && (from.equals("I") || from.equals("C"))) {
+                code.op(I2D);
+            } else if (to.equals("C") && from.equals("I")) {
+                code.op(I2C);
+            } else if (!(to.equals("I") && from.equals("C"))) {
+                throw new EmitterException("Cannot convert %s to %s".formatted(from, to));
+            }
+            return;
+        }
+
+        if (Descriptors.isPrimitive(from)) {
+            String box = Descriptors.getBoxType(from);
+            code.invoke(INVOKESTATIC, box, "valueOf", "(" + from + ")L" + box + ";");
+            coerce("L" + box + ";", to);
+            return;
+        }
+
+        if (Descriptors.isPrimitive(to)) {
+            String box = Descriptors.getBoxType(to);
+            code.type(CHECKCAST, box);
+            code.invoke(INVOKEVIRTUAL, box, Descriptors.getUnboxMethod(to), "()" + to);
+            return;
+        }
+
+        if (to.equals(OBJECT)) {
+            return;
+        }
+
+        // arrays of an erased generic type only hold references, they cannot be reinterpreted as any other array
+        if (to.startsWith("[") && from.startsWith("[")) {
+            throw new EmitterException("Cannot convert %s to %s".formatted(from, to));
+        }
+
+        code.type(CHECKCAST, Descriptors.getInternalName(to));
+    }
+
+    private String getElementType(String arrayDescriptor) {
+        if (!arrayDescriptor.startsWith("[")) {
+            throw new EmitterException("Cannot access array element of non-array " + arrayDescriptor);
+        }
+        return arrayDescriptor.substring(1);
+    }
+
+    private void newArray(String element) {
+        switch (element) {
+            case "I" -> code.newArray(T_INT);
+            case "D" -> code.newArray(T_DOUBLE);
+            case "Z" -> code.newArray(T_BOOLEAN);
+            case "C" -> code.newArray(T_CHAR);
+            default -> code.type(ANEWARRAY, Descriptors.getInternalName(element));
+        }
+    }
+
+    private String getVariableType(VariableSymbol variable) {
+        String parameterType = parameterTypes.get(variable.getSlot());
+        return parameterType != null ? parameterType : compiler.getDescriptor(variable.getType());
+    }
+
+    private int getLocal(VariableSymbol variable) {
+        Integer parameter = parameterLocals.get(variable.getSlot());
+        if (parameter != null) {
+            return parameter;
+        }
+
+        String descriptor = getVariableType(variable);
+        return locals.computeIfAbsent(variable.getSlot() + ":" + descriptor, key -> {
+            int local = nextLocal;
+            nextLocal += Descriptors.getSize(descriptor);
+            return local;
+        });
+    }
+
+    private String loadVariable(VariableSymbol variable) {
+        String descriptor = getVariableType(variable);
+        code.load(Descriptors.getLoadOpcode(descriptor), getLocal(variable));
+        return descriptor;
+    }
+
+    private void storeVariable(VariableSymbol variable) {
+        code.store(Descriptors.getStoreOpcode(getVariableType(variable)), getLocal(variable));
+    }
+
+    private void pushDefault(String descriptor) {
+        switch (descriptor.charAt(0)) {
+            case 'V' -> {
+            }
+            case 'I', 'Z', 'C' -> code.pushInt(0);
+            case 'D' -> code.pushDouble(0);
+            default -> code.op(ACONST_NULL);
+        }
+    }
+
+    private void dup(String descriptor) {
+        code.op(Descriptors.getSize(descriptor) == 2 ? DUP2 : DUP);
+    }
+
+    private void pop(String descriptor) {
+        switch (Descriptors.getSize(descriptor)) {
+            case 0 -> {
+            }
+            case 2 -> code.op(POP2);
+            default -> code.op(POP);
+        }
+    }
+
+    private void emitFail(String message) {
+        code.type(NEW, "java/lang/RuntimeException");
+        code.op(DUP);
+        code.pushString(message);
+        code.invoke(INVOKESPECIAL, "java/lang/RuntimeException", "<init>", "(" + STRING + ")V");
+        code.op(ATHROW);
+    }
+}
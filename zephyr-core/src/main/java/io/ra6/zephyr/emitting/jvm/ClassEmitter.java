@@ -0,0 +1,85 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import io.ra6.zephyr.emitting.EmitterException;
+import lombok.RequiredArgsConstructor;
+
+import static io.ra6.zephyr.emitting.jvm.Opcodes.*;
+
+/**
+ * Emits the class file of a single user type. Shared fields and functions become static members,
+ * the shared field initializers run in the static initializer of the class.
+ */
+@RequiredArgsConstructor
+class ClassEmitter {
+    static final String SITES_FIELD = "$sites";
+    static final String SITES_DESCRIPTOR = "[Ljava/lang/Object;";
+
+    private final JvmCompiler compiler;
+    private final JvmClass jvmClass;
+
+    byte[] emit() {
+        ClassFile file = new ClassFile(jvmClass.getInternalName(), "java/lang/Object");
+
+        file.addField(ACC_STATIC | ACC_FINAL, SITES_FIELD, SITES_DESCRIPTOR);
+        for (JvmField field : jvmClass.getFields().values()) {
+            file.addField(ACC_PUBLIC | (field.isStatic() ? ACC_STATIC : 0), field.name(), field.descriptor());
+        }
+
+        emitStaticInitializer(file);
+
+        for (JvmMethod constructor : jvmClass.getConstructors().values()) {
+            emitConstructor(file, constructor);
+        }
+
+        for (JvmMethod method : jvmClass.getMethods().values()) {
+            if (method.body() == null) {
+                throw new EmitterException("Function '%s' of type '%s' has no body".formatted(method.name(), jvmClass.getType().getName()));
+            }
+
+            Code code = file.addMethod(ACC_PUBLIC | (method.isStatic() ? ACC_STATIC : 0), method.name(), method.descriptor());
+            new BodyEmitter(compiler, jvmClass, code, method.isStatic(), method.descriptor()).emitBody(method.body());
+        }
+
+        return file.toByteArray();
+    }
+
+    private void emitStaticInitializer(ClassFile file) {
+        Code code = file.addMethod(ACC_STATIC, "<clinit>", "()V");
+        BodyEmitter emitter = new BodyEmitter(compiler, jvmClass, code, true, "()V");
+
+        code.pushClass(jvmClass.getInternalName());
+        code.invoke(INVOKESTATIC, BodyEmitter.LINKAGE, "getSites", "(Ljava/lang/Class;)" + SITES_DESCRIPTOR);
+        code.field(PUTSTATIC, jvmClass.getInternalName(), SITES_FIELD, SITES_DESCRIPTOR);
+
+        for (JvmField field : jvmClass.getFields().values()) {
+            if (field.isStatic() && field.initializer() != null) {
+                emitter.emitValue(field.initializer(), field.descriptor());
+                code.field(PUTSTATIC, jvmClass.getInternalName(), field.name(), field.descriptor());
+            }
+        }
+
+        code.op(RETURN);
+    }
+
+    private void emitConstructor(ClassFile file, JvmMethod constructor) {
+        if (constructor.body() == null) {
+            throw new EmitterException("Constructor of type '%s' has no body".formatted(jvmClass.getType().getName()));
+        }
+
+        Code code = file.addMethod(ACC_PUBLIC, "<init>", constructor.descriptor());
+        BodyEmitter emitter = new BodyEmitter(compiler, jvmClass, code, false, constructor.descriptor());
+
+        code.load(ALOAD, 0);
+        code.invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+
+        for (JvmField field : jvmClass.getFields().values()) {
+            if (!field.isStatic() && field.initializer() != null) {
+                code.load(ALOAD, 0);
+                emitter.emitValue(field.initializer(), field.descriptor());
+                code.field(PUTFIELD, jvmClass.getInternalName(), field.name(), field.descriptor());
+            }
+        }
+
+        emitter.emitBody(constructor.body());
+    }
+}
@@ -0,0 +1,90 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class file under construction. Classes are written in version 49 so the verifier infers the
+ * types of the frames itself and no stack map frames have to be emitted.
+ */
+class ClassFile {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49;
+
+    private final ConstantPool pool = new ConstantPool();
+    private final String name;
+    private final String superName;
+
+    private final List<int[]> fields = new ArrayList<>();
+    private final List<Method> methods = new ArrayList<>();
+
+    private record Method(int access, int name, int descriptor, Code code) {
+    }
+
+    ClassFile(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+    }
+
+    void addField(int access, String fieldName, String descriptor) {
+        fields.add(new int[]{access, pool.utf8(fieldName), pool.utf8(descriptor)});
+    }
+
+    Code addMethod(int access, String methodName, String descriptor) {
+        int parameterSlots = Descriptors.getArgumentsSize(descriptor) + ((access & Opcodes.ACC_STATIC) == 0 ? 1 : 0);
+        Code code = new Code(pool, parameterSlots);
+        methods.add(new Method(access, pool.utf8(methodName), pool.utf8(descriptor), code));
+        return code;
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            int thisClass = pool.classReference(name);
+            int superClass = pool.classReference(superName);
+
+            // the code attributes add their names to the pool, so the members are written before the pool
+            ByteArrayOutputStream memberBytes = new ByteArrayOutputStream();
+            DataOutputStream members = new DataOutputStream(memberBytes);
+
+            members.writeShort(fields.size());
+            for (int[] field : fields) {
+                members.writeShort(field[0]);
+                members.writeShort(field[1]);
+                members.writeShort(field[2]);
+                members.writeShort(0);
+            }
+
+            members.writeShort(methods.size());
+            for (Method method : methods) {
+                members.writeShort(method.access());
+                members.writeShort(method.name());
+                members.writeShort(method.descriptor());
+                members.writeShort(1);
+                method.code().write(members);
+            }
+
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            pool.write(out);
+            out.writeShort(Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            // no interfaces
+            out.writeShort(0);
+            memberBytes.writeTo(out);
+            // no attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+}
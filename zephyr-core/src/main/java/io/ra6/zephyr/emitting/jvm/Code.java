@@ -0,0 +1,254 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import io.ra6.zephyr.emitting.EmitterException;
+import lombok.Getter;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static io.ra6.zephyr.emitting.jvm.Opcodes.*;
+
+/**
+ * Builds the code attribute of a single method. The builder keeps track of the operand stack depth
+ * so the maximum stack size does not have to be computed afterwards.
+ */
+class Code {
+    private final ConstantPool pool;
+
+    private byte[] code = new byte[64];
+    @Getter
+    private int size;
+
+    private int stack;
+    private int maxStack;
+    private int maxLocals;
+
+    Code(ConstantPool pool, int parameterSlots) {
+        this.pool = pool;
+        this.maxLocals = parameterSlots;
+    }
+
+    void op(int opcode) {
+        u1(opcode);
+        adjust(stackDelta(opcode));
+
+        if (opcode == GOTO || opcode == ATHROW || (opcode >= IRETURN && opcode <= RETURN)) {
+            stack = -1;
+        }
+    }
+
+    void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            u1(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            u1(BIPUSH);
+            u1(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            u1(SIPUSH);
+            u2(value);
+        } else {
+            loadConstant(pool.integer(value));
+        }
+        adjust(1);
+    }
+
+    void pushDouble(double value) {
+        if (Double.doubleToRawLongBits(value) == 0L) {
+            u1(DCONST_0);
+        } else if (value == 1.0) {
+            u1(DCONST_1);
+        } else {
+            u1(LDC2_W);
+            u2(pool.doubleValue(value));
+        }
+        adjust(2);
+    }
+
+    void pushString(String value) {
+        loadConstant(pool.string(value));
+        adjust(1);
+    }
+
+    void pushClass(String internalName) {
+        loadConstant(pool.classReference(internalName));
+        adjust(1);
+    }
+
+    private void loadConstant(int index) {
+        if (index <= 0xFF) {
+            u1(LDC);
+            u1(index);
+        } else {
+            u1(LDC_W);
+            u2(index);
+        }
+    }
+
+    void load(int opcode, int local) {
+        local(opcode, local);
+        adjust(opcode == DLOAD ? 2 : 1);
+    }
+
+    void store(int opcode, int local) {
+        local(opcode, local);
+        adjust(opcode == DSTORE ? -2 : -1);
+    }
+
+    private void local(int opcode, int local) {
+        if (local > 0xFF) {
+            u1(WIDE);
+            u1(opcode);
+            u2(local);
+        } else {
+            u1(opcode);
+            u1(local);
+        }
+        maxLocals = Math.max(maxLocals, local + (opcode == DLOAD || opcode == DSTORE ? 2 : 1));
+    }
+
+    void field(int opcode, String owner, String name, String descriptor) {
+        u1(opcode);
+        u2(pool.fieldReference(owner, name, descriptor));
+
+        int size = Descriptors.getSize(descriptor);
+        switch (opcode) {
+            case GETSTATIC -> adjust(size);
+            case PUTSTATIC -> adjust(-size);
+            case GETFIELD -> adjust(size - 1);
+            case PUTFIELD -> adjust(-size - 1);
+            default -> throw new IllegalArgumentException("Not a field instruction: " + opcode);
+        }
+    }
+
+    void invoke(int opcode, String owner, String name, String descriptor) {
+        u1(opcode);
+        u2(pool.methodReference(owner, name, descriptor));
+
+        int delta = Descriptors.getReturnSize(descriptor) - Descriptors.getArgumentsSize(descriptor);
+        adjust(opcode == INVOKESTATIC ? delta : delta - 1);
+    }
+
+    void type(int opcode, String internalName) {
+        u1(opcode);
+        u2(pool.classReference(internalName));
+        if (opcode == NEW) {
+            adjust(1);
+        }
+    }
+
+    void newArray(int arrayType) {
+        u1(NEWARRAY);
+        u1(arrayType);
+    }
+
+    void jump(int opcode, Label label) {
+        int instruction = size;
+        u1(opcode);
+
+        if (opcode == GOTO) {
+            adjust(0);
+        } else if (opcode >= IF_ICMPEQ && opcode <= IF_ACMPNE) {
+            adjust(-2);
+        } else {
+            adjust(-1);
+        }
+
+        if (label.stack < 0) {
+            label.stack = stack;
+        }
+
+        if (label.offset >= 0) {
+            u2(branchOffset(label.offset - instruction));
+        } else {
+            label.references.add(new int[]{instruction, size});
+            u2(0);
+        }
+
+        if (opcode == GOTO) {
+            stack = -1;
+        }
+    }
+
+    void mark(Label label) {
+        label.offset = size;
+
+        if (stack < 0) {
+            stack = Math.max(label.stack, 0);
+        }
+        label.stack = stack;
+
+        for (int[] reference : label.references) {
+            int offset = branchOffset(label.offset - reference[0]);
+            code[reference[1]] = (byte) (offset >> 8);
+            code[reference[1] + 1] = (byte) offset;
+        }
+        label.references.clear();
+    }
+
+    boolean isReachable() {
+        return stack >= 0;
+    }
+
+    private static int branchOffset(int offset) {
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            throw new EmitterException("Method is too large to be emitted");
+        }
+        return offset;
+    }
+
+    private void adjust(int delta) {
+        // code after an unconditional jump is only reachable through a label, assume an empty stack until then
+        if (stack < 0) {
+            stack = 0;
+        }
+
+        stack += delta;
+        if (stack < 0) {
+            throw new IllegalStateException("Operand stack underflow");
+        }
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    private static int stackDelta(int opcode) {
+        return switch (opcode) {
+            case ACONST_NULL, DUP, DUP_X1, DUP_X2, I2D -> 1;
+            case DCONST_0, DCONST_1, DUP2, DUP2_X1, DUP2_X2 -> 2;
+            case DALOAD, INEG, DNEG, I2C, ARRAYLENGTH, RETURN -> 0;
+            case IALOAD, AALOAD, BALOAD, CALOAD, POP, IADD, ISUB, IMUL, IDIV, IREM, IAND, IOR, IXOR,
+                    IRETURN, ARETURN, ATHROW -> -1;
+            case POP2, DADD, DSUB, DMUL, DDIV, DREM, DRETURN -> -2;
+            case IASTORE, AASTORE, BASTORE, CASTORE, DCMPL, DCMPG -> -3;
+            case DASTORE -> -4;
+            default -> throw new IllegalArgumentException("Unsupported instruction: " + opcode);
+        };
+    }
+
+    private void u1(int value) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = (byte) value;
+    }
+
+    private void u2(int value) {
+        u1(value >> 8);
+        u1(value);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        if (size > 0xFFFF) {
+            throw new EmitterException("Method is too large to be emitted");
+        }
+
+        out.writeShort(pool.utf8("Code"));
+        out.writeInt(12 + size);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(size);
+        out.write(code, 0, size);
+        // no exception table and no attributes
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+}
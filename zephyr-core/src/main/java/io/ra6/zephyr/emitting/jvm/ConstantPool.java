@@ -0,0 +1,121 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Constant pool of a class file. Equal constants are only added once.
+ */
+class ConstantPool {
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream output = new DataOutputStream(bytes);
+    private final HashMap<String, Integer> indices = new HashMap<>();
+    private int count = 1;
+
+    int utf8(String value) {
+        return add("utf8:" + value, 1, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    int integer(int value) {
+        return add("int:" + value, 1, out -> {
+            out.writeByte(CONSTANT_INTEGER);
+            out.writeInt(value);
+        });
+    }
+
+    int doubleValue(double value) {
+        return add("double:" + Double.doubleToRawLongBits(value), 2, out -> {
+            out.writeByte(CONSTANT_DOUBLE);
+            out.writeDouble(value);
+        });
+    }
+
+    int classReference(String internalName) {
+        int name = utf8(internalName);
+        return add("class:" + internalName, 1, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    int string(String value) {
+        int utf8 = utf8(value);
+        return add("string:" + value, 1, out -> {
+            out.writeByte(CONSTANT_STRING);
+            out.writeShort(utf8);
+        });
+    }
+
+    int fieldReference(String owner, String name, String descriptor) {
+        return memberReference(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodReference(String owner, String name, String descriptor) {
+        return memberReference(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    private int memberReference(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classReference(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return add(tag + ":" + owner + "." + name + ":" + descriptor, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return add("nat:" + name + ":" + descriptor, 1, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    private interface Entry {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    private int add(String key, int size, Entry entry) {
+        Integer index = indices.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            entry.write(output);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        index = count;
+        count += size;
+        if (count > 0xFFFF) {
+            throw new RuntimeException("Constant pool is too large");
+        }
+
+        indices.put(key, index);
+        return index;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeShort(count);
+        bytes.writeTo(out);
+    }
+}
@@ -0,0 +1,141 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for JVM field and method descriptors.
+ */
+final class Descriptors {
+    static final String OBJECT = "Ljava/lang/Object;";
+    static final String STRING = "Ljava/lang/String;";
+
+    private Descriptors() {
+    }
+
+    static int getSize(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'V' -> 0;
+            case 'D', 'J' -> 2;
+            default -> 1;
+        };
+    }
+
+    static String getReturnType(String methodDescriptor) {
+        return methodDescriptor.substring(methodDescriptor.indexOf(')') + 1);
+    }
+
+    static int getReturnSize(String methodDescriptor) {
+        return getSize(getReturnType(methodDescriptor));
+    }
+
+    static List<String> getArgumentTypes(String methodDescriptor) {
+        List<String> types = new ArrayList<>();
+        int position = 1;
+
+        while (methodDescriptor.charAt(position) != ')') {
+            int start = position;
+            while (methodDescriptor.charAt(position) == '[') {
+                position++;
+            }
+
+            if (methodDescriptor.charAt(position) == 'L') {
+                position = methodDescriptor.indexOf(';', position);
+            }
+
+            position++;
+            types.add(methodDescriptor.substring(start, position));
+        }
+
+        return types;
+    }
+
+    static int getArgumentsSize(String methodDescriptor) {
+        int size = 0;
+        for (String type : getArgumentTypes(methodDescriptor)) {
+            size += getSize(type);
+        }
+        return size;
+    }
+
+    static boolean isPrimitive(String descriptor) {
+        return descriptor.length() == 1;
+    }
+
+    static boolean isReference(String descriptor) {
+        return descriptor.charAt(0) == 'L' || descriptor.charAt(0) == '[';
+    }
+
+    // the operand of new, anewarray, checkcast and instanceof: the class name or the descriptor of an array
+    static String getInternalName(String descriptor) {
+        if (descriptor.charAt(0) == 'L') {
+            return descriptor.substring(1, descriptor.length() - 1);
+        }
+        return descriptor;
+    }
+
+    static String getBoxType(String descriptor) {
+        return switch (descriptor) {
+            case "I" -> "java/lang/Integer";
+            case "D" -> "java/lang/Double";
+            case "Z" -> "java/lang/Boolean";
+            case "C" -> "java/lang/Character";
+            default -> throw new IllegalArgumentException("Not a primitive descriptor: " + descriptor);
+        };
+    }
+
+    static String getUnboxMethod(String descriptor) {
+        return switch (descriptor) {
+            case "I" -> "intValue";
+            case "D" -> "doubleValue";
+            case "Z" -> "booleanValue";
+            case "C" -> "charValue";
+            default -> throw new IllegalArgumentException("Not a primitive descriptor: " + descriptor);
+        };
+    }
+
+    static int getLoadOpcode(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'I', 'Z', 'C' -> Opcodes.ILOAD;
+            case 'D' -> Opcodes.DLOAD;
+            default -> Opcodes.ALOAD;
+        };
+    }
+
+    static int getStoreOpcode(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'I', 'Z', 'C' -> Opcodes.ISTORE;
+            case 'D' -> Opcodes.DSTORE;
+            default -> Opcodes.ASTORE;
+        };
+    }
+
+    static int getReturnOpcode(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'V' -> Opcodes.RETURN;
+            case 'I', 'Z', 'C' -> Opcodes.IRETURN;
+            case 'D' -> Opcodes.DRETURN;
+            default -> Opcodes.ARETURN;
+        };
+    }
+
+    static int getArrayLoadOpcode(String elementDescriptor) {
+        return switch (elementDescriptor.charAt(0)) {
+            case 'I' -> Opcodes.IALOAD;
+            case 'Z' -> Opcodes.BALOAD;
+            case 'C' -> Opcodes.CALOAD;
+            case 'D' -> Opcodes.DALOAD;
+            default -> Opcodes.AALOAD;
+        };
+    }
+
+    static int getArrayStoreOpcode(String elementDescriptor) {
+        return switch (elementDescriptor.charAt(0)) {
+            case 'I' -> Opcodes.IASTORE;
+            case 'Z' -> Opcodes.BASTORE;
+            case 'C' -> Opcodes.CASTORE;
+            case 'D' -> Opcodes.DASTORE;
+            default -> Opcodes.AASTORE;
+        };
+    }
+}
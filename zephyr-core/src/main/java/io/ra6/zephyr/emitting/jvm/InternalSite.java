@@ -0,0 +1,9 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import io.ra6.zephyr.builtin.ICallable;
+
+/**
+ * A call of a builtin or native function from emitted code.
+ */
+record InternalSite(ICallable body, String[] parameterNames, boolean passThis) {
+}
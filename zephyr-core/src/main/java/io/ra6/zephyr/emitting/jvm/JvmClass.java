@@ -0,0 +1,83 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The class a user type is emitted as. Members are looked up by their zephyr signature, so call sites
+ * do not depend on the symbols the binder created for them.
+ */
+@Getter
+@RequiredArgsConstructor
+class JvmClass {
+    private final TypeSymbol type;
+    private final BoundProgramScope program;
+    private final BoundTypeScope scope;
+    private final String internalName;
+
+    private final LinkedHashMap<String, JvmField> fields = new LinkedHashMap<>();
+    private final LinkedHashMap<String, JvmMethod> methods = new LinkedHashMap<>();
+    private final HashMap<Integer, JvmMethod> constructors = new HashMap<>();
+    private final List<Object> sites = new ArrayList<>();
+
+    String getDescriptor() {
+        return "L" + internalName + ";";
+    }
+
+    JvmField getField(String name) {
+        return fields.get(name);
+    }
+
+    JvmMethod getFunction(String name, boolean isShared, int parameterCount) {
+        return methods.get(functionKey(name, isShared, parameterCount));
+    }
+
+    JvmMethod getConstructor(int parameterCount) {
+        return constructors.get(parameterCount);
+    }
+
+    JvmMethod getBinaryOperator(String operator, TypeSymbol otherType) {
+        return methods.get("binop " + operator + " " + otherType.getName());
+    }
+
+    JvmMethod getUnaryOperator(String operator) {
+        return methods.get("unop " + operator);
+    }
+
+    void addField(JvmField field) {
+        fields.put(field.name(), field);
+    }
+
+    void addFunction(String name, boolean isShared, int parameterCount, JvmMethod method) {
+        methods.put(functionKey(name, isShared, parameterCount), method);
+    }
+
+    void addConstructor(int parameterCount, JvmMethod method) {
+        constructors.put(parameterCount, method);
+    }
+
+    void addBinaryOperator(String operator, TypeSymbol otherType, JvmMethod method) {
+        methods.put("binop " + operator + " " + otherType.getName(), method);
+    }
+
+    void addUnaryOperator(String operator, JvmMethod method) {
+        methods.put("unop " + operator, method);
+    }
+
+    int addSite(Object site) {
+        sites.add(site);
+        return sites.size() - 1;
+    }
+
+    private static String functionKey(String name, boolean isShared, int parameterCount) {
+        return (isShared ? "shared " : "fnc ") + name + "/" + parameterCount;
+    }
+}
@@ -0,0 +1,195 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import io.ra6.zephyr.builtin.Natives;
+import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.builtin.natives.NativeType;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
+import io.ra6.zephyr.codeanalysis.lowering.Lowerer;
+import io.ra6.zephyr.codeanalysis.symbols.*;
+import io.ra6.zephyr.emitting.EmitterException;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Translates the user types of a program and the programs it imports into JVM classes, one class per type.
+ * Builtin and native types are not emitted, calls into them go through {@link JvmLinkage}.
+ * Generic types are erased to {@code Object}, the conversions the binder inserts box and unbox the values.
+ */
+public class JvmCompiler {
+    private static final String CLASS_PREFIX = "zephyr/";
+    // final methods of java.lang.Object a function must not override
+    private static final Set<String> RESERVED_NAMES = Set.of("getClass", "notify", "notifyAll", "wait");
+
+    private final List<BoundProgramScope> programs;
+    private final LinkedHashMap<String, JvmClass> classes = new LinkedHashMap<>();
+
+    public JvmCompiler(List<BoundProgramScope> programs) {
+        this.programs = programs;
+    }
+
+    public JvmProgram compile() {
+        for (BoundProgramScope program : programs) {
+            for (TypeSymbol type : program.getDeclaredTypes()) {
+                NativeType nativeType = Natives.getNativeType(type.getName());
+                if (nativeType != null && nativeType.isRuntimeOnly()) {
+                    throw new EmitterException("Native type '%s' is only supported by the execution engines".formatted(type.getName()));
+                }
+
+                if (Types.isBuiltinType(type) || Natives.getNativeType(type.getName()) != null || classes.containsKey(type.getName())) {
+                    continue;
+                }
+
+                // programs bound from a string have no name
+                String programName = program.getName().isEmpty() ? "program" : program.getName();
+                String name = CLASS_PREFIX + sanitize(programName) + "/" + sanitize(type.getName());
+                classes.put(type.getName(), new JvmClass(type, program, program.getTypeScope(type), name));
+            }
+        }
+
+        for (JvmClass jvmClass : classes.values()) {
+            declareMembers(jvmClass);
+        }
+
+        JvmClass entry = findEntry(programs.get(0));
+
+        ZephyrClassLoader classLoader = new ZephyrClassLoader();
+        for (JvmClass jvmClass : classes.values()) {
+            byte[] bytes = new ClassEmitter(this, jvmClass).emit();
+            classLoader.addClass(jvmClass.getInternalName(), bytes, jvmClass.getSites().toArray());
+        }
+
+        return new JvmProgram(classLoader, entry.getInternalName());
+    }
+
+    private void declareMembers(JvmClass jvmClass) {
+        BoundTypeScope scope = jvmClass.getScope();
+        String owner = jvmClass.getInternalName();
+        Set<String> signatures = new HashSet<>();
+
+        for (Symbol symbol : scope.getDeclaredFieldsAndFunctions()) {
+            if (symbol instanceof FieldSymbol field) {
+                jvmClass.addField(new JvmField(owner, field.getName(), getDescriptor(field.getType()), field.isShared(), scope.getFieldInitializer(field)));
+            } else if (symbol instanceof FunctionSymbol function) {
+                String descriptor = getMethodDescriptor(function.getParameters().stream().map(ParameterSymbol::getType).toList(), function.getType());
+                String name = uniqueName(signatures, function.getName(), descriptor);
+                jvmClass.addFunction(function.getName(), function.isShared(), function.getParameters().size(),
+                        new JvmMethod(owner, name, descriptor, function.isShared(), scope.getFunctionBody(function)));
+            }
+        }
+
+        for (ConstructorSymbol constructor : scope.getDeclaredConstructors()) {
+            String descriptor = getMethodDescriptor(constructor.getParameters().stream().map(ParameterSymbol::getType).toList(), Types.VOID);
+            jvmClass.addConstructor(constructor.getParameters().size(), new JvmMethod(owner, "<init>", descriptor, false, scope.getConstructorBody(constructor)));
+        }
+
+        // operator bodies are not lowered by the binder
+        for (BinaryOperatorSymbol operator : scope.getDeclaredBinaryOperators()) {
+            String descriptor = getMethodDescriptor(List.of(operator.getOtherType()), operator.getReturnType());
+            String name = uniqueName(signatures, getOperatorName(operator.getName()), descriptor);
+            jvmClass.addBinaryOperator(operator.getName(), operator.getOtherType(),
+                    new JvmMethod(owner, name, descriptor, false, lower(scope.getBinaryOperatorBody(operator))));
+        }
+
+        for (UnaryOperatorSymbol operator : scope.getDeclaredUnaryOperators()) {
+            String descriptor = getMethodDescriptor(List.of(), operator.getReturnType());
+            String name = uniqueName(signatures, getOperatorName(operator.getName()), descriptor);
+            jvmClass.addUnaryOperator(operator.getName(), new JvmMethod(owner, name, descriptor, false, lower(scope.getUnaryOperatorBody(operator))));
+        }
+    }
+
+    private static BoundBlockStatement lower(BoundBlockStatement body) {
+        return body == null ? null : Lowerer.lower(null, body);
+    }
+
+    private JvmClass findEntry(BoundProgramScope program) {
+        if (program.getExports().isEmpty()) {
+            throw new EmitterException("No exports found in program " + program.getName());
+        }
+
+        for (ExportSymbol export : program.getExports()) {
+            JvmClass jvmClass = getJvmClass(export.getType());
+            if (jvmClass == null || !jvmClass.getType().isFunctionDefined("main")) {
+                continue;
+            }
+
+            JvmMethod main = jvmClass.getFunction("main", true, 1);
+            if (main == null || !main.descriptor().startsWith("([Ljava/lang/String;)") || !(main.descriptor().endsWith("V") || main.descriptor().endsWith("I"))) {
+                throw new EmitterException("Main function must be shared, take a str[] and return int or void");
+            }
+            return jvmClass;
+        }
+
+        throw new EmitterException("No main function found in program " + program.getName());
+    }
+
+    JvmClass getJvmClass(TypeSymbol type) {
+        if (type == null || type.isGeneric() || type instanceof ArrayTypeSymbol) {
+            return null;
+        }
+        return classes.get(type.getName());
+    }
+
+    // builtin types are declared in every program, native types only in the programs declaring them
+    BoundTypeScope findTypeScope(TypeSymbol type) {
+        for (BoundProgramScope program : programs) {
+            BoundTypeScope scope = program.getTypeScope(type);
+            if (scope != null) {
+                return scope;
+            }
+        }
+        throw new EmitterException("Cannot find type '%s'".formatted(type.getName()));
+    }
+
+    String getDescriptor(TypeSymbol type) {
+        if (type == null || type.isGeneric()) {
+            return Descriptors.OBJECT;
+        }
+
+        if (type instanceof ArrayTypeSymbol arrayType) {
+            return "[" + getDescriptor(arrayType.getElementType());
+        }
+
+        if (type.equals(Types.INT)) return "I";
+        if (type.equals(Types.DOUBLE)) return "D";
+        if (type.equals(Types.BOOL)) return "Z";
+        if (type.equals(Types.CHAR)) return "C";
+        if (type.equals(Types.STRING)) return Descriptors.STRING;
+        if (type.equals(Types.VOID)) return "V";
+
+        JvmClass jvmClass = classes.get(type.getName());
+        return jvmClass == null ? Descriptors.OBJECT : jvmClass.getDescriptor();
+    }
+
+    private String getMethodDescriptor(List<TypeSymbol> parameterTypes, TypeSymbol returnType) {
+        StringBuilder builder = new StringBuilder("(");
+        for (TypeSymbol parameterType : parameterTypes) {
+            builder.append(getDescriptor(parameterType));
+        }
+        return builder.append(')').append(getDescriptor(returnType)).toString();
+    }
+
+    private static String uniqueName(Set<String> signatures, String name, String descriptor) {
+        String candidate = RESERVED_NAMES.contains(name) ? name + "$" : name;
+        while (!signatures.add(candidate + descriptor)) {
+            candidate += "$";
+        }
+        return candidate;
+    }
+
+    private static String getOperatorName(String operator) {
+        StringBuilder builder = new StringBuilder("operator$");
+        for (char c : operator.toCharArray()) {
+            builder.append(Integer.toHexString(c));
+        }
+        return builder.toString();
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^A-Za-z0-9_]", "_");
+    }
+}
@@ -0,0 +1,9 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+
+/**
+ * A field of an emitted class together with its initializer, if it has one.
+ */
+record JvmField(String owner, String name, String descriptor, boolean isStatic, BoundExpression initializer) {
+}
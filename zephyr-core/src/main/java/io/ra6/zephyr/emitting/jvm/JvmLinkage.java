@@ -0,0 +1,67 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import io.ra6.zephyr.builtin.IFunctionBase;
+
+import java.lang.reflect.Array;
+import java.util.HashMap;
+
+/**
+ * Entry points the emitted classes call into. Everything the emitted code cannot express with plain
+ * JVM instructions goes through here.
+ */
+public final class JvmLinkage {
+    private JvmLinkage() {
+    }
+
+    public static Object[] getSites(Class<?> type) {
+        if (!(type.getClassLoader() instanceof ZephyrClassLoader classLoader)) {
+            throw new RuntimeException("Class '%s' was not emitted for a zephyr program".formatted(type.getName()));
+        }
+        return classLoader.getSites(type.getName());
+    }
+
+    public static Object invoke(Object site, Object thisValue, Object[] arguments) {
+        InternalSite internalSite = (InternalSite) site;
+        HashMap<String, Object> values = new HashMap<>();
+
+        if (internalSite.passThis()) {
+            values.put(IFunctionBase.PARAM_THIS, thisValue);
+        }
+
+        String[] names = internalSite.parameterNames();
+        for (int i = 0; i < names.length; i++) {
+            values.put(names[i], arguments[i]);
+        }
+
+        return internalSite.body().call(values);
+    }
+
+    // only the innermost dimension is filled with its initializer, the same way the interpreter does it
+    public static Object newArray(Class<?> arrayType, int[] dimensions, Object initializer) {
+        return newArray(arrayType, dimensions, 0, initializer);
+    }
+
+    private static Object newArray(Class<?> arrayType, int[] dimensions, int depth, Object initializer) {
+        int length = dimensions[depth];
+        if (length < 0) {
+            throw new RuntimeException("Array dimension must be positive");
+        }
+
+        Class<?> elementType = arrayType.getComponentType();
+        Object array = Array.newInstance(elementType, length);
+
+        if (depth == dimensions.length - 1) {
+            if (initializer != null) {
+                for (int i = 0; i < length; i++) {
+                    Array.set(array, i, initializer);
+                }
+            }
+            return array;
+        }
+
+        for (int i = 0; i < length; i++) {
+            Array.set(array, i, newArray(elementType, dimensions, depth + 1, initializer));
+        }
+        return array;
+    }
+}
@@ -0,0 +1,9 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
+
+/**
+ * A method of an emitted class together with the body it is emitted from.
+ */
+record JvmMethod(String owner, String name, String descriptor, boolean isStatic, BoundBlockStatement body) {
+}
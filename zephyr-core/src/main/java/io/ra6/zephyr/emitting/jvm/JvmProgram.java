@@ -0,0 +1,62 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import io.ra6.zephyr.runtime.CallStackOverflowException;
+import lombok.RequiredArgsConstructor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A program whose types were emitted as JVM classes and can be run in this process.
+ */
+@RequiredArgsConstructor
+public class JvmProgram {
+    private final ZephyrClassLoader classLoader;
+    private final String entryClass;
+
+    ZephyrClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    public int run(String[] args) {
+        try {
+            Class<?> type = Class.forName(entryClass.replace('/', '.'), true, classLoader);
+            Method main = type.getMethod("main", String[].class);
+            Object result = main.invoke(null, (Object) args);
+            return result instanceof Integer exitCode ? exitCode : 0;
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof StackOverflowError overflow) {
+                throw new CallStackOverflowException(overflow, getCalls(overflow));
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Cannot run emitted program", e);
+        }
+    }
+
+    // the emitted methods on the recorded part of the Java stack, named like the calls of the execution engines
+    private List<String> getCalls(StackOverflowError overflow) {
+        List<String> calls = new ArrayList<>();
+        for (StackTraceElement element : overflow.getStackTrace()) {
+            if (!classLoader.isEmitted(element.getClassName())) {
+                continue;
+            }
+
+            String type = element.getClassName().substring(element.getClassName().lastIndexOf('.') + 1);
+            if (element.getMethodName().equals("<init>")) {
+                calls.add("constructor (%s)".formatted(type));
+            } else if (!element.getMethodName().equals("<clinit>")) {
+                calls.add("function (%s)".formatted(element.getMethodName()));
+            }
+        }
+        return calls;
+    }
+}
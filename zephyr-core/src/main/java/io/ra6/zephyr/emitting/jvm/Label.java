@@ -0,0 +1,15 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A position in the code of a method. Jumps to a label that is not placed yet are patched once it is.
+ */
+class Label {
+    int offset = -1;
+    // the stack depth at the label, known once the first jump to it or the label itself was emitted
+    int stack = -1;
+    // pairs of instruction offset and position of the branch offset to patch
+    final List<int[]> references = new ArrayList<>();
+}
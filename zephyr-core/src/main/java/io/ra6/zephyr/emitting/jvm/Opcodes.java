@@ -0,0 +1,114 @@
+package io.ra6.zephyr.emitting.jvm;
+
+/**
+ * The subset of JVM instructions and access flags used by the emitter.
+ */
+public interface Opcodes {
+    int ACC_PUBLIC = 0x0001;
+    int ACC_STATIC = 0x0008;
+    int ACC_FINAL = 0x0010;
+    int ACC_SUPER = 0x0020;
+
+    int ACONST_NULL = 0x01;
+    int ICONST_M1 = 0x02;
+    int ICONST_0 = 0x03;
+    int DCONST_0 = 0x0e;
+    int DCONST_1 = 0x0f;
+    int BIPUSH = 0x10;
+    int SIPUSH = 0x11;
+    int LDC = 0x12;
+    int LDC_W = 0x13;
+    int LDC2_W = 0x14;
+
+    int ILOAD = 0x15;
+    int DLOAD = 0x18;
+    int ALOAD = 0x19;
+    int IALOAD = 0x2e;
+    int DALOAD = 0x31;
+    int AALOAD = 0x32;
+    int BALOAD = 0x33;
+    int CALOAD = 0x34;
+
+    int ISTORE = 0x36;
+    int DSTORE = 0x39;
+    int ASTORE = 0x3a;
+    int IASTORE = 0x4f;
+    int DASTORE = 0x52;
+    int AASTORE = 0x53;
+    int BASTORE = 0x54;
+    int CASTORE = 0x55;
+
+    int POP = 0x57;
+    int POP2 = 0x58;
+    int DUP = 0x59;
+    int DUP_X1 = 0x5a;
+    int DUP_X2 = 0x5b;
+    int DUP2 = 0x5c;
+    int DUP2_X1 = 0x5d;
+    int DUP2_X2 = 0x5e;
+
+    int IADD = 0x60;
+    int DADD = 0x63;
+    int ISUB = 0x64;
+    int DSUB = 0x67;
+    int IMUL = 0x68;
+    int DMUL = 0x6b;
+    int IDIV = 0x6c;
+    int DDIV = 0x6f;
+    int IREM = 0x70;
+    int DREM = 0x73;
+    int INEG = 0x74;
+    int DNEG = 0x77;
+    int IAND = 0x7e;
+    int IOR = 0x80;
+    int IXOR = 0x82;
+
+    int I2D = 0x87;
+    int I2C = 0x92;
+
+    int DCMPL = 0x97;
+    int DCMPG = 0x98;
+    int IFEQ = 0x99;
+    int IFNE = 0x9a;
+    int IFLT = 0x9b;
+    int IFGE = 0x9c;
+    int IFGT = 0x9d;
+    int IFLE = 0x9e;
+    int IF_ICMPEQ = 0x9f;
+    int IF_ICMPNE = 0xa0;
+    int IF_ICMPLT = 0xa1;
+    int IF_ICMPGE = 0xa2;
+    int IF_ICMPGT = 0xa3;
+    int IF_ICMPLE = 0xa4;
+    int IF_ACMPEQ = 0xa5;
+    int IF_ACMPNE = 0xa6;
+    int GOTO = 0xa7;
+
+    int IRETURN = 0xac;
+    int DRETURN = 0xaf;
+    int ARETURN = 0xb0;
+    int RETURN = 0xb1;
+
+    int GETSTATIC = 0xb2;
+    int PUTSTATIC = 0xb3;
+    int GETFIELD = 0xb4;
+    int PUTFIELD = 0xb5;
+    int INVOKEVIRTUAL = 0xb6;
+    int INVOKESPECIAL = 0xb7;
+    int INVOKESTATIC = 0xb8;
+
+    int NEW = 0xbb;
+    int NEWARRAY = 0xbc;
+    int ANEWARRAY = 0xbd;
+    int ARRAYLENGTH = 0xbe;
+    int ATHROW = 0xbf;
+    int CHECKCAST = 0xc0;
+    int INSTANCEOF = 0xc1;
+    int WIDE = 0xc4;
+
+    // array types of the newarray instruction
+    int T_BOOLEAN = 4;
+    int T_CHAR = 5;
+    int T_DOUBLE = 7;
+    int T_INT = 10;
+}
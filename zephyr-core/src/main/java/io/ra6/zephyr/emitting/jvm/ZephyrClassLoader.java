@@ -0,0 +1,43 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Loads the classes emitted for a program. Every class keeps the sites its code links against.
+ */
+class ZephyrClassLoader extends ClassLoader {
+    private final HashMap<String, byte[]> classes = new HashMap<>();
+    private final HashMap<String, Object[]> sites = new HashMap<>();
+
+    ZephyrClassLoader() {
+        super(ZephyrClassLoader.class.getClassLoader());
+    }
+
+    void addClass(String internalName, byte[] bytes, Object[] classSites) {
+        String name = internalName.replace('/', '.');
+        classes.put(name, bytes);
+        sites.put(name, classSites);
+    }
+
+    Set<String> getClassNames() {
+        return classes.keySet();
+    }
+
+    boolean isEmitted(String name) {
+        return classes.containsKey(name);
+    }
+
+    Object[] getSites(String name) {
+        return sites.get(name);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = classes.get(name);
+        if (bytes == null) {
+            return super.findClass(name);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,942 @@
+package io.ra6.zephyr.emitting.wasm;
+
+import io.ra6.zephyr.builtin.BinaryIntrinsic;
+import io.ra6.zephyr.builtin.Natives;
+import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.builtin.UnaryIntrinsic;
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.BoundNodeKind;
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.binding.BoundTypeCheckExpression;
+import io.ra6.zephyr.codeanalysis.binding.expressions.*;
+import io.ra6.zephyr.codeanalysis.binding.statements.*;
+import io.ra6.zephyr.codeanalysis.symbols.*;
+import io.ra6.zephyr.emitting.EmitterException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.ra6.zephyr.emitting.wasm.WasmOpcodes.*;
+
+/**
+ * Emits the code of a single lowered body.
+ * <p>
+ * WebAssembly only has structured control flow, so the statements are split into segments at their
+ * labels and every segment is placed behind the end of its own block. A forward jump branches out of
+ * the blocks up to its target. Bodies that jump backwards are additionally wrapped in a loop that
+ * dispatches to the target segment with a branch table.
+ */
+class WasmBodyEmitter {
+    private final WasmCompiler compiler;
+    private final WasmCode code;
+    private final WasmStruct owner;
+    private final boolean hasThis;
+    private final TypeSymbol returnType;
+    private final boolean returnsThis;
+
+    private final HashMap<Integer, Integer> parameterLocals = new HashMap<>();
+    private final HashMap<String, Integer> locals = new HashMap<>();
+    // values only live in these between two adjacent instructions
+    private final HashMap<Integer, Integer> scratchLocals = new HashMap<>();
+
+    private int[] segments;
+    private int segmentCount;
+    private int currentSegment;
+    private int dispatchLocal = -1;
+
+    WasmBodyEmitter(WasmCompiler compiler, WasmCode code, WasmStruct owner, boolean hasThis, List<TypeSymbol> parameterTypes, TypeSymbol returnType, boolean returnsThis) {
+        this.compiler = compiler;
+        this.code = code;
+        this.owner = owner;
+        this.hasThis = hasThis;
+        this.returnType = returnType;
+        this.returnsThis = returnsThis;
+
+        int local = hasThis ? 1 : 0;
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            parameterLocals.put(VariableSymbol.getParameterSlot(i), local++);
+        }
+    }
+
+    void emitFieldInitializers() {
+        for (WasmField field : owner.getFields().values()) {
+            if (field.isShared() || field.initializer() == null) {
+                continue;
+            }
+
+            code.local(LOCAL_GET, 0);
+            emitValue(field.initializer(), field.type());
+            code.memory(getStoreOpcode(field.valueType()), getAlignment(field.valueType()), field.offset());
+        }
+    }
+
+    void emitBody(BoundBlockStatement body) {
+        List<BoundStatement> statements = body.getStatements();
+
+        segments = new int[statements.size() + 1];
+        segmentCount = 1;
+        for (int i = 0; i < statements.size(); i++) {
+            if (i > 0 && statements.get(i) instanceof BoundLabelStatement) {
+                segmentCount++;
+            }
+            segments[i] = segmentCount - 1;
+        }
+        segments[statements.size()] = segmentCount - 1;
+
+        boolean hasBackwardJump = false;
+        for (int i = 0; i < statements.size(); i++) {
+            int target = getTargetIndex(statements.get(i));
+            if (target >= 0 && segments[target] <= segments[i]) {
+                hasBackwardJump = true;
+            }
+        }
+
+        if (hasBackwardJump) {
+            dispatchLocal = code.addLocal(TYPE_I32);
+            code.block(LOOP, TYPE_EMPTY);
+        }
+
+        for (int i = segmentCount - 1; i >= (hasBackwardJump ? 0 : 1); i--) {
+            code.block(BLOCK, TYPE_EMPTY);
+        }
+
+        if (hasBackwardJump) {
+            int[] depths = new int[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                depths[i] = i;
+            }
+            code.local(LOCAL_GET, dispatchLocal);
+            code.branchTable(depths, 0);
+        }
+
+        for (int i = 0; i < statements.size(); i++) {
+            if (i == 0 ? hasBackwardJump : segments[i] != segments[i - 1]) {
+                code.op(END);
+            }
+
+            currentSegment = segments[i];
+            emitStatement(statements.get(i));
+        }
+
+        if (hasBackwardJump) {
+            code.op(END);
+        }
+
+        pushDefaultReturn();
+    }
+
+    private static int getTargetIndex(BoundStatement statement) {
+        if (statement instanceof BoundGotoStatement gotoStatement) {
+            return gotoStatement.getTargetIndex();
+        }
+        if (statement instanceof BoundConditionalGotoStatement conditionalGoto) {
+            return conditionalGoto.getTargetIndex();
+        }
+        return -1;
+    }
+
+    private void emitStatement(BoundStatement statement) {
+        switch (statement.getKind()) {
+            case VARIABLE_DECLARATION -> {
+                BoundVariableDeclaration declaration = (BoundVariableDeclaration) statement;
+                VariableSymbol variable = declaration.getVariableSymbol();
+                emitValue(declaration.getInitializer(), variable.getType());
+                code.local(LOCAL_SET, getLocal(variable));
+            }
+            case EXPRESSION_STATEMENT -> drop(emitExpression(((BoundExpressionStatement) statement).getExpression()));
+            case GOTO_STATEMENT -> {
+                BoundGotoStatement gotoStatement = (BoundGotoStatement) statement;
+                if (gotoStatement.getTargetIndex() < 0) {
+                    code.op(UNREACHABLE);
+                    return;
+                }
+
+                emitJump(segments[gotoStatement.getTargetIndex()], 0);
+            }
+            case CONDITIONAL_GOTO_STATEMENT -> {
+                BoundConditionalGotoStatement conditionalGoto = (BoundConditionalGotoStatement) statement;
+                if (conditionalGoto.getTargetIndex() < 0) {
+                    emitCondition(conditionalGoto.getCondition(), conditionalGoto.jumpIfTrue());
+                    WasmRuntime.trapIf(code);
+                    return;
+                }
+
+                int target = segments[conditionalGoto.getTargetIndex()];
+                emitCondition(conditionalGoto.getCondition(), conditionalGoto.jumpIfTrue());
+                if (target > currentSegment) {
+                    code.branch(BR_IF, target - currentSegment - 1);
+                } else {
+                    code.block(IF, TYPE_EMPTY);
+                    emitJump(target, 1);
+                    code.op(END);
+                }
+            }
+            case LABEL_STATEMENT -> {
+            }
+            case RETURN_STATEMENT -> {
+                BoundExpression expression = ((BoundReturnStatement) statement).getExpression();
+                if (returnsThis) {
+                    if (expression != null) {
+                        drop(emitExpression(expression));
+                    }
+                    code.local(LOCAL_GET, 0);
+                } else if (expression == null) {
+                    pushDefaultReturn();
+                } else if (compiler.getValueType(returnType) == 0) {
+                    drop(emitExpression(expression));
+                } else {
+                    emitValue(expression, returnType);
+                }
+                code.op(RETURN);
+            }
+            default -> throw new EmitterException("Unexpected statement kind: " + statement.getKind());
+        }
+    }
+
+    /**
+     * Jumps to the start of a segment. The depth is the number of blocks opened inside the current segment.
+     */
+    private void emitJump(int target, int depth) {
+        if (target > currentSegment) {
+            code.branch(BR, depth + target - currentSegment - 1);
+            return;
+        }
+
+        // the blocks of the following segments are still open, the dispatch loop is right outside of them
+        code.i32Const(target);
+        code.local(LOCAL_SET, dispatchLocal);
+        code.branch(BR, depth + segmentCount - 1 - currentSegment);
+    }
+
+    private void emitCondition(BoundExpression condition, boolean jumpIfTrue) {
+        if (condition instanceof BoundUnaryExpression unary && unary.getIntrinsic() == UnaryIntrinsic.BOOL_NOT) {
+            emitCondition(unary.getOperand(), !jumpIfTrue);
+            return;
+        }
+
+        emitValue(condition, Types.BOOL);
+        if (!jumpIfTrue) {
+            code.op(I32_EQZ);
+        }
+    }
+
+    private void pushDefaultReturn() {
+        if (returnsThis) {
+            code.local(LOCAL_GET, 0);
+            return;
+        }
+        pushDefault(compiler.getValueType(returnType));
+    }
+
+    /**
+     * Emits an expression whose value has to be of the given type.
+     */
+    void emitValue(BoundExpression expression, TypeSymbol type) {
+        int expected = compiler.getValueType(type);
+        int actual = emitExpression(expression);
+        if (actual != expected) {
+            throw new EmitterException("Cannot convert %s to %s".formatted(expression.getType().getName(), type.getName()));
+        }
+    }
+
+    private int emitExpression(BoundExpression expression) {
+        return switch (expression.getKind()) {
+            case LITERAL_EXPRESSION -> emitLiteral(((BoundLiteralExpression) expression).getValue());
+            case VARIABLE_EXPRESSION -> {
+                VariableSymbol variable = ((BoundVariableExpression) expression).getVariable();
+                code.local(LOCAL_GET, getLocal(variable));
+                yield compiler.getValueType(variable.getType());
+            }
+            case THIS_EXPRESSION -> {
+                if (!hasThis) {
+                    throw new EmitterException("Cannot use 'this' in a shared context");
+                }
+                code.local(LOCAL_GET, 0);
+                yield TYPE_I32;
+            }
+            case ASSIGNMENT_EXPRESSION -> emitAssignmentExpression((BoundAssignmentExpression) expression);
+            case INSTANCE_CREATION_EXPRESSION -> emitInstanceCreationExpression((BoundInstanceCreationExpression) expression);
+            case ARRAY_LITERAL_EXPRESSION -> emitArrayLiteralExpression((BoundArrayLiteralExpression) expression);
+            case ARRAY_CREATION_EXPRESSION -> emitArrayCreationExpression((BoundArrayCreationExpression) expression);
+            case FUNCTION_CALL_EXPRESSION -> emitFunctionCallExpression((BoundFunctionCallExpression) expression);
+            case BINARY_EXPRESSION -> emitBinaryExpression((BoundBinaryExpression) expression);
+            case UNARY_EXPRESSION -> emitUnaryExpression((BoundUnaryExpression) expression);
+            case MEMBER_ACCESS_EXPRESSION -> {
+                BoundMemberAccessExpression memberAccess = (BoundMemberAccessExpression) expression;
+                if (!(memberAccess.getMember() instanceof FieldSymbol field)) {
+                    throw new EmitterException("Unexpected member access expression: " + memberAccess.getMember().getKind());
+                }
+                yield emitFieldAccess(memberAccess.getTarget(), field);
+            }
+            case FIELD_ACCESS_EXPRESSION -> {
+                BoundFieldAccessExpression fieldAccess = (BoundFieldAccessExpression) expression;
+                yield emitFieldAccess(fieldAccess.getTarget(), fieldAccess.getField());
+            }
+            case ARRAY_ACCESS_EXPRESSION -> {
+                BoundArrayAccessExpression arrayAccess = (BoundArrayAccessExpression) expression;
+                TypeSymbol elementType = getElementType(arrayAccess.getTarget().getType());
+                emitElementAddress(arrayAccess.getTarget(), arrayAccess.getIndex(), elementType);
+                int valueType = compiler.getValueType(elementType);
+                code.memory(getLoadOpcode(valueType), getAlignment(valueType), 0);
+                yield valueType;
+            }
+            case CONVERSION_EXPRESSION -> {
+                BoundConversionExpression conversion = (BoundConversionExpression) expression;
+                emitValue(conversion.getExpression(), conversion.getType());
+                yield compiler.getValueType(conversion.getType());
+            }
+            case CONDITIONAL_EXPRESSION -> {
+                BoundConditionalExpression conditional = (BoundConditionalExpression) expression;
+                int valueType = compiler.getValueType(conditional.getType());
+                emitValue(conditional.getCondition(), Types.BOOL);
+                code.block(IF, valueType);
+                emitValue(conditional.getThenExpression(), conditional.getType());
+                code.op(ELSE);
+                emitValue(conditional.getElseExpression(), conditional.getType());
+                code.op(END);
+                yield valueType;
+            }
+            case TYPE_CHECK_EXPRESSION -> {
+                BoundTypeCheckExpression typeCheck = (BoundTypeCheckExpression) expression;
+                TypeSymbol valueType = typeCheck.getLeftExpression().getType();
+                if (typeCheck.getRightType().isGeneric() || valueType == null || valueType.isGeneric() || valueType.equals(Types.ANY)) {
+                    throw new EmitterException("Type checks of values without a static type are not supported");
+                }
+
+                // without generics and subtypes the type of every value is known statically
+                drop(emitExpression(typeCheck.getLeftExpression()));
+                code.i32Const(typeCheck.getRightType().equals(Types.ANY) || typeCheck.getRightType().equals(valueType) ? 1 : 0);
+                yield TYPE_I32;
+            }
+            default -> throw new EmitterException("Unsupported expression: " + expression.getKind());
+        };
+    }
+
+    private int emitLiteral(Object value) {
+        if (value instanceof Integer intValue) {
+            code.i32Const(intValue);
+            return TYPE_I32;
+        }
+        if (value instanceof Double doubleValue) {
+            code.f64Const(doubleValue);
+            return TYPE_F64;
+        }
+        if (value instanceof Boolean boolValue) {
+            code.i32Const(boolValue ? 1 : 0);
+            return TYPE_I32;
+        }
+        if (value instanceof Character charValue) {
+            code.i32Const(charValue);
+            return TYPE_I32;
+        }
+        if (value instanceof String stringValue) {
+            code.i32Const(compiler.getStringAddress(stringValue));
+            return TYPE_I32;
+        }
+        if (value == null) {
+            code.i32Const(WasmRuntime.NULL);
+            return TYPE_I32;
+        }
+        throw new EmitterException("Unsupported literal: " + value.getClass().getSimpleName());
+    }
+
+    private int emitAssignmentExpression(BoundAssignmentExpression expression) {
+        BoundExpression target = expression.getTarget();
+
+        if (target instanceof BoundVariableExpression variableAccess) {
+            VariableSymbol variable = variableAccess.getVariable();
+            emitValue(expression.getExpression(), variable.getType());
+            code.local(LOCAL_TEE, getLocal(variable));
+            return compiler.getValueType(variable.getType());
+        }
+
+        if (target instanceof BoundMemberAccessExpression memberAccess) {
+            if (!(memberAccess.getMember() instanceof FieldSymbol fieldSymbol)) {
+                throw new EmitterException("Invalid assignment target: " + memberAccess.getMember().getKind());
+            }
+
+            WasmField field = resolveField(memberAccess.getTarget().getType(), fieldSymbol);
+            int valueType = compiler.getValueType(field.type());
+            if (field.isShared()) {
+                discardTarget(memberAccess.getTarget());
+                int global = compiler.getGlobal(field);
+                emitValue(expression.getExpression(), field.type());
+                code.global(GLOBAL_SET, global);
+                code.global(GLOBAL_GET, global);
+            } else {
+                emitObject(memberAccess.getTarget());
+                emitValue(expression.getExpression(), field.type());
+                code.local(LOCAL_TEE, getScratchLocal(valueType));
+                code.memory(getStoreOpcode(valueType), getAlignment(valueType), field.offset());
+                code.local(LOCAL_GET, getScratchLocal(valueType));
+            }
+            return valueType;
+        }
+
+        if (target instanceof BoundArrayAccessExpression arrayAccess) {
+            TypeSymbol elementType = getElementType(arrayAccess.getTarget().getType());
+            int valueType = compiler.getValueType(elementType);
+            emitElementAddress(arrayAccess.getTarget(), arrayAccess.getIndex(), elementType);
+            emitValue(expression.getExpression(), elementType);
+            code.local(LOCAL_TEE, getScratchLocal(valueType));
+            code.memory(getStoreOpcode(valueType), getAlignment(valueType), 0);
+            code.local(LOCAL_GET, getScratchLocal(valueType));
+            return valueType;
+        }
+
+        throw new EmitterException("Invalid assignment target: " + target.getKind());
+    }
+
+    private int emitFieldAccess(BoundExpression target, FieldSymbol fieldSymbol) {
+        if (target.getType() instanceof ArrayTypeSymbol && fieldSymbol.getName().equals("length")) {
+            emitObject(target);
+            code.memory(I32_LOAD, 2, 0);
+            return TYPE_I32;
+        }
+
+        WasmField field = resolveField(target.getType(), fieldSymbol);
+        int valueType = compiler.getValueType(field.type());
+        if (field.isShared()) {
+            discardTarget(target);
+            code.global(GLOBAL_GET, compiler.getGlobal(field));
+        } else {
+            emitObject(target);
+            code.memory(getLoadOpcode(valueType), getAlignment(valueType), field.offset());
+        }
+        return valueType;
+    }
+
+    private WasmField resolveField(TypeSymbol type, FieldSymbol fieldSymbol) {
+        WasmStruct struct = compiler.getStruct(type);
+        WasmField field = struct == null ? null : struct.getField(fieldSymbol.getName());
+        if (field == null) {
+            throw new EmitterException("Cannot access field '%s' of type '%s'".formatted(fieldSymbol.getName(), type == null ? null : type.getName()));
+        }
+        return field;
+    }
+
+    /**
+     * Emits the address of an object and traps if it is null. {@code this} is never null.
+     */
+    private void emitObject(BoundExpression target) {
+        if (target.getKind() == BoundNodeKind.THIS_EXPRESSION) {
+            emitExpression(target);
+            return;
+        }
+
+        if (emitExpression(target) != TYPE_I32) {
+            throw new EmitterException("Expected an object, got " + target.getType().getName());
+        }
+
+        int scratch = getScratchLocal(TYPE_I32);
+        code.local(LOCAL_TEE, scratch);
+        code.op(I32_EQZ);
+        WasmRuntime.trapIf(code);
+        code.local(LOCAL_GET, scratch);
+    }
+
+    // the target of a shared member is only evaluated for its side effects
+    private void discardTarget(BoundExpression target) {
+        if (target.getKind() != BoundNodeKind.TYPE_EXPRESSION) {
+            drop(emitExpression(target));
+        }
+    }
+
+    private void emitElementAddress(BoundExpression array, BoundExpression index, TypeSymbol elementType) {
+        emitValue(array, new ArrayTypeSymbol(elementType));
+        emitValue(index, Types.INT);
+        code.i32Const(compiler.getElementShift(elementType));
+        code.call(compiler.getRuntime().elementAddress());
+    }
+
+    private int emitArrayLiteralExpression(BoundArrayLiteralExpression expression) {
+        TypeSymbol elementType = getElementType(expression.getType());
+        int valueType = compiler.getValueType(elementType);
+        int shift = compiler.getElementShift(elementType);
+        List<BoundExpression> elements = expression.getElements();
+
+        // elements can contain array literals themselves, so the array needs a local of its own
+        int array = code.addLocal(TYPE_I32);
+        code.i32Const(elements.size());
+        code.i32Const(shift);
+        code.call(compiler.getRuntime().newArray());
+        code.local(LOCAL_SET, array);
+
+        for (int i = 0; i < elements.size(); i++) {
+            code.local(LOCAL_GET, array);
+            emitValue(elements.get(i), elementType);
+            code.memory(getStoreOpcode(valueType), getAlignment(valueType), WasmRuntime.ELEMENTS_OFFSET + (i << shift));
+        }
+
+        code.local(LOCAL_GET, array);
+        return TYPE_I32;
+    }
+
+    private int emitArrayCreationExpression(BoundArrayCreationExpression expression) {
+        List<Map.Entry<BoundExpression, BoundExpression>> dimensions = new ArrayList<>(expression.getDimensions().entrySet());
+        List<TypeSymbol> types = new ArrayList<>();
+        TypeSymbol type = expression.getType();
+        for (int i = 0; i < dimensions.size(); i++) {
+            types.add(type);
+            type = getElementType(type);
+        }
+        TypeSymbol elementType = type;
+
+        // the sizes are evaluated up front, only the innermost initializer is used
+        int[] lengths = new int[dimensions.size()];
+        for (int i = 0; i < dimensions.size(); i++) {
+            lengths[i] = code.addLocal(TYPE_I32);
+            emitValue(dimensions.get(i).getKey(), Types.INT);
+            code.local(LOCAL_SET, lengths[i]);
+
+            BoundExpression initializer = dimensions.get(i).getValue();
+            if (initializer != null && i < dimensions.size() - 1) {
+                drop(emitExpression(initializer));
+            }
+        }
+
+        int initializer = -1;
+        BoundExpression initializerExpression = dimensions.get(dimensions.size() - 1).getValue();
+        if (initializerExpression != null && !isDefaultLiteral(initializerExpression)) {
+            initializer = code.addLocal(compiler.getValueType(elementType));
+            emitValue(initializerExpression, elementType);
+            code.local(LOCAL_SET, initializer);
+        }
+
+        emitArrayLevel(types, lengths, 0, elementType, initializer);
+        return TYPE_I32;
+    }
+
+    private void emitArrayLevel(List<TypeSymbol> types, int[] lengths, int level, TypeSymbol elementType, int initializer) {
+        if (level == lengths.length - 1) {
+            code.local(LOCAL_GET, lengths[level]);
+            code.i32Const(compiler.getElementShift(elementType));
+            code.call(compiler.getRuntime().newArray());
+
+            if (initializer >= 0) {
+                int array = getScratchLocal(TYPE_I32);
+                int valueType = compiler.getValueType(elementType);
+                code.local(LOCAL_TEE, array);
+                code.local(LOCAL_GET, initializer);
+                code.call(compiler.getRuntime().fill(valueType));
+                code.local(LOCAL_GET, array);
+            }
+            return;
+        }
+
+        int array = code.addLocal(TYPE_I32);
+        int index = code.addLocal(TYPE_I32);
+
+        code.local(LOCAL_GET, lengths[level]);
+        code.i32Const(2);
+        code.call(compiler.getRuntime().newArray());
+        code.local(LOCAL_SET, array);
+
+        code.block(BLOCK, TYPE_EMPTY);
+        code.block(LOOP, TYPE_EMPTY);
+        code.local(LOCAL_GET, index);
+        code.local(LOCAL_GET, lengths[level]);
+        code.op(I32_GE_S);
+        code.branch(BR_IF, 1);
+        code.local(LOCAL_GET, array);
+        code.local(LOCAL_GET, index);
+        code.i32Const(2);
+        code.op(I32_SHL);
+        code.op(I32_ADD);
+        emitArrayLevel(types, lengths, level + 1, elementType, initializer);
+        code.memory(I32_STORE, 2, WasmRuntime.ELEMENTS_OFFSET);
+        code.local(LOCAL_GET, index);
+        code.i32Const(1);
+        code.op(I32_ADD);
+        code.local(LOCAL_SET, index);
+        code.branch(BR, 0);
+        code.op(END);
+        code.op(END);
+
+        code.local(LOCAL_GET, array);
+    }
+
+    // fresh memory is zeroed, so filling it with zeroes can be skipped
+    private static boolean isDefaultLiteral(BoundExpression expression) {
+        if (!(expression instanceof BoundLiteralExpression literal)) {
+            return false;
+        }
+
+        Object value = literal.getValue();
+        return value == null || Integer.valueOf(0).equals(value) || Boolean.FALSE.equals(value)
+                || Character.valueOf('\0').equals(value) || Double.valueOf(0.0).equals(value);
+    }
+
+    private int emitInstanceCreationExpression(BoundInstanceCreationExpression expression) {
+        WasmStruct struct = compiler.getStruct(expression.getType());
+        WasmFunction constructor = struct == null ? null : struct.getConstructor(expression.getArguments().size());
+        if (constructor == null) {
+            throw new EmitterException("Cannot create an instance of type '%s'".formatted(expression.getType().getName()));
+        }
+
+        code.i32Const(struct.getSize());
+        code.call(compiler.getRuntime().alloc());
+        emitArguments(expression.getArguments(), constructor.parameterTypes());
+        code.call(compiler.getFunctionIndex(constructor));
+        return TYPE_I32;
+    }
+
+    private void emitArguments(List<BoundExpression> arguments, List<TypeSymbol> parameterTypes) {
+        for (int i = 0; i < arguments.size(); i++) {
+            emitValue(arguments.get(i), parameterTypes.get(i));
+        }
+    }
+
+    private int emitFunctionCallExpression(BoundFunctionCallExpression expression) {
+        BoundExpression callee = expression.getCallee();
+        FunctionSymbol function = expression.getFunction();
+        List<BoundExpression> arguments = expression.getArguments();
+        TypeSymbol calleeType = callee.getType();
+
+        WasmStruct struct = compiler.getStruct(calleeType);
+        if (struct != null) {
+            WasmFunction target = struct.getFunction(function.getName(), function.isShared(), arguments.size());
+            if (target == null) {
+                throw new EmitterException("Cannot find function '%s' of type '%s'".formatted(function.getName(), calleeType.getName()));
+            }
+
+            if (target.isStatic()) {
+                discardTarget(callee);
+            } else {
+                emitObject(callee);
+            }
+
+            emitArguments(arguments, target.parameterTypes());
+            code.call(compiler.getFunctionIndex(target));
+            return compiler.getValueType(target.returnType());
+        }
+
+        if (calleeType instanceof ArrayTypeSymbol arrayType) {
+            if (!function.getName().equals("copy") && !function.getName().equals("clone")) {
+                throw new EmitterException("Cannot call function '%s' on array".formatted(function.getName()));
+            }
+
+            emitValue(callee, arrayType);
+            code.i32Const(compiler.getElementShift(arrayType.getElementType()));
+            code.call(compiler.getRuntime().copyArray());
+            return TYPE_I32;
+        }
+
+        if (calleeType != null && Natives.getNativeType(calleeType.getName()) != null) {
+            if (!calleeType.getName().equals(WasmCompiler.CONSOLE_MODULE)) {
+                throw new EmitterException("Native type '%s' is not supported".formatted(calleeType.getName()));
+            }
+
+            int index = compiler.getConsoleFunction(function.getName());
+            discardTarget(callee);
+            emitArguments(arguments, function.getParameters().stream().map(ParameterSymbol::getType).toList());
+            code.call(index);
+            return 0;
+        }
+
+        return emitBuiltinCall(calleeType, function, callee, arguments);
+    }
+
+    private int emitBuiltinCall(TypeSymbol type, FunctionSymbol function, BoundExpression callee, List<BoundExpression> arguments) {
+        String name = function.getName();
+
+        if (Types.STRING.equals(type) && !function.isShared()) {
+            switch (name) {
+                case "length" -> {
+                    emitObject(callee);
+                    code.memory(I32_LOAD, 2, 0);
+                    return TYPE_I32;
+                }
+                case "charAt" -> {
+                    emitValue(callee, Types.STRING);
+                    emitValue(arguments.get(0), Types.INT);
+                    code.i32Const(1);
+                    code.call(compiler.getRuntime().elementAddress());
+                    code.memory(I32_LOAD16_U, 1, 0);
+                    return TYPE_I32;
+                }
+                case "toString" -> {
+                    return emitExpression(callee);
+                }
+            }
+        }
+
+        if (name.equals("toString") && !function.isShared()) {
+            if (Types.INT.equals(type)) {
+                emitValue(callee, Types.INT);
+                code.call(compiler.getRuntime().intToString());
+                return TYPE_I32;
+            }
+            if (Types.CHAR.equals(type)) {
+                emitValue(callee, Types.CHAR);
+                code.call(compiler.getRuntime().charToString());
+                return TYPE_I32;
+            }
+            if (Types.BOOL.equals(type)) {
+                code.i32Const(compiler.getStringAddress("true"));
+                code.i32Const(compiler.getStringAddress("false"));
+                emitValue(callee, Types.BOOL);
+                code.op(SELECT);
+                return TYPE_I32;
+            }
+        }
+
+        if (Types.CHAR.equals(type) && name.equals("toInt") && !function.isShared()) {
+            return emitExpression(callee);
+        }
+
+        if (Types.INT.equals(type) && name.equals("fromDouble") && function.isShared()) {
+            discardTarget(callee);
+            emitValue(arguments.get(0), Types.DOUBLE);
+            code.truncateSaturated();
+            return TYPE_I32;
+        }
+
+        if (Types.DOUBLE.equals(type) && name.equals("fromInt") && function.isShared()) {
+            discardTarget(callee);
+            emitValue(arguments.get(0), Types.INT);
+            code.op(F64_CONVERT_I32_S);
+            return TYPE_F64;
+        }
+
+        throw new EmitterException("Function '%s' of type '%s' is not supported by the WebAssembly emitter".formatted(name, type == null ? null : type.getName()));
+    }
+
+    private int emitUnaryExpression(BoundUnaryExpression expression) {
+        UnaryIntrinsic intrinsic = expression.getIntrinsic();
+        BoundExpression operand = expression.getOperand();
+
+        if (intrinsic != null) {
+            switch (intrinsic) {
+                case INT_NEGATE -> {
+                    code.i32Const(0);
+                    emitValue(operand, Types.INT);
+                    code.op(I32_SUB);
+                }
+                case INT_IDENTITY -> emitValue(operand, Types.INT);
+                case INT_COMPLEMENT -> {
+                    emitValue(operand, Types.INT);
+                    code.i32Const(-1);
+                    code.op(I32_XOR);
+                }
+                case BOOL_NOT -> {
+                    emitValue(operand, Types.BOOL);
+                    code.op(I32_EQZ);
+                }
+            }
+            return TYPE_I32;
+        }
+
+        TypeSymbol operandType = operand.getType();
+        WasmStruct struct = compiler.getStruct(operandType);
+        if (struct != null) {
+            WasmFunction operator = struct.getUnaryOperator(expression.getOperator());
+            if (operator == null) {
+                throw new EmitterException("No unary operator " + expression.getOperator() + " found for type " + operandType.getName());
+            }
+
+            emitObject(operand);
+            code.call(compiler.getFunctionIndex(operator));
+            return compiler.getValueType(operator.returnType());
+        }
+
+        if (Types.DOUBLE.equals(operandType) && (expression.getOperator().equals("-") || expression.getOperator().equals("+"))) {
+            emitValue(operand, Types.DOUBLE);
+            if (expression.getOperator().equals("-")) {
+                code.op(F64_NEG);
+            }
+            return TYPE_F64;
+        }
+
+        throw new EmitterException("Unary operator %s of type '%s' is not supported by the WebAssembly emitter".formatted(expression.getOperator(), operandType.getName()));
+    }
+
+    private int emitBinaryExpression(BoundBinaryExpression expression) {
+        BinaryIntrinsic intrinsic = expression.getIntrinsic();
+        if (intrinsic != null) {
+            return emitBinaryIntrinsic(expression, intrinsic);
+        }
+
+        BoundExpression left = expression.getLeft();
+        TypeSymbol leftType = left.getType();
+        WasmStruct struct = compiler.getStruct(leftType);
+        WasmFunction operator = struct == null ? null : struct.getBinaryOperator(expression.getOperator(), expression.getRight().getType());
+        if (operator == null) {
+            throw new EmitterException("Binary operator %s of type '%s' is not supported by the WebAssembly emitter".formatted(expression.getOperator(), leftType.getName()));
+        }
+
+        emitObject(left);
+        emitArguments(List.of(expression.getRight()), operator.parameterTypes());
+        code.call(compiler.getFunctionIndex(operator));
+        return compiler.getValueType(operator.returnType());
+    }
+
+    private int emitBinaryIntrinsic(BoundBinaryExpression expression, BinaryIntrinsic intrinsic) {
+        TypeSymbol leftType = intrinsic.getLeftType();
+        TypeSymbol rightType = intrinsic.getRightType();
+        String operator = intrinsic.getOperator();
+
+        if (leftType.equals(Types.STRING)) {
+            return emitStringIntrinsic(expression, intrinsic);
+        }
+
+        if (leftType.equals(Types.DOUBLE) || rightType.equals(Types.DOUBLE)) {
+            emitAsDouble(expression.getLeft(), leftType);
+            emitAsDouble(expression.getRight(), rightType);
+
+            if (operator.equals("%")) {
+                code.call(compiler.getRuntime().remainder());
+                return TYPE_F64;
+            }
+
+            code.op(switch (operator) {
+                case "+" -> F64_ADD;
+                case "-" -> F64_SUB;
+                case "*" -> F64_MUL;
+                case "/" -> F64_DIV;
+                case "==" -> F64_EQ;
+                case "!=" -> F64_NE;
+                case "<" -> F64_LT;
+                case "<=" -> F64_LE;
+                case ">" -> F64_GT;
+                case ">=" -> F64_GE;
+                default -> throw new EmitterException("Unsupported operator for doubles: " + operator);
+            });
+            return isComparison(operator) ? TYPE_I32 : TYPE_F64;
+        }
+
+        emitValue(expression.getLeft(), leftType);
+        emitValue(expression.getRight(), rightType);
+
+        // an int compared with a char is truncated to a char first
+        if (leftType.equals(Types.CHAR) && rightType.equals(Types.INT) && isComparison(operator)) {
+            code.i32Const(0xFFFF);
+            code.op(I32_AND);
+        }
+
+        code.op(switch (operator) {
+            case "+" -> I32_ADD;
+            case "-" -> I32_SUB;
+            case "*" -> I32_MUL;
+            case "/" -> I32_DIV_S;
+            case "%" -> I32_REM_S;
+            case "&", "&&" -> I32_AND;
+            case "|", "||" -> I32_OR;
+            case "^" -> I32_XOR;
+            case "==" -> I32_EQ;
+            case "!=" -> I32_NE;
+            case "<" -> I32_LT_S;
+            case "<=" -> I32_LE_S;
+            case ">" -> I32_GT_S;
+            case ">=" -> I32_GE_S;
+            default -> throw new EmitterException("Unsupported operator: " + operator);
+        });
+
+        if (intrinsic == BinaryIntrinsic.CHAR_INT_ADD || intrinsic == BinaryIntrinsic.CHAR_INT_SUBTRACT) {
+            code.i32Const(0xFFFF);
+            code.op(I32_AND);
+        }
+        return TYPE_I32;
+    }
+
+    private void emitAsDouble(BoundExpression expression, TypeSymbol type) {
+        emitValue(expression, type);
+        if (type.equals(Types.INT)) {
+            code.op(F64_CONVERT_I32_S);
+        }
+    }
+
+    private int emitStringIntrinsic(BoundBinaryExpression expression, BinaryIntrinsic intrinsic) {
+        switch (intrinsic) {
+            case STRING_CONCAT -> {
+                emitValue(expression.getLeft(), Types.STRING);
+                emitValue(expression.getRight(), Types.STRING);
+                code.call(compiler.getRuntime().concat());
+            }
+            case STRING_CHAR_CONCAT -> {
+                emitValue(expression.getLeft(), Types.STRING);
+                emitValue(expression.getRight(), Types.CHAR);
+                code.call(compiler.getRuntime().charToString());
+                code.call(compiler.getRuntime().concat());
+            }
+            case STRING_EQUALS, STRING_NOT_EQUALS -> {
+                emitValue(expression.getLeft(), Types.STRING);
+                emitValue(expression.getRight(), Types.STRING);
+                code.call(compiler.getRuntime().stringEquals());
+                if (intrinsic == BinaryIntrinsic.STRING_NOT_EQUALS) {
+                    code.op(I32_EQZ);
+                }
+            }
+            default -> {
+                // strings are ordered by their length
+                emitObject(expression.getLeft());
+                code.memory(I32_LOAD, 2, 0);
+                emitObject(expression.getRight());
+                code.memory(I32_LOAD, 2, 0);
+                code.op(switch (intrinsic.getOperator()) {
+                    case "<" -> I32_LT_S;
+                    case "<=" -> I32_LE_S;
+                    case ">" -> I32_GT_S;
+                    default -> I32_GE_S;
+                });
+            }
+        }
+        return TYPE_I32;
+    }
+
+    private static boolean isComparison(String operator) {
+        return switch (operator) {
+            case "==", "!=", "<", "<=", ">", ">=" -> true;
+            default -> false;
+        };
+    }
+
+    private TypeSymbol getElementType(TypeSymbol type) {
+        if (!(type instanceof ArrayTypeSymbol arrayType)) {
+            throw new EmitterException("Cannot access array element of non-array " + (type == null ? null : type.getName()));
+        }
+        return arrayType.getElementType();
+    }
+
+    private int getLocal(VariableSymbol variable) {
+        Integer parameter = parameterLocals.get(variable.getSlot());
+        if (parameter != null) {
+            return parameter;
+        }
+
+        int valueType = compiler.getValueType(variable.getType());
+        return locals.computeIfAbsent(variable.getSlot() + ":" + valueType, key -> code.addLocal(valueType));
+    }
+
+    private int getScratchLocal(int valueType) {
+        return scratchLocals.computeIfAbsent(valueType, code::addLocal);
+    }
+
+    private void pushDefault(int valueType) {
+        if (valueType == TYPE_I32) {
+            code.i32Const(0);
+        } else if (valueType == TYPE_F64) {
+            code.f64Const(0);
+        }
+    }
+
+    private void drop(int valueType) {
+        if (valueType != 0) {
+            code.op(DROP);
+        }
+    }
+
+    private static int getLoadOpcode(int valueType) {
+        return valueType == TYPE_F64 ? F64_LOAD : I32_LOAD;
+    }
+
+    private static int getStoreOpcode(int valueType) {
+        return valueType == TYPE_F64 ? F64_STORE : I32_STORE;
+    }
+
+    private static int getAlignment(int valueType) {
+        return valueType == TYPE_F64 ? 3 : 2;
+    }
+}
@@ -0,0 +1,80 @@
+package io.ra6.zephyr.emitting.wasm;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer with the integer encodings of the WebAssembly binary format.
+ */
+class WasmBuffer {
+    private byte[] bytes = new byte[64];
+    private int size;
+
+    void writeByte(int value) {
+        if (size == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    void writeBytes(byte[] values) {
+        for (byte value : values) {
+            writeByte(value);
+        }
+    }
+
+    void writeUnsigned(int value) {
+        do {
+            int b = value & 0x7F;
+            value >>>= 7;
+            writeByte(value != 0 ? b | 0x80 : b);
+        } while (value != 0);
+    }
+
+    void writeSigned(int value) {
+        while (true) {
+            int b = value & 0x7F;
+            value >>= 7;
+            boolean done = (value == 0 && (b & 0x40) == 0) || (value == -1 && (b & 0x40) != 0);
+            writeByte(done ? b : b | 0x80);
+            if (done) {
+                return;
+            }
+        }
+    }
+
+    void writeDouble(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        for (int i = 0; i < 8; i++) {
+            writeByte((int) (bits >>> (i * 8)));
+        }
+    }
+
+    void writeInt(int value) {
+        for (int i = 0; i < 4; i++) {
+            writeByte(value >>> (i * 8));
+        }
+    }
+
+    void writeName(String name) {
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        writeUnsigned(encoded.length);
+        writeBytes(encoded);
+    }
+
+    // a vector of bytes is prefixed with its length
+    void writeSized(WasmBuffer content) {
+        writeUnsigned(content.size);
+        for (int i = 0; i < content.size; i++) {
+            writeByte(content.bytes[i]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+}
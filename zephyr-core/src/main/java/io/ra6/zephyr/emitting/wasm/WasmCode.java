@@ -0,0 +1,118 @@
+package io.ra6.zephyr.emitting.wasm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.ra6.zephyr.emitting.wasm.WasmOpcodes.*;
+
+/**
+ * The body of a function: its locals and its instruction stream. Branch depths are computed by the
+ * caller, this only takes care of the encoding.
+ */
+class WasmCode {
+    private final WasmBuffer code = new WasmBuffer();
+    private final List<Integer> localTypes = new ArrayList<>();
+    private final int parameterCount;
+
+    WasmCode(int parameterCount) {
+        this.parameterCount = parameterCount;
+    }
+
+    int addLocal(int type) {
+        localTypes.add(type);
+        return parameterCount + localTypes.size() - 1;
+    }
+
+    void op(int opcode) {
+        code.writeByte(opcode);
+    }
+
+    void i32Const(int value) {
+        code.writeByte(I32_CONST);
+        code.writeSigned(value);
+    }
+
+    void f64Const(double value) {
+        code.writeByte(F64_CONST);
+        code.writeDouble(value);
+    }
+
+    void local(int opcode, int index) {
+        code.writeByte(opcode);
+        code.writeUnsigned(index);
+    }
+
+    void global(int opcode, int index) {
+        code.writeByte(opcode);
+        code.writeUnsigned(index);
+    }
+
+    void call(int function) {
+        code.writeByte(CALL);
+        code.writeUnsigned(function);
+    }
+
+    void block(int opcode, int blockType) {
+        code.writeByte(opcode);
+        code.writeByte(blockType);
+    }
+
+    void branch(int opcode, int depth) {
+        code.writeByte(opcode);
+        code.writeUnsigned(depth);
+    }
+
+    void branchTable(int[] depths, int defaultDepth) {
+        code.writeByte(BR_TABLE);
+        code.writeUnsigned(depths.length);
+        for (int depth : depths) {
+            code.writeUnsigned(depth);
+        }
+        code.writeUnsigned(defaultDepth);
+    }
+
+    void memory(int opcode, int alignment, int offset) {
+        code.writeByte(opcode);
+        code.writeUnsigned(alignment);
+        code.writeUnsigned(offset);
+    }
+
+    void memoryGrow() {
+        code.writeByte(MEMORY_GROW);
+        code.writeByte(0);
+    }
+
+    void memorySize() {
+        code.writeByte(MEMORY_SIZE);
+        code.writeByte(0);
+    }
+
+    void truncateSaturated() {
+        code.writeByte(PREFIX_MISC);
+        code.writeUnsigned(I32_TRUNC_SAT_F64_S);
+    }
+
+    void write(WasmBuffer out) {
+        WasmBuffer body = new WasmBuffer();
+
+        // locals are declared as runs of the same type
+        List<int[]> runs = new ArrayList<>();
+        for (int type : localTypes) {
+            if (!runs.isEmpty() && runs.get(runs.size() - 1)[1] == type) {
+                runs.get(runs.size() - 1)[0]++;
+            } else {
+                runs.add(new int[]{1, type});
+            }
+        }
+
+        body.writeUnsigned(runs.size());
+        for (int[] run : runs) {
+            body.writeUnsigned(run[0]);
+            body.writeByte(run[1]);
+        }
+
+        body.writeBytes(code.toByteArray());
+        body.writeByte(END);
+        out.writeSized(body);
+    }
+}
@@ -0,0 +1,332 @@
+package io.ra6.zephyr.emitting.wasm;
+
+import io.ra6.zephyr.builtin.Natives;
+import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
+import io.ra6.zephyr.codeanalysis.lowering.Lowerer;
+import io.ra6.zephyr.codeanalysis.symbols.*;
+import io.ra6.zephyr.emitting.EmitterException;
+import lombok.Getter;
+
+import java.util.*;
+
+import static io.ra6.zephyr.emitting.wasm.WasmOpcodes.*;
+
+/**
+ * Translates a program and the programs it imports into a single WebAssembly module.
+ * <p>
+ * Only the functions reachable from {@code main} are emitted, so unsupported code that is never called
+ * does not prevent a program from compiling. Supported are the types int, double, bool, char, str,
+ * arrays and user types without generics. Objects live in linear memory, shared fields in globals.
+ * <p>
+ * The module imports {@code NativeConsole.printlnString} and {@code NativeConsole.printString}, both
+ * taking the address of a string, and exports its {@code memory} and a {@code main} function
+ * returning the exit code.
+ */
+public class WasmCompiler {
+    public static final String CONSOLE_MODULE = "NativeConsole";
+    public static final String ENTRY_EXPORT = "main";
+    public static final String MEMORY_EXPORT = "memory";
+
+    private static final List<String> CONSOLE_FUNCTIONS = List.of("printlnString", "printString");
+
+    private final List<BoundProgramScope> programs;
+    private final LinkedHashMap<String, WasmStruct> structs = new LinkedHashMap<>();
+
+    private final WasmModule module = new WasmModule();
+    private final HashMap<String, Integer> consoleFunctions = new HashMap<>();
+    private final int heapGlobal;
+    @Getter
+    private final WasmRuntime runtime;
+
+    private final IdentityHashMap<WasmFunction, Integer> functionIndices = new IdentityHashMap<>();
+    private final ArrayDeque<WasmFunction> pendingFunctions = new ArrayDeque<>();
+    private final IdentityHashMap<WasmField, Integer> globals = new IdentityHashMap<>();
+    private final List<WasmField> sharedFields = new ArrayList<>();
+
+    private final HashMap<String, Integer> strings = new HashMap<>();
+    private final WasmBuffer data = new WasmBuffer();
+
+    public WasmCompiler(List<BoundProgramScope> programs) {
+        this.programs = programs;
+
+        for (String name : CONSOLE_FUNCTIONS) {
+            consoleFunctions.put(name, module.addImport(CONSOLE_MODULE, name, List.of(TYPE_I32), List.of()));
+        }
+
+        heapGlobal = module.addGlobal(TYPE_I32, 0);
+        runtime = new WasmRuntime(module, heapGlobal);
+    }
+
+    public byte[] compile() {
+        for (BoundProgramScope program : programs) {
+            for (TypeSymbol type : program.getDeclaredTypes()) {
+                if (Types.isBuiltinType(type) || Natives.getNativeType(type.getName()) != null || structs.containsKey(type.getName())) {
+                    continue;
+                }
+
+                WasmStruct struct = new WasmStruct(type, program.getTypeScope(type));
+                structs.put(type.getName(), struct);
+            }
+        }
+
+        for (WasmStruct struct : structs.values()) {
+            declareMembers(struct);
+        }
+
+        WasmFunction main = findEntry(programs.get(0));
+
+        int initializer = module.addFunction(List.of(), List.of());
+        int entry = module.addFunction(List.of(), List.of(TYPE_I32));
+        module.addExport(ENTRY_EXPORT, KIND_FUNCTION, entry);
+        module.addExport(MEMORY_EXPORT, KIND_MEMORY, 0);
+
+        WasmCode entryCode = new WasmCode(0);
+        entryCode.call(initializer);
+        entryCode.i32Const(0);
+        entryCode.i32Const(2);
+        entryCode.call(runtime.newArray());
+        entryCode.call(getFunctionIndex(main));
+        if (main.returnType().equals(Types.VOID)) {
+            entryCode.i32Const(0);
+        }
+        module.setFunctionBody(entry, entryCode);
+
+        emitPendingFunctions();
+
+        // shared fields start out zeroed, the ones that are used get their initializer run before main
+        WasmCode initializerCode = new WasmCode(0);
+        WasmBodyEmitter initializerEmitter = new WasmBodyEmitter(this, initializerCode, null, false, List.of(), Types.VOID, false);
+        for (int i = 0; i < sharedFields.size(); i++) {
+            WasmField field = sharedFields.get(i);
+            if (field.initializer() != null) {
+                initializerEmitter.emitValue(field.initializer(), field.type());
+                initializerCode.global(GLOBAL_SET, globals.get(field));
+            }
+            emitPendingFunctions();
+        }
+        module.setFunctionBody(initializer, initializerCode);
+
+        int heapStart = align(WasmRuntime.DATA_START + data.size());
+        module.addData(WasmRuntime.DATA_START, data.toByteArray());
+        module.setGlobalInitialValue(heapGlobal, heapStart);
+        module.setMemoryPages(heapStart / WasmRuntime.PAGE_SIZE + 1);
+
+        return module.toByteArray();
+    }
+
+    private void emitPendingFunctions() {
+        while (!pendingFunctions.isEmpty()) {
+            WasmFunction function = pendingFunctions.poll();
+
+            WasmCode code = new WasmCode(getParameterTypes(function).size());
+            WasmBodyEmitter emitter = new WasmBodyEmitter(this, code, function.owner(), !function.isStatic(), function.parameterTypes(), function.returnType(), function.isConstructor());
+            if (function.isConstructor()) {
+                emitter.emitFieldInitializers();
+            }
+            emitter.emitBody(function.body());
+
+            module.setFunctionBody(functionIndices.get(function), code);
+        }
+    }
+
+    private void declareMembers(WasmStruct struct) {
+        BoundTypeScope scope = struct.getScope();
+
+        // doubles are placed first so every field is naturally aligned
+        List<FieldSymbol> instanceFields = new ArrayList<>();
+        for (Symbol symbol : scope.getDeclaredFieldsAndFunctions()) {
+            if (symbol instanceof FieldSymbol field) {
+                if (field.isShared()) {
+                    struct.addField(new WasmField(field.getName(), field.getType(), getStorageType(field.getType()), -1, true, scope.getFieldInitializer(field)));
+                } else {
+                    instanceFields.add(field);
+                }
+            } else if (symbol instanceof FunctionSymbol function) {
+                List<TypeSymbol> parameterTypes = function.getParameters().stream().map(ParameterSymbol::getType).toList();
+                struct.addFunction(function.getName(), function.isShared(), parameterTypes.size(),
+                        new WasmFunction(struct, function.getName(), function.isShared(), false, parameterTypes, function.getType(), scope.getFunctionBody(function)));
+            }
+        }
+
+        int offset = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (FieldSymbol field : instanceFields) {
+                int storageType = getStorageType(field.getType());
+                if ((storageType == TYPE_F64) == (pass == 0)) {
+                    struct.addField(new WasmField(field.getName(), field.getType(), storageType, offset, false, scope.getFieldInitializer(field)));
+                    offset += storageType == TYPE_F64 ? 8 : 4;
+                }
+            }
+        }
+        // every object gets an address of its own
+        struct.setSize(Math.max(align(offset), 8));
+
+        for (ConstructorSymbol constructor : scope.getDeclaredConstructors()) {
+            List<TypeSymbol> parameterTypes = constructor.getParameters().stream().map(ParameterSymbol::getType).toList();
+            struct.addConstructor(parameterTypes.size(),
+                    new WasmFunction(struct, "constructor", false, true, parameterTypes, struct.getType(), scope.getConstructorBody(constructor)));
+        }
+
+        // operator bodies are not lowered by the binder
+        for (BinaryOperatorSymbol operator : scope.getDeclaredBinaryOperators()) {
+            struct.addBinaryOperator(operator.getName(), operator.getOtherType(),
+                    new WasmFunction(struct, operator.getName(), false, false, List.of(operator.getOtherType()), operator.getReturnType(), lower(scope.getBinaryOperatorBody(operator))));
+        }
+
+        for (UnaryOperatorSymbol operator : scope.getDeclaredUnaryOperators()) {
+            struct.addUnaryOperator(operator.getName(),
+                    new WasmFunction(struct, operator.getName(), false, false, List.of(), operator.getReturnType(), lower(scope.getUnaryOperatorBody(operator))));
+        }
+    }
+
+    private static BoundBlockStatement lower(BoundBlockStatement body) {
+        return body == null ? null : Lowerer.lower(null, body);
+    }
+
+    private WasmFunction findEntry(BoundProgramScope program) {
+        if (program.getExports().isEmpty()) {
+            throw new EmitterException("No exports found in program " + program.getName());
+        }
+
+        for (ExportSymbol export : program.getExports()) {
+            WasmStruct struct = getStruct(export.getType());
+            if (struct == null || !struct.getType().isFunctionDefined("main")) {
+                continue;
+            }
+
+            WasmFunction main = struct.getFunction("main", true, 1);
+            if (main == null || !main.parameterTypes().get(0).equals(new ArrayTypeSymbol(Types.STRING))
+                    || !(main.returnType().equals(Types.INT) || main.returnType().equals(Types.VOID))) {
+                throw new EmitterException("Main function must be shared, take a str[] and return int or void");
+            }
+            return main;
+        }
+
+        throw new EmitterException("No main function found in program " + program.getName());
+    }
+
+    int getFunctionIndex(WasmFunction function) {
+        Integer index = functionIndices.get(function);
+        if (index != null) {
+            return index;
+        }
+
+        if (function.body() == null) {
+            throw new EmitterException("Function '%s' of type '%s' has no body".formatted(function.name(), function.owner().getType().getName()));
+        }
+
+        int returnType = function.isConstructor() ? TYPE_I32 : getValueType(function.returnType());
+        index = module.addFunction(getParameterTypes(function), returnType == 0 ? List.of() : List.of(returnType));
+        functionIndices.put(function, index);
+        pendingFunctions.add(function);
+        return index;
+    }
+
+    private List<Integer> getParameterTypes(WasmFunction function) {
+        List<Integer> parameters = new ArrayList<>();
+        if (!function.isStatic()) {
+            parameters.add(TYPE_I32);
+        }
+        for (TypeSymbol parameterType : function.parameterTypes()) {
+            parameters.add(getValueType(parameterType));
+        }
+        return parameters;
+    }
+
+    int getGlobal(WasmField field) {
+        Integer index = globals.get(field);
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addGlobal(getValueType(field.type()), 0);
+        globals.put(field, index);
+        sharedFields.add(field);
+        return index;
+    }
+
+    int getConsoleFunction(String name) {
+        Integer index = consoleFunctions.get(name);
+        if (index == null) {
+            throw new EmitterException("Native function '%s.%s' is not supported".formatted(CONSOLE_MODULE, name));
+        }
+        return index;
+    }
+
+    /**
+     * Returns the address of a string literal, equal literals share their memory.
+     */
+    int getStringAddress(String value) {
+        Integer address = strings.get(value);
+        if (address != null) {
+            return address;
+        }
+
+        while (data.size() % 8 != 0) {
+            data.writeByte(0);
+        }
+
+        address = WasmRuntime.DATA_START + data.size();
+        data.writeInt(value.length());
+        data.writeInt(0);
+        for (char c : value.toCharArray()) {
+            data.writeByte(c);
+            data.writeByte(c >>> 8);
+        }
+
+        strings.put(value, address);
+        return address;
+    }
+
+    WasmStruct getStruct(TypeSymbol type) {
+        if (type == null || type.isGeneric() || type instanceof ArrayTypeSymbol) {
+            return null;
+        }
+        return structs.get(type.getName());
+    }
+
+    /**
+     * Returns the value type a zephyr type is represented as, or 0 for void.
+     */
+    int getValueType(TypeSymbol type) {
+        if (type instanceof ArrayTypeSymbol arrayType) {
+            getValueType(arrayType.getElementType());
+            return TYPE_I32;
+        }
+
+        if (type != null && !type.isGeneric()) {
+            if (type.equals(Types.INT) || type.equals(Types.BOOL) || type.equals(Types.CHAR) || type.equals(Types.STRING)) {
+                return TYPE_I32;
+            }
+            if (type.equals(Types.DOUBLE)) {
+                return TYPE_F64;
+            }
+            if (type.equals(Types.VOID)) {
+                return 0;
+            }
+            if (structs.containsKey(type.getName())) {
+                return TYPE_I32;
+            }
+        }
+
+        throw new EmitterException("Type '%s' is not supported by the WebAssembly emitter".formatted(type == null ? null : type.getName()));
+    }
+
+    /**
+     * Returns the base 2 logarithm of the size of an array element.
+     */
+    int getElementShift(TypeSymbol elementType) {
+        return getValueType(elementType) == TYPE_F64 ? 3 : 2;
+    }
+
+    private static int getStorageType(TypeSymbol type) {
+        return Types.DOUBLE.equals(type) ? TYPE_F64 : TYPE_I32;
+    }
+
+    private static int align(int value) {
+        return (value + 7) & ~7;
+    }
+}
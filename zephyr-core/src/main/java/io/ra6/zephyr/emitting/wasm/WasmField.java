@@ -0,0 +1,10 @@
+package io.ra6.zephyr.emitting.wasm;
+
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+
+/**
+ * A field of a user type. Instance fields live at an offset into the object, shared fields in a global.
+ */
+record WasmField(String name, TypeSymbol type, int valueType, int offset, boolean isShared, BoundExpression initializer) {
+}
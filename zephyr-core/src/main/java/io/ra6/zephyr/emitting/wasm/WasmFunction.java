@@ -0,0 +1,13 @@
+package io.ra6.zephyr.emitting.wasm;
+
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+
+import java.util.List;
+
+/**
+ * A function of a user type together with the lowered body it is emitted from. Instance functions take
+ * the object as their first parameter, constructors additionally return it.
+ */
+record WasmFunction(WasmStruct owner, String name, boolean isStatic, boolean isConstructor, List<TypeSymbol> parameterTypes, TypeSymbol returnType, BoundBlockStatement body) {
+}
@@ -0,0 +1,182 @@
+package io.ra6.zephyr.emitting.wasm;
+
+import io.ra6.zephyr.emitting.EmitterException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static io.ra6.zephyr.emitting.wasm.WasmOpcodes.*;
+
+/**
+ * The sections of a module as they are built up. Imported functions come first in the function index
+ * space, so all imports have to be added before the first function is.
+ */
+class WasmModule {
+    private record Import(String module, String name, int type) {
+    }
+
+    private record Global(int type, double initialValue) {
+    }
+
+    private record Export(String name, int kind, int index) {
+    }
+
+    private record DataSegment(int offset, byte[] bytes) {
+    }
+
+    private final LinkedHashMap<List<List<Integer>>, Integer> types = new LinkedHashMap<>();
+    private final List<Import> imports = new ArrayList<>();
+    private final List<Integer> functionTypes = new ArrayList<>();
+    private final List<WasmCode> functionBodies = new ArrayList<>();
+    private final List<Global> globals = new ArrayList<>();
+    private final List<Export> exports = new ArrayList<>();
+    private final List<DataSegment> data = new ArrayList<>();
+    private int memoryPages = 1;
+
+    int addType(List<Integer> parameters, List<Integer> results) {
+        return types.computeIfAbsent(List.of(List.copyOf(parameters), List.copyOf(results)), key -> types.size());
+    }
+
+    int addImport(String module, String name, List<Integer> parameters, List<Integer> results) {
+        if (!functionTypes.isEmpty()) {
+            throw new IllegalStateException("Imports must be added before functions");
+        }
+
+        imports.add(new Import(module, name, addType(parameters, results)));
+        return imports.size() - 1;
+    }
+
+    /**
+     * Reserves the index of a function, its body is set once it was emitted.
+     */
+    int addFunction(List<Integer> parameters, List<Integer> results) {
+        functionTypes.add(addType(parameters, results));
+        functionBodies.add(null);
+        return imports.size() + functionTypes.size() - 1;
+    }
+
+    void setFunctionBody(int index, WasmCode code) {
+        functionBodies.set(index - imports.size(), code);
+    }
+
+    int addGlobal(int type, double initialValue) {
+        globals.add(new Global(type, initialValue));
+        return globals.size() - 1;
+    }
+
+    void setGlobalInitialValue(int index, double initialValue) {
+        globals.set(index, new Global(globals.get(index).type(), initialValue));
+    }
+
+    void addExport(String name, int kind, int index) {
+        exports.add(new Export(name, kind, index));
+    }
+
+    void addData(int offset, byte[] bytes) {
+        data.add(new DataSegment(offset, bytes));
+    }
+
+    void setMemoryPages(int pages) {
+        memoryPages = pages;
+    }
+
+    byte[] toByteArray() {
+        WasmBuffer out = new WasmBuffer();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        WasmBuffer section = new WasmBuffer();
+        section.writeUnsigned(types.size());
+        for (List<List<Integer>> type : types.keySet()) {
+            section.writeByte(TYPE_FUNCTION);
+            writeValueTypes(section, type.get(0));
+            writeValueTypes(section, type.get(1));
+        }
+        writeSection(out, SECTION_TYPE, section);
+
+        section = new WasmBuffer();
+        section.writeUnsigned(imports.size());
+        for (Import anImport : imports) {
+            section.writeName(anImport.module());
+            section.writeName(anImport.name());
+            section.writeByte(KIND_FUNCTION);
+            section.writeUnsigned(anImport.type());
+        }
+        writeSection(out, SECTION_IMPORT, section);
+
+        section = new WasmBuffer();
+        section.writeUnsigned(functionTypes.size());
+        for (int type : functionTypes) {
+            section.writeUnsigned(type);
+        }
+        writeSection(out, SECTION_FUNCTION, section);
+
+        section = new WasmBuffer();
+        section.writeUnsigned(1);
+        section.writeByte(0x00);
+        section.writeUnsigned(memoryPages);
+        writeSection(out, SECTION_MEMORY, section);
+
+        section = new WasmBuffer();
+        section.writeUnsigned(globals.size());
+        for (Global global : globals) {
+            section.writeByte(global.type());
+            section.writeByte(0x01);
+            if (global.type() == TYPE_F64) {
+                section.writeByte(F64_CONST);
+                section.writeDouble(global.initialValue());
+            } else {
+                section.writeByte(I32_CONST);
+                section.writeSigned((int) global.initialValue());
+            }
+            section.writeByte(END);
+        }
+        writeSection(out, SECTION_GLOBAL, section);
+
+        section = new WasmBuffer();
+        section.writeUnsigned(exports.size());
+        for (Export export : exports) {
+            section.writeName(export.name());
+            section.writeByte(export.kind());
+            section.writeUnsigned(export.index());
+        }
+        writeSection(out, SECTION_EXPORT, section);
+
+        section = new WasmBuffer();
+        section.writeUnsigned(functionBodies.size());
+        for (int i = 0; i < functionBodies.size(); i++) {
+            if (functionBodies.get(i) == null) {
+                throw new EmitterException("Function %d was declared but never emitted".formatted(imports.size() + i));
+            }
+            functionBodies.get(i).write(section);
+        }
+        writeSection(out, SECTION_CODE, section);
+
+        section = new WasmBuffer();
+        section.writeUnsigned(data.size());
+        for (DataSegment segment : data) {
+            section.writeUnsigned(0);
+            section.writeByte(I32_CONST);
+            section.writeSigned(segment.offset());
+            section.writeByte(END);
+            section.writeUnsigned(segment.bytes().length);
+            section.writeBytes(segment.bytes());
+        }
+        writeSection(out, SECTION_DATA, section);
+
+        return out.toByteArray();
+    }
+
+    private static void writeValueTypes(WasmBuffer out, List<Integer> valueTypes) {
+        out.writeUnsigned(valueTypes.size());
+        for (int valueType : valueTypes) {
+            out.writeByte(valueType);
+        }
+    }
+
+    private static void writeSection(WasmBuffer out, int id, WasmBuffer content) {
+        out.writeByte(id);
+        out.writeSized(content);
+    }
+}
@@ -0,0 +1,114 @@
+package io.ra6.zephyr.emitting.wasm;
+
+/**
+ * Encodings of the WebAssembly binary format the emitter uses.
+ */
+interface WasmOpcodes {
+    int MAGIC = 0x6D736100;
+    int VERSION = 1;
+
+    int SECTION_TYPE = 1;
+    int SECTION_IMPORT = 2;
+    int SECTION_FUNCTION = 3;
+    int SECTION_MEMORY = 5;
+    int SECTION_GLOBAL = 6;
+    int SECTION_EXPORT = 7;
+    int SECTION_START = 8;
+    int SECTION_CODE = 10;
+    int SECTION_DATA = 11;
+
+    int TYPE_FUNCTION = 0x60;
+    int TYPE_I32 = 0x7F;
+    int TYPE_I64 = 0x7E;
+    int TYPE_F32 = 0x7D;
+    int TYPE_F64 = 0x7C;
+    int TYPE_EMPTY = 0x40;
+
+    int KIND_FUNCTION = 0x00;
+    int KIND_TABLE = 0x01;
+    int KIND_MEMORY = 0x02;
+    int KIND_GLOBAL = 0x03;
+
+    int UNREACHABLE = 0x00;
+    int NOP = 0x01;
+    int BLOCK = 0x02;
+    int LOOP = 0x03;
+    int IF = 0x04;
+    int ELSE = 0x05;
+    int END = 0x0B;
+    int BR = 0x0C;
+    int BR_IF = 0x0D;
+    int BR_TABLE = 0x0E;
+    int RETURN = 0x0F;
+    int CALL = 0x10;
+
+    int DROP = 0x1A;
+    int SELECT = 0x1B;
+
+    int LOCAL_GET = 0x20;
+    int LOCAL_SET = 0x21;
+    int LOCAL_TEE = 0x22;
+    int GLOBAL_GET = 0x23;
+    int GLOBAL_SET = 0x24;
+
+    int I32_LOAD = 0x28;
+    int F64_LOAD = 0x2B;
+    int I32_LOAD8_U = 0x2D;
+    int I32_LOAD16_U = 0x2F;
+    int I32_STORE = 0x36;
+    int F64_STORE = 0x39;
+    int I32_STORE8 = 0x3A;
+    int I32_STORE16 = 0x3B;
+    int MEMORY_SIZE = 0x3F;
+    int MEMORY_GROW = 0x40;
+
+    int I32_CONST = 0x41;
+    int F64_CONST = 0x44;
+
+    int I32_EQZ = 0x45;
+    int I32_EQ = 0x46;
+    int I32_NE = 0x47;
+    int I32_LT_S = 0x48;
+    int I32_LT_U = 0x49;
+    int I32_GT_S = 0x4A;
+    int I32_GT_U = 0x4B;
+    int I32_LE_S = 0x4C;
+    int I32_LE_U = 0x4D;
+    int I32_GE_S = 0x4E;
+    int I32_GE_U = 0x4F;
+
+    int F64_EQ = 0x61;
+    int F64_NE = 0x62;
+    int F64_LT = 0x63;
+    int F64_GT = 0x64;
+    int F64_LE = 0x65;
+    int F64_GE = 0x66;
+
+    int I32_ADD = 0x6A;
+    int I32_SUB = 0x6B;
+    int I32_MUL = 0x6C;
+    int I32_DIV_S = 0x6D;
+    int I32_DIV_U = 0x6E;
+    int I32_REM_S = 0x6F;
+    int I32_REM_U = 0x70;
+    int I32_AND = 0x71;
+    int I32_OR = 0x72;
+    int I32_XOR = 0x73;
+    int I32_SHL = 0x74;
+    int I32_SHR_S = 0x75;
+    int I32_SHR_U = 0x76;
+
+    int F64_ABS = 0x99;
+    int F64_NEG = 0x9A;
+    int F64_TRUNC = 0x9D;
+    int F64_ADD = 0xA0;
+    int F64_SUB = 0xA1;
+    int F64_MUL = 0xA2;
+    int F64_DIV = 0xA3;
+
+    int F64_CONVERT_I32_S = 0xB7;
+
+    // prefixed with 0xFC, saturating conversions behave like the casts of the JVM
+    int PREFIX_MISC = 0xFC;
+    int I32_TRUNC_SAT_F64_S = 0x02;
+}
@@ -0,0 +1,596 @@
+package io.ra6.zephyr.emitting.wasm;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static io.ra6.zephyr.emitting.wasm.WasmOpcodes.*;
+
+/**
+ * The helper functions emitted code calls into. Each helper is only added to the module once it is used.
+ * <p>
+ * Memory is handed out by a bump allocator and never reclaimed, so fresh memory is always zeroed.
+ * Arrays and strings share one layout: the length at offset 0, the elements from offset 8 on.
+ * String elements are UTF-16 code units, the host reads them the same way.
+ */
+class WasmRuntime {
+    static final int NULL = 0;
+    // nothing is ever placed below this, so loads through null stay inside the module's own memory
+    static final int DATA_START = 16;
+    static final int ELEMENTS_OFFSET = 8;
+    static final int PAGE_SIZE = 65536;
+
+    private static final List<Integer> I32 = List.of(TYPE_I32);
+    private static final List<Integer> NONE = List.of();
+
+    private final WasmModule module;
+    private final int heapGlobal;
+    private final HashMap<String, Integer> helpers = new HashMap<>();
+
+    WasmRuntime(WasmModule module, int heapGlobal) {
+        this.module = module;
+        this.heapGlobal = heapGlobal;
+    }
+
+    /**
+     * {@code alloc(size: i32): i32} returns the address of {@code size} fresh bytes, aligned to 8.
+     */
+    int alloc() {
+        Integer index = helpers.get("alloc");
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addFunction(I32, I32);
+        helpers.put("alloc", index);
+
+        WasmCode code = new WasmCode(1);
+        int pointer = code.addLocal(TYPE_I32);
+        int end = code.addLocal(TYPE_I32);
+
+        code.global(GLOBAL_GET, heapGlobal);
+        code.local(LOCAL_TEE, pointer);
+        code.local(LOCAL_GET, 0);
+        code.i32Const(7);
+        code.op(I32_ADD);
+        code.i32Const(-8);
+        code.op(I32_AND);
+        code.op(I32_ADD);
+        code.local(LOCAL_TEE, end);
+
+        // the address space is exhausted
+        code.local(LOCAL_GET, pointer);
+        code.op(I32_LT_U);
+        trapIf(code);
+
+        code.local(LOCAL_GET, end);
+        code.memorySize();
+        code.i32Const(16);
+        code.op(I32_SHL);
+        code.op(I32_GT_U);
+        code.block(IF, TYPE_EMPTY);
+        code.local(LOCAL_GET, end);
+        code.i32Const(PAGE_SIZE - 1);
+        code.op(I32_ADD);
+        code.i32Const(16);
+        code.op(I32_SHR_U);
+        code.memorySize();
+        code.op(I32_SUB);
+        code.memoryGrow();
+        code.i32Const(-1);
+        code.op(I32_EQ);
+        trapIf(code);
+        code.op(END);
+
+        code.local(LOCAL_GET, end);
+        code.global(GLOBAL_SET, heapGlobal);
+        code.local(LOCAL_GET, pointer);
+
+        module.setFunctionBody(index, code);
+        return index;
+    }
+
+    /**
+     * {@code newArray(length: i32, shift: i32): i32} allocates an array with elements of {@code 1 << shift} bytes.
+     */
+    int newArray() {
+        Integer index = helpers.get("newArray");
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addFunction(List.of(TYPE_I32, TYPE_I32), I32);
+        helpers.put("newArray", index);
+
+        WasmCode code = new WasmCode(2);
+        int array = code.addLocal(TYPE_I32);
+
+        // negative lengths compare as huge unsigned values
+        code.i32Const(0x7FFFFFF0);
+        code.local(LOCAL_GET, 1);
+        code.op(I32_SHR_U);
+        code.local(LOCAL_GET, 0);
+        code.op(I32_LT_U);
+        trapIf(code);
+
+        code.i32Const(ELEMENTS_OFFSET);
+        code.local(LOCAL_GET, 0);
+        code.local(LOCAL_GET, 1);
+        code.op(I32_SHL);
+        code.op(I32_ADD);
+        code.call(alloc());
+        code.local(LOCAL_TEE, array);
+        code.local(LOCAL_GET, 0);
+        code.memory(I32_STORE, 2, 0);
+        code.local(LOCAL_GET, array);
+
+        module.setFunctionBody(index, code);
+        return index;
+    }
+
+    /**
+     * {@code elementAddress(array: i32, index: i32, shift: i32): i32} checks the bounds of an element access.
+     */
+    int elementAddress() {
+        Integer index = helpers.get("elementAddress");
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addFunction(List.of(TYPE_I32, TYPE_I32, TYPE_I32), I32);
+        helpers.put("elementAddress", index);
+
+        WasmCode code = new WasmCode(3);
+        code.local(LOCAL_GET, 0);
+        code.op(I32_EQZ);
+        code.local(LOCAL_GET, 1);
+        code.local(LOCAL_GET, 0);
+        code.memory(I32_LOAD, 2, 0);
+        code.op(I32_GE_U);
+        code.op(I32_OR);
+        trapIf(code);
+
+        code.local(LOCAL_GET, 0);
+        code.i32Const(ELEMENTS_OFFSET);
+        code.op(I32_ADD);
+        code.local(LOCAL_GET, 1);
+        code.local(LOCAL_GET, 2);
+        code.op(I32_SHL);
+        code.op(I32_ADD);
+
+        module.setFunctionBody(index, code);
+        return index;
+    }
+
+    /**
+     * {@code fill(array: i32, value)} stores the value into every element of the array.
+     */
+    int fill(int valueType) {
+        String name = valueType == TYPE_F64 ? "fillF64" : "fillI32";
+        Integer index = helpers.get(name);
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addFunction(List.of(TYPE_I32, valueType), NONE);
+        helpers.put(name, index);
+
+        int size = valueType == TYPE_F64 ? 8 : 4;
+        WasmCode code = new WasmCode(2);
+        int address = code.addLocal(TYPE_I32);
+        int end = code.addLocal(TYPE_I32);
+
+        code.local(LOCAL_GET, 0);
+        code.i32Const(ELEMENTS_OFFSET);
+        code.op(I32_ADD);
+        code.local(LOCAL_TEE, address);
+        code.local(LOCAL_GET, 0);
+        code.memory(I32_LOAD, 2, 0);
+        code.i32Const(size);
+        code.op(I32_MUL);
+        code.op(I32_ADD);
+        code.local(LOCAL_SET, end);
+
+        code.block(BLOCK, TYPE_EMPTY);
+        code.block(LOOP, TYPE_EMPTY);
+        code.local(LOCAL_GET, address);
+        code.local(LOCAL_GET, end);
+        code.op(I32_GE_U);
+        code.branch(BR_IF, 1);
+        code.local(LOCAL_GET, address);
+        code.local(LOCAL_GET, 1);
+        code.memory(valueType == TYPE_F64 ? F64_STORE : I32_STORE, valueType == TYPE_F64 ? 3 : 2, 0);
+        code.local(LOCAL_GET, address);
+        code.i32Const(size);
+        code.op(I32_ADD);
+        code.local(LOCAL_SET, address);
+        code.branch(BR, 0);
+        code.op(END);
+        code.op(END);
+
+        module.setFunctionBody(index, code);
+        return index;
+    }
+
+    /**
+     * {@code copy(destination: i32, source: i32, count: i32)} copies {@code count} 16 bit units.
+     */
+    int copy() {
+        Integer index = helpers.get("copy");
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addFunction(List.of(TYPE_I32, TYPE_I32, TYPE_I32), NONE);
+        helpers.put("copy", index);
+
+        WasmCode code = new WasmCode(3);
+        int offset = code.addLocal(TYPE_I32);
+
+        code.block(BLOCK, TYPE_EMPTY);
+        code.block(LOOP, TYPE_EMPTY);
+        code.local(LOCAL_GET, 2);
+        code.op(I32_EQZ);
+        code.branch(BR_IF, 1);
+        code.local(LOCAL_GET, 2);
+        code.i32Const(1);
+        code.op(I32_SUB);
+        code.local(LOCAL_TEE, 2);
+        code.i32Const(1);
+        code.op(I32_SHL);
+        code.local(LOCAL_SET, offset);
+        code.local(LOCAL_GET, 0);
+        code.local(LOCAL_GET, offset);
+        code.op(I32_ADD);
+        code.local(LOCAL_GET, 1);
+        code.local(LOCAL_GET, offset);
+        code.op(I32_ADD);
+        code.memory(I32_LOAD16_U, 1, 0);
+        code.memory(I32_STORE16, 1, 0);
+        code.branch(BR, 0);
+        code.op(END);
+        code.op(END);
+
+        module.setFunctionBody(index, code);
+        return index;
+    }
+
+    /**
+     * {@code copyArray(array: i32, shift: i32): i32} returns a shallow copy of the array.
+     */
+    int copyArray() {
+        Integer index = helpers.get("copyArray");
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addFunction(List.of(TYPE_I32, TYPE_I32), I32);
+        helpers.put("copyArray", index);
+
+        WasmCode code = new WasmCode(2);
+        int copy = code.addLocal(TYPE_I32);
+
+        code.local(LOCAL_GET, 0);
+        code.op(I32_EQZ);
+        trapIf(code);
+
+        code.local(LOCAL_GET, 0);
+        code.memory(I32_LOAD, 2, 0);
+        code.local(LOCAL_GET, 1);
+        code.call(newArray());
+        code.local(LOCAL_TEE, copy);
+        code.i32Const(ELEMENTS_OFFSET);
+        code.op(I32_ADD);
+        code.local(LOCAL_GET, 0);
+        code.i32Const(ELEMENTS_OFFSET);
+        code.op(I32_ADD);
+        code.local(LOCAL_GET, 0);
+        code.memory(I32_LOAD, 2, 0);
+        code.local(LOCAL_GET, 1);
+        code.op(I32_SHL);
+        code.i32Const(1);
+        code.op(I32_SHR_U);
+        code.call(copy());
+        code.local(LOCAL_GET, copy);
+
+        module.setFunctionBody(index, code);
+        return index;
+    }
+
+    /**
+     * {@code concat(left: i32, right: i32): i32} returns a new string.
+     */
+    int concat() {
+        Integer index = helpers.get("concat");
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addFunction(List.of(TYPE_I32, TYPE_I32), I32);
+        helpers.put("concat", index);
+
+        WasmCode code = new WasmCode(2);
+        int result = code.addLocal(TYPE_I32);
+        int leftLength = code.addLocal(TYPE_I32);
+        int rightLength = code.addLocal(TYPE_I32);
+
+        code.local(LOCAL_GET, 0);
+        code.memory(I32_LOAD, 2, 0);
+        code.local(LOCAL_TEE, leftLength);
+        code.local(LOCAL_GET, 1);
+        code.memory(I32_LOAD, 2, 0);
+        code.local(LOCAL_TEE, rightLength);
+        code.op(I32_ADD);
+        code.i32Const(1);
+        code.call(newArray());
+        code.local(LOCAL_SET, result);
+
+        code.local(LOCAL_GET, result);
+        code.i32Const(ELEMENTS_OFFSET);
+        code.op(I32_ADD);
+        code.local(LOCAL_GET, 0);
+        code.i32Const(ELEMENTS_OFFSET);
+        code.op(I32_ADD);
+        code.local(LOCAL_GET, leftLength);
+        code.call(copy());
+
+        code.local(LOCAL_GET, result);
+        code.i32Const(ELEMENTS_OFFSET);
+        code.op(I32_ADD);
+        code.local(LOCAL_GET, leftLength);
+        code.i32Const(1);
+        code.op(I32_SHL);
+        code.op(I32_ADD);
+        code.local(LOCAL_GET, 1);
+        code.i32Const(ELEMENTS_OFFSET);
+        code.op(I32_ADD);
+        code.local(LOCAL_GET, rightLength);
+        code.call(copy());
+
+        code.local(LOCAL_GET, result);
+
+        module.setFunctionBody(index, code);
+        return index;
+    }
+
+    /**
+     * {@code charToString(value: i32): i32} returns a string of a single character.
+     */
+    int charToString() {
+        Integer index = helpers.get("charToString");
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addFunction(I32, I32);
+        helpers.put("charToString", index);
+
+        WasmCode code = new WasmCode(1);
+        int result = code.addLocal(TYPE_I32);
+
+        code.i32Const(1);
+        code.i32Const(1);
+        code.call(newArray());
+        code.local(LOCAL_TEE, result);
+        code.local(LOCAL_GET, 0);
+        code.memory(I32_STORE16, 1, ELEMENTS_OFFSET);
+        code.local(LOCAL_GET, result);
+
+        module.setFunctionBody(index, code);
+        return index;
+    }
+
+    /**
+     * {@code intToString(value: i32): i32} formats the value in decimal.
+     */
+    int intToString() {
+        Integer index = helpers.get("intToString");
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addFunction(I32, I32);
+        helpers.put("intToString", index);
+
+        WasmCode code = new WasmCode(1);
+        int negative = code.addLocal(TYPE_I32);
+        int magnitude = code.addLocal(TYPE_I32);
+        int length = code.addLocal(TYPE_I32);
+        int result = code.addLocal(TYPE_I32);
+        int cursor = code.addLocal(TYPE_I32);
+
+        // the magnitude is unsigned, so the smallest int does not overflow
+        code.local(LOCAL_GET, 0);
+        code.i32Const(0);
+        code.op(I32_LT_S);
+        code.local(LOCAL_TEE, negative);
+        code.block(IF, TYPE_I32);
+        code.i32Const(0);
+        code.local(LOCAL_GET, 0);
+        code.op(I32_SUB);
+        code.op(ELSE);
+        code.local(LOCAL_GET, 0);
+        code.op(END);
+        code.local(LOCAL_TEE, magnitude);
+        code.local(LOCAL_SET, cursor);
+        code.local(LOCAL_GET, negative);
+        code.local(LOCAL_SET, length);
+
+        code.block(LOOP, TYPE_EMPTY);
+        code.local(LOCAL_GET, length);
+        code.i32Const(1);
+        code.op(I32_ADD);
+        code.local(LOCAL_SET, length);
+        code.local(LOCAL_GET, cursor);
+        code.i32Const(10);
+        code.op(I32_DIV_U);
+        code.local(LOCAL_TEE, cursor);
+        code.branch(BR_IF, 0);
+        code.op(END);
+
+        code.local(LOCAL_GET, length);
+        code.i32Const(1);
+        code.call(newArray());
+        code.local(LOCAL_TEE, result);
+        code.i32Const(ELEMENTS_OFFSET);
+        code.op(I32_ADD);
+        code.local(LOCAL_GET, length);
+        code.i32Const(1);
+        code.op(I32_SHL);
+        code.op(I32_ADD);
+        code.local(LOCAL_SET, cursor);
+
+        code.block(LOOP, TYPE_EMPTY);
+        code.local(LOCAL_GET, cursor);
+        code.i32Const(2);
+        code.op(I32_SUB);
+        code.local(LOCAL_TEE, cursor);
+        code.local(LOCAL_GET, magnitude);
+        code.i32Const(10);
+        code.op(I32_REM_U);
+        code.i32Const('0');
+        code.op(I32_ADD);
+        code.memory(I32_STORE16, 1, 0);
+        code.local(LOCAL_GET, magnitude);
+        code.i32Const(10);
+        code.op(I32_DIV_U);
+        code.local(LOCAL_TEE, magnitude);
+        code.branch(BR_IF, 0);
+        code.op(END);
+
+        code.local(LOCAL_GET, negative);
+        code.block(IF, TYPE_EMPTY);
+        code.local(LOCAL_GET, result);
+        code.i32Const('-');
+        code.memory(I32_STORE16, 1, ELEMENTS_OFFSET);
+        code.op(END);
+
+        code.local(LOCAL_GET, result);
+
+        module.setFunctionBody(index, code);
+        return index;
+    }
+
+    /**
+     * {@code stringEquals(left: i32, right: i32): i32} compares two strings by their characters.
+     */
+    int stringEquals() {
+        Integer index = helpers.get("stringEquals");
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addFunction(List.of(TYPE_I32, TYPE_I32), I32);
+        helpers.put("stringEquals", index);
+
+        WasmCode code = new WasmCode(2);
+        int offset = code.addLocal(TYPE_I32);
+
+        code.local(LOCAL_GET, 0);
+        code.local(LOCAL_GET, 1);
+        code.op(I32_EQ);
+        returnIf(code, 1);
+
+        code.local(LOCAL_GET, 0);
+        code.op(I32_EQZ);
+        code.local(LOCAL_GET, 1);
+        code.op(I32_EQZ);
+        code.op(I32_OR);
+        returnIf(code, 0);
+
+        code.local(LOCAL_GET, 0);
+        code.memory(I32_LOAD, 2, 0);
+        code.local(LOCAL_GET, 1);
+        code.memory(I32_LOAD, 2, 0);
+        code.op(I32_NE);
+        returnIf(code, 0);
+
+        code.local(LOCAL_GET, 0);
+        code.memory(I32_LOAD, 2, 0);
+        code.i32Const(1);
+        code.op(I32_SHL);
+        code.local(LOCAL_SET, offset);
+
+        code.block(BLOCK, TYPE_EMPTY);
+        code.block(LOOP, TYPE_EMPTY);
+        code.local(LOCAL_GET, offset);
+        code.op(I32_EQZ);
+        code.branch(BR_IF, 1);
+        code.local(LOCAL_GET, offset);
+        code.i32Const(2);
+        code.op(I32_SUB);
+        code.local(LOCAL_SET, offset);
+        code.local(LOCAL_GET, 0);
+        code.local(LOCAL_GET, offset);
+        code.op(I32_ADD);
+        code.memory(I32_LOAD16_U, 1, ELEMENTS_OFFSET);
+        code.local(LOCAL_GET, 1);
+        code.local(LOCAL_GET, offset);
+        code.op(I32_ADD);
+        code.memory(I32_LOAD16_U, 1, ELEMENTS_OFFSET);
+        code.op(I32_NE);
+        returnIf(code, 0);
+        code.branch(BR, 0);
+        code.op(END);
+        code.op(END);
+
+        code.i32Const(1);
+
+        module.setFunctionBody(index, code);
+        return index;
+    }
+
+    /**
+     * {@code remainder(left: f64, right: f64): f64} computes the remainder of a truncating division.
+     */
+    int remainder() {
+        Integer index = helpers.get("remainder");
+        if (index != null) {
+            return index;
+        }
+
+        index = module.addFunction(List.of(TYPE_F64, TYPE_F64), List.of(TYPE_F64));
+        helpers.put("remainder", index);
+
+        WasmCode code = new WasmCode(2);
+
+        // a finite value divided by an infinite one is its own remainder
+        code.local(LOCAL_GET, 1);
+        code.op(F64_ABS);
+        code.f64Const(Double.POSITIVE_INFINITY);
+        code.op(F64_EQ);
+        code.local(LOCAL_GET, 0);
+        code.op(F64_ABS);
+        code.f64Const(Double.POSITIVE_INFINITY);
+        code.op(F64_LT);
+        code.op(I32_AND);
+        code.block(IF, TYPE_EMPTY);
+        code.local(LOCAL_GET, 0);
+        code.op(RETURN);
+        code.op(END);
+
+        code.local(LOCAL_GET, 0);
+        code.local(LOCAL_GET, 0);
+        code.local(LOCAL_GET, 1);
+        code.op(F64_DIV);
+        code.op(F64_TRUNC);
+        code.local(LOCAL_GET, 1);
+        code.op(F64_MUL);
+        code.op(F64_SUB);
+
+        module.setFunctionBody(index, code);
+        return index;
+    }
+
+    static void trapIf(WasmCode code) {
+        code.block(IF, TYPE_EMPTY);
+        code.op(UNREACHABLE);
+        code.op(END);
+    }
+
+    private static void returnIf(WasmCode code, int value) {
+        code.block(IF, TYPE_EMPTY);
+        code.i32Const(value);
+        code.op(RETURN);
+        code.op(END);
+    }
+}
@@ -0,0 +1,72 @@
+package io.ra6.zephyr.emitting.wasm;
+
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * The memory layout and the functions of a user type. Members are looked up by their zephyr signature,
+ * like the classes of the JVM emitter.
+ */
+@Getter
+@RequiredArgsConstructor
+class WasmStruct {
+    private final TypeSymbol type;
+    private final BoundTypeScope scope;
+
+    private final LinkedHashMap<String, WasmField> fields = new LinkedHashMap<>();
+    private final LinkedHashMap<String, WasmFunction> functions = new LinkedHashMap<>();
+    private final HashMap<Integer, WasmFunction> constructors = new HashMap<>();
+
+    @Setter
+    private int size;
+
+    WasmField getField(String name) {
+        return fields.get(name);
+    }
+
+    WasmFunction getFunction(String name, boolean isShared, int parameterCount) {
+        return functions.get(functionKey(name, isShared, parameterCount));
+    }
+
+    WasmFunction getConstructor(int parameterCount) {
+        return constructors.get(parameterCount);
+    }
+
+    WasmFunction getBinaryOperator(String operator, TypeSymbol otherType) {
+        return functions.get("binop " + operator + " " + otherType.getName());
+    }
+
+    WasmFunction getUnaryOperator(String operator) {
+        return functions.get("unop " + operator);
+    }
+
+    void addField(WasmField field) {
+        fields.put(field.name(), field);
+    }
+
+    void addFunction(String name, boolean isShared, int parameterCount, WasmFunction function) {
+        functions.put(functionKey(name, isShared, parameterCount), function);
+    }
+
+    void addConstructor(int parameterCount, WasmFunction function) {
+        constructors.put(parameterCount, function);
+    }
+
+    void addBinaryOperator(String operator, TypeSymbol otherType, WasmFunction function) {
+        functions.put("binop " + operator + " " + otherType.getName(), function);
+    }
+
+    void addUnaryOperator(String operator, WasmFunction function) {
+        functions.put("unop " + operator, function);
+    }
+
+    private static String functionKey(String name, boolean isShared, int parameterCount) {
+        return (isShared ? "shared " : "fnc ") + name + "/" + parameterCount;
+    }
+}
@@ -0,0 +1,673 @@
+package io.ra6.zephyr.emitting.wasm;
+
+import io.ra6.zephyr.emitting.EmitterException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static io.ra6.zephyr.emitting.wasm.WasmOpcodes.*;
+
+/**
+ * Decodes a module and validates it the way an engine would before instantiating it: the sections
+ * and their indices are checked, every function body is type checked with an operand and a control
+ * stack. Only the instructions the emitter can produce are accepted, so this is no general validator.
+ */
+public final class WasmValidator {
+    // the type of a value on an unreachable stack, matches every other type
+    private static final int UNKNOWN = 0;
+
+    private record FunctionType(List<Integer> parameters, List<Integer> results) {
+    }
+
+    private record GlobalType(int type, boolean isMutable) {
+    }
+
+    private static final class Frame {
+        private final int opcode;
+        private final List<Integer> startTypes;
+        private final List<Integer> endTypes;
+        private final int height;
+        private boolean unreachable;
+
+        private Frame(int opcode, List<Integer> startTypes, List<Integer> endTypes, int height) {
+            this.opcode = opcode;
+            this.startTypes = startTypes;
+            this.endTypes = endTypes;
+            this.height = height;
+        }
+
+        private List<Integer> labelTypes() {
+            return opcode == LOOP ? startTypes : endTypes;
+        }
+    }
+
+    private final byte[] bytes;
+    private int position;
+
+    private final List<FunctionType> types = new ArrayList<>();
+    private final List<Integer> functions = new ArrayList<>();
+    private final List<GlobalType> globals = new ArrayList<>();
+    private int importedFunctions;
+    private int memories;
+    private long memoryPages;
+    private int declaredBodies = -1;
+
+    private final List<Integer> values = new ArrayList<>();
+    private final List<Frame> frames = new ArrayList<>();
+
+    private WasmValidator(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Throws an {@link EmitterException} describing the first problem found in the module.
+     */
+    public static void validate(byte[] module) {
+        new WasmValidator(module).validateModule();
+    }
+
+    private void validateModule() {
+        if (readFixedInt() != MAGIC) {
+            throw invalid("Missing magic number");
+        }
+        if (readFixedInt() != VERSION) {
+            throw invalid("Unsupported version");
+        }
+
+        int lastSection = 0;
+        while (position < bytes.length) {
+            int id = readByte();
+            int size = readUnsigned();
+            int end = position + size;
+            if (end > bytes.length) {
+                throw invalid("Section %d exceeds the module".formatted(id));
+            }
+            if (id != 0) {
+                if (id <= lastSection) {
+                    throw invalid("Section %d is out of order".formatted(id));
+                }
+                lastSection = id;
+            }
+
+            switch (id) {
+                case 0 -> position = end;
+                case SECTION_TYPE -> readTypeSection();
+                case SECTION_IMPORT -> readImportSection();
+                case SECTION_FUNCTION -> readFunctionSection();
+                case SECTION_MEMORY -> readMemorySection();
+                case SECTION_GLOBAL -> readGlobalSection();
+                case SECTION_EXPORT -> readExportSection();
+                case SECTION_START -> readStartSection();
+                case SECTION_CODE -> readCodeSection();
+                case SECTION_DATA -> readDataSection();
+                default -> throw invalid("Unsupported section %d".formatted(id));
+            }
+
+            if (position != end) {
+                throw invalid("Section %d has an invalid size".formatted(id));
+            }
+        }
+
+        if (declaredBodies < 0 && functions.size() > importedFunctions) {
+            throw invalid("Missing code section");
+        }
+    }
+
+    private void readTypeSection() {
+        int count = readUnsigned();
+        for (int i = 0; i < count; i++) {
+            if (readByte() != TYPE_FUNCTION) {
+                throw invalid("Expected a function type");
+            }
+            types.add(new FunctionType(readValueTypes(), readValueTypes()));
+        }
+    }
+
+    private void readImportSection() {
+        int count = readUnsigned();
+        for (int i = 0; i < count; i++) {
+            readName();
+            readName();
+            if (readByte() != KIND_FUNCTION) {
+                throw invalid("Only function imports are supported");
+            }
+            functions.add(readTypeIndex());
+            importedFunctions++;
+        }
+    }
+
+    private void readFunctionSection() {
+        int count = readUnsigned();
+        for (int i = 0; i < count; i++) {
+            functions.add(readTypeIndex());
+        }
+    }
+
+    private void readMemorySection() {
+        memories = readUnsigned();
+        if (memories > 1) {
+            throw invalid("At most one memory is allowed");
+        }
+        for (int i = 0; i < memories; i++) {
+            int flags = readByte();
+            memoryPages = readUnsigned() & 0xFFFFFFFFL;
+            if (flags == 1) {
+                if ((readUnsigned() & 0xFFFFFFFFL) < memoryPages) {
+                    throw invalid("Memory maximum is below its minimum");
+                }
+            } else if (flags != 0) {
+                throw invalid("Invalid memory limits");
+            }
+            if (memoryPages > 65536) {
+                throw invalid("Memory exceeds 4 GiB");
+            }
+        }
+    }
+
+    private void readGlobalSection() {
+        int count = readUnsigned();
+        for (int i = 0; i < count; i++) {
+            int type = readValueType();
+            int mutability = readByte();
+            if (mutability > 1) {
+                throw invalid("Invalid global mutability");
+            }
+            readConstantExpression(type);
+            globals.add(new GlobalType(type, mutability == 1));
+        }
+    }
+
+    private void readExportSection() {
+        Set<String> names = new HashSet<>();
+        int count = readUnsigned();
+        for (int i = 0; i < count; i++) {
+            String name = readName();
+            if (!names.add(name)) {
+                throw invalid("Duplicate export '%s'".formatted(name));
+            }
+
+            int kind = readByte();
+            int index = readUnsigned();
+            int limit = switch (kind) {
+                case KIND_FUNCTION -> functions.size();
+                case KIND_MEMORY -> memories;
+                case KIND_GLOBAL -> globals.size();
+                default -> throw invalid("Unsupported export kind %d".formatted(kind));
+            };
+            if (index < 0 || index >= limit) {
+                throw invalid("Export '%s' refers to a missing item".formatted(name));
+            }
+        }
+    }
+
+    private void readStartSection() {
+        int function = readUnsigned();
+        if (function < 0 || function >= functions.size()) {
+            throw invalid("Start function is missing");
+        }
+        FunctionType type = types.get(functions.get(function));
+        if (!type.parameters().isEmpty() || !type.results().isEmpty()) {
+            throw invalid("Start function must not take or return values");
+        }
+    }
+
+    private void readCodeSection() {
+        declaredBodies = readUnsigned();
+        if (declaredBodies != functions.size() - importedFunctions) {
+            throw invalid("Code section does not match the function section");
+        }
+
+        for (int i = 0; i < declaredBodies; i++) {
+            int size = readUnsigned();
+            int end = position + size;
+            if (end > bytes.length) {
+                throw invalid("Function body exceeds the module");
+            }
+
+            int function = importedFunctions + i;
+            readFunctionBody(types.get(functions.get(function)), end);
+            if (position != end) {
+                throw invalid("Function %d has an invalid size".formatted(function));
+            }
+        }
+    }
+
+    private void readDataSection() {
+        int count = readUnsigned();
+        for (int i = 0; i < count; i++) {
+            if (readUnsigned() != 0) {
+                throw invalid("Only active data segments of memory 0 are supported");
+            }
+            if (memories == 0) {
+                throw invalid("Data segment without a memory");
+            }
+
+            if (readByte() != I32_CONST) {
+                throw invalid("Data segment offset must be constant");
+            }
+            long offset = readSigned() & 0xFFFFFFFFL;
+            if (readByte() != END) {
+                throw invalid("Data segment offset must be constant");
+            }
+
+            int size = readUnsigned();
+            if (offset + size > memoryPages * WasmRuntime.PAGE_SIZE) {
+                throw invalid("Data segment exceeds the memory");
+            }
+            position += size;
+            if (position > bytes.length) {
+                throw invalid("Data segment exceeds the module");
+            }
+        }
+    }
+
+    private void readConstantExpression(int type) {
+        int opcode = readByte();
+        if (opcode == I32_CONST && type == TYPE_I32) {
+            readSigned();
+        } else if (opcode == F64_CONST && type == TYPE_F64) {
+            position += 8;
+        } else {
+            throw invalid("Unsupported constant expression");
+        }
+        if (readByte() != END) {
+            throw invalid("Constant expression must end after its value");
+        }
+    }
+
+    private void readFunctionBody(FunctionType type, int end) {
+        List<Integer> locals = new ArrayList<>(type.parameters());
+        int runs = readUnsigned();
+        for (int i = 0; i < runs; i++) {
+            int count = readUnsigned();
+            int valueType = readValueType();
+            if (count < 0 || locals.size() + (long) count > 50000) {
+                throw invalid("Too many locals");
+            }
+            for (int j = 0; j < count; j++) {
+                locals.add(valueType);
+            }
+        }
+
+        values.clear();
+        frames.clear();
+        pushFrame(BLOCK, List.of(), type.results());
+
+        while (!frames.isEmpty()) {
+            if (position >= end) {
+                throw invalid("Function body ends inside a block");
+            }
+            readInstruction(type, locals);
+        }
+    }
+
+    private void readInstruction(FunctionType function, List<Integer> locals) {
+        int opcode = readByte();
+        switch (opcode) {
+            case UNREACHABLE -> markUnreachable();
+            case NOP -> {
+            }
+            case BLOCK, LOOP -> pushFrame(opcode, List.of(), readBlockType());
+            case IF -> {
+                List<Integer> results = readBlockType();
+                popValue(TYPE_I32);
+                pushFrame(IF, List.of(), results);
+            }
+            case ELSE -> {
+                Frame frame = popFrame();
+                if (frame.opcode != IF) {
+                    throw invalid("Else outside of an if");
+                }
+                pushFrame(ELSE, frame.startTypes, frame.endTypes);
+            }
+            case END -> {
+                Frame frame = popFrame();
+                if (frame.opcode == IF && !frame.endTypes.equals(frame.startTypes)) {
+                    throw invalid("If without else must not produce a value");
+                }
+                pushValues(frame.endTypes);
+            }
+            case BR -> {
+                popValues(getLabel(readUnsigned()).labelTypes());
+                markUnreachable();
+            }
+            case BR_IF -> {
+                List<Integer> labelTypes = getLabel(readUnsigned()).labelTypes();
+                popValue(TYPE_I32);
+                popValues(labelTypes);
+                pushValues(labelTypes);
+            }
+            case BR_TABLE -> {
+                int count = readUnsigned();
+                List<List<Integer>> targets = new ArrayList<>();
+                for (int i = 0; i <= count; i++) {
+                    targets.add(getLabel(readUnsigned()).labelTypes());
+                }
+                List<Integer> defaultTypes = targets.get(targets.size() - 1);
+                for (List<Integer> target : targets) {
+                    if (target.size() != defaultTypes.size()) {
+                        throw invalid("Branch table targets have different arities");
+                    }
+                }
+                popValue(TYPE_I32);
+                popValues(defaultTypes);
+                markUnreachable();
+            }
+            case RETURN -> {
+                popValues(function.results());
+                markUnreachable();
+            }
+            case CALL -> {
+                int index = readUnsigned();
+                if (index < 0 || index >= functions.size()) {
+                    throw invalid("Call of missing function %d".formatted(index));
+                }
+                FunctionType type = types.get(functions.get(index));
+                popValues(type.parameters());
+                pushValues(type.results());
+            }
+            case DROP -> popValue();
+            case SELECT -> {
+                popValue(TYPE_I32);
+                int first = popValue();
+                int second = popValue();
+                if (first != second && first != UNKNOWN && second != UNKNOWN) {
+                    throw invalid("Select of different types");
+                }
+                pushValue(first == UNKNOWN ? second : first);
+            }
+            case LOCAL_GET -> pushValue(getLocal(locals, readUnsigned()));
+            case LOCAL_SET -> popValue(getLocal(locals, readUnsigned()));
+            case LOCAL_TEE -> {
+                int type = getLocal(locals, readUnsigned());
+                popValue(type);
+                pushValue(type);
+            }
+            case GLOBAL_GET -> pushValue(getGlobal(readUnsigned()).type());
+            case GLOBAL_SET -> {
+                GlobalType global = getGlobal(readUnsigned());
+                if (!global.isMutable()) {
+                    throw invalid("Assignment to an immutable global");
+                }
+                popValue(global.type());
+            }
+            case I32_LOAD -> load(2, TYPE_I32);
+            case F64_LOAD -> load(3, TYPE_F64);
+            case I32_LOAD8_U -> load(0, TYPE_I32);
+            case I32_LOAD16_U -> load(1, TYPE_I32);
+            case I32_STORE -> store(2, TYPE_I32);
+            case F64_STORE -> store(3, TYPE_F64);
+            case I32_STORE8 -> store(0, TYPE_I32);
+            case I32_STORE16 -> store(1, TYPE_I32);
+            case MEMORY_SIZE -> {
+                requireMemory();
+                pushValue(TYPE_I32);
+            }
+            case MEMORY_GROW -> {
+                requireMemory();
+                popValue(TYPE_I32);
+                pushValue(TYPE_I32);
+            }
+            case I32_CONST -> {
+                readSigned();
+                pushValue(TYPE_I32);
+            }
+            case F64_CONST -> {
+                position += 8;
+                pushValue(TYPE_F64);
+            }
+            case PREFIX_MISC -> {
+                int operation = readUnsigned();
+                if (operation != I32_TRUNC_SAT_F64_S && operation != I32_TRUNC_SAT_F64_S + 1) {
+                    throw invalid("Unsupported instruction 0xFC %d".formatted(operation));
+                }
+                operation(List.of(TYPE_F64), TYPE_I32);
+            }
+            default -> readNumericInstruction(opcode);
+        }
+    }
+
+    private void readNumericInstruction(int opcode) {
+        if (opcode == I32_EQZ || (opcode >= 0x67 && opcode <= 0x69)) {
+            operation(List.of(TYPE_I32), TYPE_I32);
+        } else if (opcode >= I32_EQ && opcode <= I32_GE_U) {
+            operation(List.of(TYPE_I32, TYPE_I32), TYPE_I32);
+        } else if (opcode >= F64_EQ && opcode <= F64_GE) {
+            operation(List.of(TYPE_F64, TYPE_F64), TYPE_I32);
+        } else if (opcode >= I32_ADD && opcode <= 0x78) {
+            operation(List.of(TYPE_I32, TYPE_I32), TYPE_I32);
+        } else if (opcode >= F64_ABS && opcode <= 0x9F) {
+            operation(List.of(TYPE_F64), TYPE_F64);
+        } else if (opcode >= F64_ADD && opcode <= 0xA6) {
+            operation(List.of(TYPE_F64, TYPE_F64), TYPE_F64);
+        } else if (opcode == 0xAA || opcode == 0xAB) {
+            operation(List.of(TYPE_F64), TYPE_I32);
+        } else if (opcode == F64_CONVERT_I32_S || opcode == F64_CONVERT_I32_S + 1) {
+            operation(List.of(TYPE_I32), TYPE_F64);
+        } else {
+            throw invalid("Unsupported instruction 0x%02X".formatted(opcode));
+        }
+    }
+
+    private void operation(List<Integer> operands, int result) {
+        popValues(operands);
+        pushValue(result);
+    }
+
+    private void load(int naturalAlignment, int type) {
+        readMemoryArgument(naturalAlignment);
+        popValue(TYPE_I32);
+        pushValue(type);
+    }
+
+    private void store(int naturalAlignment, int type) {
+        readMemoryArgument(naturalAlignment);
+        popValue(type);
+        popValue(TYPE_I32);
+    }
+
+    private void readMemoryArgument(int naturalAlignment) {
+        requireMemory();
+        int alignment = readUnsigned();
+        if (alignment < 0 || alignment > naturalAlignment) {
+            throw invalid("Alignment exceeds the natural alignment");
+        }
+        readUnsigned();
+    }
+
+    private void requireMemory() {
+        if (memories == 0) {
+            throw invalid("Memory instruction without a memory");
+        }
+    }
+
+    private int getLocal(List<Integer> locals, int index) {
+        if (index < 0 || index >= locals.size()) {
+            throw invalid("Access of missing local %d".formatted(index));
+        }
+        return locals.get(index);
+    }
+
+    private GlobalType getGlobal(int index) {
+        if (index < 0 || index >= globals.size()) {
+            throw invalid("Access of missing global %d".formatted(index));
+        }
+        return globals.get(index);
+    }
+
+    private Frame getLabel(int depth) {
+        if (depth < 0 || depth >= frames.size()) {
+            throw invalid("Branch to missing label %d".formatted(depth));
+        }
+        return frames.get(frames.size() - 1 - depth);
+    }
+
+    private void pushFrame(int opcode, List<Integer> startTypes, List<Integer> endTypes) {
+        frames.add(new Frame(opcode, startTypes, endTypes, values.size()));
+        pushValues(startTypes);
+    }
+
+    private Frame popFrame() {
+        if (frames.isEmpty()) {
+            throw invalid("End without a block");
+        }
+
+        Frame frame = frames.get(frames.size() - 1);
+        popValues(frame.endTypes);
+        if (values.size() != frame.height) {
+            throw invalid("Block leaves values on the stack");
+        }
+        frames.remove(frames.size() - 1);
+        return frame;
+    }
+
+    private void markUnreachable() {
+        Frame frame = frames.get(frames.size() - 1);
+        while (values.size() > frame.height) {
+            values.remove(values.size() - 1);
+        }
+        frame.unreachable = true;
+    }
+
+    private void pushValue(int type) {
+        values.add(type);
+    }
+
+    private void pushValues(List<Integer> types) {
+        values.addAll(types);
+    }
+
+    private int popValue() {
+        Frame frame = frames.get(frames.size() - 1);
+        if (values.size() == frame.height) {
+            if (frame.unreachable) {
+                return UNKNOWN;
+            }
+            throw invalid("Stack underflow");
+        }
+        return values.remove(values.size() - 1);
+    }
+
+    private void popValue(int expected) {
+        int actual = popValue();
+        if (actual != expected && actual != UNKNOWN) {
+            throw invalid("Expected %s but found %s".formatted(typeName(expected), typeName(actual)));
+        }
+    }
+
+    private void popValues(List<Integer> types) {
+        for (int i = types.size() - 1; i >= 0; i--) {
+            popValue(types.get(i));
+        }
+    }
+
+    private List<Integer> readBlockType() {
+        int type = readByte();
+        if (type == TYPE_EMPTY) {
+            return List.of();
+        }
+        checkValueType(type);
+        return List.of(type);
+    }
+
+    private List<Integer> readValueTypes() {
+        int count = readUnsigned();
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            result.add(readValueType());
+        }
+        return result;
+    }
+
+    private int readValueType() {
+        int type = readByte();
+        checkValueType(type);
+        return type;
+    }
+
+    private void checkValueType(int type) {
+        if (type != TYPE_I32 && type != TYPE_I64 && type != TYPE_F32 && type != TYPE_F64) {
+            throw invalid("Invalid value type 0x%02X".formatted(type));
+        }
+    }
+
+    private int readTypeIndex() {
+        int index = readUnsigned();
+        if (index < 0 || index >= types.size()) {
+            throw invalid("Missing type %d".formatted(index));
+        }
+        return index;
+    }
+
+    private String readName() {
+        int length = readUnsigned();
+        if (length < 0 || position + length > bytes.length) {
+            throw invalid("Name exceeds the module");
+        }
+        String name = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return name;
+    }
+
+    private int readByte() {
+        if (position >= bytes.length) {
+            throw invalid("Unexpected end of module");
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    private int readFixedInt() {
+        return readByte() | readByte() << 8 | readByte() << 16 | readByte() << 24;
+    }
+
+    private int readUnsigned() {
+        long result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (result > 0xFFFFFFFFL) {
+                    throw invalid("Integer too large");
+                }
+                return (int) result;
+            }
+        }
+        throw invalid("Integer representation too long");
+    }
+
+    private int readSigned() {
+        int result = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift >= 35) {
+                throw invalid("Integer representation too long");
+            }
+            b = readByte();
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        if (shift < 32 && (b & 0x40) != 0) {
+            result |= -1 << shift;
+        }
+        return result;
+    }
+
+    private static String typeName(int type) {
+        return switch (type) {
+            case TYPE_I32 -> "i32";
+            case TYPE_I64 -> "i64";
+            case TYPE_F32 -> "f32";
+            case TYPE_F64 -> "f64";
+            default -> "unknown";
+        };
+    }
+
+    private EmitterException invalid(String message) {
+        return new EmitterException("Invalid module at byte %d: %s".formatted(position, message));
+    }
+}
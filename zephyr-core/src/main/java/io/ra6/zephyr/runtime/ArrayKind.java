@@ -0,0 +1,305 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.codeanalysis.symbols.ArrayTypeSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+
+import java.util.Arrays;
+
+/**
+ * How the elements of an array are stored. Arrays of int, double, char and bool are backed by the matching
+ * primitive Java array, so their elements are stored unboxed. Every other array is an {@code Object[]}.
+ * Engines dispatch on the array itself, so code that only knows a generic element type works on all kinds.
+ */
+public enum ArrayKind {
+    INT {
+        @Override
+        public Object create(int length, Object initialValue) {
+            int[] array = new int[length];
+            if (initialValue != null) {
+                Arrays.fill(array, (Integer) initialValue);
+            }
+            return array;
+        }
+
+        @Override
+        public int length(Object array) {
+            return ((int[]) array).length;
+        }
+
+        @Override
+        public Object get(Object array, int index) {
+            return ((int[]) array)[index];
+        }
+
+        @Override
+        public void set(Object array, int index, Object value) {
+            ((int[]) array)[index] = value == null ? 0 : (Integer) value;
+        }
+
+        @Override
+        public int getInt(Object array, int index) {
+            return ((int[]) array)[index];
+        }
+
+        @Override
+        public void setInt(Object array, int index, int value) {
+            ((int[]) array)[index] = value;
+        }
+
+        @Override
+        public Object copy(Object array) {
+            return ((int[]) array).clone();
+        }
+    },
+    DOUBLE {
+        @Override
+        public Object create(int length, Object initialValue) {
+            double[] array = new double[length];
+            if (initialValue != null) {
+                Arrays.fill(array, ((Number) initialValue).doubleValue());
+            }
+            return array;
+        }
+
+        @Override
+        public int length(Object array) {
+            return ((double[]) array).length;
+        }
+
+        @Override
+        public Object get(Object array, int index) {
+            return ((double[]) array)[index];
+        }
+
+        @Override
+        public void set(Object array, int index, Object value) {
+            // conversions are not evaluated, an int may be assigned to a double element
+            ((double[]) array)[index] = value == null ? 0 : ((Number) value).doubleValue();
+        }
+
+        @Override
+        public double getDouble(Object array, int index) {
+            return ((double[]) array)[index];
+        }
+
+        @Override
+        public void setDouble(Object array, int index, double value) {
+            ((double[]) array)[index] = value;
+        }
+
+        @Override
+        public Object copy(Object array) {
+            return ((double[]) array).clone();
+        }
+    },
+    CHAR {
+        @Override
+        public Object create(int length, Object initialValue) {
+            char[] array = new char[length];
+            if (initialValue != null) {
+                Arrays.fill(array, (Character) initialValue);
+            }
+            return array;
+        }
+
+        @Override
+        public int length(Object array) {
+            return ((char[]) array).length;
+        }
+
+        @Override
+        public Object get(Object array, int index) {
+            return ((char[]) array)[index];
+        }
+
+        @Override
+        public void set(Object array, int index, Object value) {
+            ((char[]) array)[index] = value == null ? 0 : (Character) value;
+        }
+
+        @Override
+        public char getChar(Object array, int index) {
+            return ((char[]) array)[index];
+        }
+
+        @Override
+        public void setChar(Object array, int index, char value) {
+            ((char[]) array)[index] = value;
+        }
+
+        @Override
+        public Object copy(Object array) {
+            return ((char[]) array).clone();
+        }
+    },
+    BOOL {
+        @Override
+        public Object create(int length, Object initialValue) {
+            boolean[] array = new boolean[length];
+            if (initialValue != null) {
+                Arrays.fill(array, (Boolean) initialValue);
+            }
+            return array;
+        }
+
+        @Override
+        public int length(Object array) {
+            return ((boolean[]) array).length;
+        }
+
+        @Override
+        public Object get(Object array, int index) {
+            return ((boolean[]) array)[index];
+        }
+
+        @Override
+        public void set(Object array, int index, Object value) {
+            ((boolean[]) array)[index] = value != null && (Boolean) value;
+        }
+
+        @Override
+        public boolean getBool(Object array, int index) {
+            return ((boolean[]) array)[index];
+        }
+
+        @Override
+        public void setBool(Object array, int index, boolean value) {
+            ((boolean[]) array)[index] = value;
+        }
+
+        @Override
+        public Object copy(Object array) {
+            return ((boolean[]) array).clone();
+        }
+    },
+    OBJECT {
+        @Override
+        public Object create(int length, Object initialValue) {
+            Object[] array = new Object[length];
+            if (initialValue != null) {
+                Arrays.fill(array, initialValue);
+            }
+            return array;
+        }
+
+        @Override
+        public int length(Object array) {
+            return ((Object[]) array).length;
+        }
+
+        @Override
+        public Object get(Object array, int index) {
+            return ((Object[]) array)[index];
+        }
+
+        @Override
+        public void set(Object array, int index, Object value) {
+            ((Object[]) array)[index] = value;
+        }
+
+        @Override
+        public Object copy(Object array) {
+            return ((Object[]) array).clone();
+        }
+    };
+
+    static final ArrayKind[] VALUES = values();
+
+    public abstract Object create(int length, Object initialValue);
+
+    public abstract int length(Object array);
+
+    public abstract Object get(Object array, int index);
+
+    public abstract void set(Object array, int index, Object value);
+
+    public abstract Object copy(Object array);
+
+    // Typed element access for code that knows the element type statically. Each kind accesses its own elements
+    // without boxing, other kinds box and unbox, which only happens for arrays created by generic code.
+
+    public int getInt(Object array, int index) {
+        return (int) get(array, index);
+    }
+
+    public void setInt(Object array, int index, int value) {
+        set(array, index, value);
+    }
+
+    public double getDouble(Object array, int index) {
+        return ((Number) get(array, index)).doubleValue();
+    }
+
+    public void setDouble(Object array, int index, double value) {
+        set(array, index, value);
+    }
+
+    public char getChar(Object array, int index) {
+        return (char) get(array, index);
+    }
+
+    public void setChar(Object array, int index, char value) {
+        set(array, index, value);
+    }
+
+    public boolean getBool(Object array, int index) {
+        return (boolean) get(array, index);
+    }
+
+    public void setBool(Object array, int index, boolean value) {
+        set(array, index, value);
+    }
+
+    public Object create(Object[] elements) {
+        if (this == OBJECT) {
+            return elements;
+        }
+
+        Object array = create(elements.length, null);
+        for (int i = 0; i < elements.length; i++) {
+            set(array, i, elements[i]);
+        }
+        return array;
+    }
+
+    public static ArrayKind of(TypeSymbol elementType) {
+        if (elementType == null || elementType instanceof ArrayTypeSymbol || elementType.isGeneric()) return OBJECT;
+        if (elementType.equals(Types.INT)) return INT;
+        if (elementType.equals(Types.DOUBLE)) return DOUBLE;
+        if (elementType.equals(Types.CHAR)) return CHAR;
+        if (elementType.equals(Types.BOOL)) return BOOL;
+        return OBJECT;
+    }
+
+    public static ArrayKind ofElements(TypeSymbol arrayType) {
+        return arrayType instanceof ArrayTypeSymbol array ? of(array.getElementType()) : OBJECT;
+    }
+
+    /**
+     * @return the kind of the innermost arrays of a possibly multidimensional array type
+     */
+    public static ArrayKind ofInnermost(TypeSymbol arrayType) {
+        TypeSymbol elementType = arrayType;
+        while (elementType instanceof ArrayTypeSymbol array) {
+            elementType = array.getElementType();
+        }
+        return of(elementType);
+    }
+
+    /**
+     * @return the kind of the array, or null if the value is not an array
+     */
+    public static ArrayKind ofArray(Object value) {
+        if (value instanceof Object[]) return OBJECT;
+        if (value instanceof int[]) return INT;
+        if (value instanceof char[]) return CHAR;
+        if (value instanceof double[]) return DOUBLE;
+        if (value instanceof boolean[]) return BOOL;
+        return null;
+    }
+
+    public static ArrayKind fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
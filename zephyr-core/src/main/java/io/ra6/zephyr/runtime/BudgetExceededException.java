@@ -0,0 +1,11 @@
+package io.ra6.zephyr.runtime;
+
+/**
+ * Thrown if a call runs out of the steps or allocations its {@link ExecutionBudget} allows. The call is aborted,
+ * the context it ran in can be used again.
+ */
+public class BudgetExceededException extends RuntimeException {
+    public BudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,106 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * The profiled call stack of an execution context. The engines enter and exit the bodies they run and the
+ * {@link Profiler} samples the stack from its own thread. The stack is written without synchronization, a sample
+ * may miss the last call or return, which does not matter for a statistical profile.
+ */
+public final class CallRecorder {
+    private static final ThreadLocal<CallRecorder> CURRENT = new ThreadLocal<>();
+
+    @Getter
+    private final Profiler profiler;
+    private ProfiledFunction[] functions = new ProfiledFunction[64];
+    // the statement each frame is running, only recorded if the profiler samples lines
+    private BoundStatement[] lines = new BoundStatement[64];
+    private int depth;
+
+    CallRecorder(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public static CallRecorder current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes the recorder the one of the current thread and lets the profiler sample it.
+     *
+     * @return the recorder the thread had before
+     */
+    static CallRecorder activate(CallRecorder recorder) {
+        CallRecorder previous = CURRENT.get();
+        CURRENT.set(recorder);
+        if (recorder != null) recorder.profiler.attach(recorder);
+        return previous;
+    }
+
+    /**
+     * Stops sampling the recorder, the frames a failed call left on it are dropped.
+     */
+    static void deactivate(CallRecorder recorder, CallRecorder previous) {
+        if (recorder != null) {
+            recorder.profiler.detach(recorder);
+            recorder.depth = 0;
+        }
+        CURRENT.set(previous);
+    }
+
+    public void enter(BoundBlockStatement body) {
+        enter(profiler.getFunction(body));
+    }
+
+    public void enter(ProfiledFunction function) {
+        function.called();
+
+        if (depth == functions.length) {
+            functions = Arrays.copyOf(functions, depth * 2);
+            lines = Arrays.copyOf(lines, depth * 2);
+        }
+
+        functions[depth] = function;
+        lines[depth] = null;
+        depth++;
+    }
+
+    public void exit() {
+        depth--;
+    }
+
+    /**
+     * Replaces the top frame by the body of a call in tail position.
+     */
+    public void replace(BoundBlockStatement body) {
+        ProfiledFunction function = profiler.getFunction(body);
+        function.called();
+        functions[depth - 1] = function;
+        lines[depth - 1] = null;
+    }
+
+    /**
+     * Records the statement the top frame runs, statements without syntax keep the previous line.
+     */
+    public void line(BoundStatement statement) {
+        if (statement != null && statement.getSyntax() != null) {
+            lines[depth - 1] = statement;
+        }
+    }
+
+    // the frames and lines are read by the sampler thread
+    ProfiledFunction[] snapshot() {
+        ProfiledFunction[] functions = this.functions;
+        int count = Math.min(depth, functions.length);
+        return count <= 0 ? null : Arrays.copyOf(functions, count);
+    }
+
+    BoundStatement getLine(int frame) {
+        BoundStatement[] lines = this.lines;
+        return frame < lines.length ? lines[frame] : null;
+    }
+}
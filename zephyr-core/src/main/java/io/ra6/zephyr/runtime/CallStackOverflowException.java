@@ -0,0 +1,87 @@
+package io.ra6.zephyr.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thrown if a program exceeds the maximum call depth of its runtime, or the calls do not fit on the Java stack of
+ * the thread running it. The message contains the Zephyr call stack, most recent call first, with repeated calls
+ * of the same function collapsed into one line.
+ * <p>
+ * The closure engine and the bytecode VM keep their calls on the Java stack only. They convert a
+ * {@link StackOverflowError} with {@link #unwind(Throwable, String, String)} in every call it passes, which adds the
+ * calls to the trace. Programs compiled to JVM bytecode only know the most recent calls the JVM recorded.
+ */
+public class CallStackOverflowException extends RuntimeException {
+    private static final int MAX_TRACE_LINES = 32;
+
+    // most recent call first
+    private final List<String> calls;
+    // set if the calls below the most recent ones are unknown, so the depth is unknown too
+    private final boolean partial;
+
+    public CallStackOverflowException(List<VariableTable> frames) {
+        this.calls = new ArrayList<>(frames.size());
+        this.partial = false;
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            calls.add(frames.get(i).getName());
+        }
+    }
+
+    /**
+     * Converts a {@link StackOverflowError} of which only the most recent calls are known.
+     */
+    public CallStackOverflowException(StackOverflowError cause, List<String> calls) {
+        this(cause, calls, true);
+    }
+
+    private CallStackOverflowException(StackOverflowError cause, List<String> calls, boolean partial) {
+        // the Java stack is nearly full and deep, it is not walked for a stack trace
+        super(null, cause, false, false);
+        this.calls = new ArrayList<>(calls);
+        this.partial = partial;
+    }
+
+    /**
+     * Adds a call the overflow passes to the trace, a {@link StackOverflowError} is converted first.
+     */
+    public static CallStackOverflowException unwind(Throwable overflow, String kind, String owner) {
+        CallStackOverflowException exception = overflow instanceof CallStackOverflowException e ? e : new CallStackOverflowException((StackOverflowError) overflow, List.of(), false);
+        exception.calls.add("%s (%s)".formatted(kind, owner));
+        return exception;
+    }
+
+    @Override
+    public String getMessage() {
+        if (partial) {
+            return "Stack overflow%n%s".formatted(formatTrace(calls));
+        }
+        return "Stack overflow at call depth %d%n%s".formatted(calls.size(), formatTrace(calls));
+    }
+
+    private static String formatTrace(List<String> calls) {
+        StringBuilder trace = new StringBuilder();
+        int lines = 0;
+        int index = 0;
+
+        while (index < calls.size() && lines < MAX_TRACE_LINES) {
+            String name = calls.get(index);
+            int repeated = 1;
+            while (index + repeated < calls.size() && calls.get(index + repeated).equals(name)) {
+                repeated++;
+            }
+
+            trace.append("\tat ").append(name);
+            if (repeated > 1) trace.append(" (repeated %d times)".formatted(repeated));
+            trace.append(System.lineSeparator());
+
+            index += repeated;
+            lines++;
+        }
+
+        if (index < calls.size()) {
+            trace.append("\t... %d more%n".formatted(calls.size() - index));
+        }
+        return trace.toString().stripTrailing();
+    }
+}
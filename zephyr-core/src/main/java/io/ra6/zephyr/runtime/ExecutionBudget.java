@@ -0,0 +1,92 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.Tuple;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Limits the work of each call into an execution context. Steps are entered bodies and backward jumps, so every
+ * loop iteration and every call is counted. Allocations are created instances and array elements, counted before
+ * they are allocated.
+ * <p>
+ * Only runtimes with a limit meter their programs. The interpreter reads the budget from its context, the closure
+ * and bytecode engines only compile metering into bodies of such runtimes and find the budget of the running call
+ * with {@link #current()}.
+ */
+public final class ExecutionBudget {
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private static final ThreadLocal<ExecutionBudget> CURRENT = new ThreadLocal<>();
+
+    private final long stepLimit;
+    private final long allocationLimit;
+    @Getter
+    private long steps;
+    @Getter
+    private long allocations;
+
+    public ExecutionBudget(long stepLimit, long allocationLimit) {
+        this.stepLimit = stepLimit;
+        this.allocationLimit = allocationLimit;
+    }
+
+    public static ExecutionBudget current() {
+        return CURRENT.get();
+    }
+
+    static ExecutionBudget enter(ExecutionBudget budget) {
+        ExecutionBudget previous = CURRENT.get();
+        CURRENT.set(budget);
+        return previous;
+    }
+
+    static void exit(ExecutionBudget previous) {
+        CURRENT.set(previous);
+    }
+
+    public void reset() {
+        steps = 0;
+        allocations = 0;
+    }
+
+    public void step() {
+        if (++steps > stepLimit) {
+            throw new BudgetExceededException("Step budget of %d exceeded".formatted(stepLimit));
+        }
+    }
+
+    public void allocate(long count) {
+        // more allocations than a long can count are over every limit
+        allocations = count > Long.MAX_VALUE - allocations ? Long.MAX_VALUE : allocations + count;
+        if (allocations > allocationLimit) {
+            throw new BudgetExceededException("Allocation budget of %d exceeded".formatted(allocationLimit));
+        }
+    }
+
+    /**
+     * Counts the elements of all arrays of a multidimensional array before it is created.
+     */
+    public void allocateArray(List<Tuple<Integer, Object>> dimensions) {
+        if (allocationLimit == UNLIMITED) {
+            return;
+        }
+
+        long count = 0;
+        long arrays = 1;
+        try {
+            for (Tuple<Integer, Object> dimension : dimensions) {
+                // arrays of a negative size are not created
+                if (dimension.getItem1() < 0) break;
+
+                arrays = Math.multiplyExact(arrays, dimension.getItem1());
+                count = Math.addExact(count, arrays);
+                // the budget is exceeded, the remaining dimensions do not matter
+                if (count > allocationLimit) break;
+            }
+        } catch (ArithmeticException e) {
+            count = Long.MAX_VALUE;
+        }
+        allocate(count);
+    }
+}
@@ -0,0 +1,82 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.symbols.FunctionSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+import lombok.Getter;
+
+import java.util.IdentityHashMap;
+
+/**
+ * The mutable state of running functions of a linked {@link Runtime}: the call stack and the interpreters of the
+ * registered programs, which keep the last evaluated value and their inline caches. A context is used by one thread
+ * at a time, while contexts of the same runtime can be used by many threads at once.
+ */
+public class ExecutionContext {
+    @Getter
+    private final Runtime runtime;
+    @Getter
+    private final VariableTableStack callStack;
+    // null if the runtime is not metered
+    @Getter
+    private final ExecutionBudget budget;
+    // null if the runtime is not profiled
+    @Getter
+    private final CallRecorder recorder;
+    private final IdentityHashMap<RegisteredProgram, ProgramInterpreter> interpreters = new IdentityHashMap<>();
+
+    ExecutionContext(Runtime runtime) {
+        this.runtime = runtime;
+        this.callStack = new VariableTableStack(runtime.getMaxCallDepth());
+        this.budget = runtime.isMetered() ? new ExecutionBudget(runtime.getStepLimit(), runtime.getAllocationLimit()) : null;
+        this.recorder = runtime.getProfiler() != null ? new CallRecorder(runtime.getProfiler()) : null;
+    }
+
+    public ProgramInterpreter getInterpreter(RegisteredProgram program) {
+        return interpreters.computeIfAbsent(program, p -> new ProgramInterpreter(this, p.getProgram()));
+    }
+
+    /**
+     * @return the interpreter of the program declaring the type, or null if no registered program declares it
+     */
+    public ProgramInterpreter findInterpreter(TypeSymbol type) {
+        RegisteredProgram program = runtime.findProgram(type);
+        return program == null ? null : getInterpreter(program);
+    }
+
+    /**
+     * Calls a shared function of a type declared in the given program with the execution engine of the runtime.
+     */
+    public Object invoke(RegisteredProgram program, RuntimeType type, FunctionSymbol function, Object[] arguments) {
+        return invoke(program, type, function, null, arguments);
+    }
+
+    /**
+     * Calls a function of a type declared in the given program, {@code thisValue} is the instance for functions
+     * that are not shared. Each call starts with the full budget of the context.
+     */
+    public Object invoke(RegisteredProgram program, RuntimeType type, FunctionSymbol function, Object thisValue, Object[] arguments) {
+        if (budget == null && recorder == null) {
+            return evaluate(program, type, function, thisValue, arguments);
+        }
+
+        if (budget != null) budget.reset();
+        ExecutionBudget previousBudget = ExecutionBudget.enter(budget);
+        CallRecorder previousRecorder = CallRecorder.activate(recorder);
+        try {
+            return evaluate(program, type, function, thisValue, arguments);
+        } finally {
+            CallRecorder.deactivate(recorder, previousRecorder);
+            ExecutionBudget.exit(previousBudget);
+        }
+    }
+
+    private Object evaluate(RegisteredProgram program, RuntimeType type, FunctionSymbol function, Object thisValue, Object[] arguments) {
+        BoundProgramScope scope = program.getProgram();
+        return switch (runtime.getEngine()) {
+            case INTERPRETER -> getInterpreter(program).evaluateFunctionWithEvaluatedArgs(type, function, thisValue, arguments);
+            case CLOSURE -> runtime.getClosureEngine().evaluateFunctionWithEvaluatedArgs(scope, type, function, thisValue, arguments);
+            case BYTECODE -> runtime.getBytecodeVM().evaluateFunctionWithEvaluatedArgs(scope, type, function, thisValue, arguments);
+        };
+    }
+}
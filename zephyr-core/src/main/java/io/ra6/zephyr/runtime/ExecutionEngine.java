@@ -0,0 +1,10 @@
+package io.ra6.zephyr.runtime;
+
+public enum ExecutionEngine {
+    // walks the bound tree on every evaluation
+    INTERPRETER,
+    // compiles each lowered body once into a tree of executable closures
+    CLOSURE,
+    // compiles each lowered body once into register based bytecode executed by a dispatch loop
+    BYTECODE,
+}
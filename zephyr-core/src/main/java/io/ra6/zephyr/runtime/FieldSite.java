@@ -0,0 +1,47 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.codeanalysis.symbols.FieldSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.Symbol;
+
+/**
+ * A field access in compiled code. It remembers the offset of the field in the shape it saw last, so a site that
+ * always sees instances of the same type indexes the fields directly. Shared fields are accessed through the shared
+ * shape of their type.
+ */
+public final class FieldSite {
+    private record Entry(Shape shape, int offset) {
+    }
+
+    private final Symbol member;
+    private Entry entry;
+
+    public FieldSite(Symbol member) {
+        this.member = member;
+    }
+
+    public Object get(TypeInstance instance) {
+        return instance.getField(getOffset(instance.getShape()));
+    }
+
+    public void set(TypeInstance instance, Object value) {
+        instance.setField(getOffset(instance.getShape()), value);
+    }
+
+    public Object get(RuntimeType type) {
+        return type.getSharedField(getOffset(type.getSharedShape()));
+    }
+
+    public void set(RuntimeType type, Object value) {
+        type.setSharedField(getOffset(type.getSharedShape()), value);
+    }
+
+    private int getOffset(Shape shape) {
+        Entry entry = this.entry;
+        if (entry == null || entry.shape() != shape) {
+            int offset = member instanceof FieldSymbol field ? shape.getOffset(field) : shape.getOffset(member.getName());
+            entry = new Entry(shape, offset);
+            this.entry = entry;
+        }
+        return entry.offset();
+    }
+}
@@ -0,0 +1,44 @@
+package io.ra6.zephyr.runtime;
+
+import java.util.Arrays;
+
+/**
+ * Remembers what a call site resolved to for each receiver it has seen, compared by identity. A site with one
+ * receiver is monomorphic, with up to {@link #CAPACITY} receivers polymorphic. Receivers beyond that are not
+ * cached and resolve on every call. A cache can be shared by threads.
+ */
+public final class InlineCache<T> {
+    public static final int CAPACITY = 4;
+
+    private record Entry(Object receiver, Object target) {
+    }
+
+    private static final Entry[] EMPTY = new Entry[0];
+
+    // replaced as a whole on every put, so threads sharing the site always see complete entries
+    private volatile Entry[] entries = EMPTY;
+
+    /**
+     * @return the cached target for the receiver, or null if the receiver has not been seen yet
+     */
+    @SuppressWarnings("unchecked")
+    public T get(Object receiver) {
+        for (Entry entry : entries) {
+            if (entry.receiver() == receiver) {
+                return (T) entry.target();
+            }
+        }
+        return null;
+    }
+
+    public synchronized void put(Object receiver, T target) {
+        Entry[] entries = this.entries;
+        if (entries.length == CAPACITY) {
+            return;
+        }
+
+        Entry[] grown = Arrays.copyOf(entries, entries.length + 1);
+        grown[entries.length] = new Entry(receiver, target);
+        this.entries = grown;
+    }
+}
@@ -0,0 +1,64 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.builtin.*;
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.expressions.BoundInternalFunctionExpression;
+import io.ra6.zephyr.codeanalysis.binding.expressions.BoundVariableExpression;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundReturnStatement;
+import io.ra6.zephyr.codeanalysis.symbols.ParameterSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.VariableSymbol;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The internal function behind a body bound by {@code bindBody()} of the builtin functions and operators. Such a
+ * body only forwards its parameters, so engines call the internal function directly instead of pushing a frame for it.
+ */
+public record InternalCall(ICallable body, String[] parameterNames, boolean passThis) {
+    /**
+     * @return the internal call the body forwards to, or null if the body does anything else
+     */
+    public static InternalCall of(BoundBlockStatement body) {
+        if (body == null || body.getStatements().size() != 1
+                || !(body.getStatements().get(0) instanceof BoundReturnStatement returnStatement)
+                || !(returnStatement.getExpression() instanceof BoundInternalFunctionExpression internalFunction)) {
+            return null;
+        }
+
+        IFunctionBase function = internalFunction.getFunction();
+        List<BoundExpression> arguments = internalFunction.getArguments();
+        if (arguments.size() != function.getParameters().size()) {
+            return null;
+        }
+
+        // the parameters have to be passed on unchanged and in order
+        for (int i = 0; i < arguments.size(); i++) {
+            if (!(arguments.get(i) instanceof BoundVariableExpression variable) || variable.getVariable().getSlot() != VariableSymbol.getParameterSlot(i)) {
+                return null;
+            }
+        }
+
+        boolean passThis = (function instanceof InternalFunction internal && !internal.isShared())
+                || function instanceof InternalBinaryOperator
+                || function instanceof InternalUnaryOperator;
+        String[] names = function.getParameters().stream().map(ParameterSymbol::getName).toArray(String[]::new);
+
+        return new InternalCall(function.getFunctionBody(), names, passThis);
+    }
+
+    public Object call(Object thisValue, Object[] arguments) {
+        HashMap<String, Object> values = new HashMap<>();
+
+        if (passThis) {
+            values.put(IFunctionBase.PARAM_THIS, thisValue);
+        }
+
+        for (int i = 0; i < parameterNames.length; i++) {
+            values.put(parameterNames[i], arguments[i]);
+        }
+
+        return body.call(values);
+    }
+}
@@ -15,10 +15,43 @@ public class Interpreter {
     private final Runtime runtime;
     private final String[] args;
 
+    // the Java stack reserved per Zephyr call, evaluating a call recurses through several methods
+    private static final long STACK_BYTES_PER_CALL = 4 * 1024;
+
+    /**
+     * Runs the main function on a thread whose Java stack fits the maximum call depth of the runtime.
+     */
     public void run() {
+        RuntimeException[] failure = new RuntimeException[1];
+        Error[] error = new Error[1];
+
+        Thread thread = new Thread(null, () -> {
+            try {
+                runMain();
+            } catch (RuntimeException e) {
+                failure[0] = e;
+            } catch (Error e) {
+                error[0] = e;
+            }
+        }, "zephyr-main", runtime.getMaxCallDepth() * STACK_BYTES_PER_CALL);
+
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            thread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running the program", e);
+        }
+
+        if (failure[0] != null) throw failure[0];
+        if (error[0] != null) throw error[0];
+    }
+
+    private void runMain() {
         RegisteredProgram mainProgram = runtime.getMainProgram();
         BoundProgramScope program = mainProgram.getProgram();
-        ProgramInterpreter evaluator = mainProgram.getEvaluator();
+        ExecutionContext context = runtime.createContext();
 
         if (program.getExports().size() == 0) {
             RuntimeLogger.errorf("No exports found in program %s%n", program.getName());
@@ -26,7 +59,7 @@ public class Interpreter {
         }
 
         for (ExportSymbol export : program.getExports()) {
-            RuntimeType entryType = evaluator.getRuntimeType(program, export.getType());
+            RuntimeType entryType = runtime.getRuntimeType(program, export.getType());
             TypeSymbol type = entryType.getType();
 
             if (type.isFunctionDefined("main")) {
@@ -43,7 +76,8 @@ public class Interpreter {
 
                 boolean returns = mainFunction.getType().equals(Types.INT);
 
-                Object result = evaluator.evaluateFunctionWithEvaluatedArgs(entryType, mainFunction, new Object[]{args});
+                Object[] arguments = new Object[]{args};
+                Object result = context.invoke(mainProgram, entryType, mainFunction, arguments);
                 if (returns) {
                     exitCode = (int) result;
                     return;
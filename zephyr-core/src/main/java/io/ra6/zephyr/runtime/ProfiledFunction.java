@@ -0,0 +1,45 @@
+package io.ra6.zephyr.runtime;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A function, constructor or operator body seen by a {@link Profiler}. Calls are counted by the threads running
+ * the body, the sampled times are written by the sampler thread only.
+ */
+public final class ProfiledFunction {
+    @Getter
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+
+    @Getter
+    private long selfNanos;
+    @Getter
+    private long totalNanos;
+    // the sample that last added to the total time, so recursive calls count once per sample
+    private long lastSample = -1;
+
+    ProfiledFunction(String name) {
+        this.name = name;
+    }
+
+    void called() {
+        calls.increment();
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    void sampleSelf(long nanos) {
+        selfNanos += nanos;
+    }
+
+    void sampleTotal(long sample, long nanos) {
+        if (lastSample != sample) {
+            lastSample = sample;
+            totalNanos += nanos;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
+import io.ra6.zephyr.codeanalysis.symbols.BinaryOperatorSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.ConstructorSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.FunctionSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.UnaryOperatorSymbol;
+import io.ra6.zephyr.sourcefile.TextLocation;
+import lombok.Getter;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Profiles the bodies a runtime runs. Calls are counted exactly by the engines, times are sampled: a thread of the
+ * profiler copies the call stacks of the running contexts at a fixed interval and adds the time since the last
+ * sample to the function on top of each stack (self time) and to every function on it (total time). Times are
+ * wall-clock times, so a task waiting for a channel spends its time in the waiting function.
+ * <p>
+ * Only runtimes with a profiler record calls, the engines compile the recording into their bodies if a profiler
+ * is set. Bodies of builtin functions that only forward to an internal function are counted as part of their caller.
+ */
+public class Profiler {
+    public static final long DEFAULT_INTERVAL_MICROS = 1000;
+    private static final String UNKNOWN_FUNCTION = "<unknown>";
+
+    @Getter
+    private final boolean samplingLines;
+    private final long intervalNanos;
+
+    private final ConcurrentHashMap<BoundBlockStatement, ProfiledFunction> functions = new ConcurrentHashMap<>();
+    private final Set<CallRecorder> recorders = ConcurrentHashMap.newKeySet();
+
+    // written by the sampler thread, read once it stopped
+    private final HashMap<String, Long> stacks = new HashMap<>();
+    private final HashMap<String, Long> lines = new HashMap<>();
+    private final IdentityHashMap<BoundStatement, String> lineNames = new IdentityHashMap<>();
+    @Getter
+    private long samples;
+    private long sampledNanos;
+
+    private Thread sampler;
+    private volatile boolean running;
+
+    public Profiler(boolean samplingLines) {
+        this(samplingLines, DEFAULT_INTERVAL_MICROS);
+    }
+
+    public Profiler(boolean samplingLines, long intervalMicros) {
+        if (intervalMicros < 1) {
+            throw new RuntimeException("Sampling interval must be positive, got " + intervalMicros);
+        }
+        this.samplingLines = samplingLines;
+        this.intervalNanos = intervalMicros * 1000;
+    }
+
+    public synchronized void start() {
+        if (sampler != null) {
+            return;
+        }
+
+        running = true;
+        sampler = new Thread(this::run, "zephyr-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * Stops sampling, the results can be written afterwards.
+     */
+    public synchronized void stop() {
+        if (sampler == null) {
+            return;
+        }
+
+        running = false;
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while stopping the profiler", e);
+        }
+        sampler = null;
+    }
+
+    private void run() {
+        long last = System.nanoTime();
+        while (running) {
+            LockSupport.parkNanos(intervalNanos);
+            long now = System.nanoTime();
+            sample(now - last);
+            last = now;
+        }
+    }
+
+    private void sample(long nanos) {
+        for (CallRecorder recorder : recorders) {
+            ProfiledFunction[] stack = recorder.snapshot();
+            if (stack == null) {
+                continue;
+            }
+
+            StringBuilder collapsed = new StringBuilder();
+            for (ProfiledFunction function : stack) {
+                if (function == null) {
+                    continue;
+                }
+                function.sampleTotal(samples, nanos);
+                if (!collapsed.isEmpty()) collapsed.append(';');
+                collapsed.append(function.getName());
+            }
+
+            ProfiledFunction top = stack[stack.length - 1];
+            if (top != null) top.sampleSelf(nanos);
+            stacks.merge(collapsed.toString(), 1L, Long::sum);
+
+            if (samplingLines) {
+                BoundStatement line = recorder.getLine(stack.length - 1);
+                if (line != null) lines.merge(lineNames.computeIfAbsent(line, Profiler::getLineName), 1L, Long::sum);
+            }
+
+            sampledNanos += nanos;
+            samples++;
+        }
+    }
+
+    private static String getLineName(BoundStatement statement) {
+        TextLocation location = statement.getSyntax().getLocation();
+        return "%s:%d".formatted(location.getFilePath(), location.getStartLine() + 1);
+    }
+
+    /**
+     * Names the bodies of a linked type, so the engines find them when they are called.
+     */
+    void register(RuntimeType type) {
+        BoundTypeScope scope = type.getScope();
+
+        for (FunctionSymbol function : type.getType().getFunctions()) {
+            register(scope.getFunctionBody(function), type.getName() + "." + function.getName());
+        }
+
+        for (ConstructorSymbol constructor : scope.getDeclaredConstructors()) {
+            register(scope.getConstructorBody(constructor), type.getName() + ".constructor");
+        }
+
+        for (BinaryOperatorSymbol operator : scope.getDeclaredBinaryOperators()) {
+            register(scope.getBinaryOperatorBody(operator), type.getName() + ".operator" + operator.getName());
+        }
+
+        for (UnaryOperatorSymbol operator : scope.getDeclaredUnaryOperators()) {
+            register(scope.getUnaryOperatorBody(operator), type.getName() + ".operator" + operator.getName());
+        }
+    }
+
+    private void register(BoundBlockStatement body, String name) {
+        if (body != null) {
+            functions.putIfAbsent(body, new ProfiledFunction(name));
+        }
+    }
+
+    public ProfiledFunction getFunction(BoundBlockStatement body) {
+        ProfiledFunction function = functions.get(body);
+        return function != null ? function : functions.computeIfAbsent(body, b -> new ProfiledFunction(UNKNOWN_FUNCTION));
+    }
+
+    void attach(CallRecorder recorder) {
+        recorders.add(recorder);
+    }
+
+    void detach(CallRecorder recorder) {
+        recorders.remove(recorder);
+    }
+
+    /**
+     * Writes the sampled stacks in the collapsed format of flame graph tools, one stack with its sample count
+     * per line.
+     */
+    public void writeCollapsedStacks(PrintStream out) {
+        for (Map.Entry<String, Long> stack : new TreeMap<>(stacks).entrySet()) {
+            out.printf("%s %d%n", stack.getKey(), stack.getValue());
+        }
+    }
+
+    /**
+     * Writes the called functions ordered by their self time and, if lines are sampled, the sampled lines.
+     */
+    public void writeSummary(PrintStream out) {
+        List<ProfiledFunction> called = new ArrayList<>(functions.values().stream().filter(f -> f.getCalls() > 0).toList());
+        called.sort(Comparator.comparingLong(ProfiledFunction::getSelfNanos)
+                .thenComparingLong(ProfiledFunction::getTotalNanos)
+                .thenComparingLong(ProfiledFunction::getCalls)
+                .reversed()
+                .thenComparing(ProfiledFunction::getName));
+
+        out.printf("Profile: %d samples, %.1f ms sampled%n", samples, sampledNanos / 1e6);
+        out.printf("%14s %12s %7s %12s %7s  %s%n", "Calls", "Self ms", "Self %", "Total ms", "Total %", "Function");
+        for (ProfiledFunction function : called) {
+            out.printf("%14d %12.1f %6.1f%% %12.1f %6.1f%%  %s%n", function.getCalls(),
+                    function.getSelfNanos() / 1e6, percentOf(function.getSelfNanos(), sampledNanos),
+                    function.getTotalNanos() / 1e6, percentOf(function.getTotalNanos(), sampledNanos),
+                    function.getName());
+        }
+
+        if (samplingLines) {
+            List<Map.Entry<String, Long>> sampledLines = new ArrayList<>(lines.entrySet());
+            sampledLines.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+
+            out.println();
+            out.printf("%14s %7s  %s%n", "Samples", "Self %", "Line");
+            for (Map.Entry<String, Long> line : sampledLines) {
+                out.printf("%14d %6.1f%%  %s%n", line.getValue(), percentOf(line.getValue(), samples), line.getKey());
+            }
+        }
+    }
+
+    private static double percentOf(long value, long total) {
+        return total == 0 ? 0 : value * 100.0 / total;
+    }
+}
@@ -11,42 +11,55 @@ import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
 import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
 import io.ra6.zephyr.codeanalysis.binding.statements.*;
 import io.ra6.zephyr.codeanalysis.symbols.*;
-import lombok.RequiredArgsConstructor;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
 
-// TODO: change hashmap to a more efficient data structure
-
-@RequiredArgsConstructor
+/**
+ * Evaluates the bound trees of one program within an {@link ExecutionContext}. Calls into imported programs are
+ * evaluated by the interpreters of the same context.
+ */
 public class ProgramInterpreter {
+    private final ExecutionContext context;
     private final Runtime runtime;
     private final BoundProgramScope program;
     private final HashMap<RuntimeType, HashMap<String, RuntimeType>> genericTypes = new HashMap<>();
-    private final VariableTableStack variableTable = new VariableTableStack();
+    private final VariableTableStack variableTable;
+    // null if the runtime is not metered
+    private final ExecutionBudget budget;
+    // null if the runtime is not profiled
+    private final CallRecorder recorder;
+    private final boolean samplingLines;
 
     private Object lastValue;
 
-    public RuntimeType getRuntimeType(BoundProgramScope program, TypeSymbol type) {
-        RuntimeType runtimeType = runtime.getRuntimeType(program, type);
-        if (!runtimeType.isInitialized()) {
-            initializeStaticFields(runtimeType);
+    // The body a call site resolved to for one receiver type, cached on the call expression itself and shared by all
+    // contexts. Bodies of imported types are evaluated by the interpreter of the program that declares them, bodies
+    // that only forward to an internal function are called without pushing a frame.
+    private record CallTarget(boolean imported, BoundBlockStatement body, InternalCall internal) {
+        CallTarget(boolean imported, BoundBlockStatement body) {
+            this(imported, body, InternalCall.of(body));
         }
-        return runtimeType;
     }
 
-    private void initializeStaticFields(RuntimeType runtimeType) {
-        for (FieldSymbol field : runtimeType.getSharedFields()) {
-            BoundTypeScope scope = runtimeType.getScope();
-            BoundExpression initializer = scope.getFieldInitializer(field);
-            if (initializer != null) {
-                Object value = evaluateExpression(initializer);
-                runtimeType.assignSharedField(field, value);
-            }
-        }
-        runtimeType.setInitialized(true);
+    public ProgramInterpreter(ExecutionContext context, BoundProgramScope program) {
+        this.context = context;
+        this.runtime = context.getRuntime();
+        this.program = program;
+        this.variableTable = context.getCallStack();
+        this.budget = context.getBudget();
+        this.recorder = context.getRecorder();
+        this.samplingLines = recorder != null && recorder.getProfiler().isSamplingLines();
+    }
+
+    public RuntimeType getRuntimeType(BoundProgramScope program, TypeSymbol type) {
+        return runtime.getRuntimeType(program, type);
+    }
+
+    // shared fields are initialized by the runtime when it links the program
+    Object evaluateInitializer(BoundExpression initializer) {
+        return evaluateExpression(initializer);
     }
 
     private Object evaluateExpression(BoundExpression expression) {
@@ -84,7 +97,7 @@ public class ProgramInterpreter {
         RuntimeType rightType = null;
 
         if (program.isTypeImported(expression.getRightType())) {
-            ProgramInterpreter interpreter = runtime.findInterpreter(expression.getRightType());
+            ProgramInterpreter interpreter = context.findInterpreter(expression.getRightType());
             rightType = interpreter.getRuntimeType(program, expression.getRightType());
         }
 
@@ -108,11 +121,7 @@ public class ProgramInterpreter {
             TypeSymbol literalType = Types.getLiteralType(leftValue.getClass());
 
             if (expression.getRightType().isGeneric()) {
-                TypeInstance thisType = variableTable.peek().keySet().stream()
-                        .filter(symbol -> symbol.getName().equals("this"))
-                        .findFirst()
-                        .map(symbol -> (TypeInstance) variableTable.peek().get(symbol))
-                        .orElse(null);
+                TypeInstance thisType = (TypeInstance) variableTable.peek().load(VariableSymbol.THIS_SLOT);
 
                 if (thisType == null) {
                     throw new RuntimeException("Cannot find 'this' in type check expression");
@@ -134,10 +143,9 @@ public class ProgramInterpreter {
 
         if (target instanceof TypeInstance instance) {
             if (field.isShared()) {
-                RuntimeType runtimeType = instance.getRuntimeType();
-                return runtimeType.getSharedField(field);
+                return expression.getSite().get(instance.getRuntimeType());
             }
-            return instance.getField(field);
+            return expression.getSite().get(instance);
         }
 
         if (target instanceof RuntimeType type) {
@@ -153,7 +161,7 @@ public class ProgramInterpreter {
                 throw new RuntimeException("Type does not contain field " + field.getName());
             }
 
-            return type.getSharedField(field);
+            return expression.getSite().get(type);
         }
 
         throw new RuntimeException("Unexpected target for field access: " + target);
@@ -180,28 +188,42 @@ public class ProgramInterpreter {
 
     private Object evaluateArrayAccessExpression(BoundArrayAccessExpression expression) {
         Object array = evaluateExpression(expression.getTarget());
-        Object index = evaluateExpression(expression.getIndex());
+        int indexValue = evaluateIndex(expression.getIndex(), "Cannot access array element with non-integer index");
 
-        if (!(array instanceof Object[] arrayValue)) {
-            throw new RuntimeException("Cannot access array element of non-array");
-        }
+        return checkElementAccess(array, indexValue, "Cannot access array element of non-array").get(array, indexValue);
+    }
 
-        if (!(index instanceof Integer indexValue)) {
-            throw new RuntimeException("Cannot access array element with non-integer index");
+    /**
+     * @return the kind of the array, once the index is known to be inside of it
+     */
+    private static ArrayKind checkElementAccess(Object array, int index, String nonArrayMessage) {
+        ArrayKind kind = ArrayKind.ofArray(array);
+        if (kind == null) {
+            throw new RuntimeException(nonArrayMessage);
         }
 
-        if (indexValue < 0 || indexValue >= arrayValue.length) {
+        if (index < 0 || index >= kind.length(array)) {
             throw new RuntimeException("Array index out of bounds");
         }
 
-        return arrayValue[indexValue];
+        return kind;
+    }
+
+    private int evaluateIndex(BoundExpression index, String message) {
+        if (index.getType() == Types.INT) {
+            return evaluateInt(index);
+        }
+
+        if (!(evaluateExpression(index) instanceof Integer indexValue)) {
+            throw new RuntimeException(message);
+        }
+        return indexValue;
     }
 
     private Object evaluateTypeExpression(BoundTypeExpression expression) {
         TypeSymbol type = expression.getType();
         if (program.isTypeImported(type)) {
-            // we use this because evaluator.getRuntimeType will return the runtime type of the imported type and also initialize missing shared fields
-            ProgramInterpreter evaluator = runtime.findInterpreter(type);
+            ProgramInterpreter evaluator = context.findInterpreter(type);
             return evaluator.getRuntimeType(evaluator.program, type);
         }
 
@@ -217,7 +239,7 @@ public class ProgramInterpreter {
         HashMap<String, Object> arguments = new HashMap<>();
 
         if ((expression.getFunction() instanceof InternalFunction internalFunction && !internalFunction.isShared()) || expression.getFunction() instanceof InternalBinaryOperator || expression.getFunction() instanceof InternalUnaryOperator) {
-            arguments.put("this", variableTable.peek().get(variableTable.peek().keySet().stream().filter(s -> s.getName().equals("this")).findFirst().orElseThrow()));
+            arguments.put("this", variableTable.peek().load(VariableSymbol.THIS_SLOT));
         }
 
         for (int i = 0; i < function.getParameters().size(); i++) {
@@ -236,12 +258,12 @@ public class ProgramInterpreter {
 
         if (instanceValue instanceof RuntimeType type) {
             if (program.isTypeImported(type.getType())) {
-                ProgramInterpreter evaluator = runtime.findInterpreter(type.getType());
+                ProgramInterpreter evaluator = context.findInterpreter(type.getType());
                 return evaluator.evaluateMemberAccessExpression(expression);
             }
 
-            if (expression.getMember() instanceof FieldSymbol field) {
-                return type.getSharedField(field);
+            if (expression.getMember() instanceof FieldSymbol) {
+                return expression.getSite().get(type);
             }
 
             throw new RuntimeException("Unexpected member access expression: " + expression.getMember().getKind());
@@ -251,7 +273,7 @@ public class ProgramInterpreter {
             // array fields
             if (expression.getMember() instanceof FieldSymbol field) {
                 if (field.getName().equals("length")) {
-                    return ((Object[]) instanceValue).length;
+                    return ArrayKind.ofArray(instanceValue).length(instanceValue);
                 }
             }
         }
@@ -260,14 +282,21 @@ public class ProgramInterpreter {
             throw new RuntimeException("Cannot access member of non-instance");
         }
 
-        if (expression.getMember() instanceof FieldSymbol field) {
-            return instance.getField(field);
+        if (expression.getMember() instanceof FieldSymbol) {
+            return expression.getSite().get(instance);
         }
 
         throw new RuntimeException("Unexpected member access expression: " + expression.getMember().getKind());
     }
 
     private Object evaluateUnaryExpression(BoundUnaryExpression expression) {
+        if (expression.getIntrinsic() != null) {
+            return switch (expression.getIntrinsic()) {
+                case INT_NEGATE, INT_IDENTITY, INT_COMPLEMENT -> evaluateInt(expression);
+                case BOOL_NOT -> evaluateBool(expression);
+            };
+        }
+
         RuntimeType operandType = runtime.findRuntimeType(expression.getOperand().getType());
 
         Object operandValue = evaluateExpression(expression.getOperand());
@@ -280,8 +309,8 @@ public class ProgramInterpreter {
         if (unaryOperator == null)
             throw new RuntimeException("No unary operator " + operator + " found for type " + operandType.getName());
 
-        variableTable.push(new VariableTable("unary operator (%s)".formatted(unaryOperator.getName())));
-        assignLocalVariable(new VariableSymbol("this", true, operandType.getType()), operandValue);
+        variableTable.push(new VariableTable("unary operator", unaryOperator.getName()));
+        assignLocalVariable(VariableSymbol.THIS_SLOT, operandValue);
 
         BoundBlockStatement body = scope.getUnaryOperatorBody(unaryOperator);
         Object result = evaluateStatement(body);
@@ -291,6 +320,23 @@ public class ProgramInterpreter {
     }
 
     private Object evaluateBinaryExpression(BoundBinaryExpression expression) {
+        BinaryIntrinsic intrinsic = expression.getIntrinsic();
+        if (intrinsic != null) {
+            // the operands are evaluated unboxed, only the result is boxed
+            return switch (intrinsic) {
+                case INT_ADD, INT_SUBTRACT, INT_MULTIPLY, INT_DIVIDE, INT_MODULO, INT_AND, INT_OR, INT_XOR,
+                        CHAR_ADD, CHAR_SUBTRACT -> evaluateInt(expression);
+                case INT_DOUBLE_ADD, INT_DOUBLE_SUBTRACT, INT_DOUBLE_MULTIPLY, INT_DOUBLE_DIVIDE, INT_DOUBLE_MODULO,
+                        DOUBLE_ADD, DOUBLE_SUBTRACT, DOUBLE_MULTIPLY, DOUBLE_DIVIDE, DOUBLE_MODULO,
+                        DOUBLE_INT_ADD, DOUBLE_INT_SUBTRACT, DOUBLE_INT_MULTIPLY, DOUBLE_INT_DIVIDE, DOUBLE_INT_MODULO ->
+                        evaluateDouble(expression);
+                case CHAR_INT_ADD, CHAR_INT_SUBTRACT -> evaluateChar(expression);
+                case STRING_CONCAT, STRING_CHAR_CONCAT ->
+                        intrinsic.evaluate(evaluateExpression(expression.getLeft()), evaluateExpression(expression.getRight()));
+                default -> evaluateBool(expression);
+            };
+        }
+
         RuntimeType leftType = runtime.findRuntimeType(expression.getLeft().getType());
         RuntimeType rightType = runtime.findRuntimeType(expression.getRight().getType());
 
@@ -305,9 +351,9 @@ public class ProgramInterpreter {
         if (binaryOperator == null)
             throw new RuntimeException("No binary operator " + operator + " found for types " + leftType.getName() + " and " + rightType.getName());
 
-        variableTable.push(new VariableTable("binary operator (%s)".formatted(binaryOperator.getName())));
-        assignLocalVariable(new VariableSymbol("this", true, leftType.getType()), thisValue);
-        assignLocalVariable(new VariableSymbol("other", true, rightType.getType()), otherValue);
+        variableTable.push(new VariableTable("binary operator", binaryOperator.getName()));
+        assignLocalVariable(VariableSymbol.THIS_SLOT, thisValue);
+        assignLocalVariable(VariableSymbol.getParameterSlot(0), otherValue);
 
         BoundBlockStatement body = scope.getBinaryOperatorBody(binaryOperator);
         Object result = evaluateStatement(body);
@@ -316,90 +362,386 @@ public class ProgramInterpreter {
         return result;
     }
 
+    // Typed evaluation of expressions whose static type is a primitive. Intrinsic operators and local variables are
+    // evaluated without boxing, everything else falls back to evaluateExpression and is unboxed.
+
+    private int evaluateInt(BoundExpression expression) {
+        if (expression instanceof BoundBinaryExpression binary && binary.getIntrinsic() != null) {
+            BoundExpression left = binary.getLeft();
+            BoundExpression right = binary.getRight();
+            return switch (binary.getIntrinsic()) {
+                case INT_ADD -> evaluateInt(left) + evaluateInt(right);
+                case INT_SUBTRACT -> evaluateInt(left) - evaluateInt(right);
+                case INT_MULTIPLY -> evaluateInt(left) * evaluateInt(right);
+                case INT_DIVIDE -> evaluateInt(left) / evaluateInt(right);
+                case INT_MODULO -> evaluateInt(left) % evaluateInt(right);
+                case INT_AND -> evaluateInt(left) & evaluateInt(right);
+                case INT_OR -> evaluateInt(left) | evaluateInt(right);
+                case INT_XOR -> evaluateInt(left) ^ evaluateInt(right);
+                case CHAR_ADD -> evaluateChar(left) + evaluateChar(right);
+                case CHAR_SUBTRACT -> evaluateChar(left) - evaluateChar(right);
+                default -> (int) evaluateExpression(expression);
+            };
+        }
+
+        if (expression instanceof BoundUnaryExpression unary && unary.getIntrinsic() != null) {
+            return switch (unary.getIntrinsic()) {
+                case INT_NEGATE -> -evaluateInt(unary.getOperand());
+                case INT_IDENTITY -> evaluateInt(unary.getOperand());
+                case INT_COMPLEMENT -> ~evaluateInt(unary.getOperand());
+                default -> (int) evaluateExpression(expression);
+            };
+        }
+
+        if (expression instanceof BoundVariableExpression variable) {
+            return variableTable.peek().loadInt(variable.getVariable().getSlot());
+        }
+
+        if (expression instanceof BoundArrayAccessExpression access) {
+            Object array = evaluateExpression(access.getTarget());
+            int index = evaluateIndex(access.getIndex(), "Cannot access array element with non-integer index");
+            return checkElementAccess(array, index, "Cannot access array element of non-array").getInt(array, index);
+        }
+
+        return (int) evaluateExpression(expression);
+    }
+
+    private double evaluateDouble(BoundExpression expression) {
+        if (expression instanceof BoundBinaryExpression binary && binary.getIntrinsic() != null) {
+            BoundExpression left = binary.getLeft();
+            BoundExpression right = binary.getRight();
+            return switch (binary.getIntrinsic()) {
+                case DOUBLE_ADD -> evaluateDouble(left) + evaluateDouble(right);
+                case DOUBLE_SUBTRACT -> evaluateDouble(left) - evaluateDouble(right);
+                case DOUBLE_MULTIPLY -> evaluateDouble(left) * evaluateDouble(right);
+                case DOUBLE_DIVIDE -> evaluateDouble(left) / evaluateDouble(right);
+                case DOUBLE_MODULO -> evaluateDouble(left) % evaluateDouble(right);
+                case INT_DOUBLE_ADD -> evaluateInt(left) + evaluateDouble(right);
+                case INT_DOUBLE_SUBTRACT -> evaluateInt(left) - evaluateDouble(right);
+                case INT_DOUBLE_MULTIPLY -> evaluateInt(left) * evaluateDouble(right);
+                case INT_DOUBLE_DIVIDE -> evaluateInt(left) / evaluateDouble(right);
+                case INT_DOUBLE_MODULO -> evaluateInt(left) % evaluateDouble(right);
+                case DOUBLE_INT_ADD -> evaluateDouble(left) + evaluateInt(right);
+                case DOUBLE_INT_SUBTRACT -> evaluateDouble(left) - evaluateInt(right);
+                case DOUBLE_INT_MULTIPLY -> evaluateDouble(left) * evaluateInt(right);
+                case DOUBLE_INT_DIVIDE -> evaluateDouble(left) / evaluateInt(right);
+                case DOUBLE_INT_MODULO -> evaluateDouble(left) % evaluateInt(right);
+                default -> ((Number) evaluateExpression(expression)).doubleValue();
+            };
+        }
+
+        if (expression instanceof BoundVariableExpression variable) {
+            return variableTable.peek().loadDouble(variable.getVariable().getSlot());
+        }
+
+        if (expression instanceof BoundArrayAccessExpression access) {
+            Object array = evaluateExpression(access.getTarget());
+            int index = evaluateIndex(access.getIndex(), "Cannot access array element with non-integer index");
+            return checkElementAccess(array, index, "Cannot access array element of non-array").getDouble(array, index);
+        }
+
+        return ((Number) evaluateExpression(expression)).doubleValue();
+    }
+
+    private char evaluateChar(BoundExpression expression) {
+        if (expression instanceof BoundBinaryExpression binary && binary.getIntrinsic() != null) {
+            BoundExpression left = binary.getLeft();
+            BoundExpression right = binary.getRight();
+            return switch (binary.getIntrinsic()) {
+                case CHAR_INT_ADD -> (char) (evaluateChar(left) + evaluateInt(right));
+                case CHAR_INT_SUBTRACT -> (char) (evaluateChar(left) - evaluateInt(right));
+                default -> (char) evaluateExpression(expression);
+            };
+        }
+
+        if (expression instanceof BoundVariableExpression variable) {
+            return variableTable.peek().loadChar(variable.getVariable().getSlot());
+        }
+
+        if (expression instanceof BoundArrayAccessExpression access) {
+            Object array = evaluateExpression(access.getTarget());
+            int index = evaluateIndex(access.getIndex(), "Cannot access array element with non-integer index");
+            return checkElementAccess(array, index, "Cannot access array element of non-array").getChar(array, index);
+        }
+
+        return (char) evaluateExpression(expression);
+    }
+
+    private boolean evaluateBool(BoundExpression expression) {
+        if (expression instanceof BoundBinaryExpression binary && binary.getIntrinsic() != null) {
+            BoundExpression left = binary.getLeft();
+            BoundExpression right = binary.getRight();
+            return switch (binary.getIntrinsic()) {
+                case INT_EQUALS -> evaluateInt(left) == evaluateInt(right);
+                case INT_NOT_EQUALS -> evaluateInt(left) != evaluateInt(right);
+                case INT_GREATER -> evaluateInt(left) > evaluateInt(right);
+                case INT_LESS -> evaluateInt(left) < evaluateInt(right);
+                case INT_GREATER_OR_EQUALS -> evaluateInt(left) >= evaluateInt(right);
+                case INT_LESS_OR_EQUALS -> evaluateInt(left) <= evaluateInt(right);
+                case INT_DOUBLE_EQUALS -> evaluateInt(left) == evaluateDouble(right);
+                case INT_DOUBLE_NOT_EQUALS -> evaluateInt(left) != evaluateDouble(right);
+                case INT_DOUBLE_GREATER -> evaluateInt(left) > evaluateDouble(right);
+                case INT_DOUBLE_LESS -> evaluateInt(left) < evaluateDouble(right);
+                case INT_DOUBLE_GREATER_OR_EQUALS -> evaluateInt(left) >= evaluateDouble(right);
+                case INT_DOUBLE_LESS_OR_EQUALS -> evaluateInt(left) <= evaluateDouble(right);
+                case DOUBLE_EQUALS -> evaluateDouble(left) == evaluateDouble(right);
+                case DOUBLE_NOT_EQUALS -> evaluateDouble(left) != evaluateDouble(right);
+                case DOUBLE_GREATER -> evaluateDouble(left) > evaluateDouble(right);
+                case DOUBLE_LESS -> evaluateDouble(left) < evaluateDouble(right);
+                case DOUBLE_GREATER_OR_EQUALS -> evaluateDouble(left) >= evaluateDouble(right);
+                case DOUBLE_LESS_OR_EQUALS -> evaluateDouble(left) <= evaluateDouble(right);
+                case DOUBLE_INT_EQUALS -> evaluateDouble(left) == evaluateInt(right);
+                case DOUBLE_INT_NOT_EQUALS -> evaluateDouble(left) != evaluateInt(right);
+                case DOUBLE_INT_GREATER -> evaluateDouble(left) > evaluateInt(right);
+                case DOUBLE_INT_LESS -> evaluateDouble(left) < evaluateInt(right);
+                case DOUBLE_INT_GREATER_OR_EQUALS -> evaluateDouble(left) >= evaluateInt(right);
+                case DOUBLE_INT_LESS_OR_EQUALS -> evaluateDouble(left) <= evaluateInt(right);
+                case CHAR_EQUALS -> evaluateChar(left) == evaluateChar(right);
+                case CHAR_NOT_EQUALS -> evaluateChar(left) != evaluateChar(right);
+                case CHAR_GREATER -> evaluateChar(left) > evaluateChar(right);
+                case CHAR_GREATER_OR_EQUALS -> evaluateChar(left) >= evaluateChar(right);
+                case CHAR_LESS -> evaluateChar(left) < evaluateChar(right);
+                case CHAR_LESS_OR_EQUALS -> evaluateChar(left) <= evaluateChar(right);
+                case CHAR_INT_EQUALS -> evaluateChar(left) == (char) evaluateInt(right);
+                case CHAR_INT_NOT_EQUALS -> evaluateChar(left) != (char) evaluateInt(right);
+                case CHAR_INT_GREATER -> evaluateChar(left) > (char) evaluateInt(right);
+                case CHAR_INT_GREATER_OR_EQUALS -> evaluateChar(left) >= (char) evaluateInt(right);
+                case CHAR_INT_LESS -> evaluateChar(left) < (char) evaluateInt(right);
+                case CHAR_INT_LESS_OR_EQUALS -> evaluateChar(left) <= (char) evaluateInt(right);
+                case BOOL_EQUALS -> evaluateBool(left) == evaluateBool(right);
+                case BOOL_NOT_EQUALS -> evaluateBool(left) != evaluateBool(right);
+                // both operands are always evaluated
+                case BOOL_AND -> evaluateBool(left) & evaluateBool(right);
+                case BOOL_OR -> evaluateBool(left) | evaluateBool(right);
+                default -> (boolean) binary.getIntrinsic().evaluate(evaluateExpression(left), evaluateExpression(right));
+            };
+        }
+
+        if (expression instanceof BoundUnaryExpression unary && unary.getIntrinsic() == UnaryIntrinsic.BOOL_NOT) {
+            return !evaluateBool(unary.getOperand());
+        }
+
+        if (expression instanceof BoundArrayAccessExpression access) {
+            Object array = evaluateExpression(access.getTarget());
+            int index = evaluateIndex(access.getIndex(), "Cannot access array element with non-integer index");
+            return checkElementAccess(array, index, "Cannot access array element of non-array").getBool(array, index);
+        }
+
+        return (boolean) evaluateExpression(expression);
+    }
+
+    /**
+     * Assigns a value of a primitive type to a local variable without boxing it.
+     *
+     * @return false if the variable does not have a primitive type and nothing was assigned
+     */
+    private boolean assignUnboxed(VariableSymbol variable, BoundExpression expression) {
+        TypeSymbol type = variable.getType();
+        int slot = variable.getSlot();
+
+        if (type == Types.INT) {
+            int value = evaluateInt(expression);
+            if (RuntimeLogger.LOG_LEVEL >= RuntimeLogger.TRACE) traceAssignment(slot, value);
+            variableTable.peek().storeInt(slot, value);
+            return true;
+        }
+        if (type == Types.DOUBLE) {
+            double value = evaluateDouble(expression);
+            if (RuntimeLogger.LOG_LEVEL >= RuntimeLogger.TRACE) traceAssignment(slot, value);
+            variableTable.peek().storeDouble(slot, value);
+            return true;
+        }
+        // char + char and char - char are typed char but evaluate to an int, which is stored boxed like before
+        if (type == Types.CHAR && !isIntValued(expression)) {
+            char value = evaluateChar(expression);
+            if (RuntimeLogger.LOG_LEVEL >= RuntimeLogger.TRACE) traceAssignment(slot, value);
+            variableTable.peek().storeChar(slot, value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Assigns a value of a primitive type to an array element without boxing it.
+     *
+     * @return false if the elements do not have a primitive type and nothing was assigned
+     */
+    private boolean assignElementUnboxed(BoundArrayAccessExpression target, BoundExpression expression) {
+        TypeSymbol type = target.getType();
+        if (type != Types.INT && type != Types.DOUBLE && type != Types.BOOL && (type != Types.CHAR || isIntValued(expression))) {
+            return false;
+        }
+
+        Object array = evaluateExpression(target.getTarget());
+        int index = evaluateIndex(target.getIndex(), "Array index must be an integer");
+
+        if (type == Types.INT) {
+            int value = evaluateInt(expression);
+            checkElementAccess(array, index, "Cannot access element of non-array").setInt(array, index, value);
+        } else if (type == Types.DOUBLE) {
+            double value = evaluateDouble(expression);
+            checkElementAccess(array, index, "Cannot access element of non-array").setDouble(array, index, value);
+        } else if (type == Types.CHAR) {
+            char value = evaluateChar(expression);
+            checkElementAccess(array, index, "Cannot access element of non-array").setChar(array, index, value);
+        } else {
+            boolean value = evaluateBool(expression);
+            checkElementAccess(array, index, "Cannot access element of non-array").setBool(array, index, value);
+        }
+        return true;
+    }
+
+    private static boolean isIntValued(BoundExpression expression) {
+        return expression instanceof BoundBinaryExpression binary
+                && (binary.getIntrinsic() == BinaryIntrinsic.CHAR_ADD || binary.getIntrinsic() == BinaryIntrinsic.CHAR_SUBTRACT);
+    }
+
     private Object evaluateFunctionCallExpression(BoundFunctionCallExpression expression) {
         BoundExpression callee = expression.getCallee();
+        FunctionSymbol function = expression.getFunction();
+        InlineCache<Object> cache = expression.getTargets();
 
         // check if the callee is a type instance
         if (callee instanceof BoundVariableExpression variableExpression) {
             VariableSymbol variable = variableExpression.getVariable();
 
             if (Types.isBuiltinType(variable.getType())) {
-                return evaluateBuiltinFunctionCall(callee, variable.getType(), expression.getFunction(), expression.getArguments(), null);
+                return evaluateBuiltinFunctionCall(cache, callee, variable.getType(), function, expression.getArguments(), null);
             }
         }
 
-        Object calleeValue = evaluateExpression(callee);
+        return evaluateFunctionCall(expression, cache, evaluateExpression(callee));
+    }
+
+    private Object evaluateFunctionCall(BoundFunctionCallExpression expression, InlineCache<Object> cache, Object calleeValue) {
+        BoundExpression callee = expression.getCallee();
+        FunctionSymbol function = expression.getFunction();
 
         if (calleeValue instanceof TypeInstance instance) {
-            return evaluateInstanceFunctionCall(instance, expression.getFunction(), expression.getArguments());
+            return evaluateInstanceFunctionCall(cache, instance, function, expression.getArguments());
         }
 
         if (calleeValue instanceof RuntimeType type) {
-            return evaluateTypeFunctionCall(type, expression.getFunction(), expression.getArguments());
+            return evaluateTypeFunctionCall(cache, type, function, expression.getArguments());
         }
 
         if (calleeValue instanceof BoundLiteralExpression literal) {
             if (Types.isValidLiteralType(literal.getType())) {
-                return evaluateBuiltinFunctionCall(callee, literal.getType(), expression.getFunction(), expression.getArguments(), calleeValue);
+                return evaluateBuiltinFunctionCall(cache, callee, literal.getType(), function, expression.getArguments(), calleeValue);
             }
 
-            throw new RuntimeException("Cannot call function '%s' on literal of type '%s'".formatted(expression.getFunction().getName(), literal.getType().getName()));
+            throw new RuntimeException("Cannot call function '%s' on literal of type '%s'".formatted(function.getName(), literal.getType().getName()));
         }
 
         if (Types.isValidLiteralType(calleeValue.getClass())) {
-            return evaluateBuiltinFunctionCall(callee, Types.getLiteralType(calleeValue.getClass()), expression.getFunction(), expression.getArguments(), calleeValue);
+            return evaluateBuiltinFunctionCall(cache, callee, Types.getLiteralType(calleeValue.getClass()), function, expression.getArguments(), calleeValue);
         }
 
-        if (calleeValue instanceof Object[]) {
+        ArrayKind arrayKind = ArrayKind.ofArray(calleeValue);
+        if (arrayKind != null) {
             // Builtin array functions
 
-            FunctionSymbol function = expression.getFunction();
-            if (function.getName().equals("clone")) {
-                return ((Object[]) calleeValue).clone();
+            if (function.getName().equals("copy") || function.getName().equals("clone")) {
+                return arrayKind.copy(calleeValue);
             }
 
             throw new RuntimeException("Cannot call function '%s' on array".formatted(function.getName()));
         }
 
-        throw new RuntimeException("Cannot call function '%s' on value of type '%s'".formatted(expression.getFunction().getName(), calleeValue.getClass().getName()));
+        throw new RuntimeException("Cannot call function '%s' on value of type '%s'".formatted(function.getName(), calleeValue.getClass().getName()));
     }
 
-    private Object evaluateTypeFunctionCall(RuntimeType type, FunctionSymbol function, List<BoundExpression> arguments) {
-        if (!function.isShared()) {
-            throw new RuntimeException("Cannot call non-shared function '%s' on type '%s'".formatted(function.getName(), type.getName()));
+    /**
+     * Prepares a call in tail position of the current body. If this interpreter evaluates the called body, the
+     * current frame is replaced by the frame of the call and the body is returned, so the caller continues with it
+     * instead of recursing. Otherwise, the call is evaluated as usual and null is returned.
+     */
+    private BoundBlockStatement enterTailCall(BoundFunctionCallExpression expression) {
+        BoundExpression callee = expression.getCallee();
+        FunctionSymbol function = expression.getFunction();
+
+        if (callee instanceof BoundVariableExpression variableExpression && Types.isBuiltinType(variableExpression.getVariable().getType())) {
+            lastValue = evaluateFunctionCallExpression(expression);
+            return null;
+        }
+
+        InlineCache<Object> cache = expression.getTargets();
+        Object calleeValue = evaluateExpression(callee);
+
+        RuntimeType type;
+        if (calleeValue instanceof TypeInstance instance && !function.isShared()) {
+            type = instance.getRuntimeType();
+        } else if (calleeValue instanceof RuntimeType runtimeType && function.isShared()) {
+            type = runtimeType;
+        } else {
+            lastValue = evaluateFunctionCall(expression, cache, calleeValue);
+            return null;
         }
 
-        if (program.isTypeImported(type.getType())) {
-            ProgramInterpreter evaluator = runtime.findInterpreter(type.getType());
+        CallTarget target = resolveCallTarget(cache, type, function);
+        if (target.imported() || target.internal() != null) {
+            lastValue = evaluateFunctionCall(expression, cache, calleeValue);
+            return null;
+        }
 
-            List<Object> evaluatedArguments = new ArrayList<>();
-            for (BoundExpression argument : arguments) {
-                evaluatedArguments.add(evaluateExpression(argument));
-            }
+        List<Object> evaluatedArguments = evaluateArguments(expression.getArguments());
 
-            return evaluator.evaluateTypeFunctionCallEvaluatedArgs(type, function, evaluatedArguments);
+        if (function.isShared()) {
+            variableTable.replaceTop(new VariableTable("type function", type.getName() + "." + function.getName()));
+        } else {
+            variableTable.replaceTop(new VariableTable("function", function.getName()));
+            assignLocalVariable(VariableSymbol.THIS_SLOT, calleeValue);
+        }
+
+        for (int i = 0; i < function.getParameters().size(); i++) {
+            assignLocalVariable(VariableSymbol.getParameterSlot(i), evaluatedArguments.get(i));
         }
 
+        return target.body();
+    }
+
+    // keyed by the type symbol, which unlike the runtime type is the same in every runtime evaluating the program
+    private CallTarget resolveCallTarget(InlineCache<Object> cache, RuntimeType type, FunctionSymbol function) {
+        CallTarget target = (CallTarget) cache.get(type.getType());
+        if (target == null) {
+            target = new CallTarget(program.isTypeImported(type.getType()), type.getScope().getFunctionBody(function));
+            cache.put(type.getType(), target);
+        }
+        return target;
+    }
+
+    private ProgramInterpreter getInterpreter(CallTarget target, RuntimeType type) {
+        return target.imported() ? context.findInterpreter(type.getType()) : this;
+    }
+
+    private List<Object> evaluateArguments(List<BoundExpression> arguments) {
         List<Object> evaluatedArguments = new ArrayList<>();
         for (BoundExpression argument : arguments) {
             evaluatedArguments.add(evaluateExpression(argument));
         }
-
-        return evaluateTypeFunctionCallEvaluatedArgs(type, function, evaluatedArguments);
+        return evaluatedArguments;
     }
 
-    private Object evaluateTypeFunctionCallEvaluatedArgs(RuntimeType type, FunctionSymbol function, List<Object> evaluatedArguments) {
-        variableTable.push(new VariableTable("type function (%s.%s)".formatted(type.getName(), function.getName())));
-        for (int i = 0; i < function.getParameters().size(); i++) {
-            ParameterSymbol parameter = function.getParameters().get(i);
-            Object value = evaluatedArguments.get(i);
+    private Object evaluateTypeFunctionCall(InlineCache<Object> cache, RuntimeType type, FunctionSymbol function, List<BoundExpression> arguments) {
+        if (!function.isShared()) {
+            throw new RuntimeException("Cannot call non-shared function '%s' on type '%s'".formatted(function.getName(), type.getName()));
+        }
+
+        CallTarget target = resolveCallTarget(cache, type, function);
+        List<Object> evaluatedArguments = evaluateArguments(arguments);
 
-            VariableSymbol variable = new VariableSymbol(parameter.getName(), true, parameter.getType());
-            assignLocalVariable(variable, value);
+        if (target.internal() != null) {
+            return target.internal().call(null, evaluatedArguments.toArray());
         }
 
-        BoundTypeScope scope = type.getScope();
-        BoundBlockStatement body = scope.getFunctionBody(function);
+        return getInterpreter(target, type).evaluateTypeFunctionCallEvaluatedArgs(type, function, target.body(), evaluatedArguments);
+    }
+
+    private Object evaluateTypeFunctionCallEvaluatedArgs(RuntimeType type, FunctionSymbol function, BoundBlockStatement body, List<Object> evaluatedArguments) {
+        variableTable.push(new VariableTable("type function", type.getName() + "." + function.getName()));
+        for (int i = 0; i < function.getParameters().size(); i++) {
+            assignLocalVariable(VariableSymbol.getParameterSlot(i), evaluatedArguments.get(i));
+        }
 
         Object result = evaluateStatement(body);
         variableTable.pop();
@@ -407,70 +749,56 @@ public class ProgramInterpreter {
         return result;
     }
 
-    private Object evaluateBuiltinFunctionCall(BoundExpression callee, TypeSymbol type, FunctionSymbol function, List<BoundExpression> arguments, Object calleeValue) {
-        List<Object> evaluatedArguments = new ArrayList<>();
-        for (BoundExpression argument : arguments) {
-            evaluatedArguments.add(evaluateExpression(argument));
-        }
+    private Object evaluateBuiltinFunctionCall(InlineCache<Object> cache, BoundExpression callee, TypeSymbol type, FunctionSymbol function, List<BoundExpression> arguments, Object calleeValue) {
+        List<Object> evaluatedArguments = evaluateArguments(arguments);
 
         if (calleeValue == null) calleeValue = evaluateExpression(callee);
 
-        variableTable.push(new VariableTable("builtin function (%s.%s)".formatted(type.getName(), function.getName())));
-        assignLocalVariable(new VariableSymbol("this", true, type), calleeValue);
+        CallTarget target = (CallTarget) cache.get(type);
+        if (target == null) {
+            target = new CallTarget(false, runtime.findRuntimeType(type).getScope().getFunctionBody(function));
+            cache.put(type, target);
+        }
 
-        for (int i = 0; i < function.getParameters().size(); i++) {
-            ParameterSymbol parameter = function.getParameters().get(i);
-            Object value = evaluatedArguments.get(i);
+        if (target.internal() != null) {
+            return target.internal().call(calleeValue, evaluatedArguments.toArray());
+        }
+
+        variableTable.push(new VariableTable("builtin function", type.getName() + "." + function.getName()));
+        assignLocalVariable(VariableSymbol.THIS_SLOT, calleeValue);
 
-            VariableSymbol variable = new VariableSymbol(parameter.getName(), true, parameter.getType());
-            assignLocalVariable(variable, value);
+        for (int i = 0; i < function.getParameters().size(); i++) {
+            assignLocalVariable(VariableSymbol.getParameterSlot(i), evaluatedArguments.get(i));
         }
 
-        BoundTypeScope scope = runtime.findRuntimeType(type).getScope();
-        BoundBlockStatement body = scope.getFunctionBody(function);
-        Object result = evaluateStatement(body);
+        Object result = evaluateStatement(target.body());
         variableTable.pop();
 
         return result;
     }
 
-    private Object evaluateInstanceFunctionCall(TypeInstance instance, FunctionSymbol function, List<BoundExpression> arguments) {
+    private Object evaluateInstanceFunctionCall(InlineCache<Object> cache, TypeInstance instance, FunctionSymbol function, List<BoundExpression> arguments) {
         if (function.isShared()) {
             throw new RuntimeException("Cannot call shared function '%s' on instance of type '%s'".formatted(function.getName(), instance.getRuntimeType().getName()));
         }
 
-        if (program.isTypeImported(instance.getRuntimeType().getType())) {
-            ProgramInterpreter evaluator = runtime.findInterpreter(instance.getRuntimeType().getType());
-
-            List<Object> evaluatedArguments = new ArrayList<>();
-            for (BoundExpression argument : arguments) {
-                evaluatedArguments.add(evaluateExpression(argument));
-            }
-
-            return evaluator.evaluateInstanceFunctionCallEvaluatedArgs(instance, function, evaluatedArguments);
-        }
+        CallTarget target = resolveCallTarget(cache, instance.getRuntimeType(), function);
+        List<Object> evaluatedArguments = evaluateArguments(arguments);
 
-        List<Object> evaluatedArguments = new ArrayList<>();
-        for (BoundExpression argument : arguments) {
-            evaluatedArguments.add(evaluateExpression(argument));
+        if (target.internal() != null) {
+            return target.internal().call(instance, evaluatedArguments.toArray());
         }
 
-        return evaluateInstanceFunctionCallEvaluatedArgs(instance, function, evaluatedArguments);
+        return getInterpreter(target, instance.getRuntimeType()).evaluateInstanceFunctionCallEvaluatedArgs(instance, function, target.body(), evaluatedArguments);
     }
 
-    private Object evaluateInstanceFunctionCallEvaluatedArgs(TypeInstance instance, FunctionSymbol function, List<Object> evaluatedArguments) {
-        variableTable.push(new VariableTable("function (%s)".formatted(function.getName())));
+    private Object evaluateInstanceFunctionCallEvaluatedArgs(TypeInstance instance, FunctionSymbol function, BoundBlockStatement body, List<Object> evaluatedArguments) {
+        variableTable.push(new VariableTable("function", function.getName()));
         for (int i = 0; i < function.getParameters().size(); i++) {
-            ParameterSymbol parameter = function.getParameters().get(i);
-            Object value = evaluatedArguments.get(i);
-
-            VariableSymbol variable = new VariableSymbol(parameter.getName(), true, parameter.getType());
-            assignLocalVariable(variable, value);
+            assignLocalVariable(VariableSymbol.getParameterSlot(i), evaluatedArguments.get(i));
         }
 
-        BoundTypeScope scope = instance.getRuntimeType().getScope();
-        assignLocalVariable(new VariableSymbol("this", true, instance.getRuntimeType().getType()), instance);
-        BoundBlockStatement body = scope.getFunctionBody(function);
+        assignLocalVariable(VariableSymbol.THIS_SLOT, instance);
         Object result = evaluateStatement(body);
         variableTable.pop();
 
@@ -478,19 +806,20 @@ public class ProgramInterpreter {
         return result;
     }
 
-    private static Object[] createMultiDimensionalArray(List<Tuple<Integer, Object>> dimensions, int depth) {
+    /**
+     * @param kind how the elements of the innermost arrays are stored
+     */
+    public static Object createMultiDimensionalArray(List<Tuple<Integer, Object>> dimensions, int depth, ArrayKind kind) {
         Tuple<Integer, Object> currentDimension = dimensions.get(0);
 
-        Object[] result = new Object[currentDimension.getItem1()];
         if (depth == 1) {
-            for (int i = 0; i < currentDimension.getItem1(); i++) {
-                result[i] = currentDimension.getItem2();
-            }
-        } else {
-            for (int i = 0; i < currentDimension.getItem1(); i++) {
-                List<Tuple<Integer, Object>> subDimensions = dimensions.subList(1, dimensions.size());
-                result[i] = createMultiDimensionalArray(subDimensions, depth - 1);
-            }
+            return kind.create(currentDimension.getItem1(), currentDimension.getItem2());
+        }
+
+        Object[] result = new Object[currentDimension.getItem1()];
+        for (int i = 0; i < currentDimension.getItem1(); i++) {
+            List<Tuple<Integer, Object>> subDimensions = dimensions.subList(1, dimensions.size());
+            result[i] = createMultiDimensionalArray(subDimensions, depth - 1, kind);
         }
         return result;
     }
@@ -515,7 +844,8 @@ public class ProgramInterpreter {
             dimensions.add(new Tuple<>(valueInt, initializerValue));
         }
 
-        return createMultiDimensionalArray(dimensions, dimensions.size());
+        if (budget != null) budget.allocateArray(dimensions);
+        return createMultiDimensionalArray(dimensions, dimensions.size(), ArrayKind.ofInnermost(expression.getType()));
     }
 
     private Object evaluateArrayLiteralExpression(BoundArrayLiteralExpression expression) {
@@ -525,12 +855,16 @@ public class ProgramInterpreter {
             values.add(evaluateExpression(element));
         }
 
-        return values.toArray();
+        if (budget != null) budget.allocate(values.size());
+        return ArrayKind.ofElements(expression.getType()).create(values.toArray());
     }
 
     private Object evaluateThisExpression(BoundThisExpression expression) {
-        VariableSymbol variable = variableTable.peek().keySet().stream().filter(v -> v.getName().equals("this")).findFirst().orElseThrow(() -> new RuntimeException("No this variable found."));
-        return variableTable.peek().get(variable);
+        Object value = variableTable.peek().load(VariableSymbol.THIS_SLOT);
+        if (value == null) {
+            throw new RuntimeException("No this variable found.");
+        }
+        return value;
     }
 
     private Object evaluateAssignmentExpression(BoundAssignmentExpression expression) {
@@ -545,49 +879,35 @@ public class ProgramInterpreter {
                     throw new RuntimeException("Cannot access member of non-instance");
                 }
 
-                if (!(member instanceof FieldSymbol field)) {
+                if (!(member instanceof FieldSymbol)) {
                     throw new RuntimeException("Cannot access member of non-instance");
                 }
 
                 Object value = evaluateExpression(expression.getExpression());
 
                 if (program.isTypeImported(type.getType())) {
-                    RuntimeType runtimeType = runtime.findRuntimeType(type.getType());
-                    return runtimeType.assignSharedField(field, value);
+                    type = runtime.findRuntimeType(type.getType());
                 }
 
-                return type.assignSharedField(field, value);
+                memberAccess.getSite().set(type, value);
+                return value;
             }
 
             Object value = evaluateExpression(expression.getExpression());
-            FieldSymbol field = instance.lookupField(member.getName());
-
-            instance.setField(field, value);
+            memberAccess.getSite().set(instance, value);
             return value;
         }
         if (target instanceof BoundVariableExpression variableAccess) {
             Object value = evaluateExpression(expression.getExpression());
-            assignLocalVariable(variableAccess.getVariable(), value);
+            assignLocalVariable(variableAccess.getVariable().getSlot(), value);
             return value;
         }
         if (target instanceof BoundArrayAccessExpression arrayAccess) {
             Object array = evaluateExpression(arrayAccess.getTarget());
-            Object index = evaluateExpression(arrayAccess.getIndex());
+            int indexInt = evaluateIndex(arrayAccess.getIndex(), "Array index must be an integer");
             Object value = evaluateExpression(expression.getExpression());
 
-            if (!(array instanceof Object[] arrayObject)) {
-                throw new RuntimeException("Cannot access element of non-array");
-            }
-
-            if (!(index instanceof Integer indexInt)) {
-                throw new RuntimeException("Array index must be an integer");
-            }
-
-            if (indexInt < 0 || indexInt >= arrayObject.length) {
-                throw new RuntimeException("Array index out of bounds");
-            }
-
-            arrayObject[indexInt] = value;
+            checkElementAccess(array, indexInt, "Cannot access element of non-array").set(array, indexInt, value);
             return value;
         }
 
@@ -595,22 +915,28 @@ public class ProgramInterpreter {
     }
 
     private Object evaluateInstanceCreationExpression(BoundInstanceCreationExpression expression) {
+        // instances of imported types are created by the interpreter of the declaring program, the arguments are
+        // expressions of this program
         if (program.isTypeImported(expression.getType())) {
-            ProgramInterpreter programInterpreter = runtime.findInterpreter(expression.getType());
-            return programInterpreter.evaluateInstanceCreationExpression(expression);
+            return context.findInterpreter(expression.getType()).createInstance(expression, this);
         }
 
+        return createInstance(expression, this);
+    }
+
+    private Object createInstance(BoundInstanceCreationExpression expression, ProgramInterpreter caller) {
+        if (budget != null) budget.allocate(1);
+
         RuntimeType runtimeType = getRuntimeType(program, expression.getType());
         BoundTypeScope scope = runtimeType.getScope();
-        HashMap<FieldSymbol, Object> instanceFields = new HashMap<>();
+        Shape shape = runtimeType.getShape();
+        Object[] instanceFields = new Object[shape.getFieldCount()];
 
-        for (FieldSymbol field : expression.getType().getFields().stream().filter(f -> !f.isShared()).toList()) {
-            Object value = null;
-            if (scope.getFieldInitializer(field) != null) {
-                value = evaluateExpression(scope.getFieldInitializer(field));
+        for (int i = 0; i < instanceFields.length; i++) {
+            BoundExpression initializer = scope.getFieldInitializer(shape.getField(i));
+            if (initializer != null) {
+                instanceFields[i] = evaluateExpression(initializer);
             }
-
-            instanceFields.put(field, value);
         }
 
         HashMap<String, RuntimeType> genericTypes = new HashMap<>();
@@ -638,22 +964,16 @@ public class ProgramInterpreter {
         ConstructorSymbol constructor = type.getConstructor(expression.getArguments().size());
         BoundBlockStatement body = scope.getConstructorBody(constructor);
 
-        HashMap<VariableSymbol, Object> arguments = new HashMap<>();
-        for (int i = 0; i < expression.getArguments().size(); i++) {
-            BoundExpression argument = expression.getArguments().get(i);
-            ParameterSymbol parameter = constructor.getParameters().get(i);
-
-            VariableSymbol variable = new VariableSymbol(parameter.getName(), true, parameter.getType());
-
-            Object value = evaluateExpression(argument);
-            arguments.put(variable, value);
+        Object[] arguments = new Object[expression.getArguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = caller.evaluateExpression(expression.getArguments().get(i));
         }
 
-        variableTable.push(new VariableTable("constructor (%s)".formatted(constructor.getName())));
-        assignLocalVariable(new VariableSymbol("this", true, type), instance);
+        variableTable.push(new VariableTable("constructor", type.getName()));
+        assignLocalVariable(VariableSymbol.THIS_SLOT, instance);
 
-        for (VariableSymbol variable : arguments.keySet()) {
-            assignLocalVariable(variable, arguments.get(variable));
+        for (int i = 0; i < arguments.length; i++) {
+            assignLocalVariable(VariableSymbol.getParameterSlot(i), arguments[i]);
         }
 
         evaluateStatement(body);
@@ -668,16 +988,7 @@ public class ProgramInterpreter {
             throw new RuntimeException("Variable table is empty.");
         }
 
-        Optional<VariableSymbol> var = variableTable.peek().keySet().stream()
-                .filter(v -> v.getName().equals(variable.getName()) &&
-                        v.isReadonly() == variable.isReadonly() &&
-                        v.getType().equals(variable.getType()))
-                .findFirst();
-
-        if (var.isEmpty()) {
-            throw new RuntimeException("Variable not found: " + variable.getName());
-        }
-        return variableTable.peek().get(var.get());
+        return variableTable.peek().load(variable);
     }
 
     private Object evaluateLiteralExpression(BoundLiteralExpression expression) {
@@ -685,18 +996,25 @@ public class ProgramInterpreter {
     }
 
     private Object evaluateStatement(BoundBlockStatement body) {
-        HashMap<BoundLabel, Integer> labelToIndex = new HashMap<>();
-
-        for (int i = 0; i < body.getStatements().size(); i++) {
-            if (body.getStatements().get(i) instanceof BoundLabelStatement label) {
-                labelToIndex.put(label.getLabel(), i);
-            }
+        if (recorder == null) {
+            return evaluateBody(body);
         }
 
+        recorder.enter(body);
+        Object result = evaluateBody(body);
+        recorder.exit();
+        return result;
+    }
+
+    private Object evaluateBody(BoundBlockStatement body) {
+        if (budget != null) budget.step();
+
+        List<BoundStatement> statements = body.getStatements();
         int index = 0;
 
-        while (index < body.getStatements().size()) {
-            BoundStatement s = body.getStatements().get(index);
+        while (index < statements.size()) {
+            BoundStatement s = statements.get(index);
+            if (samplingLines) recorder.line(s);
 
             switch (s.getKind()) {
                 case VARIABLE_DECLARATION -> {
@@ -709,14 +1027,18 @@ public class ProgramInterpreter {
                 }
                 case GOTO_STATEMENT -> {
                     BoundGotoStatement gs = (BoundGotoStatement) s;
-                    index = labelToIndex.get(gs.getLabel());
+                    int target = getJumpTarget(gs.getTargetIndex(), gs.getLabel());
+                    if (budget != null && target <= index) budget.step();
+                    index = target;
                 }
                 case CONDITIONAL_GOTO_STATEMENT -> {
                     BoundConditionalGotoStatement cgs = (BoundConditionalGotoStatement) s;
-                    boolean condition = (boolean) evaluateExpression(cgs.getCondition());
+                    boolean condition = evaluateBool(cgs.getCondition());
 
                     if (condition == cgs.jumpIfTrue()) {
-                        index = labelToIndex.get(cgs.getLabel());
+                        int target = getJumpTarget(cgs.getTargetIndex(), cgs.getLabel());
+                        if (budget != null && target <= index) budget.step();
+                        index = target;
                     } else {
                         index++;
                     }
@@ -726,6 +1048,19 @@ public class ProgramInterpreter {
                 }
                 case RETURN_STATEMENT -> {
                     BoundReturnStatement rs = (BoundReturnStatement) s;
+                    // a call in tail position continues with the called body in the current frame
+                    if (rs.getExpression() instanceof BoundFunctionCallExpression call) {
+                        BoundBlockStatement tailBody = enterTailCall(call);
+                        if (tailBody != null) {
+                            if (budget != null) budget.step();
+                            if (recorder != null) recorder.replace(tailBody);
+                            statements = tailBody.getStatements();
+                            index = 0;
+                            continue;
+                        }
+                        return lastValue;
+                    }
+
                     lastValue = rs.getExpression() == null ? null : evaluateExpression(rs.getExpression());
                     index++;
                     return lastValue;
@@ -737,47 +1072,89 @@ public class ProgramInterpreter {
         return lastValue;
     }
 
+    private static int getJumpTarget(int targetIndex, BoundLabel label) {
+        if (targetIndex < 0) {
+            throw new RuntimeException("Jump target '%s' was not resolved".formatted(label.getName()));
+        }
+        return targetIndex;
+    }
+
     private void evaluateVariableDeclaration(BoundVariableDeclaration syntax) {
         VariableSymbol variable = syntax.getVariableSymbol();
+        if (assignUnboxed(variable, syntax.getInitializer())) {
+            lastValue = null;
+            return;
+        }
+
         Object value = evaluateExpression(syntax.getInitializer());
 
         lastValue = value;
 
-        assignLocalVariable(variable, value);
+        assignLocalVariable(variable.getSlot(), value);
     }
 
     private void evaluateExpressionStatement(BoundExpressionStatement syntax) {
+        // the value of an assignment statement is not used, so primitives are assigned without boxing them
+        if (syntax.getExpression() instanceof BoundAssignmentExpression assignment
+                && assignment.getTarget() instanceof BoundVariableExpression variable
+                && assignUnboxed(variable.getVariable(), assignment.getExpression())) {
+            lastValue = null;
+            return;
+        }
+        if (syntax.getExpression() instanceof BoundAssignmentExpression assignment
+                && assignment.getTarget() instanceof BoundArrayAccessExpression element
+                && assignElementUnboxed(element, assignment.getExpression())) {
+            lastValue = null;
+            return;
+        }
+
         lastValue = evaluateExpression(syntax.getExpression());
     }
 
-    public Object evaluateFunctionWithEvaluatedArgs(RuntimeType type, FunctionSymbol function, Object[] arguments) {
-        variableTable.push(new VariableTable("function (%s)".formatted(function.getName())));
+    public Object evaluateFunctionWithEvaluatedArgs(RuntimeType type, FunctionSymbol function, Object thisValue, Object[] arguments) {
+        int depth = variableTable.size();
 
-        for (int i = 0; i < function.getParameters().size(); i++) {
-            ParameterSymbol parameter = function.getParameters().get(i);
-            VariableSymbol variable = new VariableSymbol(parameter.getName(), true, parameter.getType());
-            assignLocalVariable(variable, arguments[i]);
+        try {
+            variableTable.push(new VariableTable("function", function.getName()));
+            if (thisValue != null) {
+                assignLocalVariable(VariableSymbol.THIS_SLOT, thisValue);
+            }
+
+            for (int i = 0; i < function.getParameters().size(); i++) {
+                assignLocalVariable(VariableSymbol.getParameterSlot(i), arguments[i]);
+            }
+
+            BoundBlockStatement body = type.getFunctionBody(function);
+            return evaluateStatement(body);
+        } catch (StackOverflowError e) {
+            // the Java stack ran out before the maximum depth was reached
+            throw variableTable.overflow();
+        } finally {
+            variableTable.setSize(depth);
         }
+    }
 
-        BoundBlockStatement body = type.getFunctionBody(function);
-        return evaluateStatement(body);
+    private void assignLocalVariable(int slot, Object value) {
+        if (RuntimeLogger.LOG_LEVEL >= RuntimeLogger.TRACE) traceAssignment(slot, value);
+        variableTable.peek().store(slot, value);
     }
 
-    private void assignLocalVariable(VariableSymbol variable, Object value) {
-        RuntimeLogger.tracef("Assigning %s to %s: %s %n", stringify(value), variable.getName(), variable.getType());
-        variableTable.peek().put(variable, value);
+    private void traceAssignment(int slot, Object value) {
+        RuntimeLogger.tracef("Assigning %s to slot %d in %s%n", stringify(value), slot, variableTable.peek().getName());
     }
 
     private String stringify(Object value) {
         if (value == null) {
             return "null";
         }
-        if (value instanceof Object[]) {
+        ArrayKind arrayKind = ArrayKind.ofArray(value);
+        if (arrayKind != null) {
             StringBuilder sb = new StringBuilder();
             sb.append("[");
-            for (int i = 0; i < ((Object[]) value).length; i++) {
-                sb.append(stringify(((Object[]) value)[i]));
-                if (i < ((Object[]) value).length - 1) {
+            int length = arrayKind.length(value);
+            for (int i = 0; i < length; i++) {
+                sb.append(stringify(arrayKind.get(value, i)));
+                if (i < length - 1) {
                     sb.append(", ");
                 }
             }
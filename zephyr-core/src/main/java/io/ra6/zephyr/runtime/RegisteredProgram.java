@@ -8,8 +8,6 @@ import lombok.RequiredArgsConstructor;
 public class RegisteredProgram {
     @Getter
     private final BoundProgramScope program;
-    @Getter
-    private final ProgramInterpreter evaluator;
 
     @Override
     public String toString() {
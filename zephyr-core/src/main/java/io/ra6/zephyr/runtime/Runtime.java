@@ -1,14 +1,17 @@
 package io.ra6.zephyr.runtime;
 
+import io.ra6.zephyr.builtin.BuiltinUniverse;
+import io.ra6.zephyr.builtin.types.BuiltinType;
 import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
 import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+import io.ra6.zephyr.runtime.bytecode.BytecodeVM;
+import io.ra6.zephyr.runtime.closure.ClosureEngine;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.*;
 
 @RequiredArgsConstructor
 public class Runtime {
@@ -16,14 +19,92 @@ public class Runtime {
     @Setter
     @Getter
     private RegisteredProgram mainProgram;
+    @Setter
+    @Getter
+    private ExecutionEngine engine = ExecutionEngine.INTERPRETER;
+    @Getter
+    private final ClosureEngine closureEngine = new ClosureEngine(this);
+    @Getter
+    private final BytecodeVM bytecodeVM = new BytecodeVM(this);
+    @Getter
+    private int maxCallDepth = VariableTableStack.DEFAULT_MAX_DEPTH;
+    @Getter
+    private long stepLimit = ExecutionBudget.UNLIMITED;
+    @Getter
+    private long allocationLimit = ExecutionBudget.UNLIMITED;
+    @Getter
+    private Profiler profiler;
+
+    private final HashMap<String, RegisteredProgram> programsByName = new HashMap<>();
+    private final StaticInitializer staticInitializer = new StaticInitializer(this);
+
+    // Linked types are numbered densely in link order, the id indexes the tables below
+    private final IdentityHashMap<TypeSymbol, Integer> typeIds = new IdentityHashMap<>();
+    private final HashMap<String, Integer> typeIdsByName = new HashMap<>();
+    private RuntimeType[] linkedTypes = new RuntimeType[16];
+    private RegisteredProgram[] declaringPrograms = new RegisteredProgram[16];
+    private int linkedTypeCount;
+    private int linkedProgramCount;
+    // written once the types of a link are created, so other threads see its tables
+    private volatile int publishedProgramCount;
+
+    /**
+     * Sets the maximum call depth of the contexts created afterwards.
+     */
+    public void setMaxCallDepth(int maxCallDepth) {
+        if (maxCallDepth < 1) {
+            throw new RuntimeException("Maximum call depth must be positive, got " + maxCallDepth);
+        }
+        this.maxCallDepth = maxCallDepth;
+    }
+
+    /**
+     * Limits the steps of each call, see {@link ExecutionBudget}. Limits have to be set before programs are
+     * registered, the engines only compile metering into bodies of metered runtimes.
+     */
+    public void setStepLimit(long stepLimit) {
+        if (stepLimit < 1) {
+            throw new RuntimeException("Step limit must be positive, got " + stepLimit);
+        }
+        this.stepLimit = stepLimit;
+    }
+
+    /**
+     * Limits the instances and array elements each call allocates, see {@link #setStepLimit(long)}.
+     */
+    public void setAllocationLimit(long allocationLimit) {
+        if (allocationLimit < 0) {
+            throw new RuntimeException("Allocation limit must not be negative, got " + allocationLimit);
+        }
+        this.allocationLimit = allocationLimit;
+    }
 
-    private final HashMap<BoundProgramScope, List<RuntimeType>> runtimeTypes = new HashMap<>();
+    public boolean isMetered() {
+        return stepLimit != ExecutionBudget.UNLIMITED || allocationLimit != ExecutionBudget.UNLIMITED;
+    }
+
+    /**
+     * Records the calls of all contexts with the given profiler. Like the limits, the profiler has to be set before
+     * programs are registered.
+     */
+    public void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Creates a context to run functions of the registered programs in. Programs have to be registered and linked
+     * before contexts run concurrently, every context has to be used by one thread at a time.
+     */
+    public ExecutionContext createContext() {
+        link();
+        return new ExecutionContext(this);
+    }
 
     private boolean isProgramRegistered(BoundProgramScope program) {
-        return registeredPrograms.stream().anyMatch(p -> p.getProgram().getName().equals(program.getName()));
+        return programsByName.containsKey(program.getName());
     }
 
-    public void registerProgram(BoundProgramScope program) {
+    public synchronized void registerProgram(BoundProgramScope program) {
         if (isProgramRegistered(program)) {
             RuntimeLogger.debugf("Program %s is already registered.", program.getName());
             return;
@@ -31,62 +112,126 @@ public class Runtime {
 
         program.getImportedPrograms().forEach(this::registerProgram);
 
-        RegisteredProgram registeredProgram = new RegisteredProgram(program, new ProgramInterpreter(this, program));
+        RegisteredProgram registeredProgram = new RegisteredProgram(program);
         registeredPrograms.add(registeredProgram);
+        programsByName.put(program.getName(), registeredProgram);
         RuntimeLogger.debugf("Registered program: %s", program.getName());
     }
 
-    public RuntimeType getRuntimeType(BoundProgramScope program, TypeSymbol type) {
-        if (!isProgramRegistered(program)) {
-            RuntimeLogger.debugf("Program %s is not registered.", program.getName());
-            return null;
+    /**
+     * Creates the runtime types of every program registered since the last link and gives each type a dense id,
+     * so finding the runtime type or the declaring program of a type no longer searches the registered programs.
+     * The shared fields of the new types are initialized before this returns.
+     * Lookups link on their own if programs were registered without linking them.
+     * <p>
+     * The types are published before their shared fields are initialized, so tasks spawned by initializers can run
+     * without waiting for the link that spawned them.
+     */
+    public void link() {
+        if (publishedProgramCount == registeredPrograms.size()) {
+            return;
         }
 
-        if(!program.isTypeDeclared(type.getName())){
-            RuntimeLogger.tracef("Type %s is not declared in program %s.", type.getName(), program.getName());
-            return null;
-        }
+        synchronized (this) {
+            // initializers look up types while the programs are linked, those lookups must not link again
+            if (linkedProgramCount != registeredPrograms.size()) {
+                int firstNewType = linkedTypeCount;
+                linkRegisteredPrograms();
+                publishedProgramCount = linkedProgramCount;
 
-        if (!runtimeTypes.containsKey(program)) {
-            runtimeTypes.put(program, new ArrayList<>());
+                for (int id = firstNewType; id < linkedTypeCount; id++) {
+                    staticInitializer.initialize(linkedTypes[id]);
+                }
+            }
         }
+    }
+
+    private void linkRegisteredPrograms() {
 
-        List<RuntimeType> types = runtimeTypes.get(program);
-        for (RuntimeType runtimeType : types) {
-            if (runtimeType.getType().equals(type)) {
-                return runtimeType;
+        if (linkedProgramCount == 0) {
+            // builtin types are declared in every program, the first registered program owns them
+            RegisteredProgram owner = registeredPrograms.get(0);
+            for (BuiltinType builtinType : BuiltinUniverse.get().getBuiltinTypes()) {
+                linkType(owner, builtinType.getTypeSymbol(), builtinType.getTypeScope());
             }
         }
 
-        RuntimeType runtimeType = new RuntimeType(this, type, program.getTypeScope(type));
-        types.add(runtimeType);
-        return runtimeType;
+        for (; linkedProgramCount < registeredPrograms.size(); linkedProgramCount++) {
+            RegisteredProgram registeredProgram = registeredPrograms.get(linkedProgramCount);
+            BoundProgramScope program = registeredProgram.getProgram();
+            for (TypeSymbol type : program.getDeclaredTypes()) {
+                linkType(registeredProgram, type, program.getTypeScope(type));
+            }
+        }
 
+        RuntimeLogger.debugf("Linked %d types of %d programs.", linkedTypeCount, linkedProgramCount);
     }
 
-    public RegisteredProgram getProgram(String name) {
-        return registeredPrograms.stream().filter(p -> p.getProgram().getName().equals(name)).findFirst().orElse(null);
+    private void linkType(RegisteredProgram program, TypeSymbol type, BoundTypeScope scope) {
+        if (typeIds.containsKey(type)) {
+            return;
+        }
+
+        if (linkedTypeCount == linkedTypes.length) {
+            linkedTypes = Arrays.copyOf(linkedTypes, linkedTypeCount * 2);
+            declaringPrograms = Arrays.copyOf(declaringPrograms, linkedTypeCount * 2);
+        }
+
+        int id = linkedTypeCount++;
+        linkedTypes[id] = new RuntimeType(this, type, scope);
+        declaringPrograms[id] = program;
+        typeIds.put(type, id);
+        typeIdsByName.putIfAbsent(type.getName(), id);
+
+        if (profiler != null) {
+            profiler.register(linkedTypes[id]);
+        }
     }
 
-    public RuntimeType findRuntimeType(TypeSymbol type) {
-        for (RegisteredProgram registeredProgram : registeredPrograms) {
-            RuntimeType runtimeType = getRuntimeType(registeredProgram.getProgram(), type);
-            if (runtimeType != null) {
-                return runtimeType;
-            }
+    /**
+     * @return the id of the linked type, or -1 if no registered program declares the type
+     */
+    private int getTypeId(TypeSymbol type) {
+        link();
+
+        Integer id = typeIds.get(type);
+        if (id == null) {
+            // a symbol of the same name that was not linked itself, e.g. from a duplicate of a registered program
+            id = typeIdsByName.get(type.getName());
         }
+        return id == null ? -1 : id;
+    }
 
-        return null;
+    private boolean isDeclaredIn(int id, BoundProgramScope program) {
+        return declaringPrograms[id].getProgram().getName().equals(program.getName()) || BuiltinUniverse.get().isBuiltinType(linkedTypes[id].getName());
     }
 
-    public ProgramInterpreter findInterpreter(TypeSymbol type) {
-        for (RegisteredProgram registeredProgram : registeredPrograms) {
-            RuntimeType runtimeType = getRuntimeType(registeredProgram.getProgram(), type);
-            if (runtimeType != null) {
-                return registeredProgram.getEvaluator();
-            }
+    public RuntimeType getRuntimeType(BoundProgramScope program, TypeSymbol type) {
+        if (!isProgramRegistered(program)) {
+            RuntimeLogger.debugf("Program %s is not registered.", program.getName());
+            return null;
+        }
+
+        int id = getTypeId(type);
+        if (id < 0 || !isDeclaredIn(id, program)) {
+            RuntimeLogger.tracef("Type %s is not declared in program %s.", type.getName(), program.getName());
+            return null;
         }
 
-        return null;
+        return linkedTypes[id];
+    }
+
+    public RegisteredProgram getProgram(String name) {
+        return programsByName.get(name);
+    }
+
+    public RuntimeType findRuntimeType(TypeSymbol type) {
+        int id = getTypeId(type);
+        return id < 0 ? null : linkedTypes[id];
+    }
+
+    public RegisteredProgram findProgram(TypeSymbol type) {
+        int id = getTypeId(type);
+        return id < 0 ? null : declaringPrograms[id];
     }
 }
@@ -4,57 +4,62 @@ import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
 import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
 import io.ra6.zephyr.codeanalysis.symbols.*;
 import lombok.Getter;
-import lombok.Setter;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 public class RuntimeType {
+    @Getter
     private final Runtime runtime;
     @Getter
     private final TypeSymbol type;
     @Getter
     private final BoundTypeScope scope;
-
-    @Setter
     @Getter
-    private boolean initialized = false;
+    private final Shape shape;
+    @Getter
+    private final Shape sharedShape;
 
-    private final HashMap<FieldSymbol, Object> sharedFields = new HashMap<>();
+    // the values of the shared fields, in the order of the fields of the shared shape
+    private final Object[] sharedFields;
     private List<String> genericTypes = new ArrayList<>();
 
     public RuntimeType(Runtime runtime, TypeSymbol type, BoundTypeScope scope) {
         this.runtime = runtime;
         this.type = type;
 
-        // TODO: initialize static fields
         this.scope = scope;
+        this.shape = new Shape(type);
+        this.sharedShape = Shape.ofSharedFields(type);
+        this.sharedFields = new Object[sharedShape.getFieldCount()];
 
         for (int i = 0; i < type.getGenericCount(); i++) {
             genericTypes.add(type.getGenericAt(i));
         }
     }
 
-    public List<FieldSymbol> getSharedFields() {
-        return type.getFields().stream().filter(FieldSymbol::isShared).collect(Collectors.toList());
-    }
-
     public Object assignSharedField(FieldSymbol field, Object value) {
-        FieldSymbol sharedField = getSharedFields().stream().filter(f -> f.getName().equals(field.getName()) && f.getType().equals(field.getType())).findFirst().orElse(null);
-        if (sharedField == null) {
-            throw new RuntimeException("Field " + field.getName() + " not found in type " + type.getName() + ".");
-        }
-        sharedFields.put(sharedField, value);
+        sharedFields[sharedShape.getOffset(field)] = value;
         return value;
     }
 
     public Object getSharedField(FieldSymbol field) {
-        return sharedFields.get(field);
+        return sharedFields[sharedShape.getOffset(field)];
+    }
+
+    public Object getSharedField(int offset) {
+        return sharedFields[offset];
+    }
+
+    public void setSharedField(int offset, Object value) {
+        sharedFields[offset] = value;
     }
 
-    public TypeInstance createInstance(HashMap<FieldSymbol, Object> fields, HashMap<String, RuntimeType> genericTypes) {
+    /**
+     * @param fields the values of the instance fields, in the order of the fields of the shape
+     */
+    public TypeInstance createInstance(Object[] fields, Map<String, RuntimeType> genericTypes) {
         return new TypeInstance(this, fields, genericTypes);
     }
 
@@ -0,0 +1,69 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.codeanalysis.symbols.FieldSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+/**
+ * The layout of the instances of a type. Every instance field gets a fixed offset in declaration order, so an
+ * instance stores its fields in a plain array and a field access is an array index instead of a map lookup.
+ * The shared fields of a type are laid out the same way in a shape of their own.
+ */
+public final class Shape {
+    private final TypeSymbol type;
+    private final FieldSymbol[] fields;
+    private final IdentityHashMap<FieldSymbol, Integer> offsets = new IdentityHashMap<>();
+    private final HashMap<String, Integer> offsetsByName = new HashMap<>();
+
+    public Shape(TypeSymbol type) {
+        this(type, false);
+    }
+
+    private Shape(TypeSymbol type, boolean shared) {
+        this.type = type;
+        this.fields = type.getFields().stream().filter(field -> field.isShared() == shared).toArray(FieldSymbol[]::new);
+
+        for (int i = 0; i < fields.length; i++) {
+            offsets.put(fields[i], i);
+            offsetsByName.putIfAbsent(fields[i].getName(), i);
+        }
+    }
+
+    /**
+     * @return the layout of the shared fields of the type
+     */
+    public static Shape ofSharedFields(TypeSymbol type) {
+        return new Shape(type, true);
+    }
+
+    /**
+     * @return the fields in the order of their offsets
+     */
+    public FieldSymbol[] getFields() {
+        return fields.clone();
+    }
+
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    public FieldSymbol getField(int offset) {
+        return fields[offset];
+    }
+
+    public int getOffset(FieldSymbol field) {
+        Integer offset = offsets.get(field);
+        // symbols of the same field may be duplicated, e.g. by a generic instantiation of the type
+        return offset != null ? offset : getOffset(field.getName());
+    }
+
+    public int getOffset(String name) {
+        Integer offset = offsetsByName.get(name);
+        if (offset == null) {
+            throw new RuntimeException("Field " + name + " not found in type " + type.getName() + ".");
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,123 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.BoundTreeRewriter;
+import io.ra6.zephyr.codeanalysis.binding.expressions.BoundFunctionCallExpression;
+import io.ra6.zephyr.codeanalysis.binding.expressions.BoundInstanceCreationExpression;
+import io.ra6.zephyr.codeanalysis.binding.expressions.BoundTypeExpression;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
+import io.ra6.zephyr.codeanalysis.symbols.ConstructorSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Initializes the shared fields of linked types. Before the initializers of a type run, the types they use are
+ * initialized, including the types used by the functions and constructors they call. Types that use each other are
+ * initialized in link order.
+ */
+final class StaticInitializer {
+    private final Runtime runtime;
+    // false while the initializers of a type run, true once they ran
+    private final IdentityHashMap<RuntimeType, Boolean> initialized = new IdentityHashMap<>();
+    private ExecutionContext context;
+
+    StaticInitializer(Runtime runtime) {
+        this.runtime = runtime;
+    }
+
+    void initialize(RuntimeType type) {
+        if (initialized.containsKey(type)) {
+            return;
+        }
+        initialized.put(type, false);
+
+        BoundTypeScope scope = type.getScope();
+        Shape sharedShape = type.getSharedShape();
+        BoundExpression[] initializers = new BoundExpression[sharedShape.getFieldCount()];
+        UsedTypes usedTypes = new UsedTypes();
+
+        for (int i = 0; i < initializers.length; i++) {
+            initializers[i] = scope.getFieldInitializer(sharedShape.getField(i));
+            if (initializers[i] != null) usedTypes.collect(initializers[i]);
+        }
+
+        for (RuntimeType usedType : usedTypes.types) {
+            initialize(usedType);
+        }
+
+        if (context == null) {
+            context = new ExecutionContext(runtime);
+        }
+
+        // the initializers of each type get the budget of a call
+        if (context.getBudget() != null) context.getBudget().reset();
+
+        ProgramInterpreter interpreter = context.findInterpreter(type.getType());
+        CallRecorder previousRecorder = CallRecorder.activate(context.getRecorder());
+        try {
+            for (int i = 0; i < initializers.length; i++) {
+                if (initializers[i] != null) {
+                    type.setSharedField(i, interpreter.evaluateInitializer(initializers[i]));
+                }
+            }
+        } finally {
+            CallRecorder.deactivate(context.getRecorder(), previousRecorder);
+        }
+
+        initialized.put(type, true);
+    }
+
+    // Collects the types an expression uses, following the bodies of the functions and constructors it calls
+    private final class UsedTypes extends BoundTreeRewriter {
+        private final LinkedHashSet<RuntimeType> types = new LinkedHashSet<>();
+        private final Set<BoundBlockStatement> visitedBodies = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private void collect(BoundExpression expression) {
+            rewriteExpression(expression);
+        }
+
+        private void visit(BoundBlockStatement body) {
+            if (body != null && visitedBodies.add(body)) {
+                rewriteStatement(body);
+            }
+        }
+
+        private RuntimeType use(TypeSymbol type) {
+            RuntimeType runtimeType = type == null ? null : runtime.findRuntimeType(type);
+            if (runtimeType != null) {
+                types.add(runtimeType);
+            }
+            return runtimeType;
+        }
+
+        @Override
+        protected BoundExpression rewriteTypeExpression(BoundTypeExpression node) {
+            use(node.getType());
+            return node;
+        }
+
+        @Override
+        protected BoundExpression rewriteInstanceCreationExpression(BoundInstanceCreationExpression node) {
+            RuntimeType type = use(node.getType());
+            ConstructorSymbol constructor = type == null ? null : type.getType().getConstructor(node.getArguments().size());
+            if (constructor != null) {
+                visit(type.getScope().getConstructorBody(constructor));
+            }
+            return super.rewriteInstanceCreationExpression(node);
+        }
+
+        @Override
+        protected BoundExpression rewriteFunctionCallExpression(BoundFunctionCallExpression node) {
+            RuntimeType type = use(node.getCallee().getType());
+            if (type != null) {
+                visit(type.getScope().getFunctionBody(node.getFunction()));
+            }
+            return super.rewriteFunctionCallExpression(node);
+        }
+    }
+}
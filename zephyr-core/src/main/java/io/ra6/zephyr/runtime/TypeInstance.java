@@ -3,38 +3,44 @@ package io.ra6.zephyr.runtime;
 import io.ra6.zephyr.codeanalysis.symbols.FieldSymbol;
 import lombok.Getter;
 
-import java.util.HashMap;
+import java.util.Map;
 
 public class TypeInstance {
     @Getter
     private final RuntimeType runtimeType;
-    private final HashMap<FieldSymbol, Object> fields;
+    @Getter
+    private final Shape shape;
+    // indexed by the offsets of the shape
+    private final Object[] fields;
 
     @Getter
-    private final HashMap<String, RuntimeType> genericTypes = new HashMap<>();
+    private final Map<String, RuntimeType> genericTypes;
 
-    public TypeInstance(RuntimeType runtimeType, HashMap<FieldSymbol, Object> fields, HashMap<String, RuntimeType> genericTypes) {
+    public TypeInstance(RuntimeType runtimeType, Object[] fields, Map<String, RuntimeType> genericTypes) {
         this.runtimeType = runtimeType;
+        this.shape = runtimeType.getShape();
         this.fields = fields;
-        this.genericTypes.putAll(genericTypes);
+        this.genericTypes = genericTypes.isEmpty() ? Map.of() : genericTypes;
     }
 
     public FieldSymbol lookupField(String name) {
-        for (FieldSymbol field : runtimeType.getType().getFields()) {
-            if (field.getName().equals(name)) {
-                return field;
-            }
-        }
-
-        throw new RuntimeException("Field " + name + " not found in type " + runtimeType.getType().getName() + ".");
+        return shape.getField(shape.getOffset(name));
     }
 
     public Object getField(FieldSymbol field) {
-        return fields.get(field);
+        return fields[shape.getOffset(field)];
     }
 
     public void setField(FieldSymbol field, Object value) {
-        fields.put(field, value);
+        fields[shape.getOffset(field)] = value;
+    }
+
+    public Object getField(int offset) {
+        return fields[offset];
+    }
+
+    public void setField(int offset, Object value) {
+        fields[offset] = value;
     }
 
     public RuntimeType getGenericType(String name) {
@@ -1,23 +1,121 @@
 package io.ra6.zephyr.runtime;
 
 import io.ra6.zephyr.codeanalysis.symbols.VariableSymbol;
-import lombok.Getter;
 
-import java.util.HashMap;
+import java.util.Arrays;
 
-public class VariableTable extends HashMap<VariableSymbol, Object> {
-    @Getter
-    private final String name;
+/**
+ * A single call frame. Variables are stored by the slot index the binder assigned to them.
+ * Int, double and char values stored with the typed store methods are kept unboxed and only boxed when they are
+ * loaded as an object.
+ */
+public class VariableTable {
+    private static final int DEFAULT_SIZE = 8;
 
-    public VariableTable(String name) {
-        super();
-        this.name = name;
+    // marks a slot whose value is kept in the primitive slots
+    private enum Unboxed {
+        INT, DOUBLE, CHAR
+    }
+
+    private final String kind;
+    private final String owner;
+
+    private Object[] slots;
+    private long[] primitiveSlots;
+
+    public VariableTable(String kind, String owner) {
+        this(kind, owner, DEFAULT_SIZE);
+    }
+
+    public VariableTable(String kind, String owner, int size) {
+        this.kind = kind;
+        this.owner = owner;
+        this.slots = new Object[Math.max(size, 1)];
+    }
+
+    public String getName() {
+        return "%s (%s)".formatted(kind, owner);
+    }
+
+    public Object load(int slot) {
+        Object value = loadSlot(slot);
+        if (value instanceof Unboxed unboxed) {
+            long bits = primitiveSlots[slot];
+            return switch (unboxed) {
+                case INT -> (int) bits;
+                case DOUBLE -> Double.longBitsToDouble(bits);
+                case CHAR -> (char) bits;
+            };
+        }
+        return value;
+    }
+
+    public Object load(VariableSymbol variable) {
+        return load(variable.getSlot());
+    }
+
+    public int loadInt(int slot) {
+        Object value = loadSlot(slot);
+        return value == Unboxed.INT ? (int) primitiveSlots[slot] : (int) value;
+    }
+
+    public double loadDouble(int slot) {
+        Object value = loadSlot(slot);
+        return value == Unboxed.DOUBLE ? Double.longBitsToDouble(primitiveSlots[slot]) : ((Number) value).doubleValue();
+    }
+
+    public char loadChar(int slot) {
+        Object value = loadSlot(slot);
+        return value == Unboxed.CHAR ? (char) primitiveSlots[slot] : (char) value;
+    }
+
+    private Object loadSlot(int slot) {
+        if (slot >= slots.length) {
+            throw new RuntimeException("Variable slot %d is not assigned in %s".formatted(slot, getName()));
+        }
+        return slots[slot];
+    }
+
+    public void store(int slot, Object value) {
+        ensureSlot(slot);
+        slots[slot] = value;
+    }
+
+    public void store(VariableSymbol variable, Object value) {
+        store(variable.getSlot(), value);
+    }
+
+    public void storeInt(int slot, int value) {
+        storeUnboxed(slot, Unboxed.INT, value);
+    }
+
+    public void storeDouble(int slot, double value) {
+        storeUnboxed(slot, Unboxed.DOUBLE, Double.doubleToRawLongBits(value));
+    }
+
+    public void storeChar(int slot, char value) {
+        storeUnboxed(slot, Unboxed.CHAR, value);
+    }
+
+    private void storeUnboxed(int slot, Unboxed unboxed, long bits) {
+        ensureSlot(slot);
+        if (primitiveSlots == null || primitiveSlots.length < slots.length) {
+            primitiveSlots = primitiveSlots == null ? new long[slots.length] : Arrays.copyOf(primitiveSlots, slots.length);
+        }
+        slots[slot] = unboxed;
+        primitiveSlots[slot] = bits;
+    }
+
+    private void ensureSlot(int slot) {
+        if (slot >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(slots.length * 2, slot + 1));
+        }
     }
 
     @Override
     public String toString() {
         return "VariableTable{" +
-                "name='" + name + '\'' +
+                "name='" + getName() + '\'' +
                 '}';
     }
 }
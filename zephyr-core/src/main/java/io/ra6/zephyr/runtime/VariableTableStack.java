@@ -1,13 +1,34 @@
 package io.ra6.zephyr.runtime;
 
+import lombok.Getter;
+
+import java.util.ArrayList;
 import java.util.Stack;
 
+/**
+ * The call stack of a runtime. Each frame is a heap allocated {@link VariableTable}, so the depth is limited by
+ * {@link #maxDepth} instead of the Java stack.
+ */
 public class VariableTableStack extends Stack<VariableTable> {
-    private static int indent = 0;
+    public static final int DEFAULT_MAX_DEPTH = 10_000;
+
+    @Getter
+    private final int maxDepth;
+
+    private int indent = 0;
+
+    public VariableTableStack(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
 
     @Override
     public VariableTable push(VariableTable item) {
-        RuntimeLogger.tracef("%sEntering: %s%n", " ".repeat(indent), item);
+        if (size() >= maxDepth) {
+            throw overflow();
+        }
+
+        if (RuntimeLogger.LOG_LEVEL >= RuntimeLogger.TRACE)
+            RuntimeLogger.tracef("%sEntering: %s%n", " ".repeat(indent), item);
         indent += 4;
         return super.push(item);
     }
@@ -15,7 +36,24 @@ public class VariableTableStack extends Stack<VariableTable> {
     @Override
     public synchronized VariableTable pop() {
         indent -= 4;
-        RuntimeLogger.tracef("%sLeaving:  %s%n", " ".repeat(indent), peek());
+        if (RuntimeLogger.LOG_LEVEL >= RuntimeLogger.TRACE)
+            RuntimeLogger.tracef("%sLeaving:  %s%n", " ".repeat(indent), peek());
         return super.pop();
     }
+
+    /**
+     * Replaces the current frame by the frame of a call in tail position, so the depth does not grow.
+     */
+    public void replaceTop(VariableTable item) {
+        if (RuntimeLogger.LOG_LEVEL >= RuntimeLogger.TRACE)
+            RuntimeLogger.tracef("%sTail call: %s%n", " ".repeat(indent - 4), item);
+        set(size() - 1, item);
+    }
+
+    /**
+     * @return the exception for a call that does not fit on the stack, with the frames that are on it now
+     */
+    public CallStackOverflowException overflow() {
+        return new CallStackOverflowException(new ArrayList<>(this));
+    }
 }
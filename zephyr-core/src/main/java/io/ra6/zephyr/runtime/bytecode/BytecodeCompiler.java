@@ -0,0 +1,662 @@
+package io.ra6.zephyr.runtime.bytecode;
+
+import io.ra6.zephyr.builtin.*;
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.BoundNodeKind;
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.binding.BoundTypeCheckExpression;
+import io.ra6.zephyr.codeanalysis.binding.expressions.*;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.*;
+import io.ra6.zephyr.codeanalysis.symbols.*;
+import io.ra6.zephyr.runtime.ArrayKind;
+import io.ra6.zephyr.runtime.InternalCall;
+import io.ra6.zephyr.runtime.ProfiledFunction;
+import io.ra6.zephyr.runtime.Profiler;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Translates lowered bodies into {@link Chunk}s. Variables keep the slot the binder assigned to them.
+ * Temporaries are numbered on their own while emitting (encoded as negative registers) and are moved
+ * behind the variables once the size of the frame is known.
+ */
+@RequiredArgsConstructor
+class BytecodeCompiler {
+    private static final int ANY = Integer.MIN_VALUE;
+
+    private final BoundProgramScope program;
+    private final int parameterCount;
+    private final boolean metered;
+    // null if the runtime is not profiled
+    private final Profiler profiler;
+
+    private int[] code = new int[64];
+    private int size;
+
+    private final List<Object> constants = new ArrayList<>();
+    private final HashMap<Object, Integer> constantIndices = new HashMap<>();
+    private final List<Object> references = new ArrayList<>();
+    private final List<Integer> temporaryOperands = new ArrayList<>();
+
+    private int variableCount = VariableSymbol.THIS_SLOT + 1;
+    private int temporaries;
+    private int temporaryCount;
+
+    Chunk compileBody(BoundBlockStatement body) {
+        List<BoundStatement> statements = body.getStatements();
+        int[] offsets = new int[statements.size() + 1];
+        List<int[]> jumps = new ArrayList<>();
+
+        // entering a body is a step of the budget
+        if (metered) emit(Opcode.STEP);
+
+        boolean samplingLines = profiler != null && profiler.isSamplingLines();
+
+        for (int i = 0; i < statements.size(); i++) {
+            offsets[i] = size;
+            if (samplingLines && statements.get(i).getSyntax() != null) {
+                emit(Opcode.LINE);
+                operand(reference(statements.get(i)));
+            }
+            compileStatement(statements.get(i), i, jumps);
+            temporaries = 0;
+        }
+
+        offsets[statements.size()] = size;
+        emit(Opcode.RETURN_VOID);
+
+        for (int[] jump : jumps) {
+            code[jump[0]] = offsets[jump[1]];
+        }
+
+        return link(InternalCall.of(body), profiler == null ? null : profiler.getFunction(body));
+    }
+
+    Chunk compileInitializer(BoundExpression initializer) {
+        int value = compileExpression(initializer, ANY);
+        emit(Opcode.RETURN);
+        register(value);
+        return link(null, null);
+    }
+
+    private Chunk link(InternalCall internal, ProfiledFunction function) {
+        variableCount = Math.max(variableCount, VariableSymbol.getParameterSlot(parameterCount));
+
+        for (int position : temporaryOperands) {
+            code[position] = variableCount + (-code[position] - 1);
+        }
+
+        return new Chunk(program, Arrays.copyOf(code, size), constants.toArray(), references.toArray(), variableCount + temporaryCount, internal, function);
+    }
+
+    private void compileStatement(BoundStatement statement, int index, List<int[]> jumps) {
+        switch (statement.getKind()) {
+            case VARIABLE_DECLARATION -> {
+                BoundVariableDeclaration declaration = (BoundVariableDeclaration) statement;
+                compileExpression(declaration.getInitializer(), variable(declaration.getVariableSymbol()));
+            }
+            case EXPRESSION_STATEMENT ->
+                    compileExpression(((BoundExpressionStatement) statement).getExpression(), ANY);
+            case GOTO_STATEMENT -> {
+                BoundGotoStatement gotoStatement = (BoundGotoStatement) statement;
+                if (gotoStatement.getTargetIndex() < 0) {
+                    fail("Jump target '%s' was not resolved".formatted(gotoStatement.getLabel().getName()));
+                    return;
+                }
+
+                if (metered && gotoStatement.getTargetIndex() <= index) emit(Opcode.STEP);
+                emit(Opcode.JUMP);
+                jumps.add(new int[]{size, gotoStatement.getTargetIndex()});
+                operand(0);
+            }
+            case CONDITIONAL_GOTO_STATEMENT -> {
+                BoundConditionalGotoStatement conditionalGoto = (BoundConditionalGotoStatement) statement;
+                int condition = compileExpression(conditionalGoto.getCondition(), ANY);
+                if (conditionalGoto.getTargetIndex() < 0) {
+                    fail("Jump target '%s' was not resolved".formatted(conditionalGoto.getLabel().getName()));
+                    return;
+                }
+
+                // a metered backward jump skips the step if it is not taken
+                if (metered && conditionalGoto.getTargetIndex() <= index) {
+                    emit(conditionalGoto.jumpIfTrue() ? Opcode.JUMP_IF_FALSE : Opcode.JUMP_IF_TRUE);
+                    register(condition);
+                    jumps.add(new int[]{size, index + 1});
+                    operand(0);
+                    emit(Opcode.STEP);
+                    emit(Opcode.JUMP);
+                    jumps.add(new int[]{size, conditionalGoto.getTargetIndex()});
+                    operand(0);
+                    return;
+                }
+
+                emit(conditionalGoto.jumpIfTrue() ? Opcode.JUMP_IF_TRUE : Opcode.JUMP_IF_FALSE);
+                register(condition);
+                jumps.add(new int[]{size, conditionalGoto.getTargetIndex()});
+                operand(0);
+            }
+            case LABEL_STATEMENT -> {
+            }
+            case RETURN_STATEMENT -> {
+                BoundExpression expression = ((BoundReturnStatement) statement).getExpression();
+                if (expression == null) {
+                    emit(Opcode.RETURN_VOID);
+                    return;
+                }
+
+                int value = compileExpression(expression, ANY);
+                emit(Opcode.RETURN);
+                register(value);
+            }
+            // bodies that were not lowered can still contain structured statements, those fail once they are reached
+            default -> fail("Unexpected statement kind: " + statement.getKind());
+        }
+    }
+
+    /**
+     * Emits the code for an expression and returns the register holding its value.
+     * If a target register is given, the value always ends up in that register.
+     */
+    private int compileExpression(BoundExpression expression, int target) {
+        return switch (expression.getKind()) {
+            case LITERAL_EXPRESSION -> compileLiteralExpression((BoundLiteralExpression) expression, target);
+            case VARIABLE_EXPRESSION ->
+                    move(target, variable(((BoundVariableExpression) expression).getVariable()));
+            case INSTANCE_CREATION_EXPRESSION ->
+                    compileInstanceCreationExpression((BoundInstanceCreationExpression) expression, target);
+            case ASSIGNMENT_EXPRESSION -> compileAssignmentExpression((BoundAssignmentExpression) expression, target);
+            case THIS_EXPRESSION -> {
+                int destination = target(target);
+                emit(Opcode.LOAD_THIS);
+                register(destination);
+                yield destination;
+            }
+            case ARRAY_LITERAL_EXPRESSION ->
+                    compileArrayLiteralExpression((BoundArrayLiteralExpression) expression, target);
+            case ARRAY_CREATION_EXPRESSION ->
+                    compileArrayCreationExpression((BoundArrayCreationExpression) expression, target);
+            case FUNCTION_CALL_EXPRESSION ->
+                    compileFunctionCallExpression((BoundFunctionCallExpression) expression, target);
+            case BINARY_EXPRESSION -> compileBinaryExpression((BoundBinaryExpression) expression, target);
+            case UNARY_EXPRESSION -> compileUnaryExpression((BoundUnaryExpression) expression, target);
+            case MEMBER_ACCESS_EXPRESSION ->
+                    compileMemberAccessExpression((BoundMemberAccessExpression) expression, target);
+            case INTERNAL_FUNCTION_EXPRESSION ->
+                    compileInternalFunctionExpression((BoundInternalFunctionExpression) expression, target);
+            case TYPE_EXPRESSION -> {
+                int destination = target(target);
+                emit(Opcode.LOAD_TYPE);
+                register(destination);
+                operand(reference(expression.getType()));
+                yield destination;
+            }
+            case ARRAY_ACCESS_EXPRESSION ->
+                    compileArrayAccessExpression((BoundArrayAccessExpression) expression, target);
+            case CONVERSION_EXPRESSION ->
+                    compileExpression(((BoundConversionExpression) expression).getExpression(), target);
+            case CONDITIONAL_EXPRESSION ->
+                    compileConditionalExpression((BoundConditionalExpression) expression, target);
+            case FIELD_ACCESS_EXPRESSION ->
+                    compileFieldAccessExpression((BoundFieldAccessExpression) expression, target);
+            case TYPE_CHECK_EXPRESSION ->
+                    compileTypeCheckExpression((BoundTypeCheckExpression) expression, target);
+            default -> {
+                fail("Unexpected expression: " + expression.getKind());
+                yield target(target);
+            }
+        };
+    }
+
+    /**
+     * Compiles an operand whose register is read after the following operands were evaluated.
+     * Variables are read in place unless one of the following operands assigns to a variable.
+     */
+    private int compileOperand(BoundExpression expression, BoundExpression... following) {
+        if (expression.getKind() == BoundNodeKind.VARIABLE_EXPRESSION) {
+            for (BoundExpression other : following) {
+                if (assigns(other)) {
+                    return compileExpression(expression, allocate());
+                }
+            }
+        }
+
+        return compileExpression(expression, ANY);
+    }
+
+    // evaluates the expressions in order into consecutive registers and returns the first one
+    private int compileArguments(List<BoundExpression> expressions) {
+        if (expressions.isEmpty()) {
+            return 0;
+        }
+
+        int first = allocate();
+        for (int i = 1; i < expressions.size(); i++) {
+            allocate();
+        }
+
+        for (int i = 0; i < expressions.size(); i++) {
+            compileExpression(expressions.get(i), first - i);
+        }
+
+        return first;
+    }
+
+    private int compileLiteralExpression(BoundLiteralExpression expression, int target) {
+        int destination = target(target);
+        emit(Opcode.LOAD_CONSTANT);
+        register(destination);
+        operand(constant(expression.getValue()));
+        return destination;
+    }
+
+    private int compileConditionalExpression(BoundConditionalExpression expression, int target) {
+        int destination = target(target);
+        int mark = temporaries;
+
+        int condition = compileExpression(expression.getCondition(), ANY);
+        emit(Opcode.JUMP_IF_FALSE);
+        register(condition);
+        int elseJump = size;
+        operand(0);
+        temporaries = mark;
+
+        compileExpression(expression.getThenExpression(), destination);
+        emit(Opcode.JUMP);
+        int endJump = size;
+        operand(0);
+        temporaries = mark;
+
+        code[elseJump] = size;
+        compileExpression(expression.getElseExpression(), destination);
+        code[endJump] = size;
+        temporaries = mark;
+
+        return destination;
+    }
+
+    private int compileArrayAccessExpression(BoundArrayAccessExpression expression, int target) {
+        int destination = target(target);
+        int mark = temporaries;
+
+        int array = compileOperand(expression.getTarget(), expression.getIndex());
+        int index = compileExpression(expression.getIndex(), ANY);
+
+        emit(Opcode.GET_ELEMENT);
+        register(destination);
+        register(array);
+        register(index);
+        operand(ArrayKind.of(expression.getType()).ordinal());
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private int compileArrayLiteralExpression(BoundArrayLiteralExpression expression, int target) {
+        int destination = target(target);
+        int mark = temporaries;
+
+        int first = compileArguments(expression.getElements());
+        if (metered) {
+            emit(Opcode.ALLOCATE);
+            operand(expression.getElements().size());
+        }
+        emit(Opcode.NEW_ARRAY);
+        register(destination);
+        register(first);
+        operand(expression.getElements().size());
+        operand(ArrayKind.ofElements(expression.getType()).ordinal());
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private int compileArrayCreationExpression(BoundArrayCreationExpression expression, int target) {
+        int destination = target(target);
+        int mark = temporaries;
+
+        List<BoundExpression> values = new ArrayList<>();
+        for (BoundExpression dimension : expression.getDimensions().keySet()) {
+            BoundExpression initializer = expression.getDimensions().get(dimension);
+            values.add(dimension);
+            values.add(initializer == null ? new BoundLiteralExpression(null, null, null) : initializer);
+        }
+
+        int first = compileArguments(values);
+        if (metered) {
+            emit(Opcode.ALLOCATE_ARRAY);
+            register(first);
+            operand(values.size() / 2);
+        }
+        emit(Opcode.NEW_MULTI_ARRAY);
+        register(destination);
+        register(first);
+        operand(values.size() / 2);
+        operand(ArrayKind.ofInnermost(expression.getType()).ordinal());
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private int compileFieldAccessExpression(BoundFieldAccessExpression expression, int target) {
+        int destination = target(target);
+        int mark = temporaries;
+
+        int value = compileExpression(expression.getTarget(), ANY);
+        emit(Opcode.GET_FIELD);
+        register(destination);
+        register(value);
+        operand(reference(expression.getField()));
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private int compileMemberAccessExpression(BoundMemberAccessExpression expression, int target) {
+        int destination = target(target);
+        int mark = temporaries;
+
+        int value = compileExpression(expression.getTarget(), ANY);
+        Symbol member = expression.getMember();
+
+        if (!(member instanceof FieldSymbol field)) {
+            fail("Unexpected member access expression: " + member.getKind());
+        } else if (expression.getTarget().getType() instanceof ArrayTypeSymbol && field.getName().equals("length")) {
+            emit(Opcode.ARRAY_LENGTH);
+            register(destination);
+            register(value);
+        } else {
+            emit(Opcode.GET_MEMBER);
+            register(destination);
+            register(value);
+            operand(reference(field));
+        }
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private int compileTypeCheckExpression(BoundTypeCheckExpression expression, int target) {
+        int destination = target(target);
+        int mark = temporaries;
+
+        int value = compileExpression(expression.getLeftExpression(), ANY);
+        emit(Opcode.TYPE_CHECK);
+        register(destination);
+        register(value);
+        operand(reference(expression.getRightType()));
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private int compileInternalFunctionExpression(BoundInternalFunctionExpression expression, int target) {
+        int destination = target(target);
+        IFunctionBase function = expression.getFunction();
+
+        if (expression.getArguments().size() != function.getParameters().size()) {
+            fail("Invalid number of arguments for function %s".formatted(function));
+            return destination;
+        }
+
+        boolean passThis = (function instanceof InternalFunction internalFunction && !internalFunction.isShared())
+                || function instanceof InternalBinaryOperator
+                || function instanceof InternalUnaryOperator;
+        String[] names = function.getParameters().stream().map(ParameterSymbol::getName).toArray(String[]::new);
+
+        int mark = temporaries;
+        int first = compileArguments(expression.getArguments());
+        emit(Opcode.CALL_INTERNAL);
+        register(destination);
+        operand(reference(new InternalCallSite(function.getFunctionBody(), names, passThis)));
+        register(first);
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private int compileUnaryExpression(BoundUnaryExpression expression, int target) {
+        int destination = target(target);
+        int mark = temporaries;
+
+        int operand = compileExpression(expression.getOperand(), ANY);
+
+        UnaryIntrinsic intrinsic = expression.getIntrinsic();
+        if (intrinsic != null) {
+            emit(Opcode.UNARY_INTRINSIC);
+            register(destination);
+            operand(intrinsic.ordinal());
+        } else {
+            emit(Opcode.UNARY_OPERATOR);
+            register(destination);
+            operand(reference(new OperatorSite(expression.getOperand().getType(), expression.getOperator(), null)));
+        }
+        register(operand);
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private int compileBinaryExpression(BoundBinaryExpression expression, int target) {
+        int destination = target(target);
+        int mark = temporaries;
+
+        int left = compileOperand(expression.getLeft(), expression.getRight());
+        int right = compileExpression(expression.getRight(), ANY);
+
+        BinaryIntrinsic intrinsic = expression.getIntrinsic();
+        if (intrinsic != null) {
+            emit(Opcode.BINARY_INTRINSIC);
+            register(destination);
+            operand(intrinsic.ordinal());
+        } else {
+            emit(Opcode.BINARY_OPERATOR);
+            register(destination);
+            operand(reference(new OperatorSite(expression.getLeft().getType(), expression.getOperator(), expression.getRight().getType())));
+        }
+        register(left);
+        register(right);
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private int compileAssignmentExpression(BoundAssignmentExpression expression, int target) {
+        BoundExpression assignmentTarget = expression.getTarget();
+
+        if (assignmentTarget instanceof BoundVariableExpression variableAccess) {
+            int variable = variable(variableAccess.getVariable());
+            compileExpression(expression.getExpression(), variable);
+            return move(target, variable);
+        }
+
+        int destination = target(target);
+        int mark = temporaries;
+
+        if (assignmentTarget instanceof BoundMemberAccessExpression memberAccess) {
+            int instance = compileOperand(memberAccess.getTarget(), expression.getExpression());
+            compileExpression(expression.getExpression(), destination);
+
+            emit(Opcode.SET_MEMBER);
+            register(instance);
+            operand(reference(memberAccess.getMember()));
+            register(destination);
+        } else if (assignmentTarget instanceof BoundArrayAccessExpression arrayAccess) {
+            int array = compileOperand(arrayAccess.getTarget(), arrayAccess.getIndex(), expression.getExpression());
+            int index = compileOperand(arrayAccess.getIndex(), expression.getExpression());
+            compileExpression(expression.getExpression(), destination);
+
+            emit(Opcode.SET_ELEMENT);
+            register(array);
+            register(index);
+            register(destination);
+            operand(ArrayKind.of(arrayAccess.getType()).ordinal());
+        } else {
+            fail("Invalid assignment target: " + assignmentTarget.getKind());
+        }
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private int compileInstanceCreationExpression(BoundInstanceCreationExpression expression, int target) {
+        int destination = target(target);
+        int mark = temporaries;
+
+        int first = compileArguments(expression.getArguments());
+        if (metered) {
+            emit(Opcode.ALLOCATE);
+            operand(1);
+        }
+        emit(Opcode.NEW_INSTANCE);
+        register(destination);
+        operand(reference(new InstanceSite(expression.getType(), expression.getArguments().size(), expression.getGenericTypes())));
+        register(first);
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private int compileFunctionCallExpression(BoundFunctionCallExpression expression, int target) {
+        int destination = target(target);
+        int mark = temporaries;
+
+        BoundExpression callee = expression.getCallee();
+        List<BoundExpression> arguments = expression.getArguments();
+
+        TypeSymbol builtinType = null;
+        int calleeRegister;
+        int first;
+
+        // calls on variables of builtin types evaluate the arguments before the callee
+        if (callee instanceof BoundVariableExpression variableExpression && Types.isBuiltinType(variableExpression.getVariable().getType())) {
+            builtinType = variableExpression.getVariable().getType();
+            first = compileArguments(arguments);
+            calleeRegister = compileExpression(callee, ANY);
+        } else {
+            calleeRegister = compileOperand(callee, arguments.toArray(BoundExpression[]::new));
+            first = compileArguments(arguments);
+        }
+
+        emit(Opcode.CALL);
+        register(destination);
+        operand(reference(new CallSite(expression.getFunction(), arguments.size(), builtinType)));
+        register(calleeRegister);
+        register(first);
+
+        temporaries = mark;
+        return destination;
+    }
+
+    private static boolean assigns(BoundExpression expression) {
+        if (expression == null) {
+            return false;
+        }
+
+        return switch (expression.getKind()) {
+            case ASSIGNMENT_EXPRESSION -> true;
+            case UNARY_EXPRESSION -> assigns(((BoundUnaryExpression) expression).getOperand());
+            case BINARY_EXPRESSION -> {
+                BoundBinaryExpression binary = (BoundBinaryExpression) expression;
+                yield assigns(binary.getLeft()) || assigns(binary.getRight());
+            }
+            case CONVERSION_EXPRESSION -> assigns(((BoundConversionExpression) expression).getExpression());
+            case CONDITIONAL_EXPRESSION -> {
+                BoundConditionalExpression conditional = (BoundConditionalExpression) expression;
+                yield assigns(conditional.getCondition()) || assigns(conditional.getThenExpression()) || assigns(conditional.getElseExpression());
+            }
+            case ARRAY_ACCESS_EXPRESSION -> {
+                BoundArrayAccessExpression arrayAccess = (BoundArrayAccessExpression) expression;
+                yield assigns(arrayAccess.getTarget()) || assigns(arrayAccess.getIndex());
+            }
+            case FIELD_ACCESS_EXPRESSION -> assigns(((BoundFieldAccessExpression) expression).getTarget());
+            case MEMBER_ACCESS_EXPRESSION -> assigns(((BoundMemberAccessExpression) expression).getTarget());
+            case TYPE_CHECK_EXPRESSION -> assigns(((BoundTypeCheckExpression) expression).getLeftExpression());
+            case FUNCTION_CALL_EXPRESSION -> {
+                BoundFunctionCallExpression call = (BoundFunctionCallExpression) expression;
+                yield assigns(call.getCallee()) || call.getArguments().stream().anyMatch(BytecodeCompiler::assigns);
+            }
+            case INSTANCE_CREATION_EXPRESSION ->
+                    ((BoundInstanceCreationExpression) expression).getArguments().stream().anyMatch(BytecodeCompiler::assigns);
+            case INTERNAL_FUNCTION_EXPRESSION ->
+                    ((BoundInternalFunctionExpression) expression).getArguments().stream().anyMatch(BytecodeCompiler::assigns);
+            case ARRAY_LITERAL_EXPRESSION ->
+                    ((BoundArrayLiteralExpression) expression).getElements().stream().anyMatch(BytecodeCompiler::assigns);
+            case ARRAY_CREATION_EXPRESSION -> {
+                BoundArrayCreationExpression creation = (BoundArrayCreationExpression) expression;
+                yield creation.getDimensions().keySet().stream().anyMatch(BytecodeCompiler::assigns)
+                        || creation.getDimensions().values().stream().anyMatch(BytecodeCompiler::assigns);
+            }
+            default -> false;
+        };
+    }
+
+    private int variable(VariableSymbol variable) {
+        variableCount = Math.max(variableCount, variable.getSlot() + 1);
+        return variable.getSlot();
+    }
+
+    // temporaries are encoded as negative registers until the body is linked
+    private int allocate() {
+        int temporary = temporaries++;
+        temporaryCount = Math.max(temporaryCount, temporaries);
+        return -temporary - 1;
+    }
+
+    private int target(int target) {
+        return target == ANY ? allocate() : target;
+    }
+
+    private int move(int target, int source) {
+        if (target == ANY || target == source) {
+            return source;
+        }
+
+        emit(Opcode.MOVE);
+        register(target);
+        register(source);
+        return target;
+    }
+
+    private void fail(String message) {
+        emit(Opcode.FAIL);
+        operand(constant(message));
+    }
+
+    private int constant(Object value) {
+        Integer index = constantIndices.get(value);
+        if (index == null) {
+            index = constants.size();
+            constants.add(value);
+            constantIndices.put(value, index);
+        }
+        return index;
+    }
+
+    private int reference(Object value) {
+        references.add(value);
+        return references.size() - 1;
+    }
+
+    private void emit(Opcode opcode) {
+        operand(opcode.ordinal());
+    }
+
+    private void register(int register) {
+        if (register < 0) {
+            temporaryOperands.add(size);
+        }
+        operand(register);
+    }
+
+    private void operand(int value) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = value;
+    }
+}
@@ -0,0 +1,623 @@
+package io.ra6.zephyr.runtime.bytecode;
+
+import io.ra6.zephyr.Tuple;
+import io.ra6.zephyr.builtin.BinaryIntrinsic;
+import io.ra6.zephyr.builtin.IFunctionBase;
+import io.ra6.zephyr.builtin.Types;
+import io.ra6.zephyr.builtin.UnaryIntrinsic;
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
+import io.ra6.zephyr.codeanalysis.symbols.*;
+import io.ra6.zephyr.runtime.*;
+import io.ra6.zephyr.runtime.Runtime;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Executes programs by compiling every lowered body once into a {@link Chunk} of register based bytecode
+ * and running it in a single dispatch loop. Chunks are compiled lazily on their first invocation, the
+ * references of a chunk are linked on their first execution. Registers are allocated per invocation and linked
+ * references are immutable, so many threads can execute the same chunks at once.
+ */
+@RequiredArgsConstructor
+public class BytecodeVM {
+    private static final BinaryIntrinsic[] BINARY_INTRINSICS = BinaryIntrinsic.values();
+    private static final UnaryIntrinsic[] UNARY_INTRINSICS = UnaryIntrinsic.values();
+
+    private final Runtime runtime;
+
+    private final IdentityHashMap<BoundBlockStatement, Chunk> chunks = new IdentityHashMap<>();
+    private final IdentityHashMap<BoundExpression, Chunk> initializers = new IdentityHashMap<>();
+
+    @Getter
+    private final ConcurrentHashMap<RuntimeType, HashMap<String, RuntimeType>> genericTypes = new ConcurrentHashMap<>();
+
+    public Object evaluateFunctionWithEvaluatedArgs(BoundProgramScope program, RuntimeType type, FunctionSymbol function, Object thisValue, Object[] arguments) {
+        Chunk chunk = compile(program, type.getFunctionBody(function), function.getParameters().size());
+        try {
+            return invoke(chunk, thisValue, arguments, 0, arguments.length);
+        } catch (StackOverflowError | CallStackOverflowException e) {
+            throw CallStackOverflowException.unwind(e, "function", function.getName());
+        }
+    }
+
+    // shared fields are initialized by the runtime when it links the program
+    public RuntimeType getRuntimeType(BoundProgramScope program, TypeSymbol type) {
+        return runtime.getRuntimeType(program, type);
+    }
+
+    // Bodies of imported types are executed in the context of the program that declares them
+    private BoundProgramScope getContext(BoundProgramScope program, TypeSymbol type) {
+        if (!program.isTypeImported(type)) {
+            return program;
+        }
+
+        RegisteredProgram declaringProgram = runtime.findProgram(type);
+        if (declaringProgram == null) {
+            throw new RuntimeException("Cannot find program declaring type '%s'".formatted(type.getName()));
+        }
+        return declaringProgram.getProgram();
+    }
+
+    private RuntimeType resolveRuntimeType(BoundProgramScope program, TypeSymbol type) {
+        return getRuntimeType(getContext(program, type), type);
+    }
+
+    // compiled lazily by the threads running the program, the caches are guarded by the VM
+    public synchronized Chunk compile(BoundProgramScope program, BoundBlockStatement body, int parameterCount) {
+        Chunk chunk = chunks.get(body);
+        if (chunk == null) {
+            chunk = new BytecodeCompiler(program, parameterCount, runtime.isMetered(), runtime.getProfiler()).compileBody(body);
+            chunks.put(body, chunk);
+        }
+        return chunk;
+    }
+
+    private synchronized Chunk compileInitializer(BoundProgramScope program, BoundExpression initializer) {
+        Chunk chunk = initializers.get(initializer);
+        if (chunk == null) {
+            chunk = new BytecodeCompiler(program, 0, runtime.isMetered(), runtime.getProfiler()).compileInitializer(initializer);
+            initializers.put(initializer, chunk);
+        }
+        return chunk;
+    }
+
+    private Object evaluateInitializer(Chunk initializer) {
+        return execute(initializer, new Object[initializer.getRegisterCount()]);
+    }
+
+    private Object invoke(Chunk chunk, Object thisValue, Object[] arguments, int first, int count) {
+        if (chunk.getInternal() != null) {
+            return chunk.getInternal().call(thisValue, Arrays.copyOfRange(arguments, first, first + count));
+        }
+
+        Object[] registers = new Object[chunk.getRegisterCount()];
+        registers[VariableSymbol.THIS_SLOT] = thisValue;
+        System.arraycopy(arguments, first, registers, VariableSymbol.getParameterSlot(0), count);
+
+        if (chunk.getFunction() != null) {
+            CallRecorder recorder = CallRecorder.current();
+            recorder.enter(chunk.getFunction());
+            Object result = execute(chunk, registers);
+            recorder.exit();
+            return result;
+        }
+
+        return execute(chunk, registers);
+    }
+
+    private Object execute(Chunk chunk, Object[] registers) {
+        int[] code = chunk.getCode();
+        Object[] constants = chunk.getConstants();
+        int pc = 0;
+
+        while (true) {
+            switch (Opcode.VALUES[code[pc]]) {
+                case LOAD_CONSTANT -> {
+                    registers[code[pc + 1]] = constants[code[pc + 2]];
+                    pc += 3;
+                }
+                case MOVE -> {
+                    registers[code[pc + 1]] = registers[code[pc + 2]];
+                    pc += 3;
+                }
+                case LOAD_THIS -> {
+                    Object value = registers[VariableSymbol.THIS_SLOT];
+                    if (value == null) {
+                        throw new RuntimeException("No this variable found.");
+                    }
+                    registers[code[pc + 1]] = value;
+                    pc += 2;
+                }
+                case LOAD_TYPE -> {
+                    registers[code[pc + 1]] = linkType(chunk, code[pc + 2]);
+                    pc += 3;
+                }
+                case GET_FIELD -> {
+                    registers[code[pc + 1]] = getField(chunk, code[pc + 3], registers[code[pc + 2]]);
+                    pc += 4;
+                }
+                case GET_MEMBER -> {
+                    registers[code[pc + 1]] = getMember(chunk, code[pc + 3], registers[code[pc + 2]]);
+                    pc += 4;
+                }
+                case SET_MEMBER -> {
+                    setMember(chunk, code[pc + 2], registers[code[pc + 1]], registers[code[pc + 3]]);
+                    pc += 4;
+                }
+                case ARRAY_LENGTH -> {
+                    Object array = registers[code[pc + 2]];
+                    registers[code[pc + 1]] = ArrayKind.ofArray(array).length(array);
+                    pc += 3;
+                }
+                case GET_ELEMENT -> {
+                    registers[code[pc + 1]] = getElement(registers[code[pc + 2]], registers[code[pc + 3]], ArrayKind.fromOrdinal(code[pc + 4]));
+                    pc += 5;
+                }
+                case SET_ELEMENT -> {
+                    setElement(registers[code[pc + 1]], registers[code[pc + 2]], registers[code[pc + 3]], ArrayKind.fromOrdinal(code[pc + 4]));
+                    pc += 5;
+                }
+                case NEW_ARRAY -> {
+                    int first = code[pc + 2];
+                    Object[] elements = Arrays.copyOfRange(registers, first, first + code[pc + 3]);
+                    registers[code[pc + 1]] = ArrayKind.fromOrdinal(code[pc + 4]).create(elements);
+                    pc += 5;
+                }
+                case NEW_MULTI_ARRAY -> {
+                    registers[code[pc + 1]] = createArray(registers, code[pc + 2], code[pc + 3], ArrayKind.fromOrdinal(code[pc + 4]));
+                    pc += 5;
+                }
+                case TYPE_CHECK -> {
+                    registers[code[pc + 1]] = checkType(chunk, registers, registers[code[pc + 2]], (TypeSymbol) chunk.getReferences()[code[pc + 3]]);
+                    pc += 4;
+                }
+                case UNARY_INTRINSIC -> {
+                    registers[code[pc + 1]] = UNARY_INTRINSICS[code[pc + 2]].evaluate(registers[code[pc + 3]]);
+                    pc += 4;
+                }
+                case BINARY_INTRINSIC -> {
+                    registers[code[pc + 1]] = BINARY_INTRINSICS[code[pc + 2]].evaluate(registers[code[pc + 3]], registers[code[pc + 4]]);
+                    pc += 5;
+                }
+                case UNARY_OPERATOR -> {
+                    Chunk operator = linkUnaryOperator(chunk, code[pc + 2]);
+                    registers[code[pc + 1]] = invoke(operator, registers[code[pc + 3]], registers, 0, 0);
+                    pc += 4;
+                }
+                case BINARY_OPERATOR -> {
+                    Chunk operator = linkBinaryOperator(chunk, code[pc + 2]);
+                    registers[code[pc + 1]] = invoke(operator, registers[code[pc + 3]], registers, code[pc + 4], 1);
+                    pc += 5;
+                }
+                case CALL_INTERNAL -> {
+                    registers[code[pc + 1]] = callInternal((InternalCallSite) chunk.getReferences()[code[pc + 2]], registers, code[pc + 3]);
+                    pc += 4;
+                }
+                case CALL -> {
+                    registers[code[pc + 1]] = call(chunk, code[pc + 2], registers, registers[code[pc + 3]], code[pc + 4]);
+                    pc += 5;
+                }
+                case NEW_INSTANCE -> {
+                    registers[code[pc + 1]] = createInstance(chunk, code[pc + 2], registers, code[pc + 3]);
+                    pc += 4;
+                }
+                case JUMP -> pc = code[pc + 1];
+                case JUMP_IF_TRUE -> pc = (boolean) registers[code[pc + 1]] ? code[pc + 2] : pc + 3;
+                case JUMP_IF_FALSE -> pc = (boolean) registers[code[pc + 1]] ? pc + 3 : code[pc + 2];
+                case RETURN -> {
+                    return registers[code[pc + 1]];
+                }
+                case RETURN_VOID -> {
+                    return null;
+                }
+                case FAIL -> throw new RuntimeException((String) constants[code[pc + 1]]);
+                case STEP -> {
+                    ExecutionBudget.current().step();
+                    pc += 1;
+                }
+                case ALLOCATE -> {
+                    ExecutionBudget.current().allocate(code[pc + 1]);
+                    pc += 2;
+                }
+                case ALLOCATE_ARRAY -> {
+                    ExecutionBudget.current().allocateArray(getDimensions(registers, code[pc + 1], code[pc + 2]));
+                    pc += 3;
+                }
+                case LINE -> {
+                    CallRecorder.current().line((BoundStatement) chunk.getReferences()[code[pc + 1]]);
+                    pc += 2;
+                }
+            }
+        }
+    }
+
+    private RuntimeType linkType(Chunk chunk, int reference) {
+        RuntimeType runtimeType = (RuntimeType) chunk.caches[reference];
+        if (runtimeType == null) {
+            runtimeType = resolveRuntimeType(chunk.getProgram(), (TypeSymbol) chunk.getReferences()[reference]);
+            chunk.caches[reference] = runtimeType;
+        }
+        return runtimeType;
+    }
+
+    private Chunk linkUnaryOperator(Chunk chunk, int reference) {
+        Chunk operator = (Chunk) chunk.caches[reference];
+        if (operator == null) {
+            OperatorSite site = (OperatorSite) chunk.getReferences()[reference];
+            RuntimeType runtimeType = runtime.findRuntimeType(site.leftType());
+            UnaryOperatorSymbol unaryOperator = runtimeType.getUnaryOperator(site.operator());
+
+            if (unaryOperator == null)
+                throw new RuntimeException("No unary operator " + site.operator() + " found for type " + runtimeType.getName());
+
+            operator = compile(chunk.getProgram(), runtimeType.getScope().getUnaryOperatorBody(unaryOperator), 0);
+            chunk.caches[reference] = operator;
+        }
+        return operator;
+    }
+
+    private Chunk linkBinaryOperator(Chunk chunk, int reference) {
+        Chunk operator = (Chunk) chunk.caches[reference];
+        if (operator == null) {
+            OperatorSite site = (OperatorSite) chunk.getReferences()[reference];
+            RuntimeType leftRuntimeType = runtime.findRuntimeType(site.leftType());
+            RuntimeType rightRuntimeType = runtime.findRuntimeType(site.rightType());
+            BinaryOperatorSymbol binaryOperator = leftRuntimeType.getBinaryOperator(site.operator(), rightRuntimeType);
+
+            if (binaryOperator == null)
+                throw new RuntimeException("No binary operator " + site.operator() + " found for types " + leftRuntimeType.getName() + " and " + rightRuntimeType.getName());
+
+            operator = compile(chunk.getProgram(), leftRuntimeType.getScope().getBinaryOperatorBody(binaryOperator), 1);
+            chunk.caches[reference] = operator;
+        }
+        return operator;
+    }
+
+    private static FieldSite linkField(Chunk chunk, int reference) {
+        FieldSite site = (FieldSite) chunk.caches[reference];
+        if (site == null) {
+            site = new FieldSite((Symbol) chunk.getReferences()[reference]);
+            chunk.caches[reference] = site;
+        }
+        return site;
+    }
+
+    private static Object getField(Chunk chunk, int reference, Object value) {
+        FieldSymbol field = (FieldSymbol) chunk.getReferences()[reference];
+        if (value instanceof TypeInstance instance) {
+            if (field.isShared()) {
+                return linkField(chunk, reference).get(instance.getRuntimeType());
+            }
+            return linkField(chunk, reference).get(instance);
+        }
+
+        if (value instanceof RuntimeType type) {
+            if (!field.isShared()) {
+                throw new RuntimeException("Cannot access instance field on type");
+            }
+
+            if (!type.getType().isField(field.getName())) {
+                throw new RuntimeException("Type does not contain field " + field.getName());
+            }
+
+            return linkField(chunk, reference).get(type);
+        }
+
+        throw new RuntimeException("Unexpected target for field access: " + value);
+    }
+
+    private static Object getMember(Chunk chunk, int reference, Object value) {
+        FieldSymbol field = (FieldSymbol) chunk.getReferences()[reference];
+        if (value instanceof RuntimeType type) {
+            return linkField(chunk, reference).get(type);
+        }
+
+        if (!(value instanceof TypeInstance instance)) {
+            throw new RuntimeException("Cannot access member of non-instance");
+        }
+
+        return linkField(chunk, reference).get(instance);
+    }
+
+    private static void setMember(Chunk chunk, int reference, Object target, Object value) {
+        Symbol member = (Symbol) chunk.getReferences()[reference];
+        if (target instanceof TypeInstance instance) {
+            linkField(chunk, reference).set(instance, value);
+            return;
+        }
+
+        if (!(target instanceof RuntimeType type) || !(member instanceof FieldSymbol)) {
+            throw new RuntimeException("Cannot access member of non-instance");
+        }
+
+        linkField(chunk, reference).set(type, value);
+    }
+
+    // Registers hold boxed values, but the static element kind selects the typed accessor, so the element itself is
+    // read and written without going through the generic get and set of the array kind.
+
+    private static Object getElement(Object array, Object index, ArrayKind elementKind) {
+        ArrayKind kind = ArrayKind.ofArray(array);
+        if (kind == null) {
+            throw new RuntimeException("Cannot access array element of non-array");
+        }
+
+        if (!(index instanceof Integer i)) {
+            throw new RuntimeException("Cannot access array element with non-integer index");
+        }
+
+        if (i < 0 || i >= kind.length(array)) {
+            throw new RuntimeException("Array index out of bounds");
+        }
+
+        return switch (elementKind) {
+            case INT -> kind.getInt(array, i);
+            case DOUBLE -> kind.getDouble(array, i);
+            case CHAR -> kind.getChar(array, i);
+            case BOOL -> kind.getBool(array, i);
+            case OBJECT -> kind.get(array, i);
+        };
+    }
+
+    private static void setElement(Object array, Object index, Object value, ArrayKind elementKind) {
+        ArrayKind kind = ArrayKind.ofArray(array);
+        if (kind == null) {
+            throw new RuntimeException("Cannot access element of non-array");
+        }
+
+        if (!(index instanceof Integer i)) {
+            throw new RuntimeException("Array index must be an integer");
+        }
+
+        if (i < 0 || i >= kind.length(array)) {
+            throw new RuntimeException("Array index out of bounds");
+        }
+
+        switch (elementKind) {
+            case INT -> kind.setInt(array, i, (int) value);
+            // conversions are not evaluated, an int may be assigned to a double element
+            case DOUBLE -> kind.setDouble(array, i, ((Number) value).doubleValue());
+            case CHAR -> kind.setChar(array, i, (char) value);
+            case BOOL -> kind.setBool(array, i, (boolean) value);
+            case OBJECT -> kind.set(array, i, value);
+        }
+    }
+
+    private static Object createArray(Object[] registers, int first, int count, ArrayKind kind) {
+        List<Tuple<Integer, Object>> dimensions = getDimensions(registers, first, count);
+        return ProgramInterpreter.createMultiDimensionalArray(dimensions, dimensions.size(), kind);
+    }
+
+    private static List<Tuple<Integer, Object>> getDimensions(Object[] registers, int first, int count) {
+        List<Tuple<Integer, Object>> dimensions = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            Object value = registers[first + 2 * i];
+
+            if (!(value instanceof Integer valueInt)) {
+                throw new RuntimeException("Array dimension must be an integer");
+            }
+
+            if (valueInt < 0) {
+                throw new RuntimeException("Array dimension must be positive");
+            }
+
+            dimensions.add(new Tuple<>(valueInt, registers[first + 2 * i + 1]));
+        }
+
+        return dimensions;
+    }
+
+    private Object checkType(Chunk chunk, Object[] registers, Object value, TypeSymbol rightType) {
+        if (value instanceof TypeInstance instance) {
+            return instance.getRuntimeType().isAssignableTo(resolveRuntimeType(chunk.getProgram(), rightType));
+        }
+
+        if (value instanceof RuntimeType type) {
+            RuntimeType resolvedType = null;
+            if (rightType.isGeneric()) {
+                resolvedType = genericTypes.get(type).get(rightType.getName());
+            }
+
+            if (resolvedType == null) resolvedType = resolveRuntimeType(chunk.getProgram(), rightType);
+
+            return type.isAssignableTo(resolvedType);
+        }
+
+        if (Types.isValidLiteralType(value.getClass())) {
+            TypeSymbol literalType = Types.getLiteralType(value.getClass());
+
+            if (!rightType.isGeneric()) {
+                return literalType.isAssignableTo(rightType);
+            }
+
+            if (!(registers[VariableSymbol.THIS_SLOT] instanceof TypeInstance thisType)) {
+                throw new RuntimeException("Cannot find 'this' in type check expression");
+            }
+
+            RuntimeType genericType = genericTypes.get(thisType.getRuntimeType()).get(rightType.getName());
+            return literalType.isAssignableTo(genericType.getType());
+        }
+
+        throw new RuntimeException("Unexpected type for type check expression '%s'".formatted(value.getClass().getSimpleName()));
+    }
+
+    private static Object callInternal(InternalCallSite site, Object[] registers, int first) {
+        HashMap<String, Object> values = new HashMap<>();
+
+        if (site.passThis()) {
+            values.put(IFunctionBase.PARAM_THIS, registers[VariableSymbol.THIS_SLOT]);
+        }
+
+        String[] names = site.parameterNames();
+        for (int i = 0; i < names.length; i++) {
+            values.put(names[i], registers[first + i]);
+        }
+
+        return site.body().call(values);
+    }
+
+    private Object call(Chunk chunk, int reference, Object[] registers, Object callee, int first) {
+        try {
+            return callFunction(chunk, reference, registers, callee, first);
+        } catch (StackOverflowError | CallStackOverflowException e) {
+            CallSite site = (CallSite) chunk.getReferences()[reference];
+            throw CallStackOverflowException.unwind(e, "function", site.function().getName());
+        }
+    }
+
+    private Object callFunction(Chunk chunk, int reference, Object[] registers, Object callee, int first) {
+        CallSite site = (CallSite) chunk.getReferences()[reference];
+        FunctionSymbol function = site.function();
+        int count = site.argumentCount();
+
+        if (site.builtinType() != null) {
+            Chunk body = (Chunk) chunk.caches[reference];
+            if (body == null) {
+                body = compile(chunk.getProgram(), runtime.findRuntimeType(site.builtinType()).getScope().getFunctionBody(function), count);
+                chunk.caches[reference] = body;
+            }
+            return invoke(body, callee, registers, first, count);
+        }
+
+        if (callee instanceof TypeInstance instance) {
+            if (function.isShared()) {
+                throw new RuntimeException("Cannot call shared function '%s' on instance of type '%s'".formatted(function.getName(), instance.getRuntimeType().getName()));
+            }
+
+            Object result = invoke(resolve(chunk, reference, instance.getRuntimeType()), instance, registers, first, count);
+            return function.getType().equals(Types.VOID) ? null : result;
+        }
+
+        if (callee instanceof RuntimeType type) {
+            if (!function.isShared()) {
+                throw new RuntimeException("Cannot call non-shared function '%s' on type '%s'".formatted(function.getName(), type.getName()));
+            }
+
+            return invoke(resolve(chunk, reference, type), null, registers, first, count);
+        }
+
+        if (Types.isValidLiteralType(callee.getClass())) {
+            Class<?> literalClass = callee.getClass();
+            InlineCache<Chunk> bodies = getBodies(chunk, reference);
+            Chunk body = bodies.get(literalClass);
+            if (body == null) {
+                RuntimeType type = runtime.findRuntimeType(Types.getLiteralType(literalClass));
+                body = compile(chunk.getProgram(), type.getScope().getFunctionBody(function), count);
+                bodies.put(literalClass, body);
+            }
+            return invoke(body, callee, registers, first, count);
+        }
+
+        ArrayKind arrayKind = ArrayKind.ofArray(callee);
+        if (arrayKind != null) {
+            if (function.getName().equals("copy") || function.getName().equals("clone")) {
+                return arrayKind.copy(callee);
+            }
+
+            throw new RuntimeException("Cannot call function '%s' on array".formatted(function.getName()));
+        }
+
+        throw new RuntimeException("Cannot call function '%s' on value of type '%s'".formatted(function.getName(), callee.getClass().getName()));
+    }
+
+    private Chunk resolve(Chunk chunk, int reference, RuntimeType type) {
+        InlineCache<Chunk> bodies = getBodies(chunk, reference);
+        Chunk body = bodies.get(type);
+        if (body == null) {
+            CallSite site = (CallSite) chunk.getReferences()[reference];
+            BoundProgramScope context = getContext(chunk.getProgram(), type.getType());
+            body = compile(context, type.getScope().getFunctionBody(site.function()), site.argumentCount());
+            bodies.put(type, body);
+        }
+        return body;
+    }
+
+    // The bodies a call site resolved to, per receiver type
+    @SuppressWarnings("unchecked")
+    private static InlineCache<Chunk> getBodies(Chunk chunk, int reference) {
+        InlineCache<Chunk> bodies = (InlineCache<Chunk>) chunk.caches[reference];
+        if (bodies == null) {
+            bodies = new InlineCache<>();
+            chunk.caches[reference] = bodies;
+        }
+        return bodies;
+    }
+
+    // Everything instance creation needs from the bound tree, resolved on the first execution of the site
+    private record InstanceLink(BoundProgramScope context, RuntimeType runtimeType, Chunk[] initializers, Chunk constructor) {
+    }
+
+    private InstanceLink linkInstance(Chunk chunk, int reference) {
+        InstanceLink link = (InstanceLink) chunk.caches[reference];
+        if (link != null) {
+            return link;
+        }
+
+        InstanceSite site = (InstanceSite) chunk.getReferences()[reference];
+        TypeSymbol type = site.type();
+
+        BoundProgramScope context = getContext(chunk.getProgram(), type);
+        RuntimeType runtimeType = getRuntimeType(context, type);
+
+        BoundTypeScope scope = runtimeType.getScope();
+        FieldSymbol[] fields = runtimeType.getShape().getFields();
+        Chunk[] initializers = new Chunk[fields.length];
+
+        for (int i = 0; i < fields.length; i++) {
+            BoundExpression initializer = scope.getFieldInitializer(fields[i]);
+            initializers[i] = initializer == null ? null : compileInitializer(context, initializer);
+        }
+
+        ConstructorSymbol constructorSymbol = type.getConstructor(site.argumentCount());
+        Chunk constructor = compile(context, scope.getConstructorBody(constructorSymbol), site.argumentCount());
+
+        link = new InstanceLink(context, runtimeType, initializers, constructor);
+        chunk.caches[reference] = link;
+        return link;
+    }
+
+    private TypeInstance createInstance(Chunk chunk, int reference, Object[] registers, int first) {
+        InstanceSite site = (InstanceSite) chunk.getReferences()[reference];
+        InstanceLink link = linkInstance(chunk, reference);
+
+        Object[] instanceFields = new Object[link.initializers().length];
+        for (int i = 0; i < instanceFields.length; i++) {
+            instanceFields[i] = link.initializers()[i] == null ? null : evaluateInitializer(link.initializers()[i]);
+        }
+
+        HashMap<String, RuntimeType> instanceGenericTypes = new HashMap<>();
+        if (link.runtimeType().hasGenerics()) {
+            for (String key : site.genericTypes().keySet()) {
+                TypeSymbol genericType = site.genericTypes().get(key);
+
+                if (link.context().isTypeImported(genericType)) {
+                    instanceGenericTypes.put(key, runtime.findRuntimeType(genericType));
+                } else {
+                    instanceGenericTypes.put(key, getRuntimeType(link.context(), genericType));
+                }
+            }
+        }
+
+        TypeInstance instance = link.runtimeType().createInstance(instanceFields, instanceGenericTypes);
+        genericTypes.putIfAbsent(link.runtimeType(), instanceGenericTypes);
+
+        try {
+            invoke(link.constructor(), instance, registers, first, site.argumentCount());
+        } catch (StackOverflowError | CallStackOverflowException e) {
+            throw CallStackOverflowException.unwind(e, "constructor", link.runtimeType().getName());
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,8 @@
+package io.ra6.zephyr.runtime.bytecode;
+
+import io.ra6.zephyr.codeanalysis.symbols.FunctionSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+
+// builtinType is set when the callee is a variable of a builtin type, the body is then looked up statically
+record CallSite(FunctionSymbol function, int argumentCount, TypeSymbol builtinType) {
+}
@@ -0,0 +1,63 @@
+package io.ra6.zephyr.runtime.bytecode;
+
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.runtime.InternalCall;
+import io.ra6.zephyr.runtime.ProfiledFunction;
+import lombok.Getter;
+
+/**
+ * A compiled body: a flat instruction stream together with the pools its operands refer to.
+ * Constants are plain literal values, references are the symbols and call sites the instructions
+ * need to link against. The results of linking are kept in a cache slot per reference.
+ */
+@Getter
+public class Chunk {
+    private final BoundProgramScope program;
+    private final int[] code;
+    private final Object[] constants;
+    private final Object[] references;
+    private final int registerCount;
+    // set if the body only forwards to an internal function, which is then called without registers
+    private final InternalCall internal;
+    // set if the runtime is profiled
+    private final ProfiledFunction function;
+
+    final Object[] caches;
+
+    public Chunk(BoundProgramScope program, int[] code, Object[] constants, Object[] references, int registerCount, InternalCall internal, ProfiledFunction function) {
+        this.program = program;
+        this.code = code;
+        this.constants = constants;
+        this.references = references;
+        this.registerCount = registerCount;
+        this.internal = internal;
+        this.function = function;
+        this.caches = new Object[references.length];
+    }
+
+    public String disassemble() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("registers: ").append(registerCount).append(System.lineSeparator());
+
+        int offset = 0;
+        while (offset < code.length) {
+            Opcode opcode = Opcode.VALUES[code[offset]];
+            builder.append("%04d %-16s".formatted(offset, opcode));
+
+            for (int i = 1; i <= opcode.getOperandCount(); i++) {
+                builder.append(' ').append(code[offset + i]);
+            }
+
+            if (opcode == Opcode.LOAD_CONSTANT) {
+                builder.append("    ; ").append(constants[code[offset + 2]]);
+            } else if (opcode == Opcode.FAIL) {
+                builder.append("    ; ").append(constants[code[offset + 1]]);
+            }
+
+            builder.append(System.lineSeparator());
+            offset += opcode.getSize();
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,8 @@
+package io.ra6.zephyr.runtime.bytecode;
+
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+
+import java.util.HashMap;
+
+record InstanceSite(TypeSymbol type, int argumentCount, HashMap<String, TypeSymbol> genericTypes) {
+}
@@ -0,0 +1,6 @@
+package io.ra6.zephyr.runtime.bytecode;
+
+import io.ra6.zephyr.builtin.ICallable;
+
+record InternalCallSite(ICallable body, String[] parameterNames, boolean passThis) {
+}
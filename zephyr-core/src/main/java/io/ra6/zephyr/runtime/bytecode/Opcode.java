@@ -0,0 +1,91 @@
+package io.ra6.zephyr.runtime.bytecode;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Instructions of the register based bytecode. An instruction is encoded as the ordinal of its opcode
+ * followed by its int operands. Registers index into the frame of the executing {@link Chunk},
+ * constants into its constant pool and references into its reference pool.
+ */
+@RequiredArgsConstructor
+public enum Opcode {
+    // destination, constant
+    LOAD_CONSTANT(2),
+    // destination, source
+    MOVE(2),
+    // destination
+    LOAD_THIS(1),
+    // destination, reference (type)
+    LOAD_TYPE(2),
+
+    // destination, target, reference (field)
+    GET_FIELD(3),
+    // destination, target, reference (field)
+    GET_MEMBER(3),
+    // target, reference (member), value
+    SET_MEMBER(3),
+
+    // destination, array
+    ARRAY_LENGTH(2),
+    // destination, array, index, array kind of the static element type
+    GET_ELEMENT(4),
+    // array, index, value, array kind of the static element type
+    SET_ELEMENT(4),
+    // destination, first element, element count, array kind
+    NEW_ARRAY(4),
+    // destination, first dimension, dimension count, array kind of the innermost arrays;
+    // every dimension uses a size and an initializer register
+    NEW_MULTI_ARRAY(4),
+
+    // destination, value, reference (type)
+    TYPE_CHECK(3),
+
+    // destination, intrinsic, operand
+    UNARY_INTRINSIC(3),
+    // destination, intrinsic, left, right
+    BINARY_INTRINSIC(4),
+    // destination, reference (operator site), operand
+    UNARY_OPERATOR(3),
+    // destination, reference (operator site), left, right
+    BINARY_OPERATOR(4),
+
+    // destination, reference (internal call site), first argument
+    CALL_INTERNAL(3),
+    // destination, reference (call site), callee, first argument
+    CALL(4),
+    // destination, reference (instance site), first argument
+    NEW_INSTANCE(3),
+
+    // target
+    JUMP(1),
+    // condition, target
+    JUMP_IF_TRUE(2),
+    // condition, target
+    JUMP_IF_FALSE(2),
+    // value
+    RETURN(1),
+    RETURN_VOID(0),
+    // constant (message)
+    FAIL(1),
+
+    // metering, only emitted for metered runtimes, see ExecutionBudget
+    STEP(0),
+    // count
+    ALLOCATE(1),
+    // first dimension, dimension count; the dimensions use the registers of NEW_MULTI_ARRAY
+    ALLOCATE_ARRAY(2),
+
+    // profiling, only emitted if the profiler samples lines, see Profiler
+    // reference (statement)
+    LINE(1);
+
+    static final Opcode[] VALUES = values();
+
+    @Getter
+    private final int operandCount;
+
+    public int getSize() {
+        return operandCount + 1;
+    }
+}
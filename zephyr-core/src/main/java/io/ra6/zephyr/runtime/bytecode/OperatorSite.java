@@ -0,0 +1,7 @@
+package io.ra6.zephyr.runtime.bytecode;
+
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+
+// rightType is null for unary operators
+record OperatorSite(TypeSymbol leftType, String operator, TypeSymbol rightType) {
+}
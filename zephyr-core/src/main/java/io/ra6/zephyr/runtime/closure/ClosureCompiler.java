@@ -0,0 +1,1040 @@
+package io.ra6.zephyr.runtime.closure;
+
+import io.ra6.zephyr.Tuple;
+import io.ra6.zephyr.builtin.*;
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.BoundLabel;
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.binding.BoundTypeCheckExpression;
+import io.ra6.zephyr.codeanalysis.binding.expressions.*;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundTypeScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.*;
+import io.ra6.zephyr.codeanalysis.symbols.*;
+import io.ra6.zephyr.runtime.ArrayKind;
+import io.ra6.zephyr.runtime.CallStackOverflowException;
+import io.ra6.zephyr.runtime.ExecutionBudget;
+import io.ra6.zephyr.runtime.FieldSite;
+import io.ra6.zephyr.runtime.InlineCache;
+import io.ra6.zephyr.runtime.InternalCall;
+import io.ra6.zephyr.runtime.Profiler;
+import io.ra6.zephyr.runtime.ProgramInterpreter;
+import io.ra6.zephyr.runtime.Runtime;
+import io.ra6.zephyr.runtime.RuntimeType;
+import io.ra6.zephyr.runtime.TypeInstance;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Converts lowered bodies into trees of {@link ExpressionNode}s and {@link StatementNode}s.
+ * Everything that only depends on the bound tree (slots, jump targets, operator bodies, callee types)
+ * is resolved here or on the first execution of a node, so executing a node never looks at the bound tree again.
+ */
+@RequiredArgsConstructor
+class ClosureCompiler {
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private final ClosureEngine engine;
+    private final Runtime runtime;
+    private final BoundProgramScope program;
+
+    private int frameSize = VariableSymbol.THIS_SLOT + 1;
+
+    CompiledBody compileBody(BoundBlockStatement body) {
+        List<BoundStatement> statements = body.getStatements();
+        StatementNode[] nodes = new StatementNode[statements.size()];
+
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compileStatement(statements.get(i), i);
+        }
+
+        // entering a body is a step of the budget, metering is only compiled into bodies of metered runtimes
+        if (runtime.isMetered() && nodes.length > 0) {
+            StatementNode first = nodes[0];
+            nodes[0] = frame -> {
+                ExecutionBudget.current().step();
+                return first.execute(frame);
+            };
+        }
+
+        Profiler profiler = runtime.getProfiler();
+        if (profiler == null) {
+            return new CompiledBody(nodes, frameSize, InternalCall.of(body), null, null);
+        }
+
+        BoundStatement[] lines = profiler.isSamplingLines() ? statements.toArray(BoundStatement[]::new) : null;
+        return new CompiledBody(nodes, frameSize, InternalCall.of(body), profiler.getFunction(body), lines);
+    }
+
+    private StatementNode compileStatement(BoundStatement statement, int index) {
+        int next = index + 1;
+
+        return switch (statement.getKind()) {
+            case VARIABLE_DECLARATION -> {
+                BoundVariableDeclaration declaration = (BoundVariableDeclaration) statement;
+                int slot = useSlot(declaration.getVariableSymbol().getSlot());
+                ExpressionNode initializer = compileExpression(declaration.getInitializer());
+                yield frame -> {
+                    frame.store(slot, initializer.execute(frame));
+                    return next;
+                };
+            }
+            case EXPRESSION_STATEMENT -> {
+                ExpressionNode expression = compileExpression(((BoundExpressionStatement) statement).getExpression());
+                yield frame -> {
+                    expression.executeVoid(frame);
+                    return next;
+                };
+            }
+            case GOTO_STATEMENT -> {
+                BoundGotoStatement gotoStatement = (BoundGotoStatement) statement;
+                int target = gotoStatement.getTargetIndex();
+                BoundLabel label = gotoStatement.getLabel();
+                if (runtime.isMetered() && target >= 0 && target <= index) {
+                    yield frame -> {
+                        ExecutionBudget.current().step();
+                        return target;
+                    };
+                }
+                yield frame -> getJumpTarget(target, label);
+            }
+            case CONDITIONAL_GOTO_STATEMENT -> {
+                BoundConditionalGotoStatement conditionalGoto = (BoundConditionalGotoStatement) statement;
+                ExpressionNode condition = compileExpression(conditionalGoto.getCondition());
+                boolean jumpIfTrue = conditionalGoto.jumpIfTrue();
+                int target = conditionalGoto.getTargetIndex();
+                BoundLabel label = conditionalGoto.getLabel();
+                if (runtime.isMetered() && target >= 0 && target <= index) {
+                    yield frame -> {
+                        if (condition.executeBool(frame) != jumpIfTrue) {
+                            return next;
+                        }
+                        ExecutionBudget.current().step();
+                        return target;
+                    };
+                }
+                yield frame -> condition.executeBool(frame) == jumpIfTrue ? getJumpTarget(target, label) : next;
+            }
+            case LABEL_STATEMENT -> frame -> next;
+            case RETURN_STATEMENT -> {
+                BoundExpression expression = ((BoundReturnStatement) statement).getExpression();
+                if (expression == null) {
+                    yield frame -> {
+                        frame.setReturnValue(null);
+                        return CompiledBody.RETURN;
+                    };
+                }
+
+                ExpressionNode value = compileExpression(expression);
+                yield frame -> {
+                    frame.setReturnValue(value.execute(frame));
+                    return CompiledBody.RETURN;
+                };
+            }
+            // bodies that were not lowered can still contain structured statements, those fail once they are reached
+            default -> frame -> {
+                throw new RuntimeException("Unexpected statement kind: " + statement.getKind());
+            };
+        };
+    }
+
+    private static int getJumpTarget(int targetIndex, BoundLabel label) {
+        if (targetIndex < 0) {
+            throw new RuntimeException("Jump target '%s' was not resolved".formatted(label.getName()));
+        }
+        return targetIndex;
+    }
+
+    ExpressionNode compileExpression(BoundExpression expression) {
+        return switch (expression.getKind()) {
+            case LITERAL_EXPRESSION -> compileLiteralExpression((BoundLiteralExpression) expression);
+            case VARIABLE_EXPRESSION -> compileVariableExpression((BoundVariableExpression) expression);
+            case INSTANCE_CREATION_EXPRESSION ->
+                    compileInstanceCreationExpression((BoundInstanceCreationExpression) expression);
+            case ASSIGNMENT_EXPRESSION -> compileAssignmentExpression((BoundAssignmentExpression) expression);
+            case THIS_EXPRESSION -> compileThisExpression();
+            case ARRAY_LITERAL_EXPRESSION -> compileArrayLiteralExpression((BoundArrayLiteralExpression) expression);
+            case ARRAY_CREATION_EXPRESSION -> compileArrayCreationExpression((BoundArrayCreationExpression) expression);
+            case FUNCTION_CALL_EXPRESSION -> compileFunctionCallExpression((BoundFunctionCallExpression) expression);
+            case BINARY_EXPRESSION -> compileBinaryExpression((BoundBinaryExpression) expression);
+            case UNARY_EXPRESSION -> compileUnaryExpression((BoundUnaryExpression) expression);
+            case MEMBER_ACCESS_EXPRESSION -> compileMemberAccessExpression((BoundMemberAccessExpression) expression);
+            case INTERNAL_FUNCTION_EXPRESSION ->
+                    compileInternalFunctionExpression((BoundInternalFunctionExpression) expression);
+            case TYPE_EXPRESSION -> compileTypeExpression((BoundTypeExpression) expression);
+            case ARRAY_ACCESS_EXPRESSION -> compileArrayAccessExpression((BoundArrayAccessExpression) expression);
+            case CONVERSION_EXPRESSION -> compileExpression(((BoundConversionExpression) expression).getExpression());
+            case CONDITIONAL_EXPRESSION -> compileConditionalExpression((BoundConditionalExpression) expression);
+            case FIELD_ACCESS_EXPRESSION -> compileFieldAccessExpression((BoundFieldAccessExpression) expression);
+            case TYPE_CHECK_EXPRESSION -> compileTypeCheckExpression((BoundTypeCheckExpression) expression);
+            default -> frame -> {
+                throw new RuntimeException("Unexpected expression: " + expression.getKind());
+            };
+        };
+    }
+
+    private ExpressionNode[] compileExpressions(List<BoundExpression> expressions) {
+        ExpressionNode[] nodes = new ExpressionNode[expressions.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compileExpression(expressions.get(i));
+        }
+        return nodes;
+    }
+
+    private static Object[] executeAll(ExpressionNode[] nodes, Frame frame) {
+        Object[] values = new Object[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            values[i] = nodes[i].execute(frame);
+        }
+        return values;
+    }
+
+    private int useSlot(int slot) {
+        frameSize = Math.max(frameSize, slot + 1);
+        return slot;
+    }
+
+    private ExpressionNode compileLiteralExpression(BoundLiteralExpression expression) {
+        Object value = expression.getValue();
+        return frame -> value;
+    }
+
+    private ExpressionNode compileVariableExpression(BoundVariableExpression expression) {
+        int slot = useSlot(expression.getVariable().getSlot());
+        return frame -> frame.load(slot);
+    }
+
+    private ExpressionNode compileThisExpression() {
+        return frame -> {
+            Object value = frame.load(VariableSymbol.THIS_SLOT);
+            if (value == null) {
+                throw new RuntimeException("No this variable found.");
+            }
+            return value;
+        };
+    }
+
+    private ExpressionNode compileTypeExpression(BoundTypeExpression expression) {
+        TypeSymbol type = expression.getType();
+        return new ExpressionNode() {
+            private RuntimeType runtimeType;
+
+            @Override
+            public Object execute(Frame frame) {
+                if (runtimeType == null) {
+                    runtimeType = engine.resolveRuntimeType(program, type);
+                }
+                return runtimeType;
+            }
+        };
+    }
+
+    private ExpressionNode compileConditionalExpression(BoundConditionalExpression expression) {
+        ExpressionNode condition = compileExpression(expression.getCondition());
+        ExpressionNode thenExpression = compileExpression(expression.getThenExpression());
+        ExpressionNode elseExpression = compileExpression(expression.getElseExpression());
+
+        return frame -> {
+            if (!(condition.execute(frame) instanceof Boolean conditionValue)) {
+                throw new RuntimeException("Condition must be a boolean");
+            }
+            return conditionValue ? thenExpression.execute(frame) : elseExpression.execute(frame);
+        };
+    }
+
+    private ExpressionNode compileArrayAccessExpression(BoundArrayAccessExpression expression) {
+        ExpressionNode target = compileExpression(expression.getTarget());
+        ExpressionNode index = compileExpression(expression.getIndex());
+
+        return new ExpressionNode() {
+            @Override
+            public Object execute(Frame frame) {
+                Object array = target.execute(frame);
+                int i = executeIndex(index, frame, "Cannot access array element with non-integer index");
+                return checkElementAccess(array, i, "Cannot access array element of non-array").get(array, i);
+            }
+
+            @Override
+            public int executeInt(Frame frame) {
+                Object array = target.execute(frame);
+                int i = executeIndex(index, frame, "Cannot access array element with non-integer index");
+                return checkElementAccess(array, i, "Cannot access array element of non-array").getInt(array, i);
+            }
+
+            @Override
+            public double executeDouble(Frame frame) {
+                Object array = target.execute(frame);
+                int i = executeIndex(index, frame, "Cannot access array element with non-integer index");
+                return checkElementAccess(array, i, "Cannot access array element of non-array").getDouble(array, i);
+            }
+
+            @Override
+            public char executeChar(Frame frame) {
+                Object array = target.execute(frame);
+                int i = executeIndex(index, frame, "Cannot access array element with non-integer index");
+                return checkElementAccess(array, i, "Cannot access array element of non-array").getChar(array, i);
+            }
+
+            @Override
+            public boolean executeBool(Frame frame) {
+                Object array = target.execute(frame);
+                int i = executeIndex(index, frame, "Cannot access array element with non-integer index");
+                return checkElementAccess(array, i, "Cannot access array element of non-array").getBool(array, i);
+            }
+        };
+    }
+
+    private static ArrayKind checkElementStore(Object array, Object index) {
+        ArrayKind kind = ArrayKind.ofArray(array);
+        if (kind == null) {
+            throw new RuntimeException("Cannot access element of non-array");
+        }
+
+        if (!(index instanceof Integer i)) {
+            throw new RuntimeException("Array index must be an integer");
+        }
+
+        if (i < 0 || i >= kind.length(array)) {
+            throw new RuntimeException("Array index out of bounds");
+        }
+
+        return kind;
+    }
+
+    private static int executeIndex(ExpressionNode index, Frame frame, String message) {
+        if (!(index.execute(frame) instanceof Integer i)) {
+            throw new RuntimeException(message);
+        }
+        return i;
+    }
+
+    /**
+     * @return the kind of the array, once the index is known to be inside of it
+     */
+    private static ArrayKind checkElementAccess(Object array, int index, String nonArrayMessage) {
+        ArrayKind kind = ArrayKind.ofArray(array);
+        if (kind == null) {
+            throw new RuntimeException(nonArrayMessage);
+        }
+
+        if (index < 0 || index >= kind.length(array)) {
+            throw new RuntimeException("Array index out of bounds");
+        }
+
+        return kind;
+    }
+
+    private ExpressionNode compileArrayLiteralExpression(BoundArrayLiteralExpression expression) {
+        ExpressionNode[] elements = compileExpressions(expression.getElements());
+        ArrayKind kind = ArrayKind.ofElements(expression.getType());
+        if (runtime.isMetered()) {
+            return frame -> {
+                Object[] values = executeAll(elements, frame);
+                ExecutionBudget.current().allocate(values.length);
+                return kind.create(values);
+            };
+        }
+        return frame -> kind.create(executeAll(elements, frame));
+    }
+
+    private ExpressionNode compileArrayCreationExpression(BoundArrayCreationExpression expression) {
+        List<ExpressionNode> sizes = new ArrayList<>();
+        List<ExpressionNode> initializers = new ArrayList<>();
+
+        for (BoundExpression dimension : expression.getDimensions().keySet()) {
+            BoundExpression initializer = expression.getDimensions().get(dimension);
+            sizes.add(compileExpression(dimension));
+            initializers.add(initializer == null ? null : compileExpression(initializer));
+        }
+        ArrayKind kind = ArrayKind.ofInnermost(expression.getType());
+        boolean metered = runtime.isMetered();
+
+        return frame -> {
+            List<Tuple<Integer, Object>> dimensions = new ArrayList<>(sizes.size());
+
+            for (int i = 0; i < sizes.size(); i++) {
+                Object value = sizes.get(i).execute(frame);
+                Object initializerValue = initializers.get(i) == null ? null : initializers.get(i).execute(frame);
+
+                if (!(value instanceof Integer valueInt)) {
+                    throw new RuntimeException("Array dimension must be an integer");
+                }
+
+                if (valueInt < 0) {
+                    throw new RuntimeException("Array dimension must be positive");
+                }
+
+                dimensions.add(new Tuple<>(valueInt, initializerValue));
+            }
+
+            if (metered) ExecutionBudget.current().allocateArray(dimensions);
+            return ProgramInterpreter.createMultiDimensionalArray(dimensions, dimensions.size(), kind);
+        };
+    }
+
+    private ExpressionNode compileFieldAccessExpression(BoundFieldAccessExpression expression) {
+        ExpressionNode target = compileExpression(expression.getTarget());
+        FieldSymbol field = expression.getField();
+        FieldSite site = new FieldSite(field);
+
+        return frame -> {
+            Object value = target.execute(frame);
+
+            if (value instanceof TypeInstance instance) {
+                if (field.isShared()) {
+                    return site.get(instance.getRuntimeType());
+                }
+                return site.get(instance);
+            }
+
+            if (value instanceof RuntimeType type) {
+                if (!field.isShared()) {
+                    throw new RuntimeException("Cannot access instance field on type");
+                }
+
+                if (!type.getType().isField(field.getName())) {
+                    throw new RuntimeException("Type does not contain field " + field.getName());
+                }
+
+                return site.get(type);
+            }
+
+            throw new RuntimeException("Unexpected target for field access: " + value);
+        };
+    }
+
+    private ExpressionNode compileMemberAccessExpression(BoundMemberAccessExpression expression) {
+        ExpressionNode target = compileExpression(expression.getTarget());
+        Symbol member = expression.getMember();
+
+        if (!(member instanceof FieldSymbol field)) {
+            return frame -> {
+                target.execute(frame);
+                throw new RuntimeException("Unexpected member access expression: " + member.getKind());
+            };
+        }
+
+        if (expression.getTarget().getType() instanceof ArrayTypeSymbol && field.getName().equals("length")) {
+            return frame -> {
+                Object array = target.execute(frame);
+                return ArrayKind.ofArray(array).length(array);
+            };
+        }
+
+        FieldSite site = new FieldSite(field);
+        return frame -> {
+            Object value = target.execute(frame);
+
+            if (value instanceof RuntimeType type) {
+                return site.get(type);
+            }
+
+            if (!(value instanceof TypeInstance instance)) {
+                throw new RuntimeException("Cannot access member of non-instance");
+            }
+
+            return site.get(instance);
+        };
+    }
+
+    private ExpressionNode compileTypeCheckExpression(BoundTypeCheckExpression expression) {
+        ExpressionNode left = compileExpression(expression.getLeftExpression());
+        TypeSymbol rightType = expression.getRightType();
+
+        return frame -> {
+            Object leftValue = left.execute(frame);
+
+            if (leftValue instanceof TypeInstance instance) {
+                return instance.getRuntimeType().isAssignableTo(engine.resolveRuntimeType(program, rightType));
+            }
+
+            if (leftValue instanceof RuntimeType type) {
+                RuntimeType resolvedType = null;
+                if (rightType.isGeneric()) {
+                    resolvedType = engine.getGenericTypes().get(type).get(rightType.getName());
+                }
+
+                if (resolvedType == null) resolvedType = engine.resolveRuntimeType(program, rightType);
+
+                return type.isAssignableTo(resolvedType);
+            }
+
+            if (Types.isValidLiteralType(leftValue.getClass())) {
+                TypeSymbol literalType = Types.getLiteralType(leftValue.getClass());
+
+                if (!rightType.isGeneric()) {
+                    return literalType.isAssignableTo(rightType);
+                }
+
+                if (!(frame.load(VariableSymbol.THIS_SLOT) instanceof TypeInstance thisType)) {
+                    throw new RuntimeException("Cannot find 'this' in type check expression");
+                }
+
+                RuntimeType genericType = engine.getGenericTypes().get(thisType.getRuntimeType()).get(rightType.getName());
+                return literalType.isAssignableTo(genericType.getType());
+            }
+
+            throw new RuntimeException("Unexpected type for type check expression '%s'".formatted(leftValue.getClass().getSimpleName()));
+        };
+    }
+
+    private ExpressionNode compileInternalFunctionExpression(BoundInternalFunctionExpression expression) {
+        IFunctionBase function = expression.getFunction();
+
+        if (expression.getArguments().size() != function.getParameters().size()) {
+            return frame -> {
+                throw new RuntimeException("Invalid number of arguments for function %s".formatted(function));
+            };
+        }
+
+        boolean passThis = (function instanceof InternalFunction internalFunction && !internalFunction.isShared())
+                || function instanceof InternalBinaryOperator
+                || function instanceof InternalUnaryOperator;
+
+        String[] names = function.getParameters().stream().map(ParameterSymbol::getName).toArray(String[]::new);
+        ExpressionNode[] arguments = compileExpressions(expression.getArguments());
+        ICallable body = function.getFunctionBody();
+
+        return frame -> {
+            HashMap<String, Object> values = new HashMap<>();
+
+            if (passThis) {
+                values.put(IFunctionBase.PARAM_THIS, frame.load(VariableSymbol.THIS_SLOT));
+            }
+
+            for (int i = 0; i < arguments.length; i++) {
+                values.put(names[i], arguments[i].execute(frame));
+            }
+
+            return body.call(values);
+        };
+    }
+
+    private ExpressionNode compileUnaryExpression(BoundUnaryExpression expression) {
+        ExpressionNode operand = compileExpression(expression.getOperand());
+
+        UnaryIntrinsic intrinsic = expression.getIntrinsic();
+        if (intrinsic != null) {
+            return switch (intrinsic) {
+                case INT_NEGATE -> intNode(frame -> -operand.executeInt(frame));
+                case INT_IDENTITY -> intNode(operand::executeInt);
+                case INT_COMPLEMENT -> intNode(frame -> ~operand.executeInt(frame));
+                case BOOL_NOT -> boolNode(frame -> !operand.executeBool(frame));
+            };
+        }
+
+        TypeSymbol operandType = expression.getOperand().getType();
+        String operator = expression.getOperator();
+
+        return new ExpressionNode() {
+            private CompiledBody body;
+
+            @Override
+            public Object execute(Frame frame) {
+                if (body == null) {
+                    RuntimeType runtimeType = runtime.findRuntimeType(operandType);
+                    UnaryOperatorSymbol unaryOperator = runtimeType.getUnaryOperator(operator);
+
+                    if (unaryOperator == null)
+                        throw new RuntimeException("No unary operator " + operator + " found for type " + runtimeType.getName());
+
+                    body = engine.compile(program, runtimeType.getScope().getUnaryOperatorBody(unaryOperator));
+                }
+
+                return invoke(body, operand.execute(frame), NO_ARGUMENTS);
+            }
+        };
+    }
+
+    private ExpressionNode compileBinaryExpression(BoundBinaryExpression expression) {
+        ExpressionNode left = compileExpression(expression.getLeft());
+        ExpressionNode right = compileExpression(expression.getRight());
+
+        BinaryIntrinsic intrinsic = expression.getIntrinsic();
+        if (intrinsic != null) {
+            return compileBinaryIntrinsic(intrinsic, left, right);
+        }
+
+        TypeSymbol leftType = expression.getLeft().getType();
+        TypeSymbol rightType = expression.getRight().getType();
+        String operator = expression.getOperator();
+
+        return new ExpressionNode() {
+            private CompiledBody body;
+
+            @Override
+            public Object execute(Frame frame) {
+                if (body == null) {
+                    RuntimeType leftRuntimeType = runtime.findRuntimeType(leftType);
+                    RuntimeType rightRuntimeType = runtime.findRuntimeType(rightType);
+                    BinaryOperatorSymbol binaryOperator = leftRuntimeType.getBinaryOperator(operator, rightRuntimeType);
+
+                    if (binaryOperator == null)
+                        throw new RuntimeException("No binary operator " + operator + " found for types " + leftRuntimeType.getName() + " and " + rightRuntimeType.getName());
+
+                    body = engine.compile(program, leftRuntimeType.getScope().getBinaryOperatorBody(binaryOperator));
+                }
+
+                Object thisValue = left.execute(frame);
+                Object otherValue = right.execute(frame);
+
+                return invoke(body, thisValue, new Object[]{otherValue});
+            }
+        };
+    }
+
+    // Intrinsic operators compute their primitive result from the typed results of their operands, so a chain of
+    // them only boxes the value the chain hands to a slot or a call.
+
+    private static ExpressionNode compileBinaryIntrinsic(BinaryIntrinsic intrinsic, ExpressionNode left, ExpressionNode right) {
+        return switch (intrinsic) {
+            case INT_ADD -> intNode(frame -> left.executeInt(frame) + right.executeInt(frame));
+            case INT_SUBTRACT -> intNode(frame -> left.executeInt(frame) - right.executeInt(frame));
+            case INT_MULTIPLY -> intNode(frame -> left.executeInt(frame) * right.executeInt(frame));
+            case INT_DIVIDE -> intNode(frame -> left.executeInt(frame) / right.executeInt(frame));
+            case INT_MODULO -> intNode(frame -> left.executeInt(frame) % right.executeInt(frame));
+            case INT_AND -> intNode(frame -> left.executeInt(frame) & right.executeInt(frame));
+            case INT_OR -> intNode(frame -> left.executeInt(frame) | right.executeInt(frame));
+            case INT_XOR -> intNode(frame -> left.executeInt(frame) ^ right.executeInt(frame));
+            case INT_EQUALS -> boolNode(frame -> left.executeInt(frame) == right.executeInt(frame));
+            case INT_NOT_EQUALS -> boolNode(frame -> left.executeInt(frame) != right.executeInt(frame));
+            case INT_GREATER -> boolNode(frame -> left.executeInt(frame) > right.executeInt(frame));
+            case INT_LESS -> boolNode(frame -> left.executeInt(frame) < right.executeInt(frame));
+            case INT_GREATER_OR_EQUALS -> boolNode(frame -> left.executeInt(frame) >= right.executeInt(frame));
+            case INT_LESS_OR_EQUALS -> boolNode(frame -> left.executeInt(frame) <= right.executeInt(frame));
+
+            case INT_DOUBLE_ADD -> doubleNode(frame -> left.executeInt(frame) + right.executeDouble(frame));
+            case INT_DOUBLE_SUBTRACT -> doubleNode(frame -> left.executeInt(frame) - right.executeDouble(frame));
+            case INT_DOUBLE_MULTIPLY -> doubleNode(frame -> left.executeInt(frame) * right.executeDouble(frame));
+            case INT_DOUBLE_DIVIDE -> doubleNode(frame -> left.executeInt(frame) / right.executeDouble(frame));
+            case INT_DOUBLE_MODULO -> doubleNode(frame -> left.executeInt(frame) % right.executeDouble(frame));
+            case INT_DOUBLE_EQUALS -> boolNode(frame -> left.executeInt(frame) == right.executeDouble(frame));
+            case INT_DOUBLE_NOT_EQUALS -> boolNode(frame -> left.executeInt(frame) != right.executeDouble(frame));
+            case INT_DOUBLE_GREATER -> boolNode(frame -> left.executeInt(frame) > right.executeDouble(frame));
+            case INT_DOUBLE_LESS -> boolNode(frame -> left.executeInt(frame) < right.executeDouble(frame));
+            case INT_DOUBLE_GREATER_OR_EQUALS -> boolNode(frame -> left.executeInt(frame) >= right.executeDouble(frame));
+            case INT_DOUBLE_LESS_OR_EQUALS -> boolNode(frame -> left.executeInt(frame) <= right.executeDouble(frame));
+
+            case DOUBLE_ADD -> doubleNode(frame -> left.executeDouble(frame) + right.executeDouble(frame));
+            case DOUBLE_SUBTRACT -> doubleNode(frame -> left.executeDouble(frame) - right.executeDouble(frame));
+            case DOUBLE_MULTIPLY -> doubleNode(frame -> left.executeDouble(frame) * right.executeDouble(frame));
+            case DOUBLE_DIVIDE -> doubleNode(frame -> left.executeDouble(frame) / right.executeDouble(frame));
+            case DOUBLE_MODULO -> doubleNode(frame -> left.executeDouble(frame) % right.executeDouble(frame));
+            case DOUBLE_EQUALS -> boolNode(frame -> left.executeDouble(frame) == right.executeDouble(frame));
+            case DOUBLE_NOT_EQUALS -> boolNode(frame -> left.executeDouble(frame) != right.executeDouble(frame));
+            case DOUBLE_GREATER -> boolNode(frame -> left.executeDouble(frame) > right.executeDouble(frame));
+            case DOUBLE_LESS -> boolNode(frame -> left.executeDouble(frame) < right.executeDouble(frame));
+            case DOUBLE_GREATER_OR_EQUALS -> boolNode(frame -> left.executeDouble(frame) >= right.executeDouble(frame));
+            case DOUBLE_LESS_OR_EQUALS -> boolNode(frame -> left.executeDouble(frame) <= right.executeDouble(frame));
+
+            case DOUBLE_INT_ADD -> doubleNode(frame -> left.executeDouble(frame) + right.executeInt(frame));
+            case DOUBLE_INT_SUBTRACT -> doubleNode(frame -> left.executeDouble(frame) - right.executeInt(frame));
+            case DOUBLE_INT_MULTIPLY -> doubleNode(frame -> left.executeDouble(frame) * right.executeInt(frame));
+            case DOUBLE_INT_DIVIDE -> doubleNode(frame -> left.executeDouble(frame) / right.executeInt(frame));
+            case DOUBLE_INT_MODULO -> doubleNode(frame -> left.executeDouble(frame) % right.executeInt(frame));
+            case DOUBLE_INT_EQUALS -> boolNode(frame -> left.executeDouble(frame) == right.executeInt(frame));
+            case DOUBLE_INT_NOT_EQUALS -> boolNode(frame -> left.executeDouble(frame) != right.executeInt(frame));
+            case DOUBLE_INT_GREATER -> boolNode(frame -> left.executeDouble(frame) > right.executeInt(frame));
+            case DOUBLE_INT_LESS -> boolNode(frame -> left.executeDouble(frame) < right.executeInt(frame));
+            case DOUBLE_INT_GREATER_OR_EQUALS -> boolNode(frame -> left.executeDouble(frame) >= right.executeInt(frame));
+            case DOUBLE_INT_LESS_OR_EQUALS -> boolNode(frame -> left.executeDouble(frame) <= right.executeInt(frame));
+
+            case CHAR_EQUALS -> boolNode(frame -> left.executeChar(frame) == right.executeChar(frame));
+            case CHAR_NOT_EQUALS -> boolNode(frame -> left.executeChar(frame) != right.executeChar(frame));
+            case CHAR_GREATER -> boolNode(frame -> left.executeChar(frame) > right.executeChar(frame));
+            case CHAR_GREATER_OR_EQUALS -> boolNode(frame -> left.executeChar(frame) >= right.executeChar(frame));
+            case CHAR_LESS -> boolNode(frame -> left.executeChar(frame) < right.executeChar(frame));
+            case CHAR_LESS_OR_EQUALS -> boolNode(frame -> left.executeChar(frame) <= right.executeChar(frame));
+
+            case CHAR_INT_ADD -> charNode(frame -> left.executeChar(frame) + right.executeInt(frame));
+            case CHAR_INT_SUBTRACT -> charNode(frame -> left.executeChar(frame) - right.executeInt(frame));
+            case CHAR_INT_EQUALS -> boolNode(frame -> left.executeChar(frame) == (char) right.executeInt(frame));
+            case CHAR_INT_NOT_EQUALS -> boolNode(frame -> left.executeChar(frame) != (char) right.executeInt(frame));
+            case CHAR_INT_GREATER -> boolNode(frame -> left.executeChar(frame) > (char) right.executeInt(frame));
+            case CHAR_INT_GREATER_OR_EQUALS -> boolNode(frame -> left.executeChar(frame) >= (char) right.executeInt(frame));
+            case CHAR_INT_LESS -> boolNode(frame -> left.executeChar(frame) < (char) right.executeInt(frame));
+            case CHAR_INT_LESS_OR_EQUALS -> boolNode(frame -> left.executeChar(frame) <= (char) right.executeInt(frame));
+
+            case BOOL_EQUALS -> boolNode(frame -> left.executeBool(frame) == right.executeBool(frame));
+            case BOOL_NOT_EQUALS -> boolNode(frame -> left.executeBool(frame) != right.executeBool(frame));
+            // both operands are always evaluated
+            case BOOL_AND -> boolNode(frame -> left.executeBool(frame) & right.executeBool(frame));
+            case BOOL_OR -> boolNode(frame -> left.executeBool(frame) | right.executeBool(frame));
+
+            // char + char evaluates to an int although it is typed char, and strings are objects anyway
+            default -> frame -> intrinsic.evaluate(left.execute(frame), right.execute(frame));
+        };
+    }
+
+    private static ExpressionNode intNode(ToIntFunction<Frame> operation) {
+        return new ExpressionNode() {
+            @Override
+            public Object execute(Frame frame) {
+                return operation.applyAsInt(frame);
+            }
+
+            @Override
+            public int executeInt(Frame frame) {
+                return operation.applyAsInt(frame);
+            }
+
+            @Override
+            public double executeDouble(Frame frame) {
+                return operation.applyAsInt(frame);
+            }
+        };
+    }
+
+    private static ExpressionNode doubleNode(ToDoubleFunction<Frame> operation) {
+        return new ExpressionNode() {
+            @Override
+            public Object execute(Frame frame) {
+                return operation.applyAsDouble(frame);
+            }
+
+            @Override
+            public double executeDouble(Frame frame) {
+                return operation.applyAsDouble(frame);
+            }
+        };
+    }
+
+    /**
+     * @param operation computes the char as an int, which is narrowed
+     */
+    private static ExpressionNode charNode(ToIntFunction<Frame> operation) {
+        return new ExpressionNode() {
+            @Override
+            public Object execute(Frame frame) {
+                return (char) operation.applyAsInt(frame);
+            }
+
+            @Override
+            public char executeChar(Frame frame) {
+                return (char) operation.applyAsInt(frame);
+            }
+        };
+    }
+
+    private static ExpressionNode boolNode(Predicate<Frame> operation) {
+        return new ExpressionNode() {
+            @Override
+            public Object execute(Frame frame) {
+                return operation.test(frame);
+            }
+
+            @Override
+            public boolean executeBool(Frame frame) {
+                return operation.test(frame);
+            }
+        };
+    }
+
+    private ExpressionNode compileAssignmentExpression(BoundAssignmentExpression expression) {
+        BoundExpression target = expression.getTarget();
+        ExpressionNode value = compileExpression(expression.getExpression());
+
+        if (target instanceof BoundVariableExpression variableAccess) {
+            int slot = useSlot(variableAccess.getVariable().getSlot());
+            return frame -> {
+                Object result = value.execute(frame);
+                frame.store(slot, result);
+                return result;
+            };
+        }
+
+        if (target instanceof BoundMemberAccessExpression memberAccess) {
+            ExpressionNode callee = compileExpression(memberAccess.getTarget());
+            Symbol member = memberAccess.getMember();
+            FieldSite site = new FieldSite(member);
+
+            return frame -> {
+                Object calleeValue = callee.execute(frame);
+
+                if (calleeValue instanceof TypeInstance instance) {
+                    Object result = value.execute(frame);
+                    site.set(instance, result);
+                    return result;
+                }
+
+                if (!(calleeValue instanceof RuntimeType type) || !(member instanceof FieldSymbol)) {
+                    throw new RuntimeException("Cannot access member of non-instance");
+                }
+
+                Object result = value.execute(frame);
+                site.set(type, result);
+                return result;
+            };
+        }
+
+        if (target instanceof BoundArrayAccessExpression arrayAccess) {
+            ExpressionNode array = compileExpression(arrayAccess.getTarget());
+            ExpressionNode index = compileExpression(arrayAccess.getIndex());
+            ArrayKind elementKind = ArrayKind.of(arrayAccess.getType());
+
+            return new ExpressionNode() {
+                @Override
+                public Object execute(Frame frame) {
+                    Object arrayValue = array.execute(frame);
+                    Object indexValue = index.execute(frame);
+                    Object result = value.execute(frame);
+
+                    checkElementStore(arrayValue, indexValue).set(arrayValue, (int) indexValue, result);
+                    return result;
+                }
+
+                // the value of an assignment statement is not used, so primitive elements are stored without boxing
+                @Override
+                public void executeVoid(Frame frame) {
+                    Object arrayValue = array.execute(frame);
+                    Object indexValue = index.execute(frame);
+
+                    switch (elementKind) {
+                        case INT -> {
+                            int result = value.executeInt(frame);
+                            checkElementStore(arrayValue, indexValue).setInt(arrayValue, (int) indexValue, result);
+                        }
+                        case DOUBLE -> {
+                            double result = value.executeDouble(frame);
+                            checkElementStore(arrayValue, indexValue).setDouble(arrayValue, (int) indexValue, result);
+                        }
+                        case CHAR -> {
+                            char result = value.executeChar(frame);
+                            checkElementStore(arrayValue, indexValue).setChar(arrayValue, (int) indexValue, result);
+                        }
+                        case BOOL -> {
+                            boolean result = value.executeBool(frame);
+                            checkElementStore(arrayValue, indexValue).setBool(arrayValue, (int) indexValue, result);
+                        }
+                        case OBJECT -> {
+                            Object result = value.execute(frame);
+                            checkElementStore(arrayValue, indexValue).set(arrayValue, (int) indexValue, result);
+                        }
+                    }
+                }
+            };
+        }
+
+        return frame -> {
+            throw new RuntimeException("Invalid assignment target: " + target.getKind());
+        };
+    }
+
+    // Everything instance creation needs from the bound tree, resolved on the first execution of the site
+    private record InstanceLink(BoundProgramScope context, RuntimeType runtimeType, ExpressionNode[] initializers, CompiledBody constructor) {
+    }
+
+    private ExpressionNode compileInstanceCreationExpression(BoundInstanceCreationExpression expression) {
+        TypeSymbol type = expression.getType();
+        ExpressionNode[] arguments = compileExpressions(expression.getArguments());
+        boolean metered = runtime.isMetered();
+
+        return new ExpressionNode() {
+            // linked on the first execution and published as a whole, so other threads never see a partial link
+            private volatile InstanceLink link;
+
+            private InstanceLink link() {
+                BoundProgramScope context = engine.getContext(program, type);
+                RuntimeType runtimeType = engine.getRuntimeType(context, type);
+
+                BoundTypeScope scope = runtimeType.getScope();
+                FieldSymbol[] fields = runtimeType.getShape().getFields();
+                ExpressionNode[] initializers = new ExpressionNode[fields.length];
+
+                for (int i = 0; i < fields.length; i++) {
+                    BoundExpression initializer = scope.getFieldInitializer(fields[i]);
+                    initializers[i] = initializer == null ? null : engine.compileInitializer(context, initializer);
+                }
+
+                ConstructorSymbol constructorSymbol = type.getConstructor(arguments.length);
+                CompiledBody constructor = engine.compile(context, scope.getConstructorBody(constructorSymbol));
+                return new InstanceLink(context, runtimeType, initializers, constructor);
+            }
+
+            @Override
+            public Object execute(Frame frame) {
+                InstanceLink link = this.link;
+                if (link == null) {
+                    link = link();
+                    this.link = link;
+                }
+                if (metered) ExecutionBudget.current().allocate(1);
+
+                BoundProgramScope context = link.context();
+                RuntimeType runtimeType = link.runtimeType();
+                ExpressionNode[] initializers = link.initializers();
+                Object[] instanceFields = new Object[initializers.length];
+                for (int i = 0; i < initializers.length; i++) {
+                    instanceFields[i] = initializers[i] == null ? null : initializers[i].execute(frame);
+                }
+
+                HashMap<String, RuntimeType> genericTypes = new HashMap<>();
+                if (runtimeType.hasGenerics()) {
+                    for (String key : expression.getGenericTypes().keySet()) {
+                        TypeSymbol genericType = expression.getGenericTypes().get(key);
+
+                        if (context.isTypeImported(genericType)) {
+                            genericTypes.put(key, runtime.findRuntimeType(genericType));
+                        } else {
+                            genericTypes.put(key, engine.getRuntimeType(context, genericType));
+                        }
+                    }
+                }
+
+                TypeInstance instance = runtimeType.createInstance(instanceFields, genericTypes);
+                engine.getGenericTypes().putIfAbsent(runtimeType, genericTypes);
+
+                Object[] values = executeAll(arguments, frame);
+
+                CompiledBody constructor = link.constructor();
+                Frame constructorFrame = constructor.newFrame(values.length);
+                constructorFrame.store(VariableSymbol.THIS_SLOT, instance);
+                for (int i = 0; i < values.length; i++) {
+                    constructorFrame.store(VariableSymbol.getParameterSlot(i), values[i]);
+                }
+
+                try {
+                    constructor.invoke(constructorFrame);
+                } catch (StackOverflowError | CallStackOverflowException e) {
+                    throw CallStackOverflowException.unwind(e, "constructor", runtimeType.getName());
+                }
+                return instance;
+            }
+        };
+    }
+
+    private ExpressionNode compileFunctionCallExpression(BoundFunctionCallExpression expression) {
+        BoundExpression callee = expression.getCallee();
+        FunctionSymbol function = expression.getFunction();
+        ExpressionNode calleeNode = compileExpression(callee);
+        ExpressionNode[] arguments = compileExpressions(expression.getArguments());
+
+        if (callee instanceof BoundVariableExpression variableExpression && Types.isBuiltinType(variableExpression.getVariable().getType())) {
+            TypeSymbol type = variableExpression.getVariable().getType();
+            return new ExpressionNode() {
+                private CompiledBody body;
+
+                @Override
+                public Object execute(Frame frame) {
+                    Object[] values = executeAll(arguments, frame);
+                    Object calleeValue = calleeNode.execute(frame);
+
+                    if (body == null) {
+                        body = engine.compile(program, runtime.findRuntimeType(type).getScope().getFunctionBody(function));
+                    }
+
+                    try {
+                        return invoke(body, calleeValue, values);
+                    } catch (StackOverflowError | CallStackOverflowException e) {
+                        throw CallStackOverflowException.unwind(e, "function", function.getName());
+                    }
+                }
+            };
+        }
+
+        return new FunctionCallNode(calleeNode, function, arguments);
+    }
+
+    private static Object invoke(CompiledBody body, Object thisValue, Object[] arguments) {
+        if (body.getInternal() != null) {
+            return body.getInternal().call(thisValue, arguments);
+        }
+
+        Frame frame = body.newFrame(arguments.length);
+        frame.store(VariableSymbol.THIS_SLOT, thisValue);
+        for (int i = 0; i < arguments.length; i++) {
+            frame.store(VariableSymbol.getParameterSlot(i), arguments[i]);
+        }
+        return body.invoke(frame);
+    }
+
+    /**
+     * Calls a function on whatever the callee evaluates to. The resolved bodies are remembered
+     * per receiver type in an inline cache, so repeated calls on the same types skip the lookup.
+     */
+    private final class FunctionCallNode implements ExpressionNode {
+        private final ExpressionNode callee;
+        private final FunctionSymbol function;
+        private final ExpressionNode[] arguments;
+
+        private final InlineCache<CompiledBody> bodies = new InlineCache<>();
+
+        private FunctionCallNode(ExpressionNode callee, FunctionSymbol function, ExpressionNode[] arguments) {
+            this.callee = callee;
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Object execute(Frame frame) {
+            Object calleeValue = callee.execute(frame);
+
+            if (calleeValue instanceof TypeInstance instance) {
+                if (function.isShared()) {
+                    throw new RuntimeException("Cannot call shared function '%s' on instance of type '%s'".formatted(function.getName(), instance.getRuntimeType().getName()));
+                }
+
+                RuntimeType type = instance.getRuntimeType();
+                Object[] values = executeAll(arguments, frame);
+                Object result = call(resolve(type), instance, values);
+                return function.getType().equals(Types.VOID) ? null : result;
+            }
+
+            if (calleeValue instanceof RuntimeType type) {
+                if (!function.isShared()) {
+                    throw new RuntimeException("Cannot call non-shared function '%s' on type '%s'".formatted(function.getName(), type.getName()));
+                }
+
+                Object[] values = executeAll(arguments, frame);
+                return call(resolve(type), null, values);
+            }
+
+            if (Types.isValidLiteralType(calleeValue.getClass())) {
+                Object[] values = executeAll(arguments, frame);
+                Class<?> literalClass = calleeValue.getClass();
+                CompiledBody body = bodies.get(literalClass);
+                if (body == null) {
+                    RuntimeType type = runtime.findRuntimeType(Types.getLiteralType(literalClass));
+                    body = engine.compile(program, type.getScope().getFunctionBody(function));
+                    bodies.put(literalClass, body);
+                }
+                return call(body, calleeValue, values);
+            }
+
+            ArrayKind arrayKind = ArrayKind.ofArray(calleeValue);
+            if (arrayKind != null) {
+                if (function.getName().equals("copy") || function.getName().equals("clone")) {
+                    return arrayKind.copy(calleeValue);
+                }
+
+                throw new RuntimeException("Cannot call function '%s' on array".formatted(function.getName()));
+            }
+
+            throw new RuntimeException("Cannot call function '%s' on value of type '%s'".formatted(function.getName(), calleeValue.getClass().getName()));
+        }
+
+        private Object call(CompiledBody body, Object thisValue, Object[] values) {
+            try {
+                return invoke(body, thisValue, values);
+            } catch (StackOverflowError | CallStackOverflowException e) {
+                throw CallStackOverflowException.unwind(e, "function", function.getName());
+            }
+        }
+
+        private CompiledBody resolve(RuntimeType type) {
+            CompiledBody body = bodies.get(type);
+            if (body == null) {
+                BoundProgramScope context = engine.getContext(program, type.getType());
+                body = engine.compile(context, type.getScope().getFunctionBody(function));
+                bodies.put(type, body);
+            }
+            return body;
+        }
+    }
+}
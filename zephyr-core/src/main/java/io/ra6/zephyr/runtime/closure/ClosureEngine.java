@@ -0,0 +1,92 @@
+package io.ra6.zephyr.runtime.closure;
+
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundBlockStatement;
+import io.ra6.zephyr.codeanalysis.symbols.FunctionSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.VariableSymbol;
+import io.ra6.zephyr.runtime.CallStackOverflowException;
+import io.ra6.zephyr.runtime.RegisteredProgram;
+import io.ra6.zephyr.runtime.Runtime;
+import io.ra6.zephyr.runtime.RuntimeType;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Executes programs by compiling every lowered body once into a tree of {@link ExpressionNode}s and
+ * {@link StatementNode}s. Bodies are compiled lazily on their first invocation and cached afterwards.
+ * Compiled bodies keep no state of an invocation, so many threads can execute them at once.
+ */
+@RequiredArgsConstructor
+public class ClosureEngine {
+    private final Runtime runtime;
+
+    private final IdentityHashMap<BoundBlockStatement, CompiledBody> bodies = new IdentityHashMap<>();
+    private final IdentityHashMap<BoundExpression, ExpressionNode> initializers = new IdentityHashMap<>();
+
+    @Getter
+    private final ConcurrentHashMap<RuntimeType, HashMap<String, RuntimeType>> genericTypes = new ConcurrentHashMap<>();
+
+    public Object evaluateFunctionWithEvaluatedArgs(BoundProgramScope program, RuntimeType type, FunctionSymbol function, Object thisValue, Object[] arguments) {
+        CompiledBody body = compile(program, type.getFunctionBody(function));
+        Frame frame = body.newFrame(function.getParameters().size());
+        frame.store(VariableSymbol.THIS_SLOT, thisValue);
+
+        for (int i = 0; i < function.getParameters().size(); i++) {
+            frame.store(VariableSymbol.getParameterSlot(i), arguments[i]);
+        }
+
+        try {
+            return body.invoke(frame);
+        } catch (StackOverflowError | CallStackOverflowException e) {
+            throw CallStackOverflowException.unwind(e, "function", function.getName());
+        }
+    }
+
+    // shared fields are initialized by the runtime when it links the program
+    public RuntimeType getRuntimeType(BoundProgramScope program, TypeSymbol type) {
+        return runtime.getRuntimeType(program, type);
+    }
+
+    // Bodies of imported types are executed in the context of the program that declares them
+    BoundProgramScope getContext(BoundProgramScope program, TypeSymbol type) {
+        if (!program.isTypeImported(type)) {
+            return program;
+        }
+
+        RegisteredProgram declaringProgram = runtime.findProgram(type);
+        if (declaringProgram == null) {
+            throw new RuntimeException("Cannot find program declaring type '%s'".formatted(type.getName()));
+        }
+        return declaringProgram.getProgram();
+    }
+
+    RuntimeType resolveRuntimeType(BoundProgramScope program, TypeSymbol type) {
+        BoundProgramScope context = getContext(program, type);
+        return getRuntimeType(context, type);
+    }
+
+    // compiled lazily by the threads running the program, the caches are guarded by the engine
+    synchronized CompiledBody compile(BoundProgramScope program, BoundBlockStatement body) {
+        CompiledBody compiled = bodies.get(body);
+        if (compiled == null) {
+            compiled = new ClosureCompiler(this, runtime, program).compileBody(body);
+            bodies.put(body, compiled);
+        }
+        return compiled;
+    }
+
+    synchronized ExpressionNode compileInitializer(BoundProgramScope program, BoundExpression initializer) {
+        ExpressionNode compiled = initializers.get(initializer);
+        if (compiled == null) {
+            compiled = new ClosureCompiler(this, runtime, program).compileExpression(initializer);
+            initializers.put(initializer, compiled);
+        }
+        return compiled;
+    }
+}
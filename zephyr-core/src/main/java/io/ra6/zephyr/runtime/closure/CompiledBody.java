@@ -0,0 +1,54 @@
+package io.ra6.zephyr.runtime.closure;
+
+import io.ra6.zephyr.codeanalysis.binding.BoundStatement;
+import io.ra6.zephyr.codeanalysis.symbols.VariableSymbol;
+import io.ra6.zephyr.runtime.CallRecorder;
+import io.ra6.zephyr.runtime.InternalCall;
+import io.ra6.zephyr.runtime.ProfiledFunction;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class CompiledBody {
+    public static final int RETURN = -1;
+
+    private final StatementNode[] statements;
+    @Getter
+    private final int frameSize;
+    // set if the body only forwards to an internal function, which is then called without a frame
+    @Getter
+    private final InternalCall internal;
+    // set if the runtime is profiled, the statements are only kept if the profiler samples lines
+    private final ProfiledFunction function;
+    private final BoundStatement[] lines;
+
+    public Frame newFrame(int parameterCount) {
+        return new Frame(Math.max(frameSize, VariableSymbol.getParameterSlot(parameterCount)));
+    }
+
+    public Object invoke(Frame frame) {
+        if (function != null) {
+            return invokeProfiled(frame);
+        }
+
+        int index = 0;
+        while (index != RETURN && index < statements.length) {
+            index = statements[index].execute(frame);
+        }
+        return frame.getReturnValue();
+    }
+
+    private Object invokeProfiled(Frame frame) {
+        CallRecorder recorder = CallRecorder.current();
+        recorder.enter(function);
+
+        int index = 0;
+        while (index != RETURN && index < statements.length) {
+            if (lines != null) recorder.line(lines[index]);
+            index = statements[index].execute(frame);
+        }
+
+        recorder.exit();
+        return frame.getReturnValue();
+    }
+}
@@ -0,0 +1,33 @@
+package io.ra6.zephyr.runtime.closure;
+
+@FunctionalInterface
+public interface ExpressionNode {
+    Object execute(Frame frame);
+
+    // Typed execution, only called on nodes whose static type is the primitive. Nodes that compute the primitive
+    // themselves, like intrinsic operators and array elements, override these so the value is never boxed.
+
+    default int executeInt(Frame frame) {
+        return (int) execute(frame);
+    }
+
+    default double executeDouble(Frame frame) {
+        // conversions are not evaluated, an int may be used as a double
+        return ((Number) execute(frame)).doubleValue();
+    }
+
+    default char executeChar(Frame frame) {
+        return (char) execute(frame);
+    }
+
+    default boolean executeBool(Frame frame) {
+        return (boolean) execute(frame);
+    }
+
+    /**
+     * Executes the node for its effect only, its value is not used.
+     */
+    default void executeVoid(Frame frame) {
+        execute(frame);
+    }
+}
@@ -0,0 +1,24 @@
+package io.ra6.zephyr.runtime.closure;
+
+import lombok.Getter;
+import lombok.Setter;
+
+public class Frame {
+    private final Object[] slots;
+
+    @Getter
+    @Setter
+    private Object returnValue;
+
+    public Frame(int size) {
+        this.slots = new Object[size];
+    }
+
+    public Object load(int slot) {
+        return slots[slot];
+    }
+
+    public void store(int slot, Object value) {
+        slots[slot] = value;
+    }
+}
@@ -0,0 +1,10 @@
+package io.ra6.zephyr.runtime.closure;
+
+@FunctionalInterface
+public interface StatementNode {
+    /**
+     * Executes the statement and returns the index of the next statement to execute,
+     * or {@link CompiledBody#RETURN} if the body returned.
+     */
+    int execute(Frame frame);
+}
@@ -0,0 +1,112 @@
+package io.ra6.zephyr;
+
+import io.ra6.zephyr.codeanalysis.binding.Binder;
+import io.ra6.zephyr.codeanalysis.binding.BoundProgram;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.syntax.SyntaxTree;
+import io.ra6.zephyr.emitting.JavaBytecodeEmitter;
+import io.ra6.zephyr.library.ZephyrLibrary;
+import io.ra6.zephyr.library.ZephyrLibraryMetadata;
+import io.ra6.zephyr.runtime.ExecutionEngine;
+import io.ra6.zephyr.runtime.Interpreter;
+import io.ra6.zephyr.runtime.Runtime;
+import io.ra6.zephyr.sourcefile.SourceText;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Binds programs against the standard library of the repository and runs them, capturing what they print.
+ */
+public final class TestPrograms {
+    // tests run in the directory of the module
+    public static final Path REPOSITORY = Path.of("..").toAbsolutePath().normalize();
+    public static final Path STANDARD_LIBRARY = REPOSITORY.resolve("stdlib");
+
+    /**
+     * What a program printed, its exit code and the message it failed with, if it failed.
+     */
+    public record Result(String output, int exitCode, String error) {
+    }
+
+    private TestPrograms() {
+    }
+
+    public static ZephyrLibrary standardLibrary() {
+        return new ZephyrLibrary(new ZephyrLibraryMetadata("Standard Library", "std", STANDARD_LIBRARY.toString(), "0.0.1", "rasix", ""));
+    }
+
+    public static BoundProgramScope bind(String source) {
+        return bind(SourceText.fromString(source));
+    }
+
+    public static BoundProgramScope bind(Path sourceFile) throws IOException {
+        return bind(SourceText.fromFile(sourceFile.toString()));
+    }
+
+    private static BoundProgramScope bind(SourceText source) {
+        Binder binder = new Binder(SyntaxTree.parse(source), standardLibrary());
+        BoundProgram program = binder.bindProgram();
+        assertFalse(binder.getDiagnostics().hasErrors(), () -> binder.getDiagnostics().asList().toString());
+        return program.getProgramScope();
+    }
+
+    public static Runtime createRuntime(BoundProgramScope program, ExecutionEngine engine) {
+        Runtime runtime = new Runtime();
+        runtime.setEngine(engine);
+        runtime.registerProgram(program);
+        runtime.link();
+        runtime.setMainProgram(runtime.getProgram(program.getName()));
+        return runtime;
+    }
+
+    public static Result run(BoundProgramScope program, ExecutionEngine engine, String... args) {
+        Runtime runtime = createRuntime(program, engine);
+        Interpreter interpreter = new Interpreter(runtime, arguments(args));
+        return capture(() -> {
+            interpreter.run();
+            return interpreter.getExitCode();
+        });
+    }
+
+    /**
+     * Compiles the program to JVM bytecode and runs it.
+     */
+    public static Result runCompiled(BoundProgramScope program, String... args) {
+        var compiled = new JavaBytecodeEmitter().emit(program);
+        return capture(() -> compiled.run(arguments(args)));
+    }
+
+    // the first argument of main is the program itself, like on the command line
+    private static String[] arguments(String[] args) {
+        String[] arguments = new String[args.length + 1];
+        arguments[0] = "program";
+        System.arraycopy(args, 0, arguments, 1, args.length);
+        return arguments;
+    }
+
+    // System.out is shared, so programs are run one at a time
+    private static synchronized Result capture(Callable<Integer> program) {
+        PrintStream standardOut = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+
+        int exitCode = -1;
+        String error = null;
+        try {
+            exitCode = program.call();
+        } catch (Exception e) {
+            error = e.getMessage();
+        } finally {
+            System.setOut(standardOut);
+        }
+
+        return new Result(output.toString(StandardCharsets.UTF_8), exitCode, error);
+    }
+}
@@ -0,0 +1,51 @@
+package io.ra6.zephyr.builtin.natives;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NativeConcurrentTests {
+    @Test
+    void tasksRunOnVirtualThreadsIfTheJvmProvidesThem() throws Exception {
+        Thread thread = CompletableFuture.supplyAsync(Thread::currentThread, NativeConcurrent.EXECUTOR).get();
+
+        assertEquals(virtualThreadsAvailable(), isVirtual(thread));
+        assertTrue(thread.isDaemon());
+    }
+
+    @Test
+    void platformThreadsAreBounded() {
+        if (virtualThreadsAvailable()) {
+            assertFalse(NativeConcurrent.EXECUTOR instanceof ThreadPoolExecutor);
+            return;
+        }
+
+        assertTrue(NativeConcurrent.EXECUTOR instanceof ThreadPoolExecutor);
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) NativeConcurrent.EXECUTOR;
+        assertEquals(NativeConcurrent.MAX_PLATFORM_THREADS, pool.getMaximumPoolSize());
+        assertTrue(pool.allowsCoreThreadTimeOut());
+    }
+
+    // the same lookup as the executor, virtual threads need --enable-preview on Java 19 and 20
+    private static boolean virtualThreadsAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual").invoke(null);
+            return true;
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+        try {
+            return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
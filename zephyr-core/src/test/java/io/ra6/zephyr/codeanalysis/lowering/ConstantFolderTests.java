@@ -0,0 +1,93 @@
+package io.ra6.zephyr.codeanalysis.lowering;
+
+import io.ra6.zephyr.TestPrograms;
+import io.ra6.zephyr.codeanalysis.binding.BoundExpression;
+import io.ra6.zephyr.codeanalysis.binding.expressions.BoundLiteralExpression;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.codeanalysis.binding.statements.BoundReturnStatement;
+import io.ra6.zephyr.codeanalysis.symbols.FunctionSymbol;
+import io.ra6.zephyr.codeanalysis.symbols.TypeSymbol;
+import io.ra6.zephyr.runtime.ExecutionEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConstantFolderTests {
+    private static final String PROGRAM = """
+            import "std:console";
+
+            type Program {
+                shared fnc wrapped(): int {
+                    return int.MAX + 1;
+                }
+
+                shared fnc arithmetic(): int {
+                    return (7 / 2) * 3 + -7 % 3;
+                }
+
+                shared fnc scaled(): double {
+                    return 1.5 * 2.0;
+                }
+
+                shared fnc condition(): bool {
+                    return 1 < 2 && !false;
+                }
+
+                shared fnc chosen(): int {
+                    return true ? 10 : 20;
+                }
+
+                shared fnc divided(): int {
+                    return 10 / 0;
+                }
+
+                pub shared fnc main(argv: str[]): int {
+                    Console.logi(Program.wrapped());
+                    Console.logi(Program.arithmetic());
+                    Console.logi(Program.divided());
+                    return 0;
+                }
+            }
+
+            export Program;
+            """;
+
+    private static BoundExpression returned(BoundProgramScope program, String functionName) {
+        TypeSymbol type = program.getType("Program");
+        FunctionSymbol function = type.getFunctions().stream().filter(f -> f.getName().equals(functionName)).findFirst().orElseThrow();
+        BoundReturnStatement statement = (BoundReturnStatement) program.getTypeScope(type).getFunctionBody(function).getStatements().get(0);
+        return statement.getExpression();
+    }
+
+    private static Object folded(BoundProgramScope program, String functionName) {
+        BoundExpression expression = returned(program, functionName);
+        assertTrue(expression instanceof BoundLiteralExpression, () -> functionName + " was not folded");
+        return ((BoundLiteralExpression) expression).getValue();
+    }
+
+    @Test
+    void literalOperandsAreFoldedLikeTheyEvaluate() {
+        BoundProgramScope program = TestPrograms.bind(PROGRAM);
+
+        assertEquals(Integer.MIN_VALUE, folded(program, "wrapped"));
+        assertEquals(8, folded(program, "arithmetic"));
+        assertEquals(3.0, folded(program, "scaled"));
+        assertEquals(true, folded(program, "condition"));
+        assertEquals(10, folded(program, "chosen"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionEngine.class)
+    void divisionsByZeroFailAtRuntime(ExecutionEngine engine) {
+        BoundProgramScope program = TestPrograms.bind(PROGRAM);
+        assertFalse(returned(program, "divided") instanceof BoundLiteralExpression);
+
+        TestPrograms.Result result = TestPrograms.run(program, engine);
+        assertEquals(String.join(System.lineSeparator(), String.valueOf(Integer.MIN_VALUE), "8", ""), result.output());
+        assertEquals("/ by zero", result.error());
+    }
+}
@@ -0,0 +1,67 @@
+package io.ra6.zephyr.codeanalysis.lowering;
+
+import io.ra6.zephyr.TestPrograms;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.runtime.ExecutionEngine;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class InlinerTests {
+    private static final String PROGRAM = """
+            import "std:console";
+
+            type Point {
+                pub var x: int = 0;
+
+                constructor(x: int) {
+                    this.x = x;
+                }
+
+                pub fnc plus(other: int): int {
+                    return this.x + other;
+                }
+            }
+
+            type Program {
+                shared fnc first(a: int, b: int): int {
+                    return a;
+                }
+
+                shared fnc twice(a: int): int {
+                    return a + a;
+                }
+
+                pub shared fnc main(argv: str[]): int {
+                    const values: int[] = new int[3, 7];
+                    const p: Point = new Point(4);
+                    Console.logi(Program.first(1, 2));
+                    Console.logi(Program.twice(values[1] + 1));
+                    Console.logi(p.plus(Program.twice(3)));
+                    Console.logi(Program.first(2, %s));
+                    return 0;
+                }
+            }
+
+            export Program;
+            """;
+
+    private static TestPrograms.Result run(String dropped) {
+        BoundProgramScope program = TestPrograms.bind(PROGRAM.formatted(dropped));
+        return TestPrograms.run(program, ExecutionEngine.INTERPRETER);
+    }
+
+    @Test
+    void inlinedCallsKeepTheirResults() {
+        TestPrograms.Result result = run("values[2]");
+
+        assertEquals(null, result.error());
+        assertEquals(String.join(System.lineSeparator(), "1", "16", "10", "2", ""), result.output());
+    }
+
+    @Test
+    void unusedArgumentsStillFail() {
+        assertEquals("Array index out of bounds", run("values[99]").error());
+        assertEquals("/ by zero", run("10 / (values[0] - 7)").error());
+    }
+}
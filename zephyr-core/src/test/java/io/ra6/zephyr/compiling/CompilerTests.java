@@ -0,0 +1,46 @@
+package io.ra6.zephyr.compiling;
+
+import io.ra6.zephyr.TestPrograms;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.runtime.ExecutionEngine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompilerTests {
+    // imports programs of its own directory and of the standard library
+    private static final Path EXAMPLE = TestPrograms.REPOSITORY.resolve("examples/brainfuck_shared/program.zph");
+
+    @ParameterizedTest
+    @EnumSource(ExecutionEngine.class)
+    void readProgramsRunLikeTheBoundProgram(ExecutionEngine engine) throws IOException {
+        BoundProgramScope program = TestPrograms.bind(EXAMPLE);
+        BoundProgramScope read = Compiler.read(Compiler.write(program));
+
+        assertEquals(program.getName(), read.getName());
+        assertEquals(TestPrograms.run(program, ExecutionEngine.INTERPRETER), TestPrograms.run(read, engine));
+    }
+
+    @Test
+    void writingAReadProgramGivesTheSameBytes() throws IOException {
+        byte[] bytes = Compiler.write(TestPrograms.bind(EXAMPLE));
+
+        assertArrayEquals(bytes, Compiler.write(Compiler.read(bytes)));
+    }
+
+    @Test
+    void truncatedProgramsAreRejected() throws IOException {
+        byte[] bytes = Compiler.write(TestPrograms.bind(EXAMPLE));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+
+        assertThrows(CompiledProgramException.class, () -> Compiler.read(truncated));
+    }
+}
@@ -0,0 +1,80 @@
+package io.ra6.zephyr.embedding;
+
+import io.ra6.zephyr.TestPrograms;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.runtime.ExecutionEngine;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ZephyrEngineTests {
+    private static final int THREADS = 8;
+
+    private static final String PROGRAM = """
+            type Box {
+                pub var value: int = 0;
+                pub var twice: int = 0;
+                pub var half: int = 0;
+
+                constructor(value: int) {
+                    this.value = value;
+                    this.twice = value * 2;
+                    this.half = value / 2;
+                    if (this.twice < this.half) {
+                        this.value = this.half + this.twice;
+                    }
+                }
+            }
+
+            type Boxes {
+                pub shared fnc sum(n: int): int {
+                    var total: int = 0;
+                    var i: int = 0;
+                    while (i < n) {
+                        const box: Box = new Box(i);
+                        total = total + box.value;
+                        i = i + 1;
+                    }
+                    return total;
+                }
+            }
+
+            export Boxes;
+            """;
+
+    // every engine is new, so the threads race through the first execution of each site
+    @ParameterizedTest
+    @EnumSource(ExecutionEngine.class)
+    void callsFromManyThreads(ExecutionEngine engine) throws Exception {
+        BoundProgramScope program = TestPrograms.bind(PROGRAM);
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < 200; round++) {
+                ZephyrFunction sum = new ZephyrEngine(program, engine).getFunction("Boxes", "sum");
+
+                CyclicBarrier start = new CyclicBarrier(THREADS);
+                List<Future<Object>> results = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    results.add(threads.submit(() -> {
+                        start.await();
+                        return sum.call(100);
+                    }));
+                }
+                for (Future<Object> result : results) {
+                    assertEquals(4950, result.get(10, TimeUnit.SECONDS));
+                }
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+}
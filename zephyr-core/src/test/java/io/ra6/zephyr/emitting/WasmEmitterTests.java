@@ -0,0 +1,76 @@
+package io.ra6.zephyr.emitting;
+
+import io.ra6.zephyr.codeanalysis.binding.Binder;
+import io.ra6.zephyr.codeanalysis.binding.BoundProgram;
+import io.ra6.zephyr.codeanalysis.syntax.SyntaxTree;
+import io.ra6.zephyr.emitting.wasm.WasmValidator;
+import io.ra6.zephyr.library.ZephyrLibrary;
+import io.ra6.zephyr.library.ZephyrLibraryMetadata;
+import io.ra6.zephyr.sourcefile.SourceText;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WasmEmitterTests {
+    private static final String PROGRAM = """
+            type Program {
+                shared var counter: int = 3;
+
+                shared fnc fib(n: int): int {
+                    if (n < 2) {
+                        return n;
+                    }
+                    return Program.fib(n - 1) + Program.fib(n - 2);
+                }
+
+                pub shared fnc main(argv: str[]): int {
+                    const values: int[] = new int[4, 0];
+                    var i: int = 0;
+                    while (i < values.length) {
+                        values[i] = Program.fib(i + Program.counter);
+                        i = i + 1;
+                    }
+                    const half: double = 1.5 * 2.0;
+                    if (half > 2.0 && values[3] == 8) {
+                        return values[0];
+                    }
+                    return -1;
+                }
+            }
+
+            export Program;
+            """;
+
+    private static byte[] emit(String source) throws IOException {
+        // the program has no imports, an empty library directory is enough to bind it
+        String libraryPath = Files.createTempDirectory("zephyr-std").toString();
+        ZephyrLibrary library = new ZephyrLibrary(new ZephyrLibraryMetadata("Standard Library", "std", libraryPath, "0.0.1", "", ""));
+        Binder binder = new Binder(SyntaxTree.parse(SourceText.fromString(source)), library);
+        BoundProgram program = binder.bindProgram();
+        assertFalse(binder.getDiagnostics().hasErrors(), () -> binder.getDiagnostics().asList().toString());
+        return new WasmEmitter().emit(program.getProgramScope());
+    }
+
+    @Test
+    void emitsValidModule() throws IOException {
+        byte[] module = emit(PROGRAM);
+
+        assertArrayEquals(new byte[]{0x00, 0x61, 0x73, 0x6D, 0x01, 0x00, 0x00, 0x00}, Arrays.copyOf(module, 8));
+        assertDoesNotThrow(() -> WasmValidator.validate(module));
+    }
+
+    @Test
+    void rejectsCorruptedModule() throws IOException {
+        byte[] module = emit(PROGRAM);
+
+        assertThrows(EmitterException.class, () -> WasmValidator.validate(Arrays.copyOf(module, module.length - 3)));
+
+        byte[] badMagic = module.clone();
+        badMagic[1] = 0x62;
+        assertThrows(EmitterException.class, () -> WasmValidator.validate(badMagic));
+    }
+}
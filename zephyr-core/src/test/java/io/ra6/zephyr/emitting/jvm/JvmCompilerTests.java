@@ -0,0 +1,131 @@
+package io.ra6.zephyr.emitting.jvm;
+
+import io.ra6.zephyr.TestPrograms;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.emitting.EmitterException;
+import io.ra6.zephyr.emitting.JavaBytecodeEmitter;
+import io.ra6.zephyr.runtime.ExecutionEngine;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JvmCompilerTests {
+    private static final String PROGRAM = """
+            import "std:console";
+
+            type Account {
+                pub var balance: double = 0.0;
+                pub var deposits: int = 0;
+                pub var owner: str = "";
+                pub var initial: char = 'a';
+
+                constructor(owner: str) {
+                    this.owner = owner;
+                    this.initial = owner.charAt(0);
+                }
+
+                pub fnc deposit(amount: double): void {
+                    this.balance = this.balance + amount;
+                    this.deposits = this.deposits + 1;
+                }
+            }
+
+            type Program {
+                shared var calls: int = 0;
+
+                shared fnc factorial(n: int): int {
+                    Program.calls = Program.calls + 1;
+                    if (n <= 1) {
+                        return 1;
+                    }
+                    return n * Program.factorial(n - 1);
+                }
+
+                shared fnc sum(n: int, total: int): int {
+                    if (n == 0) {
+                        return total;
+                    }
+                    return Program.sum(n - 1, total + n);
+                }
+
+                pub shared fnc main(argv: str[]): int {
+                    Console.logi(Program.factorial(10));
+                    Console.logi(Program.calls);
+                    Console.logi(Program.sum(1000, 0));
+
+                    const squares: int[] = new int[5, 0];
+                    var i: int = 0;
+                    while (i < squares.length) {
+                        squares[i] = i * i;
+                        i = i + 1;
+                    }
+                    const copy: int[] = squares.copy();
+                    copy[4] = 0;
+                    Console.logi(squares[4] + copy[4] + copy.length);
+
+                    var grid: double[][] = new double[2, 0.0][3, 0.5];
+                    grid[1][2] = 2.0;
+                    Console.logi(int.fromDouble((grid[0][0] + grid[1][2]) * 2.0));
+
+                    const tape: char[] = new char[3];
+                    tape[1] = 'z';
+                    Console.logc(tape[1]);
+
+                    const account: Account = new Account("zoe");
+                    account.deposit(1.5);
+                    account.deposit(2.0);
+                    Console.logi(account.deposits);
+                    Console.logi(int.fromDouble(account.balance * 2.0));
+                    Console.logs(account.owner);
+                    Console.logc(account.initial);
+                    return 3;
+                }
+            }
+
+            export Program;
+            """;
+
+    @Test
+    void emittedClassesLoadAndVerify() {
+        JvmProgram program = new JavaBytecodeEmitter().emit(TestPrograms.bind(PROGRAM));
+        ZephyrClassLoader classLoader = program.getClassLoader();
+
+        assertFalse(classLoader.getClassNames().isEmpty());
+        // initializing a class links it, which runs the verifier over every method
+        for (String name : classLoader.getClassNames()) {
+            assertDoesNotThrow(() -> Class.forName(name, true, classLoader), name);
+        }
+    }
+
+    @Test
+    void compiledProgramsRunLikeTheInterpreter() {
+        BoundProgramScope program = TestPrograms.bind(PROGRAM);
+        TestPrograms.Result result = TestPrograms.runCompiled(program);
+
+        assertEquals(null, result.error());
+        assertEquals(3, result.exitCode());
+        assertEquals(String.join(System.lineSeparator(), "3628800", "10", "500500", "21", "5", "z", "2", "7", "zoe", "z", ""), result.output());
+        assertEquals(TestPrograms.run(program, ExecutionEngine.INTERPRETER), result);
+    }
+
+    @Test
+    void runtimeOnlyNativesAreRejected() {
+        BoundProgramScope program = TestPrograms.bind("""
+                import "std:concurrent";
+
+                type Program {
+                    pub shared fnc main(argv: str[]): int {
+                        const results: Channel<int> = new Channel<int>(1);
+                        return 0;
+                    }
+                }
+
+                export Program;
+                """);
+
+        assertThrows(EmitterException.class, () -> new JavaBytecodeEmitter().emit(program));
+    }
+}
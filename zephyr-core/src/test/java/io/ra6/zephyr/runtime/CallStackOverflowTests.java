@@ -0,0 +1,46 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.TestPrograms;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CallStackOverflowTests {
+    private static final String PROGRAM = """
+            import "std:console";
+
+            type Program {
+                pub shared fnc down(n: int): int {
+                    return 1 + Program.down(n + 1);
+                }
+
+                pub shared fnc main(argv: str[]): int {
+                    Console.logi(Program.down(0));
+                    return 0;
+                }
+            }
+
+            export Program;
+            """;
+
+    private static void assertOverflow(TestPrograms.Result result) {
+        assertTrue(result.error() != null && result.error().startsWith("Stack overflow"), () -> "unexpected error " + result.error());
+        assertTrue(result.error().contains("down) (repeated"), result::error);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionEngine.class)
+    void runawayRecursionOverflows(ExecutionEngine engine) {
+        BoundProgramScope program = TestPrograms.bind(PROGRAM);
+        assertOverflow(TestPrograms.run(program, engine));
+    }
+
+    @Test
+    void runawayRecursionOverflowsWhenCompiled() {
+        BoundProgramScope program = TestPrograms.bind(PROGRAM);
+        assertOverflow(TestPrograms.runCompiled(program));
+    }
+}
@@ -0,0 +1,194 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.TestPrograms;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class ConcurrencyTests {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String SPAWNING_INITIALIZER = """
+            import "std:console";
+            import "std:concurrent";
+
+            type Answer {
+                constructor() {
+                }
+
+                pub fnc run(): int {
+                    return 42;
+                }
+            }
+
+            type Starter {
+                pub var value: int = 0;
+
+                constructor() {
+                    const task: Task<int> = new Task<int>(new Answer());
+                    this.value = task.join();
+                }
+            }
+
+            type Program {
+                pub shared var starter: Starter = new Starter();
+
+                pub shared fnc main(argv: str[]): int {
+                    Console.logi(Program.starter.value);
+                    return 0;
+                }
+            }
+
+            export Program;
+            """;
+
+    @ParameterizedTest
+    @EnumSource(ExecutionEngine.class)
+    void sharedInitializersCanJoinTasks(ExecutionEngine engine) {
+        BoundProgramScope program = TestPrograms.bind(SPAWNING_INITIALIZER);
+        TestPrograms.Result result = assertTimeoutPreemptively(TIMEOUT, () -> TestPrograms.run(program, engine));
+
+        assertEquals(null, result.error());
+        assertEquals("42" + System.lineSeparator(), result.output());
+    }
+
+    private static final String SPAWNED_WORK = """
+            import "std:console";
+            import "std:concurrent";
+
+            type Text {
+                constructor() {
+                }
+
+                pub fnc run(): str {
+                    return "text";
+                }
+            }
+
+            type Idle {
+                constructor() {
+                }
+            }
+
+            type Echo<T> {
+                prv var value: T;
+
+                constructor(value: T) {
+                    this.value = value;
+                }
+
+                pub fnc run(): T {
+                    return this.value;
+                }
+            }
+
+            type Program {
+                pub shared fnc main(argv: str[]): int {
+                    const echo: Task<int> = new Task<int>(new Echo<int>(41));
+                    Console.logi(echo.join() + 1);
+                    %s
+                    return 0;
+                }
+            }
+
+            export Program;
+            """;
+
+    private static TestPrograms.Result spawn(ExecutionEngine engine, String statement) {
+        BoundProgramScope program = TestPrograms.bind(SPAWNED_WORK.formatted(statement));
+        return assertTimeoutPreemptively(TIMEOUT, () -> TestPrograms.run(program, engine));
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionEngine.class)
+    void tasksReturnTheResultOfRun(ExecutionEngine engine) {
+        TestPrograms.Result result = spawn(engine, "const text: Task<any> = new Task<any>(new Text()); Console.logany(text.join());");
+
+        assertEquals(null, result.error());
+        assertEquals(String.join(System.lineSeparator(), "42", "text", ""), result.output());
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionEngine.class)
+    void spawnChecksTheWork(ExecutionEngine engine) {
+        assertEquals("Function run of type Text returns str, but the task expects int",
+                spawn(engine, "const text: Task<int> = new Task<int>(new Text()); Console.logi(text.join() + 1);").error());
+        assertEquals("Type Idle cannot be spawned, it has no function run()",
+                spawn(engine, "const idle: Task<int> = new Task<int>(new Idle());").error());
+    }
+
+    private static final String FAN_OUT = """
+            import "std:console";
+            import "std:concurrent";
+
+            type Part {
+                pub var value: int = 0;
+
+                constructor(value: int) {
+                    this.value = value;
+                }
+            }
+
+            type Worker {
+                prv var first: int = 0;
+                prv var results: Channel<int> = new Channel<int>(1);
+
+                constructor(first: int, results: Channel<int>) {
+                    this.first = first;
+                    this.results = results;
+                }
+
+                pub fnc run(): int {
+                    var sum: int = 0;
+                    var i: int = this.first;
+                    while (i < this.first + 100) {
+                        const part: Part = new Part(i);
+                        sum = sum + part.value;
+                        i = i + 1;
+                    }
+                    this.results.send(sum);
+                    return sum;
+                }
+            }
+
+            type Program {
+                pub shared fnc main(argv: str[]): int {
+                    const results: Channel<int> = new Channel<int>(8);
+                    var i: int = 0;
+                    while (i < 8) {
+                        const task: Task<int> = new Task<int>(new Worker(i * 100, results));
+                        i = i + 1;
+                    }
+
+                    var received: int = 0;
+                    i = 0;
+                    while (i < 8) {
+                        received = received + results.receive();
+                        i = i + 1;
+                    }
+                    Console.logi(received);
+                    return 0;
+                }
+            }
+
+            export Program;
+            """;
+
+    // each round links a new runtime, so the workers also run the sites of their bodies for the first time
+    @ParameterizedTest
+    @EnumSource(ExecutionEngine.class)
+    void tasksFanOutThroughAChannel(ExecutionEngine engine) {
+        BoundProgramScope program = TestPrograms.bind(FAN_OUT);
+        for (int round = 0; round < 20; round++) {
+            TestPrograms.Result result = assertTimeoutPreemptively(TIMEOUT, () -> TestPrograms.run(program, engine));
+
+            assertEquals(null, result.error());
+            assertEquals("319600" + System.lineSeparator(), result.output());
+        }
+    }
+}
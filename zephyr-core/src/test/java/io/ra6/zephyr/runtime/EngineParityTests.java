@@ -0,0 +1,148 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.TestPrograms;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import io.ra6.zephyr.emitting.EmitterException;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs every example with a main function on each engine and compares the results with the interpreter.
+ */
+public class EngineParityTests {
+    private static final Path EXAMPLES = TestPrograms.REPOSITORY.resolve("examples");
+    // imports a file that is not part of the examples
+    private static final Set<Path> BROKEN_EXAMPLES = Set.of(EXAMPLES.resolve("brainfuck_standalone/brainfuck.zph"));
+
+    // char + char and char - char evaluate to an int that is stored in the char variable as it is
+    private static final String CHAR_ARITHMETIC = """
+            import "std:console";
+
+            type Program {
+                pub shared fnc main(argv: str[]): int {
+                    const a: char = 'd';
+                    const b: char = 'a';
+                    var c: char = a - b;
+                    Console.logany(c);
+                    c = b + a;
+                    Console.logany(c);
+                    const d: char = b + 2;
+                    Console.logany(d);
+                    return 0;
+                }
+            }
+
+            export Program;
+            """;
+
+    // elements of primitive arrays are read and written through the typed accessors of their array kind
+    private static final String PRIMITIVE_ARRAYS = """
+            import "std:console";
+
+            type Program {
+                pub shared fnc main(argv: str[]): int {
+                    const numbers: int[] = new int[4, 1];
+                    const halves: double[] = new double[4, 0.0];
+                    const letters: char[] = new char[4, 'a'];
+                    const flags: bool[] = new bool[4, false];
+                    var i: int = 1;
+                    while (i < numbers.length) {
+                        numbers[i] = numbers[i - 1] * 3 + i;
+                        halves[i] = numbers[i] / 2.0 + halves[i - 1];
+                        letters[i] = letters[i - 1] + i;
+                        flags[i] = numbers[i] % 2 == 0 || flags[i - 1];
+                        i = i + 1;
+                    }
+                    halves[0] = numbers[1] + 0.5;
+                    Console.logi(numbers[3]);
+                    Console.logany(halves[3] + halves[0]);
+                    Console.logc(letters[3]);
+                    Console.logany(letters[2] == 'b' + 2);
+                    Console.logany(flags[3] && !flags[0]);
+                    return 0;
+                }
+            }
+
+            export Program;
+            """;
+
+    static List<Path> examples() throws IOException {
+        try (Stream<Path> files = Files.walk(EXAMPLES)) {
+            return files.filter(file -> file.toString().endsWith(".zph") && Files.isRegularFile(file))
+                    .filter(file -> !BROKEN_EXAMPLES.contains(file))
+                    .filter(EngineParityTests::hasMain)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    static Stream<Arguments> examplesOnEngines() throws IOException {
+        return examples().stream().flatMap(example -> Stream.of(ExecutionEngine.CLOSURE, ExecutionEngine.BYTECODE)
+                .map(engine -> Arguments.of(example, engine)));
+    }
+
+    private static boolean hasMain(Path file) {
+        try {
+            return Files.readString(file).contains("fnc main(");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("examplesOnEngines")
+    void enginesMatchTheInterpreter(Path example, ExecutionEngine engine) throws IOException {
+        BoundProgramScope program = TestPrograms.bind(example);
+        TestPrograms.Result expected = TestPrograms.run(program, ExecutionEngine.INTERPRETER);
+        TestPrograms.Result actual = TestPrograms.run(program, engine);
+
+        assertTrue(!expected.output().isEmpty(), () -> example + " printed nothing");
+        assertEquals(expected, actual, () -> example + " on " + engine);
+    }
+
+    @ParameterizedTest
+    @MethodSource("examples")
+    void compiledProgramsMatchTheInterpreter(Path example) throws IOException {
+        BoundProgramScope program = TestPrograms.bind(example);
+        TestPrograms.Result expected = TestPrograms.run(program, ExecutionEngine.INTERPRETER);
+
+        TestPrograms.Result actual;
+        try {
+            actual = TestPrograms.runCompiled(program);
+        } catch (EmitterException e) {
+            throw new AssertionError(example + " cannot be compiled to JVM bytecode: " + e.getMessage(), e);
+        }
+
+        assertEquals(expected, actual, () -> example + " compiled to JVM bytecode");
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionEngine.class)
+    void charArithmeticIsStoredAsItEvaluates(ExecutionEngine engine) {
+        TestPrograms.Result result = TestPrograms.run(TestPrograms.bind(CHAR_ARITHMETIC), engine);
+
+        assertEquals(null, result.error());
+        assertEquals(String.join(System.lineSeparator(), "3", "197", "c", ""), result.output());
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionEngine.class)
+    void primitiveArrayElementsAreStoredUnboxed(ExecutionEngine engine) {
+        TestPrograms.Result result = TestPrograms.run(TestPrograms.bind(PRIMITIVE_ARRAYS), engine);
+
+        assertEquals(null, result.error());
+        assertEquals(String.join(System.lineSeparator(), "45", "36.0", "g", "true", "true", ""), result.output());
+    }
+}
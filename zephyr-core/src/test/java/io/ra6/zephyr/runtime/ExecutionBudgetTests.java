@@ -0,0 +1,70 @@
+package io.ra6.zephyr.runtime;
+
+import io.ra6.zephyr.TestPrograms;
+import io.ra6.zephyr.Tuple;
+import io.ra6.zephyr.codeanalysis.binding.scopes.BoundProgramScope;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class ExecutionBudgetTests {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static final String RUNAWAY_LOOP = """
+            type Program {
+                pub shared fnc main(argv: str[]): int {
+                    var i: int = 0;
+                    while (true) {
+                        i = i + 1;
+                    }
+                    return i;
+                }
+            }
+
+            export Program;
+            """;
+
+    private static Interpreter createInterpreter(BoundProgramScope program, ExecutionEngine engine, long stepLimit) {
+        Runtime runtime = new Runtime();
+        runtime.setEngine(engine);
+        // limits have to be set before the program is linked
+        runtime.setStepLimit(stepLimit);
+        runtime.registerProgram(program);
+        runtime.link();
+        runtime.setMainProgram(runtime.getProgram(program.getName()));
+        return new Interpreter(runtime, new String[]{"program"});
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExecutionEngine.class)
+    void runawayLoopsAreStopped(ExecutionEngine engine) {
+        Interpreter interpreter = createInterpreter(TestPrograms.bind(RUNAWAY_LOOP), engine, 10_000);
+
+        BudgetExceededException exception = assertTimeoutPreemptively(TIMEOUT, () -> assertThrows(BudgetExceededException.class, interpreter::run));
+        assertEquals("Step budget of 10000 exceeded", exception.getMessage());
+    }
+
+    @Test
+    void arraysWithMoreElementsThanALongCountsAreOverBudget() {
+        ExecutionBudget budget = new ExecutionBudget(ExecutionBudget.UNLIMITED, ExecutionBudget.UNLIMITED - 1);
+        List<Tuple<Integer, Object>> dimensions = List.of(new Tuple<>(Integer.MAX_VALUE, null), new Tuple<>(Integer.MAX_VALUE, null), new Tuple<>(Integer.MAX_VALUE, null));
+
+        assertThrows(BudgetExceededException.class, () -> budget.allocateArray(dimensions));
+    }
+
+    @Test
+    void negativeDimensionsDoNotFreeBudget() {
+        ExecutionBudget budget = new ExecutionBudget(ExecutionBudget.UNLIMITED, 100);
+        budget.allocate(50);
+        budget.allocateArray(List.of(new Tuple<>(2, null), new Tuple<>(-5, null)));
+
+        assertEquals(52, budget.getAllocations());
+    }
+}
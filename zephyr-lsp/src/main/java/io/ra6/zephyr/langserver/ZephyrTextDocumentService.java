@@ -2,6 +2,7 @@ package io.ra6.zephyr.langserver;
 
 import io.ra6.zephyr.codeanalysis.binding.Binder;
 import io.ra6.zephyr.codeanalysis.binding.BoundProgram;
+import io.ra6.zephyr.codeanalysis.binding.BoundProgramCache;
 import io.ra6.zephyr.codeanalysis.syntax.SyntaxTree;
 import io.ra6.zephyr.sourcefile.SourceText;
 import org.eclipse.lsp4j.*;
@@ -21,6 +22,9 @@ public class ZephyrTextDocumentService implements TextDocumentService {
 
     private BoundProgram boundProgram;
 
+    // imported programs are only bound again if one of their files changed
+    private final BoundProgramCache programCache = new BoundProgramCache();
+
     public ZephyrTextDocumentService(ZephyrLanguageServer languageServer) {
         this.languageServer = languageServer;
     }
@@ -29,7 +33,7 @@ public class ZephyrTextDocumentService implements TextDocumentService {
     public void didOpen(DidOpenTextDocumentParams didOpenTextDocumentParams) {
         SourceText sourceText = SourceText.fromString(didOpenTextDocumentParams.getTextDocument().getText());
         SyntaxTree syntaxTree = SyntaxTree.parse(sourceText);
-        Binder binder = new Binder(syntaxTree, languageServer.getStandardLibrary());
+        Binder binder = new Binder(syntaxTree, languageServer.getStandardLibrary(), programCache);
 
         boundProgram = binder.bindProgram();
     }
@@ -40,7 +44,7 @@ public class ZephyrTextDocumentService implements TextDocumentService {
         String fileContent = didChangeTextDocumentParams.getContentChanges().get(0).getText();
         SourceText sourceText = SourceText.fromString(fileContent);
         SyntaxTree syntaxTree = SyntaxTree.parse(sourceText);
-        Binder binder = new Binder(syntaxTree, languageServer.getStandardLibrary());
+        Binder binder = new Binder(syntaxTree, languageServer.getStandardLibrary(), programCache);
 
         boundProgram = binder.bindProgram();
     }